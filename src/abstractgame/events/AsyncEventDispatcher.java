@@ -0,0 +1,510 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.events;
+
+import java.util.ArrayDeque;
+import java.util.EventObject;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The Class AsyncEventDispatcher delivers the events of an {@link EventBus} on
+ * dedicated threads, so slow listeners like views don't stall the game logic,
+ * see {@link EventBus#setDispatcher(AsyncEventDispatcher)}. <br>
+ * Every thread consumes a bounded ring buffer (a lane). All events for one
+ * listener go through the same lane, so every listener gets its events in the
+ * order they were published, while different listeners may run in parallel.
+ * If the lane of a listener is full, the publishing thread waits until the
+ * lane's thread made room (backpressure). The threads of the dispatcher
+ * never wait, since two lanes publishing into each other could wait for each
+ * other forever: a listener publishing events into a full lane, its own or
+ * another one, adds them to the lane's unbounded overflow queue behind the
+ * ring buffer, which keeps their order. <br>
+ * A listener throwing an exception or an error is reported to the thread's
+ * uncaught exception handler, and the lane goes on with the next event. <br>
+ * The events are immutable, but their sources aren't: a listener called
+ * asynchronously sees the current state of a field or unit, which may have
+ * changed again since the event was published.
+ *
+ * @author Nils Kuttkat
+ */
+public class AsyncEventDispatcher {
+
+    /**
+     * The default capacity of a lane.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The lanes, each consumed by its own thread.
+     */
+    private final Lane[] lanes;
+
+    /**
+     * Instantiates a new async event dispatcher with a single thread and the
+     * default capacity.
+     */
+    public AsyncEventDispatcher() {
+        this(1, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new async event dispatcher and starts its threads.
+     *
+     * @param threads the number of threads
+     * @param capacity the number of events every thread may have pending
+     */
+    public AsyncEventDispatcher(int threads, int capacity) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Illegal number of threads " + threads);
+        }
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Illegal capacity " + capacity);
+        }
+
+        this.lanes = new Lane[threads];
+
+        for (int i = 0; i < threads; i++) {
+            this.lanes[i] = new Lane(capacity);
+            this.lanes[i].thread = new Thread(this.lanes[i], "AsyncEventDispatcher-" + i);
+            this.lanes[i].thread.setDaemon(true);
+            this.lanes[i].thread.start();
+        }
+    }
+
+    /**
+     * Waits until every event dispatched so far has been delivered.
+     *
+     * @throws InterruptedException if the thread has been interrupted
+     * @throws IllegalStateException if called by a thread of the dispatcher
+     */
+    public void awaitIdle() throws InterruptedException {
+        for (Lane lane : this.lanes) {
+            if (Thread.currentThread() == lane.thread) {
+                throw new IllegalStateException("Illegal thread " + lane.thread.getName());
+            }
+        }
+
+        for (Lane lane : this.lanes) {
+            lane.awaitIdle();
+        }
+    }
+
+    /**
+     * Stops accepting events. The threads deliver the pending events and
+     * end.
+     *
+     * @param timeout the time to wait for the threads to end
+     * @param unit the unit of the timeout
+     * @return true, if all threads ended within the timeout
+     * @throws InterruptedException if the thread has been interrupted
+     */
+    public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean ended = true;
+
+        for (Lane lane : this.lanes) {
+            lane.close();
+        }
+
+        for (Lane lane : this.lanes) {
+            lane.thread.join(Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 1));
+            ended &= !lane.thread.isAlive();
+        }
+
+        return ended;
+    }
+
+    /**
+     * Delivers the event to the listener on the thread of the listener's
+     * lane.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     * @param type the type
+     * @param listener the listener
+     * @param event the event
+     * @throws IllegalStateException if the dispatcher has been closed or the
+     * thread of the lane has ended
+     */
+    <L, E extends EventObject> void dispatch(EventType<L, E> type, L listener, E event) {
+        Lane lane = this.lanes[(System.identityHashCode(listener) & Integer.MAX_VALUE) % this.lanes.length];
+
+        lane.put(type, listener, event, this.isDispatcherThread());
+    }
+
+    /**
+     * Gets the number of events every thread may have pending.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.lanes[0].events.length;
+    }
+
+    /**
+     * Gets the number of pending events.
+     *
+     * @return the pending events
+     */
+    public int getPendingEvents() {
+        int pendingEvents = 0;
+
+        for (Lane lane : this.lanes) {
+            pendingEvents += lane.getSize();
+        }
+
+        return pendingEvents;
+    }
+
+    /**
+     * Gets the number of threads.
+     *
+     * @return the threads
+     */
+    public int getThreads() {
+        return this.lanes.length;
+    }
+
+    /**
+     * Checks if the current thread is one of the dispatcher's threads.
+     *
+     * @return true, if is dispatcher thread
+     */
+    private boolean isDispatcherThread() {
+        boolean dispatcherThread = false;
+
+        for (int i = 0; i < this.lanes.length && !dispatcherThread; i++) {
+            dispatcherThread = Thread.currentThread() == this.lanes[i].thread;
+        }
+
+        return dispatcherThread;
+    }
+
+    /**
+     * The Class Lane is a ring buffer of events consumed by one thread. The
+     * events are stored in parallel arrays, so dispatching allocates
+     * nothing. The events the dispatcher's threads publish into a full lane
+     * wait in the overflow queue, and the lane's thread moves them into the
+     * ring buffer as it makes room, so the ring buffer stays full as long as
+     * the overflow queue isn't empty.
+     */
+    private static final class Lane implements Runnable {
+
+        /**
+         * True if the lane doesn't accept events anymore.
+         */
+        private boolean closed;
+
+        /**
+         * True while the thread delivers an event.
+         */
+        private boolean delivering;
+
+        /**
+         * True once the thread has ended.
+         */
+        private boolean ended;
+
+        /**
+         * The events.
+         */
+        private final EventObject[] events;
+
+        /**
+         * The position of the oldest event.
+         */
+        private int head;
+
+        /**
+         * Signaled when the lane has delivered all events.
+         */
+        private final Condition idle;
+
+        /**
+         * The listeners.
+         */
+        private final Object[] listeners;
+
+        /**
+         * The lock.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Signaled when an event has been added.
+         */
+        private final Condition notEmpty;
+
+        /**
+         * Signaled when an event has been taken.
+         */
+        private final Condition notFull;
+
+        /**
+         * The events published into the full lane by the dispatcher's
+         * threads, in the order they were published.
+         */
+        private final ArrayDeque<OverflowEvent> overflow = new ArrayDeque<OverflowEvent>();
+
+        /**
+         * The number of events in the ring buffer.
+         */
+        private int size;
+
+        /**
+         * The thread.
+         */
+        private Thread thread;
+
+        /**
+         * The types.
+         */
+        private final EventType<?, ?>[] types;
+
+        /**
+         * Instantiates a new lane.
+         *
+         * @param capacity the capacity
+         */
+        Lane(int capacity) {
+            this.types = new EventType<?, ?>[capacity];
+            this.listeners = new Object[capacity];
+            this.events = new EventObject[capacity];
+            this.notEmpty = this.lock.newCondition();
+            this.notFull = this.lock.newCondition();
+            this.idle = this.lock.newCondition();
+        }
+
+        /**
+         * Waits until the lane has delivered all events.
+         *
+         * @throws InterruptedException if the thread has been interrupted
+         */
+        void awaitIdle() throws InterruptedException {
+            this.lock.lock();
+
+            try {
+                while ((this.size > 0 || this.delivering) && this.thread.isAlive()) {
+                    this.idle.await(100, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Stops accepting events.
+         */
+        void close() {
+            this.lock.lock();
+
+            try {
+                this.closed = true;
+                this.notEmpty.signalAll();
+                this.notFull.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Gets the number of pending events, including the overflowing ones.
+         *
+         * @return the size
+         */
+        int getSize() {
+            this.lock.lock();
+
+            try {
+                return this.size + this.overflow.size();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /**
+         * Adds the event. An outside thread waits while the lane is full, a
+         * thread of the dispatcher adds the event to the overflow queue
+         * instead.
+         *
+         * @param type the type
+         * @param listener the listener
+         * @param event the event
+         * @param dispatcherThread true if the current thread is a thread of
+         * the dispatcher
+         * @throws IllegalStateException if the lane has been closed or its
+         * thread has ended
+         */
+        void put(EventType<?, ?> type, Object listener, EventObject event, boolean dispatcherThread) {
+            this.lock.lock();
+
+            try {
+                while (this.size == this.events.length && !this.closed && !this.ended && !dispatcherThread) {
+                    this.notFull.awaitUninterruptibly();
+                }
+
+                if (this.closed) {
+                    throw new IllegalStateException("Closed dispatcher");
+                }
+
+                if (this.ended) {
+                    throw new IllegalStateException("Illegal state, " + this.thread.getName() + " has ended");
+                }
+
+                if (this.size < this.events.length) {
+                    this.store(type, listener, event);
+                    this.notEmpty.signal();
+                } else {
+                    this.overflow.add(new OverflowEvent(type, listener, event));
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        /*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Runnable#run()
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public void run() {
+            EventType<Object, EventObject> type;
+            Object listener;
+            EventObject event;
+            OverflowEvent overflowEvent;
+
+            try {
+                while (true) {
+                    this.lock.lock();
+
+                    try {
+                        this.delivering = false;
+
+                        if (this.size == 0) {
+                            this.idle.signalAll();
+                        }
+
+                        while (this.size == 0 && !this.closed) {
+                            this.notEmpty.awaitUninterruptibly();
+                        }
+
+                        if (this.size == 0) {
+                            break;
+                        }
+
+                        type = (EventType<Object, EventObject>) this.types[this.head];
+                        listener = this.listeners[this.head];
+                        event = this.events[this.head];
+                        this.types[this.head] = null;
+                        this.listeners[this.head] = null;
+                        this.events[this.head] = null;
+                        this.head = (this.head + 1) % this.events.length;
+                        this.size--;
+                        this.delivering = true;
+                        overflowEvent = this.overflow.poll();
+
+                        // the overflowing events are older than any event an outside thread may add
+                        if (overflowEvent != null) {
+                            this.store(overflowEvent.type, overflowEvent.listener, overflowEvent.event);
+                        } else {
+                            this.notFull.signal();
+                        }
+                    } finally {
+                        this.lock.unlock();
+                    }
+
+                    try {
+                        type.dispatch(listener, event);
+                    } catch (RuntimeException exception) {
+                        // a failing listener must not stop the delivery to the others
+                        this.thread.getUncaughtExceptionHandler().uncaughtException(this.thread, exception);
+                    } catch (Error error) {
+                        this.thread.getUncaughtExceptionHandler().uncaughtException(this.thread, error);
+                    }
+                }
+            } finally {
+                // publishers must not wait for a thread which doesn't take events anymore
+                this.lock.lock();
+
+                try {
+                    this.ended = true;
+                    this.idle.signalAll();
+                    this.notFull.signalAll();
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        }
+
+        /**
+         * Stores the event at the tail of the ring buffer, which must have
+         * room.
+         *
+         * @param type the type
+         * @param listener the listener
+         * @param event the event
+         */
+        private void store(EventType<?, ?> type, Object listener, EventObject event) {
+            int tail = (this.head + this.size) % this.events.length;
+
+            this.types[tail] = type;
+            this.listeners[tail] = listener;
+            this.events[tail] = event;
+            this.size++;
+        }
+    }
+
+    /**
+     * The Class OverflowEvent is an event a thread of the dispatcher
+     * published into a full lane.
+     */
+    private static final class OverflowEvent {
+
+        /**
+         * The event.
+         */
+        private final EventObject event;
+
+        /**
+         * The listener.
+         */
+        private final Object listener;
+
+        /**
+         * The type.
+         */
+        private final EventType<?, ?> type;
+
+        /**
+         * Instantiates a new overflow event.
+         *
+         * @param type the type
+         * @param listener the listener
+         * @param event the event
+         */
+        OverflowEvent(EventType<?, ?> type, Object listener, EventObject event) {
+            this.type = type;
+            this.listener = listener;
+            this.event = event;
+        }
+    }
+}
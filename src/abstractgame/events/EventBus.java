@@ -0,0 +1,918 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.events;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Arrays;
+import java.util.EventObject;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nkutilities.Coordinate;
+
+import abstractgame.interfaces.SynchronousListener;
+import abstractgame.map.AbstractField;
+
+/**
+ * The Class EventBus delivers the events of all fields and units of a map
+ * (and of the game playing on it) to subscriptions indexed by
+ * {@link EventType}. A listener subscribes to
+ * <ul>
+ * <li>all events of a type,</li>
+ * <li>the events of a type with a given source, e.g. one unit, or</li>
+ * <li>the events of a type happening on the fields of a rectangular region,
+ * see {@link EventType#getField(EventObject)}.</li>
+ * </ul>
+ * This replaces listeners registered on every single field: observing the
+ * whole map costs one subscription instead of one per field. <br>
+ * Subscribing returns a {@link Subscription} which cancels it again. A weak
+ * subscription doesn't keep its listener reachable: once the listener has
+ * been garbage collected, the subscription is cancelled by the next event
+ * reaching it or the next call subscribing, unsubscribing or removing a
+ * source. A {@link SubscriptionScope} cancels all subscriptions of e.g. a
+ * view at once. The subscriptions to a
+ * unit are cancelled when it is removed from its game, see
+ * {@link #removeSource(Object)}. <br>
+ * Publishing looks up the subscriptions of the type by its number and
+ * iterates copy on write arrays, see {@link ListenerList}. Sources should
+ * check {@link #hasSubscribers(EventType)} before creating an event. <br>
+ * Between {@link #beginBatch()} and {@link #endBatch()} the events a thread
+ * publishes are buffered instead and coalesced per
+ * {@link EventType#getBatchKey(EventObject)}, so the listeners see the net
+ * change once the batch ends, e.g. a unit moving across many fields is
+ * removed from its start and added to its target, while adding and removing
+ * it on the fields in between cancel out. A batch belongs to the thread which
+ * opened it, the events of other threads are delivered immediately. The
+ * {@link SynchronousListener}s aren't batched either: they keep the model
+ * consistent, e.g. the map's unit index, so they get every event as it is
+ * published. <br>
+ * The events are delivered synchronously unless the bus has an
+ * {@link AsyncEventDispatcher}, which delivers them on its own threads to
+ * every listener except the {@link SynchronousListener}s.
+ *
+ * @author Nils Kuttkat
+ */
+public class EventBus {
+
+    /**
+     * The batch opened by the current thread, null if it has none open.
+     */
+    private final ThreadLocal<Batch> batches = new ThreadLocal<Batch>();
+
+    /**
+     * The dispatcher delivering asynchronously, null to deliver
+     * synchronously.
+     */
+    private volatile AsyncEventDispatcher dispatcher;
+
+    /**
+     * The queue the weak listeners are enqueued to once they have been
+     * garbage collected.
+     */
+    private final ReferenceQueue<Object> staleListeners = new ReferenceQueue<Object>();
+
+    /**
+     * The subscriptions by the number of their type.
+     */
+    private volatile Subscriptions<?>[] subscriptions = new Subscriptions<?>[0];
+
+    /**
+     * Begins a batch of the current thread: the events it publishes until
+     * the matching {@link #endBatch()} are buffered and delivered when it
+     * ends. Batches may be nested, the events are delivered when the
+     * outermost one ends. The events of other threads are delivered
+     * immediately meanwhile.
+     */
+    public void beginBatch() {
+        Batch batch = this.batches.get();
+
+        if (batch == null) {
+            batch = new Batch();
+            this.batches.set(batch);
+        }
+
+        batch.depth++;
+    }
+
+    /**
+     * Buffers the event in the open batch. It is merged with a buffered event
+     * of the type with the same batch key, or cancels out with one of the
+     * opposite type.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     * @param batch the batch
+     * @param type the type
+     * @param event the event
+     * @param listeners the listeners of the source or null
+     */
+    @SuppressWarnings("unchecked")
+    private static <L, E extends EventObject> void buffer(Batch batch, EventType<L, E> type, E event,
+            ListenerList<L> listeners) {
+        Object batchKey = type.getBatchKey(event);
+        List<Object> key = Arrays.<Object>asList(type, batchKey);
+        PendingEvent<L, E> pendingEvent;
+
+        if (type.getOpposite() == null
+                || batch.pendingEvents.remove(Arrays.<Object>asList(type.getOpposite(), batchKey)) == null) {
+            pendingEvent = (PendingEvent<L, E>) batch.pendingEvents.get(key);
+
+            if (pendingEvent == null) {
+                batch.pendingEvents.put(key, new PendingEvent<L, E>(type, event, listeners));
+            } else {
+                pendingEvent.event = type.merge(pendingEvent.event, event);
+            }
+        }
+    }
+
+    /**
+     * Checks the bounds of a region.
+     *
+     * @param minX the min x coordinate
+     * @param minY the min y coordinate
+     * @param maxX the max x coordinate
+     * @param maxY the max y coordinate
+     */
+    private static void checkRegion(int minX, int minY, int maxX, int maxY) {
+        if (minX > maxX || minY > maxY) {
+            throw new IllegalArgumentException("Illegal region " + minX + "," + minY + " to " + maxX + "," + maxY);
+        }
+    }
+
+    /**
+     * Checks the source of a source subscription.
+     *
+     * @param source the source
+     */
+    private static void checkSource(Object source) {
+        if (source == null) {
+            throw new IllegalArgumentException("Illegal source null");
+        }
+    }
+
+    /**
+     * Delivers the event to the listeners of its source and every matching
+     * subscription.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     * @param type the type
+     * @param event the event
+     * @param listeners the listeners of the source or null
+     * @param delivery the listeners the event is delivered to
+     */
+    private <L, E extends EventObject> void deliver(EventType<L, E> type, E event, ListenerList<L> listeners,
+            Delivery delivery) {
+        Subscriptions<L> typeSubscriptions = this.getSubscriptions(type, false);
+        AsyncEventDispatcher asyncDispatcher = this.dispatcher;
+        AbstractField field;
+        Coordinate position;
+
+        dispatch(type, event, listeners, asyncDispatcher, delivery);
+
+        if (typeSubscriptions != null) {
+            dispatchSubscriptions(type, event, typeSubscriptions.all, asyncDispatcher, delivery);
+
+            if (!typeSubscriptions.bySource.isEmpty()) {
+                dispatchSubscriptions(type, event, typeSubscriptions.bySource.get(event.getSource()), asyncDispatcher,
+                        delivery);
+            }
+
+            if (!typeSubscriptions.regions.isEmpty()) {
+                field = type.getField(event);
+                position = field == null ? null : field.getPosition();
+
+                if (position != null) {
+                    for (Subscription<L> subscription : typeSubscriptions.regions.getListeners()) {
+                        if (subscription.contains(position.getX(), position.getY())) {
+                            dispatch(type, event, subscription, asyncDispatcher, delivery);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Delivers the event to the listener if the delivery includes it,
+     * synchronously if there is no dispatcher or the listener is a
+     * {@link SynchronousListener}.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     * @param type the type
+     * @param event the event
+     * @param listener the listener
+     * @param asyncDispatcher the dispatcher or null
+     * @param delivery the listeners the event is delivered to
+     */
+    private static <L, E extends EventObject> void dispatch(EventType<L, E> type, E event, L listener,
+            AsyncEventDispatcher asyncDispatcher, Delivery delivery) {
+        if (delivery.includes(listener)) {
+            if (asyncDispatcher == null || listener instanceof SynchronousListener) {
+                type.dispatch(listener, event);
+            } else {
+                asyncDispatcher.dispatch(type, listener, event);
+            }
+        }
+    }
+
+    /**
+     * Delivers the event to the listeners.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     * @param type the type
+     * @param event the event
+     * @param listeners the listeners or null
+     * @param asyncDispatcher the dispatcher or null
+     * @param delivery the listeners the event is delivered to
+     */
+    private static <L, E extends EventObject> void dispatch(EventType<L, E> type, E event, ListenerList<L> listeners,
+            AsyncEventDispatcher asyncDispatcher, Delivery delivery) {
+        if (listeners != null) {
+            for (L listener : listeners.getListeners()) {
+                dispatch(type, event, listener, asyncDispatcher, delivery);
+            }
+        }
+    }
+
+    /**
+     * Delivers the event to the listener of the subscription, or cancels
+     * the subscription if its listener has been garbage collected.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     * @param type the type
+     * @param event the event
+     * @param subscription the subscription
+     * @param asyncDispatcher the dispatcher or null
+     * @param delivery the listeners the event is delivered to
+     */
+    private static <L, E extends EventObject> void dispatch(EventType<L, E> type, E event,
+            Subscription<L> subscription, AsyncEventDispatcher asyncDispatcher, Delivery delivery) {
+        L listener = subscription.getListener();
+
+        if (listener == null) {
+            subscription.cancel();
+        } else {
+            dispatch(type, event, listener, asyncDispatcher, delivery);
+        }
+    }
+
+    /**
+     * Delivers the event to the listeners of the subscriptions.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     * @param type the type
+     * @param event the event
+     * @param subscriptions the subscriptions or null
+     * @param asyncDispatcher the dispatcher or null
+     * @param delivery the listeners the event is delivered to
+     */
+    private static <L, E extends EventObject> void dispatchSubscriptions(EventType<L, E> type, E event,
+            ListenerList<Subscription<L>> subscriptions, AsyncEventDispatcher asyncDispatcher, Delivery delivery) {
+        if (subscriptions != null) {
+            for (Subscription<L> subscription : subscriptions.getListeners()) {
+                dispatch(type, event, subscription, asyncDispatcher, delivery);
+            }
+        }
+    }
+
+    /**
+     * Ends a batch of the current thread. If it is the outermost one, the
+     * buffered events are delivered to the listeners which aren't
+     * {@link SynchronousListener}s in the order they first occurred, except
+     * those which don't describe a change anymore
+     * ({@link EventType#isObsolete(EventObject)}). Events published by the
+     * listeners meanwhile are delivered immediately.
+     *
+     * @throws IllegalStateException if the current thread has no open batch
+     */
+    public void endBatch() {
+        Batch batch = this.batches.get();
+
+        if (batch == null) {
+            throw new IllegalStateException("No open batch");
+        }
+
+        batch.depth--;
+
+        if (batch.depth == 0) {
+            this.batches.remove();
+
+            for (PendingEvent<?, ?> pendingEvent : batch.pendingEvents.values()) {
+                pendingEvent.deliver(this);
+            }
+        }
+    }
+
+    /**
+     * Cancels the weak subscriptions whose listeners have been garbage
+     * collected.
+     */
+    private void expungeStaleSubscriptions() {
+        Reference<?> reference;
+
+        while ((reference = this.staleListeners.poll()) != null) {
+            ((Subscription.WeakListener<?>) reference).getSubscription().cancel();
+        }
+    }
+
+    /**
+     * Finds the subscription subscribing its listener the same way as the
+     * given one.
+     *
+     * @param <L> the type of the listeners
+     * @param subscription the subscription
+     * @return the equivalent subscription or null
+     */
+    private <L> Subscription<L> find(Subscription<L> subscription) {
+        Subscriptions<L> typeSubscriptions = this.getSubscriptions(subscription.getType(), false);
+        ListenerList<Subscription<L>> list;
+        Subscription<L> found = null;
+
+        if (typeSubscriptions != null) {
+            list = typeSubscriptions.getList(subscription.getSource(), subscription.isRegion(), false);
+
+            if (list != null) {
+                for (Subscription<L> existing : list.getListeners()) {
+                    if (existing.isEquivalent(subscription)) {
+                        found = existing;
+                    }
+                }
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Gets the dispatcher delivering asynchronously.
+     *
+     * @return the dispatcher or null if the bus delivers synchronously
+     */
+    public AsyncEventDispatcher getDispatcher() {
+        return this.dispatcher;
+    }
+
+    /**
+     * Gets the subscriptions of the type.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     * @param type the type
+     * @param create true to create them if there are none yet
+     * @return the subscriptions or null
+     */
+    @SuppressWarnings("unchecked")
+    private <L, E extends EventObject> Subscriptions<L> getSubscriptions(EventType<L, E> type, boolean create) {
+        Subscriptions<?>[] current = this.subscriptions;
+        Subscriptions<L> typeSubscriptions = null;
+
+        if (type.getId() < current.length) {
+            typeSubscriptions = (Subscriptions<L>) current[type.getId()];
+        }
+
+        if (typeSubscriptions == null && create) {
+            synchronized (this) {
+                current = this.subscriptions;
+
+                if (type.getId() < current.length) {
+                    typeSubscriptions = (Subscriptions<L>) current[type.getId()];
+                }
+
+                if (typeSubscriptions == null) {
+                    typeSubscriptions = new Subscriptions<L>();
+                    current = Arrays.copyOf(current, Math.max(current.length, type.getId() + 1));
+                    current[type.getId()] = typeSubscriptions;
+                    this.subscriptions = current;
+                }
+            }
+        }
+
+        return typeSubscriptions;
+    }
+
+    /**
+     * Checks if anybody subscribed to the events of the given source, of any
+     * type.
+     *
+     * @param source the source
+     * @return true, if successful
+     */
+    public boolean hasSourceSubscribers(Object source) {
+        ListenerList<?> list;
+        boolean subscribed = false;
+
+        for (Subscriptions<?> typeSubscriptions : this.subscriptions) {
+            if (typeSubscriptions != null && !subscribed) {
+                list = typeSubscriptions.bySource.get(source);
+                subscribed = list != null && !list.isEmpty();
+            }
+        }
+
+        return subscribed;
+    }
+
+    /**
+     * Checks if anybody subscribed to events of the type.
+     *
+     * @param type the type
+     * @return true, if successful
+     */
+    public boolean hasSubscribers(EventType<?, ?> type) {
+        Subscriptions<?>[] current = this.subscriptions;
+
+        return type.getId() < current.length && current[type.getId()] != null
+                && !current[type.getId()].isEmpty();
+    }
+
+    /**
+     * Checks if the current thread has opened a batch.
+     *
+     * @return true, if is batching
+     */
+    public boolean isBatching() {
+        return this.batches.get() != null;
+    }
+
+    /**
+     * Delivers the event to every subscription of the type matching it, or
+     * buffers it for the listeners which aren't {@link SynchronousListener}s
+     * while the current thread has a batch open.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     * @param type the type
+     * @param event the event
+     * @see #publish(EventType, EventObject, ListenerList)
+     */
+    public <L, E extends EventObject> void publish(EventType<L, E> type, E event) {
+        this.publish(type, event, null);
+    }
+
+    /**
+     * Delivers the event to the listeners registered on its source and to
+     * every subscription of the type matching it: the subscriptions to all
+     * events first, then those to the event's source, then those to regions
+     * containing the event's field. While the current thread has a batch
+     * open the event is only delivered to the {@link SynchronousListener}s
+     * and buffered for the others.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     * @param type the type
+     * @param event the event
+     * @param listeners the listeners of the source or null
+     */
+    public <L, E extends EventObject> void publish(EventType<L, E> type, E event, ListenerList<L> listeners) {
+        Batch batch = this.batches.get();
+
+        if (batch == null) {
+            this.deliver(type, event, listeners, Delivery.ALL);
+        } else {
+            this.deliver(type, event, listeners, Delivery.SYNCHRONOUS);
+            buffer(batch, type, event, listeners);
+        }
+    }
+
+    /**
+     * Removes the subscription.
+     *
+     * @param <L> the type of the listeners
+     * @param subscription the subscription
+     */
+    <L> void remove(Subscription<L> subscription) {
+        Subscriptions<L> typeSubscriptions = this.getSubscriptions(subscription.getType(), false);
+        ListenerList<Subscription<L>> list;
+
+        if (typeSubscriptions != null) {
+            synchronized (typeSubscriptions) {
+                list = typeSubscriptions.getList(subscription.getSource(), subscription.isRegion(), false);
+
+                if (list != null && list.remove(subscription) && list.isEmpty() && subscription.getSource() != null) {
+                    typeSubscriptions.bySource.remove(subscription.getSource());
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels every subscription to the events of the source, e.g. of a unit
+     * which has been removed from the game. The subscriptions of each type
+     * are found by a single lookup. Like subscribing and unsubscribing, it
+     * also cancels the weak subscriptions whose listeners have been garbage
+     * collected meanwhile.
+     *
+     * @param source the source
+     */
+    public void removeSource(Object source) {
+        this.expungeStaleSubscriptions();
+
+        for (Subscriptions<?> typeSubscriptions : this.subscriptions) {
+            if (typeSubscriptions != null) {
+                typeSubscriptions.cancelSource(source);
+            }
+        }
+    }
+
+    /**
+     * Sets the dispatcher delivering the events asynchronously, except to
+     * {@link SynchronousListener}s. The dispatcher may be shared by several
+     * buses. Remove it before closing it.
+     *
+     * @param dispatcher the dispatcher or null to deliver synchronously
+     */
+    public void setDispatcher(AsyncEventDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Adds the subscription unless its listener is subscribed the same way
+     * already.
+     *
+     * @param <L> the type of the listeners
+     * @param subscription the subscription
+     * @return the new or the existing subscription
+     */
+    private <L> Subscription<L> subscribe(Subscription<L> subscription) {
+        Subscriptions<L> typeSubscriptions = this.getSubscriptions(subscription.getType(), true);
+        Subscription<L> subscribed;
+
+        this.expungeStaleSubscriptions();
+
+        synchronized (typeSubscriptions) {
+            subscribed = this.find(subscription);
+
+            if (subscribed == null) {
+                typeSubscriptions.getList(subscription.getSource(), subscription.isRegion(), true).add(subscription);
+                subscribed = subscription;
+            }
+        }
+
+        return subscribed;
+    }
+
+    /**
+     * Subscribes the listener to all events of the type. Subscribing a
+     * listener the same way twice returns the existing subscription.
+     *
+     * @param <L> the type of the listeners
+     * @param type the type
+     * @param listener the listener
+     * @return the subscription
+     */
+    public <L> Subscription<L> subscribe(EventType<L, ?> type, L listener) {
+        return this.subscribe(new Subscription<L>(this, type, listener, false, null, null, false, 0, 0, 0, 0));
+    }
+
+    /**
+     * Subscribes the listener to the events of the type on the fields from
+     * (minX, minY) to (maxX, maxY), both inclusive.
+     *
+     * @param <L> the type of the listeners
+     * @param type the type
+     * @param listener the listener
+     * @param minX the min x coordinate
+     * @param minY the min y coordinate
+     * @param maxX the max x coordinate
+     * @param maxY the max y coordinate
+     * @return the subscription
+     */
+    public <L> Subscription<L> subscribe(EventType<L, ?> type, L listener, int minX, int minY, int maxX, int maxY) {
+        checkRegion(minX, minY, maxX, maxY);
+        return this.subscribe(new Subscription<L>(this, type, listener, false, null, null, true, minX, minY, maxX, maxY));
+    }
+
+    /**
+     * Subscribes the listener to the events of the type with the given
+     * source, e.g. a field or a unit.
+     *
+     * @param <L> the type of the listeners
+     * @param type the type
+     * @param listener the listener
+     * @param source the source
+     * @return the subscription
+     */
+    public <L> Subscription<L> subscribe(EventType<L, ?> type, L listener, Object source) {
+        checkSource(source);
+        return this.subscribe(new Subscription<L>(this, type, listener, false, null, source, false, 0, 0, 0, 0));
+    }
+
+    /**
+     * Subscribes the listener to all events of the type without keeping it
+     * reachable: the subscription is cancelled once the listener has been
+     * garbage collected, so the subscriber, e.g. a view, has to keep a
+     * reference to the listener as long as it is interested.
+     *
+     * @param <L> the type of the listeners
+     * @param type the type
+     * @param listener the listener
+     * @return the subscription
+     */
+    public <L> Subscription<L> subscribeWeakly(EventType<L, ?> type, L listener) {
+        return this.subscribe(new Subscription<L>(this, type, listener, true, this.staleListeners,
+                null, false, 0, 0, 0, 0));
+    }
+
+    /**
+     * Subscribes the listener to the events of the type on a region without
+     * keeping it reachable.
+     *
+     * @param <L> the type of the listeners
+     * @param type the type
+     * @param listener the listener
+     * @param minX the min x coordinate
+     * @param minY the min y coordinate
+     * @param maxX the max x coordinate
+     * @param maxY the max y coordinate
+     * @return the subscription
+     * @see #subscribeWeakly(EventType, Object)
+     */
+    public <L> Subscription<L> subscribeWeakly(EventType<L, ?> type, L listener,
+            int minX, int minY, int maxX, int maxY) {
+        checkRegion(minX, minY, maxX, maxY);
+        return this.subscribe(new Subscription<L>(this, type, listener, true, this.staleListeners,
+                null, true, minX, minY, maxX, maxY));
+    }
+
+    /**
+     * Subscribes the listener to the events of the type with the given
+     * source without keeping it reachable.
+     *
+     * @param <L> the type of the listeners
+     * @param type the type
+     * @param listener the listener
+     * @param source the source
+     * @return the subscription
+     * @see #subscribeWeakly(EventType, Object)
+     */
+    public <L> Subscription<L> subscribeWeakly(EventType<L, ?> type, L listener, Object source) {
+        checkSource(source);
+        return this.subscribe(new Subscription<L>(this, type, listener, true, this.staleListeners,
+                source, false, 0, 0, 0, 0));
+    }
+
+    /**
+     * Unsubscribes the listener from all events of the type.
+     *
+     * @param <L> the type of the listeners
+     * @param type the type
+     * @param listener the listener
+     * @return true, if the listener has been subscribed
+     */
+    public <L> boolean unsubscribe(EventType<L, ?> type, L listener) {
+        return this.unsubscribe(new Subscription<L>(this, type, listener, false, null, null, false, 0, 0, 0, 0));
+    }
+
+    /**
+     * Unsubscribes the listener from the events of the type on a region.
+     *
+     * @param <L> the type of the listeners
+     * @param type the type
+     * @param listener the listener
+     * @param minX the min x coordinate
+     * @param minY the min y coordinate
+     * @param maxX the max x coordinate
+     * @param maxY the max y coordinate
+     * @return true, if the listener has been subscribed to the region
+     */
+    public <L> boolean unsubscribe(EventType<L, ?> type, L listener, int minX, int minY, int maxX, int maxY) {
+        return this.unsubscribe(new Subscription<L>(this, type, listener, false, null,
+                null, true, minX, minY, maxX, maxY));
+    }
+
+    /**
+     * Unsubscribes the listener from the events of the type with the given
+     * source.
+     *
+     * @param <L> the type of the listeners
+     * @param type the type
+     * @param listener the listener
+     * @param source the source
+     * @return true, if the listener has been subscribed to the source
+     */
+    public <L> boolean unsubscribe(EventType<L, ?> type, L listener, Object source) {
+        return this.unsubscribe(new Subscription<L>(this, type, listener, false, null, source, false, 0, 0, 0, 0));
+    }
+
+    /**
+     * Cancels the subscription subscribing its listener the same way as the
+     * given one.
+     *
+     * @param <L> the type of the listeners
+     * @param subscription the subscription
+     * @return true, if there has been such a subscription
+     */
+    private <L> boolean unsubscribe(Subscription<L> subscription) {
+        Subscription<L> found;
+
+        this.expungeStaleSubscriptions();
+        found = this.find(subscription);
+
+        if (found != null) {
+            found.cancel();
+        }
+
+        return found != null;
+    }
+
+    /**
+     * The Class Batch holds the batches opened by one thread.
+     */
+    private static final class Batch {
+
+        /**
+         * The number of open batches.
+         */
+        private int depth;
+
+        /**
+         * The buffered events in the order of their first occurrence, by type
+         * and batch key.
+         */
+        private final LinkedHashMap<List<Object>, PendingEvent<?, ?>> pendingEvents
+                = new LinkedHashMap<List<Object>, PendingEvent<?, ?>>();
+    }
+
+    /**
+     * The Enum Delivery selects the listeners an event is delivered to.
+     */
+    private enum Delivery {
+
+        /**
+         * All listeners, outside of a batch.
+         */
+        ALL,
+
+        /**
+         * The listeners buffered by a batch, those which aren't
+         * {@link SynchronousListener}s.
+         */
+        BUFFERED,
+
+        /**
+         * The {@link SynchronousListener}s, within a batch.
+         */
+        SYNCHRONOUS;
+
+        /**
+         * Checks if the event is delivered to the listener.
+         *
+         * @param listener the listener
+         * @return true, if successful
+         */
+        boolean includes(Object listener) {
+            return this == ALL || (this == SYNCHRONOUS) == listener instanceof SynchronousListener;
+        }
+    }
+
+    /**
+     * The Class PendingEvent is an event buffered by a batch.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the event
+     */
+    private static final class PendingEvent<L, E extends EventObject> {
+
+        /**
+         * The event, merged with the later events of the same key.
+         */
+        private E event;
+
+        /**
+         * The listeners of the source.
+         */
+        private final ListenerList<L> listeners;
+
+        /**
+         * The type.
+         */
+        private final EventType<L, E> type;
+
+        /**
+         * Instantiates a new pending event.
+         *
+         * @param type the type
+         * @param event the event
+         * @param listeners the listeners of the source or null
+         */
+        PendingEvent(EventType<L, E> type, E event, ListenerList<L> listeners) {
+            this.type = type;
+            this.event = event;
+            this.listeners = listeners;
+        }
+
+        /**
+         * Delivers the event unless it is obsolete.
+         *
+         * @param eventBus the event bus
+         */
+        void deliver(EventBus eventBus) {
+            if (!this.type.isObsolete(this.event)) {
+                eventBus.deliver(this.type, this.event, this.listeners, Delivery.BUFFERED);
+            }
+        }
+    }
+
+    /**
+     * The Class Subscriptions holds the subscriptions to one type.
+     *
+     * @param <L> the type of the listeners
+     */
+    private static final class Subscriptions<L> {
+
+        /**
+         * The subscriptions to all events.
+         */
+        private final ListenerList<Subscription<L>> all;
+
+        /**
+         * The subscriptions by source.
+         */
+        private final ConcurrentHashMap<Object, ListenerList<Subscription<L>>> bySource
+                = new ConcurrentHashMap<Object, ListenerList<Subscription<L>>>();
+
+        /**
+         * The subscriptions to regions.
+         */
+        private final ListenerList<Subscription<L>> regions;
+
+        /**
+         * Instantiates new subscriptions.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Subscriptions() {
+            this.all = new ListenerList<Subscription<L>>((Class) Subscription.class);
+            this.regions = new ListenerList<Subscription<L>>((Class) Subscription.class);
+        }
+
+        /**
+         * Cancels the subscriptions to the source.
+         *
+         * @param source the source
+         */
+        void cancelSource(Object source) {
+            ListenerList<Subscription<L>> list = this.bySource.get(source);
+
+            if (list != null) {
+                for (Subscription<L> subscription : list.getListeners()) {
+                    subscription.cancel();
+                }
+            }
+        }
+
+        /**
+         * Gets the list holding the subscriptions to the source, to regions
+         * or to all events.
+         *
+         * @param source the source or null
+         * @param region true for the subscriptions to regions
+         * @param create true to create the list of a source if there is none
+         * yet, the caller has to hold the lock of this object
+         * @return the list or null
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ListenerList<Subscription<L>> getList(Object source, boolean region, boolean create) {
+            ListenerList<Subscription<L>> list = region ? this.regions : this.all;
+
+            if (source != null) {
+                list = this.bySource.get(source);
+
+                if (list == null && create) {
+                    list = new ListenerList<Subscription<L>>((Class) Subscription.class);
+                    this.bySource.put(source, list);
+                }
+            }
+
+            return list;
+        }
+
+        /**
+         * Checks if there are no subscriptions.
+         *
+         * @return true, if is empty
+         */
+        boolean isEmpty() {
+            return this.all.isEmpty() && this.bySource.isEmpty() && this.regions.isEmpty();
+        }
+    }
+}
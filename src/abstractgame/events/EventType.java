@@ -0,0 +1,489 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.events;
+
+import java.util.Arrays;
+import java.util.EventObject;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import abstractgame.events.fieldevents.FieldEvent;
+import abstractgame.events.fieldevents.FieldPositionChangedEvent;
+import abstractgame.events.fieldevents.FieldTerrainChangedEvent;
+import abstractgame.events.fieldevents.FieldUnitsChangedEvent;
+import abstractgame.events.fieldevents.UnitAddedToFieldEvent;
+import abstractgame.events.fieldevents.UnitRemovedFromFieldEvent;
+import abstractgame.events.gameevents.GameUnitsChangedEvent;
+import abstractgame.events.gameevents.UnitAddedToGameEvent;
+import abstractgame.events.gameevents.UnitRemovedFromGameEvent;
+import abstractgame.events.unitevents.UnitDirectionChangedEvent;
+import abstractgame.events.unitevents.UnitEvent;
+import abstractgame.events.unitevents.UnitMovedEvent;
+import abstractgame.events.unitevents.UnitPlayerChangedEvent;
+import abstractgame.interfaces.FieldPositionChangedListener;
+import abstractgame.interfaces.FieldTerrainChangedListener;
+import abstractgame.interfaces.UnitAddedToFieldListener;
+import abstractgame.interfaces.UnitAddedToGameListener;
+import abstractgame.interfaces.UnitDirectionChangedListener;
+import abstractgame.interfaces.UnitMovedListener;
+import abstractgame.interfaces.UnitPlayerChangedListener;
+import abstractgame.interfaces.UnitRemovedFromFieldListener;
+import abstractgame.interfaces.UnitRemovedFromGameListener;
+import abstractgame.map.AbstractField;
+
+/**
+ * The Class EventType identifies a kind of event on the {@link EventBus}
+ * together with its listener interface and knows how to deliver an event to
+ * such a listener. <br>
+ * Every type gets a number on creation which the bus uses to find its
+ * subscriptions with an array lookup. Games may define types of their own by
+ * subclassing; a type should be created once and kept in a constant.
+ *
+ * @author Nils Kuttkat
+ * @param <L> the type of the listeners
+ * @param <E> the type of the events
+ */
+public abstract class EventType<L, E extends EventObject> {
+
+    /**
+     * The number of created types.
+     */
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    /**
+     * A field changed its position.
+     */
+    public static final EventType<FieldPositionChangedListener, FieldPositionChangedEvent> FIELD_POSITION_CHANGED
+            = new FieldEventType<FieldPositionChangedListener, FieldPositionChangedEvent>(
+                    "FIELD_POSITION_CHANGED", FieldPositionChangedListener.class) {
+
+        @Override
+        public void dispatch(FieldPositionChangedListener listener, FieldPositionChangedEvent event) {
+            listener.fieldPositionChanged(event);
+        }
+    };
+
+    /**
+     * A field changed its terrain.
+     */
+    public static final EventType<FieldTerrainChangedListener, FieldTerrainChangedEvent> FIELD_TERRAIN_CHANGED
+            = new FieldEventType<FieldTerrainChangedListener, FieldTerrainChangedEvent>(
+                    "FIELD_TERRAIN_CHANGED", FieldTerrainChangedListener.class) {
+
+        @Override
+        public void dispatch(FieldTerrainChangedListener listener, FieldTerrainChangedEvent event) {
+            listener.fieldTerrainChanged(event);
+        }
+    };
+
+    /**
+     * A unit has been added to a field.
+     */
+    public static final EventType<UnitAddedToFieldListener, UnitAddedToFieldEvent> UNIT_ADDED_TO_FIELD
+            = new FieldUnitsEventType<UnitAddedToFieldListener, UnitAddedToFieldEvent>(
+                    "UNIT_ADDED_TO_FIELD", UnitAddedToFieldListener.class) {
+
+        @Override
+        public void dispatch(UnitAddedToFieldListener listener, UnitAddedToFieldEvent event) {
+            listener.unitAddedToField(event);
+        }
+
+        @Override
+        protected EventType<?, ?> getOpposite() {
+            return UNIT_REMOVED_FROM_FIELD;
+        }
+    };
+
+    /**
+     * A unit has been added to a game.
+     */
+    public static final EventType<UnitAddedToGameListener, UnitAddedToGameEvent> UNIT_ADDED_TO_GAME
+            = new GameUnitsEventType<UnitAddedToGameListener, UnitAddedToGameEvent>(
+                    "UNIT_ADDED_TO_GAME", UnitAddedToGameListener.class) {
+
+        @Override
+        public void dispatch(UnitAddedToGameListener listener, UnitAddedToGameEvent event) {
+            listener.unitAddedToGame(event);
+        }
+
+        @Override
+        protected EventType<?, ?> getOpposite() {
+            return UNIT_REMOVED_FROM_GAME;
+        }
+    };
+
+    /**
+     * A unit changed its direction.
+     */
+    public static final EventType<UnitDirectionChangedListener, UnitDirectionChangedEvent> UNIT_DIRECTION_CHANGED
+            = new UnitEventType<UnitDirectionChangedListener, UnitDirectionChangedEvent>(
+                    "UNIT_DIRECTION_CHANGED", UnitDirectionChangedListener.class) {
+
+        @Override
+        public void dispatch(UnitDirectionChangedListener listener, UnitDirectionChangedEvent event) {
+            listener.unitDirectionChanged(event);
+        }
+
+        @Override
+        protected boolean isObsolete(UnitDirectionChangedEvent event) {
+            return event.getSource().getDirection() == event.getPreviousDirection();
+        }
+
+        @Override
+        protected UnitDirectionChangedEvent merge(UnitDirectionChangedEvent pending, UnitDirectionChangedEvent event) {
+            // the net change starts at the first previous direction
+            return pending;
+        }
+    };
+
+    /**
+     * A unit moved.
+     */
+    public static final EventType<UnitMovedListener, UnitMovedEvent> UNIT_MOVED
+            = new UnitEventType<UnitMovedListener, UnitMovedEvent>("UNIT_MOVED", UnitMovedListener.class) {
+
+        @Override
+        public void dispatch(UnitMovedListener listener, UnitMovedEvent event) {
+            listener.unitMoved(event);
+        }
+    };
+
+    /**
+     * A unit changed its player.
+     */
+    public static final EventType<UnitPlayerChangedListener, UnitPlayerChangedEvent> UNIT_PLAYER_CHANGED
+            = new UnitEventType<UnitPlayerChangedListener, UnitPlayerChangedEvent>(
+                    "UNIT_PLAYER_CHANGED", UnitPlayerChangedListener.class) {
+
+        @Override
+        public void dispatch(UnitPlayerChangedListener listener, UnitPlayerChangedEvent event) {
+            listener.unitPlayerChanged(event);
+        }
+    };
+
+    /**
+     * A unit has been removed from a field.
+     */
+    public static final EventType<UnitRemovedFromFieldListener, UnitRemovedFromFieldEvent> UNIT_REMOVED_FROM_FIELD
+            = new FieldUnitsEventType<UnitRemovedFromFieldListener, UnitRemovedFromFieldEvent>(
+                    "UNIT_REMOVED_FROM_FIELD", UnitRemovedFromFieldListener.class) {
+
+        @Override
+        public void dispatch(UnitRemovedFromFieldListener listener, UnitRemovedFromFieldEvent event) {
+            listener.unitRemovedFromField(event);
+        }
+
+        @Override
+        protected EventType<?, ?> getOpposite() {
+            return UNIT_ADDED_TO_FIELD;
+        }
+    };
+
+    /**
+     * A unit has been removed from a game.
+     */
+    public static final EventType<UnitRemovedFromGameListener, UnitRemovedFromGameEvent> UNIT_REMOVED_FROM_GAME
+            = new GameUnitsEventType<UnitRemovedFromGameListener, UnitRemovedFromGameEvent>(
+                    "UNIT_REMOVED_FROM_GAME", UnitRemovedFromGameListener.class) {
+
+        @Override
+        public void dispatch(UnitRemovedFromGameListener listener, UnitRemovedFromGameEvent event) {
+            listener.unitRemovedFromGame(event);
+        }
+
+        @Override
+        protected EventType<?, ?> getOpposite() {
+            return UNIT_ADDED_TO_GAME;
+        }
+    };
+
+    /**
+     * The number of the type.
+     */
+    private final int id;
+
+    /**
+     * The type of the listeners.
+     */
+    private final Class<L> listenerType;
+
+    /**
+     * The name.
+     */
+    private final String name;
+
+    /**
+     * Instantiates a new event type.
+     *
+     * @param name the name
+     * @param listenerType the type of the listeners
+     */
+    protected EventType(String name, Class<L> listenerType) {
+        this.name = name;
+        this.listenerType = listenerType;
+        this.id = COUNT.getAndIncrement();
+    }
+
+    /**
+     * Delivers the event to the listener.
+     *
+     * @param listener the listener
+     * @param event the event
+     */
+    public abstract void dispatch(L listener, E event);
+
+    /**
+     * Delivers the event to all listeners of the list.
+     *
+     * @param listeners the listeners or null
+     * @param event the event
+     */
+    public void dispatch(ListenerList<L> listeners, E event) {
+        if (listeners != null) {
+            for (L listener : listeners.getListeners()) {
+                this.dispatch(listener, event);
+            }
+        }
+    }
+
+    /**
+     * Gets the key a batch coalesces the events of this type by, see
+     * {@link EventBus#beginBatch()}. Events of the type with equal keys are
+     * merged into one, the events of the source by default.
+     *
+     * @param event the event
+     * @return the key
+     */
+    protected Object getBatchKey(E event) {
+        return event.getSource();
+    }
+
+    /**
+     * Gets the field the event happened on, which region subscriptions are
+     * matched against.
+     *
+     * @param event the event
+     * @return the field or null if the event isn't bound to a field
+     */
+    public AbstractField getField(E event) {
+        return null;
+    }
+
+    /**
+     * Gets the number of the type.
+     *
+     * @return the id
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Gets the type of the listeners.
+     *
+     * @return the listener type
+     */
+    public Class<L> getListenerType() {
+        return this.listenerType;
+    }
+
+    /**
+     * Gets the name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the type whose events cancel out with the events of this type
+     * with the same batch key, e.g. a unit added to and removed from the
+     * same field during a batch.
+     *
+     * @return the opposite type or null
+     */
+    protected EventType<?, ?> getOpposite() {
+        return null;
+    }
+
+    /**
+     * Checks if anybody listens to events of the type, either on the source
+     * itself or on the event bus, so the source only creates an event if so.
+     *
+     * @param listeners the listeners of the source or null
+     * @param eventBus the event bus or null
+     * @return true, if is observed
+     */
+    public boolean isObserved(ListenerList<L> listeners, EventBus eventBus) {
+        return (listeners != null && !listeners.isEmpty()) || (eventBus != null && eventBus.hasSubscribers(this));
+    }
+
+    /**
+     * Checks if a buffered event doesn't describe a change anymore when its
+     * batch ends, e.g. a unit turned back to its previous direction. Such an
+     * event isn't delivered.
+     *
+     * @param event the event
+     * @return true, if is obsolete
+     */
+    protected boolean isObsolete(E event) {
+        return false;
+    }
+
+    /**
+     * Merges a buffered event with a later one with the same batch key. The
+     * later event by default, since it describes the current state.
+     *
+     * @param pending the buffered event
+     * @param event the later event
+     * @return the merged event
+     */
+    protected E merge(E pending, E event) {
+        return event;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+    /**
+     * The Class FieldEventType is the type of events happening on the field
+     * which is their source.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     */
+    private abstract static class FieldEventType<L, E extends FieldEvent> extends EventType<L, E> {
+
+        /**
+         * Instantiates a new field event type.
+         *
+         * @param name the name
+         * @param listenerType the type of the listeners
+         */
+        FieldEventType(String name, Class<L> listenerType) {
+            super(name, listenerType);
+        }
+
+        /*
+		 * (non-Javadoc)
+		 *
+		 * @see abstractgame.events.EventType#getField(java.util.EventObject)
+         */
+        @Override
+        public AbstractField getField(E event) {
+            return event.getSource();
+        }
+    }
+
+    /**
+     * The Class FieldUnitsEventType is the type of events of a unit on a
+     * field, which are coalesced per field and unit.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     */
+    private abstract static class FieldUnitsEventType<L, E extends FieldUnitsChangedEvent>
+            extends FieldEventType<L, E> {
+
+        /**
+         * Instantiates a new field units event type.
+         *
+         * @param name the name
+         * @param listenerType the type of the listeners
+         */
+        FieldUnitsEventType(String name, Class<L> listenerType) {
+            super(name, listenerType);
+        }
+
+        /*
+		 * (non-Javadoc)
+		 *
+		 * @see abstractgame.events.EventType#getBatchKey(java.util.EventObject)
+         */
+        @Override
+        protected Object getBatchKey(E event) {
+            return Arrays.<Object>asList(event.getSource(), event.getUnit());
+        }
+    }
+
+    /**
+     * The Class GameUnitsEventType is the type of events of a unit in a game,
+     * which are coalesced per unit.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     */
+    private abstract static class GameUnitsEventType<L, E extends GameUnitsChangedEvent> extends EventType<L, E> {
+
+        /**
+         * Instantiates a new game units event type.
+         *
+         * @param name the name
+         * @param listenerType the type of the listeners
+         */
+        GameUnitsEventType(String name, Class<L> listenerType) {
+            super(name, listenerType);
+        }
+
+        /*
+		 * (non-Javadoc)
+		 *
+		 * @see abstractgame.events.EventType#getBatchKey(java.util.EventObject)
+         */
+        @Override
+        protected Object getBatchKey(E event) {
+            return Arrays.<Object>asList(event.getSource(), event.getUnit());
+        }
+    }
+
+    /**
+     * The Class UnitEventType is the type of events of a unit, which happen
+     * on the unit's position.
+     *
+     * @param <L> the type of the listeners
+     * @param <E> the type of the events
+     */
+    private abstract static class UnitEventType<L, E extends UnitEvent> extends EventType<L, E> {
+
+        /**
+         * Instantiates a new unit event type.
+         *
+         * @param name the name
+         * @param listenerType the type of the listeners
+         */
+        UnitEventType(String name, Class<L> listenerType) {
+            super(name, listenerType);
+        }
+
+        /*
+		 * (non-Javadoc)
+		 *
+		 * @see abstractgame.events.EventType#getField(java.util.EventObject)
+         */
+        @Override
+        public AbstractField getField(E event) {
+            return event.getSource().getPosition();
+        }
+    }
+}
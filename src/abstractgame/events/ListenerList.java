@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.events;
+
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+
+/**
+ * The Class ListenerList holds the listeners of one kind of event in a copy on
+ * write array. Adding and removing a listener copies the array, firing an
+ * event iterates the current array without creating an iterator or a copy, so
+ * a listener may add or remove listeners while the event is delivered. <br>
+ * Like the sets it replaces, a listener is contained at most once.
+ *
+ * @author Nils Kuttkat
+ * @param <L> the type of the listeners
+ */
+public class ListenerList<L> implements Serializable {
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The empty array.
+     */
+    private final L[] empty;
+
+    /**
+     * The listeners.
+     */
+    private volatile L[] listeners;
+
+    /**
+     * Instantiates a new empty listener list.
+     *
+     * @param type the type of the listeners
+     */
+    @SuppressWarnings("unchecked")
+    public ListenerList(Class<L> type) {
+        this.empty = (L[]) Array.newInstance(type, 0);
+        this.listeners = this.empty;
+    }
+
+    /**
+     * Adds the listener unless it is already contained.
+     *
+     * @param listener the listener
+     * @return true, if the listener has been added
+     */
+    public synchronized boolean add(L listener) {
+        boolean added = listener != null && this.indexOf(listener) < 0;
+
+        if (added) {
+            L[] copy = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+
+            copy[copy.length - 1] = listener;
+            this.listeners = copy;
+        }
+
+        return added;
+    }
+
+    /**
+     * Removes all listeners.
+     */
+    public synchronized void clear() {
+        this.listeners = this.empty;
+    }
+
+    /**
+     * Checks if the listener is contained.
+     *
+     * @param listener the listener
+     * @return true, if successful
+     */
+    public boolean contains(L listener) {
+        return this.indexOf(listener) >= 0;
+    }
+
+    /**
+     * Gets the current listeners. The array is shared and must not be
+     * modified, later changes of the list don't affect it.
+     *
+     * @return the listeners
+     */
+    public L[] getListeners() {
+        return this.listeners;
+    }
+
+    /**
+     * Finds the position of the listener.
+     *
+     * @param listener the listener
+     * @return the position or -1 if the listener isn't contained
+     */
+    private int indexOf(L listener) {
+        L[] current = this.listeners;
+        int position = -1;
+
+        for (int i = 0; i < current.length && position < 0; i++) {
+            if (current[i].equals(listener)) {
+                position = i;
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Checks if the list is empty.
+     *
+     * @return true, if is empty
+     */
+    public boolean isEmpty() {
+        return this.listeners.length == 0;
+    }
+
+    /**
+     * Removes the listener. Removing the last listener returns to the shared
+     * empty array.
+     *
+     * @param listener the listener
+     * @return true, if the listener has been contained
+     */
+    public synchronized boolean remove(L listener) {
+        int position = this.indexOf(listener);
+        L[] copy;
+
+        if (position >= 0 && this.listeners.length == 1) {
+            this.listeners = this.empty;
+        } else if (position >= 0) {
+            copy = Arrays.copyOf(this.empty, this.listeners.length - 1);
+            System.arraycopy(this.listeners, 0, copy, 0, position);
+            System.arraycopy(this.listeners, position + 1, copy, position, copy.length - position);
+            this.listeners = copy;
+        }
+
+        return position >= 0;
+    }
+
+    /**
+     * Gets the number of listeners.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.listeners.length;
+    }
+
+    /**
+     * Adds the listener unless it is already contained and returns the handle
+     * removing it again. As a listener is contained at most once, only the
+     * subscription adding it is active; subscribing a contained listener
+     * again returns an inactive subscription whose cancelling does nothing.
+     *
+     * @param type the type of the events the listener gets
+     * @param listener the listener
+     * @param source the source owning the list
+     * @return the subscription
+     */
+    public Subscription<L> subscribe(EventType<L, ?> type, L listener, Object source) {
+        Subscription<L> subscription = new Subscription<L>(this, type, listener, source);
+
+        if (!this.add(listener)) {
+            subscription.deactivate();
+        }
+
+        return subscription;
+    }
+}
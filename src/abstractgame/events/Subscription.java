@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.events;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * The Class Subscription is the handle of a listener subscribed to an
+ * {@link EventBus} or registered on the {@link ListenerList} of a source, see
+ * {@link ListenerList#subscribe(EventType, Object, Object)}. Cancelling it
+ * unsubscribes the listener, so the listener doesn't have to be passed to the
+ * bus or the source again; a subscription may be closed by a
+ * try-with-resources statement or a {@link SubscriptionScope}. <br>
+ * A weak subscription doesn't keep its listener reachable: the bus cancels
+ * it after the listener has been garbage collected, see {@link EventBus}.
+ *
+ * @author Nils Kuttkat
+ * @param <L> the type of the listener
+ */
+public final class Subscription<L> implements AutoCloseable {
+
+    /**
+     * True until the subscription is cancelled.
+     */
+    private volatile boolean active = true;
+
+    /**
+     * The event bus, null if the listener is registered on a list.
+     */
+    private final EventBus eventBus;
+
+    /**
+     * The list the listener is registered on, null if it is subscribed to
+     * the event bus.
+     */
+    private final ListenerList<L> list;
+
+    /**
+     * The listener of a strong subscription.
+     */
+    private final L listener;
+
+    /**
+     * The max x coordinate of a region subscription.
+     */
+    private final int maxX;
+
+    /**
+     * The max y coordinate of a region subscription.
+     */
+    private final int maxY;
+
+    /**
+     * The min x coordinate of a region subscription.
+     */
+    private final int minX;
+
+    /**
+     * The min y coordinate of a region subscription.
+     */
+    private final int minY;
+
+    /**
+     * True for a region subscription.
+     */
+    private final boolean region;
+
+    /**
+     * The source of a source subscription.
+     */
+    private final Object source;
+
+    /**
+     * The type.
+     */
+    private final EventType<L, ?> type;
+
+    /**
+     * The listener of a weak subscription.
+     */
+    private final WeakListener<L> weakListener;
+
+    /**
+     * Instantiates a new subscription.
+     *
+     * @param eventBus the event bus
+     * @param type the type
+     * @param listener the listener
+     * @param weak true for a weak subscription
+     * @param queue the queue collected weak listeners are enqueued to
+     * @param source the source or null
+     * @param region true for a region subscription
+     * @param minX the min x coordinate
+     * @param minY the min y coordinate
+     * @param maxX the max x coordinate
+     * @param maxY the max y coordinate
+     */
+    Subscription(EventBus eventBus, EventType<L, ?> type, L listener, boolean weak, ReferenceQueue<Object> queue,
+            Object source, boolean region, int minX, int minY, int maxX, int maxY) {
+        this(eventBus, null, type, listener, weak, queue, source, region, minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Instantiates a new subscription of a listener registered on the list
+     * of its source.
+     *
+     * @param list the list
+     * @param type the type
+     * @param listener the listener
+     * @param source the source
+     */
+    Subscription(ListenerList<L> list, EventType<L, ?> type, L listener, Object source) {
+        this(null, list, type, listener, false, null, source, false, 0, 0, 0, 0);
+    }
+
+    /**
+     * Instantiates a new subscription.
+     *
+     * @param eventBus the event bus or null
+     * @param list the list or null
+     * @param type the type
+     * @param listener the listener
+     * @param weak true for a weak subscription
+     * @param queue the queue collected weak listeners are enqueued to
+     * @param source the source or null
+     * @param region true for a region subscription
+     * @param minX the min x coordinate
+     * @param minY the min y coordinate
+     * @param maxX the max x coordinate
+     * @param maxY the max y coordinate
+     */
+    private Subscription(EventBus eventBus, ListenerList<L> list, EventType<L, ?> type, L listener, boolean weak,
+            ReferenceQueue<Object> queue, Object source, boolean region, int minX, int minY, int maxX, int maxY) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Illegal listener null");
+        }
+
+        this.eventBus = eventBus;
+        this.list = list;
+        this.type = type;
+        this.listener = weak ? null : listener;
+        this.weakListener = weak ? new WeakListener<L>(listener, queue, this) : null;
+        this.source = source;
+        this.region = region;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Unsubscribes the listener. Cancelling a cancelled subscription does
+     * nothing.
+     */
+    public void cancel() {
+        if (this.active) {
+            this.active = false;
+
+            if (this.list != null) {
+                this.list.remove(this.listener);
+            } else {
+                this.eventBus.remove(this);
+            }
+        }
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.AutoCloseable#close()
+     */
+    @Override
+    public void close() {
+        this.cancel();
+    }
+
+    /**
+     * Checks if the region of a region subscription contains the position.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return true, if successful
+     */
+    boolean contains(int x, int y) {
+        return x >= this.minX && x <= this.maxX && y >= this.minY && y <= this.maxY;
+    }
+
+    /**
+     * Ends the subscription without removing its listener, as another
+     * subscription registered it.
+     */
+    void deactivate() {
+        this.active = false;
+    }
+
+    /**
+     * Gets the listener.
+     *
+     * @return the listener or null if the listener of a weak subscription
+     * has been garbage collected
+     */
+    public L getListener() {
+        return this.weakListener == null ? this.listener : this.weakListener.get();
+    }
+
+    /**
+     * Gets the source of a source subscription.
+     *
+     * @return the source or null
+     */
+    public Object getSource() {
+        return this.source;
+    }
+
+    /**
+     * Gets the type.
+     *
+     * @return the type
+     */
+    public EventType<L, ?> getType() {
+        return this.type;
+    }
+
+    /**
+     * Checks if the listener is still subscribed.
+     *
+     * @return true, if is active
+     */
+    public boolean isActive() {
+        return this.active;
+    }
+
+    /**
+     * Checks if the subscription subscribes its listener to the same events
+     * as the other one, i.e. to the same type and source or region, no matter
+     * whether weakly or not.
+     *
+     * @param other the other subscription
+     * @return true, if is equivalent
+     */
+    boolean isEquivalent(Subscription<?> other) {
+        L currentListener = this.getListener();
+
+        return currentListener != null && currentListener.equals(other.getListener()) && this.type == other.type
+                && (this.source == null ? other.source == null : this.source.equals(other.source))
+                && this.region == other.region && this.minX == other.minX && this.minY == other.minY
+                && this.maxX == other.maxX && this.maxY == other.maxY;
+    }
+
+    /**
+     * Checks if this is a region subscription.
+     *
+     * @return true, if is region
+     */
+    public boolean isRegion() {
+        return this.region;
+    }
+
+    /**
+     * Checks if the subscription doesn't keep its listener reachable.
+     *
+     * @return true, if is weak
+     */
+    public boolean isWeak() {
+        return this.weakListener != null;
+    }
+
+    /**
+     * The Class WeakListener is the weak reference to the listener of a weak
+     * subscription, which finds the subscription again once it has been
+     * enqueued.
+     *
+     * @param <L> the type of the listener
+     */
+    static final class WeakListener<L> extends WeakReference<L> {
+
+        /**
+         * The subscription.
+         */
+        private final Subscription<L> subscription;
+
+        /**
+         * Instantiates a new weak listener.
+         *
+         * @param listener the listener
+         * @param queue the queue
+         * @param subscription the subscription
+         */
+        WeakListener(L listener, ReferenceQueue<Object> queue, Subscription<L> subscription) {
+            super(listener, queue);
+            this.subscription = subscription;
+        }
+
+        /**
+         * Gets the subscription.
+         *
+         * @return the subscription
+         */
+        Subscription<L> getSubscription() {
+            return this.subscription;
+        }
+    }
+}
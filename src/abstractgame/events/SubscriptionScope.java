@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.events;
+
+import java.util.ArrayList;
+
+/**
+ * The Class SubscriptionScope collects the {@link Subscription}s made for
+ * something with a limited lifetime, e.g. a view, a turn or a connection, and
+ * cancels them together when it ends, so no listener has to be removed one
+ * by one:
+ *
+ * <pre>
+ * try (SubscriptionScope scope = new SubscriptionScope()) {
+ *     scope.add(eventBus.subscribe(EventType.UNIT_MOVED, listener));
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author Nils Kuttkat
+ */
+public class SubscriptionScope implements AutoCloseable {
+
+    /**
+     * True if the scope has ended.
+     */
+    private boolean closed;
+
+    /**
+     * The subscriptions.
+     */
+    private final ArrayList<Subscription<?>> subscriptions = new ArrayList<Subscription<?>>();
+
+    /**
+     * Adds the subscription to the scope. A subscription added to a closed
+     * scope is cancelled immediately.
+     *
+     * @param <L> the type of the listener
+     * @param subscription the subscription
+     * @return the subscription
+     */
+    public synchronized <L> Subscription<L> add(Subscription<L> subscription) {
+        if (this.closed) {
+            subscription.cancel();
+        } else {
+            this.subscriptions.add(subscription);
+        }
+
+        return subscription;
+    }
+
+    /**
+     * Cancels all subscriptions of the scope, which stays open.
+     */
+    public synchronized void cancelAll() {
+        for (Subscription<?> subscription : this.subscriptions) {
+            subscription.cancel();
+        }
+
+        this.subscriptions.clear();
+    }
+
+    /**
+     * Cancels all subscriptions of the scope and ends it.
+     */
+    @Override
+    public synchronized void close() {
+        this.cancelAll();
+        this.closed = true;
+    }
+
+    /**
+     * Checks if the scope has ended.
+     *
+     * @return true, if is closed
+     */
+    public synchronized boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Gets the number of subscriptions of the scope, including those
+     * cancelled by themselves.
+     *
+     * @return the size
+     */
+    public synchronized int size() {
+        return this.subscriptions.size();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.events.graphevents;
+
+import java.util.EventObject;
+
+import abstractgame.pathfinding.CostGraph;
+
+/**
+ * A CostGraphChangedEvent occurs every time the weight of a field in a cost
+ * graph may have changed: the field's terrain changed, the field has been
+ * replaced or a unit entered or left it.
+ *
+ * @author Nils Kuttkat
+ */
+public class CostGraphChangedEvent extends EventObject {
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The index of the changed field.
+     */
+    private final int index;
+
+    /**
+     * True if the terrain cost changed, false if only the units changed.
+     */
+    private final boolean terrainChanged;
+
+    /**
+     * Instantiates a new cost graph changed event.
+     *
+     * @param source the source
+     * @param index the index of the changed field
+     * @param terrainChanged true if the terrain cost changed
+     */
+    public CostGraphChangedEvent(CostGraph source, int index, boolean terrainChanged) {
+        super(source);
+        this.index = index;
+        this.terrainChanged = terrainChanged;
+    }
+
+    /**
+     * Gets the index of the changed field.
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.EventObject#getSource()
+     */
+    @Override
+    public CostGraph getSource() {
+        return (CostGraph) super.getSource();
+    }
+
+    /**
+     * Checks if the terrain cost changed. Otherwise only the units on the
+     * field changed.
+     *
+     * @return true, if is terrain changed
+     */
+    public boolean isTerrainChanged() {
+        return this.terrainChanged;
+    }
+}
@@ -31,7 +31,7 @@ public class UnitDirectionChangedEvent extends UnitEvent {
     /**
      * The previous direction.
      */
-    private int previousDirection;
+    private final int previousDirection;
 
     /**
      * Instantiates a new unit direction changed event.
@@ -41,6 +41,7 @@ public class UnitDirectionChangedEvent extends UnitEvent {
      */
     public UnitDirectionChangedEvent(Object source, int previousDirection) {
         super(source);
+        this.previousDirection = previousDirection;
     }
 
     /**
@@ -19,12 +19,18 @@ package abstractgame.game;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
+import abstractgame.events.EventBus;
+import abstractgame.events.EventType;
+import abstractgame.events.ListenerList;
 import abstractgame.events.gameevents.UnitAddedToGameEvent;
 import abstractgame.events.gameevents.UnitRemovedFromGameEvent;
 import abstractgame.interfaces.UnitAddedToGameListener;
 import abstractgame.interfaces.UnitRemovedFromGameListener;
 import abstractgame.map.AbstractMap;
+import abstractgame.pathfinding.BatchPathfinder;
+import abstractgame.pathfinding.CooperativePathfinder;
 import abstractgame.unit.AbstractUnit;
 
 /**
@@ -45,6 +51,17 @@ public abstract class AbstractGame implements Serializable {
      */
     private AbstractArbiter arbiter;
 
+    /**
+     * The batch pathfinder used by {@link AbstractPlayer#moveUnits(Map)}.
+     */
+    private transient BatchPathfinder batchPathfinder;
+
+    /**
+     * The cooperative pathfinder used by
+     * {@link AbstractPlayer#moveGroup(Map)}.
+     */
+    private transient CooperativePathfinder cooperativePathfinder;
+
     /**
      * The map.
      */
@@ -58,12 +75,12 @@ public abstract class AbstractGame implements Serializable {
     /**
      * The unit added to game listener.
      */
-    private final HashSet<UnitAddedToGameListener> unitAddedToGameListener = new HashSet<UnitAddedToGameListener>();
+    private final ListenerList<UnitAddedToGameListener> unitAddedToGameListener = new ListenerList<UnitAddedToGameListener>(UnitAddedToGameListener.class);
 
     /**
      * The unit removed from game listener.
      */
-    private final HashSet<UnitRemovedFromGameListener> unitRemovedFromGameListener = new HashSet<UnitRemovedFromGameListener>();
+    private final ListenerList<UnitRemovedFromGameListener> unitRemovedFromGameListener = new ListenerList<UnitRemovedFromGameListener>(UnitRemovedFromGameListener.class);
 
     /**
      * The units.
@@ -103,8 +120,6 @@ public abstract class AbstractGame implements Serializable {
         if (abstractUnit != null && !this.units.contains(abstractUnit)) {
             this.units.add(abstractUnit);
             this.fireUnitAddedEvent(abstractUnit);
-            this.addUnitAddedToGameListener(abstractUnit);
-            this.addUnitRemovedFromGameListener(abstractUnit);
         }
     }
 
@@ -127,14 +142,46 @@ public abstract class AbstractGame implements Serializable {
         this.unitRemovedFromGameListener.add(listener);
     }
 
+    /**
+     * Begins a batch of the current thread on the event bus of the game's
+     * map: the events of the game, its map and units the thread publishes are
+     * buffered until the matching {@link #endBatch()} and delivered as their
+     * net change, once per field and unit. The map's cost graphs, unit index
+     * and version listen synchronously, so they are up to date within the
+     * batch. Use try/finally to end it.
+     *
+     * @see EventBus#beginBatch()
+     */
+    public void beginBatch() {
+        this.getEventBus().beginBatch();
+    }
+
+    /**
+     * Ends a batch and delivers the buffered events if it is the outermost
+     * one.
+     *
+     * @see EventBus#endBatch()
+     */
+    public void endBatch() {
+        this.getEventBus().endBatch();
+    }
+
     /**
      * Fire unit added event.
      *
      * @param abstractUnit the abstract unit
      */
     protected void fireUnitAddedEvent(AbstractUnit abstractUnit) {
-        for (UnitAddedToGameListener listener : this.unitAddedToGameListener) {
-            listener.unitAddedToGame(new UnitAddedToGameEvent(this, abstractUnit));
+        EventBus eventBus = this.getEventBus();
+
+        if (EventType.UNIT_ADDED_TO_GAME.isObserved(this.unitAddedToGameListener, eventBus)) {
+            UnitAddedToGameEvent event = new UnitAddedToGameEvent(this, abstractUnit);
+
+            if (eventBus != null) {
+                eventBus.publish(EventType.UNIT_ADDED_TO_GAME, event, this.unitAddedToGameListener);
+            } else {
+                EventType.UNIT_ADDED_TO_GAME.dispatch(this.unitAddedToGameListener, event);
+            }
         }
     }
 
@@ -144,8 +191,16 @@ public abstract class AbstractGame implements Serializable {
      * @param abstractUnit the abstract unit
      */
     protected void fireUnitRemovedEvent(AbstractUnit abstractUnit) {
-        for (UnitRemovedFromGameListener listener : this.unitRemovedFromGameListener) {
-            listener.unitRemovedFromGame(new UnitRemovedFromGameEvent(this, abstractUnit));
+        EventBus eventBus = this.getEventBus();
+
+        if (EventType.UNIT_REMOVED_FROM_GAME.isObserved(this.unitRemovedFromGameListener, eventBus)) {
+            UnitRemovedFromGameEvent event = new UnitRemovedFromGameEvent(this, abstractUnit);
+
+            if (eventBus != null) {
+                eventBus.publish(EventType.UNIT_REMOVED_FROM_GAME, event, this.unitRemovedFromGameListener);
+            } else {
+                EventType.UNIT_REMOVED_FROM_GAME.dispatch(this.unitRemovedFromGameListener, event);
+            }
         }
     }
 
@@ -158,6 +213,46 @@ public abstract class AbstractGame implements Serializable {
         return this.arbiter;
     }
 
+    /**
+     * Gets the batch pathfinder used by {@link AbstractPlayer#moveUnits(Map)},
+     * a batch pathfinder running on the common pool unless another one has
+     * been set.
+     *
+     * @return the batch pathfinder
+     */
+    public BatchPathfinder getBatchPathfinder() {
+        if (this.batchPathfinder == null) {
+            this.batchPathfinder = new BatchPathfinder();
+        }
+
+        return this.batchPathfinder;
+    }
+
+    /**
+     * Gets the cooperative pathfinder used by
+     * {@link AbstractPlayer#moveGroup(Map)}, a cooperative pathfinder with the
+     * default window unless another one has been set.
+     *
+     * @return the cooperative pathfinder
+     */
+    public CooperativePathfinder getCooperativePathfinder() {
+        if (this.cooperativePathfinder == null) {
+            this.cooperativePathfinder = new CooperativePathfinder();
+        }
+
+        return this.cooperativePathfinder;
+    }
+
+    /**
+     * Gets the event bus of the game's map, which also gets the game's
+     * events.
+     *
+     * @return the event bus or null if the game has no map
+     */
+    public EventBus getEventBus() {
+        return this.map == null ? null : this.map.getEventBus();
+    }
+
     /**
      * Gets the map.
      *
@@ -185,6 +280,15 @@ public abstract class AbstractGame implements Serializable {
         return units;
     }
 
+    /**
+     * Checks if the current thread has opened a batch.
+     *
+     * @return true, if is batching
+     */
+    public boolean isBatching() {
+        return this.map != null && this.getEventBus().isBatching();
+    }
+
     /**
      * Removes the player.
      *
@@ -201,7 +305,8 @@ public abstract class AbstractGame implements Serializable {
     }
 
     /**
-     * Removes the unit.
+     * Removes the unit and cancels the subscriptions to its events on the
+     * map's event bus.
      *
      * @param abstractUnit the abstract unit
      */
@@ -215,6 +320,7 @@ public abstract class AbstractGame implements Serializable {
             }
 
             this.fireUnitRemovedEvent(abstractUnit);
+            this.getEventBus().removeSource(abstractUnit);
         }
     }
 
@@ -246,6 +352,25 @@ public abstract class AbstractGame implements Serializable {
         this.arbiter = arbiter;
     }
 
+    /**
+     * Sets the batch pathfinder used by {@link AbstractPlayer#moveUnits(Map)}.
+     *
+     * @param batchPathfinder the new batch pathfinder
+     */
+    public void setBatchPathfinder(BatchPathfinder batchPathfinder) {
+        this.batchPathfinder = batchPathfinder;
+    }
+
+    /**
+     * Sets the cooperative pathfinder used by
+     * {@link AbstractPlayer#moveGroup(Map)}.
+     *
+     * @param cooperativePathfinder the new cooperative pathfinder
+     */
+    public void setCooperativePathfinder(CooperativePathfinder cooperativePathfinder) {
+        this.cooperativePathfinder = cooperativePathfinder;
+    }
+
     /**
      * Sets the map.
      *
@@ -17,9 +17,16 @@
 package abstractgame.game;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 
 import abstractgame.map.AbstractField;
+import abstractgame.pathfinding.BatchPathfinder;
+import abstractgame.pathfinding.CooperativePathfinder;
+import abstractgame.pathfinding.Path;
+import abstractgame.pathfinding.PathRequest;
 import abstractgame.unit.AbstractUnit;
 
 /**
@@ -144,6 +151,72 @@ public abstract class AbstractPlayer implements Serializable {
         }
     }
 
+    /**
+     * Moves a group of units without collisions. The paths of all units the
+     * arbiter allows to move are planned together by the game's
+     * {@link CooperativePathfinder}, then the units follow them step by step:
+     * every unit makes its first step, then every unit its second step and so
+     * on. A unit which can't make a step (e.g. the field beyond the planning
+     * window is full) stops there.
+     *
+     * @param moves the target of every unit, planned in the order of the
+     * map's iteration
+     */
+    public void moveGroup(Map<AbstractUnit, AbstractField> moves) {
+        List<PathRequest> requests = new ArrayList<PathRequest>(moves.size());
+        List<Path> paths;
+        int steps = 0;
+
+        for (Map.Entry<AbstractUnit, AbstractField> move : moves.entrySet()) {
+            AbstractUnit unit = move.getKey();
+
+            if (unit.hasPosition() && unit.isMobile() && this.checkMove(unit)) {
+                requests.add(new PathRequest(unit, move.getValue()));
+            }
+        }
+
+        paths = this.getGame().getCooperativePathfinder().findPaths(requests);
+
+        for (Path path : paths) {
+            steps = Math.max(steps, path.size());
+        }
+
+        for (int step = 1; step < steps; step++) {
+            for (int i = 0; i < requests.size(); i++) {
+                if (step < paths.get(i).size()) {
+                    requests.get(i).getUnit().followStep(paths.get(i), step);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves many units at once. The paths of all units the arbiter allows to
+     * move are searched in parallel by the game's {@link BatchPathfinder},
+     * then the units follow them one after another in the order of the map's
+     * iteration ({@link AbstractUnit#followPath(Path)}).
+     *
+     * @param moves the target of every unit
+     */
+    public void moveUnits(Map<AbstractUnit, AbstractField> moves) {
+        List<PathRequest> requests = new ArrayList<PathRequest>(moves.size());
+        List<Path> paths;
+
+        for (Map.Entry<AbstractUnit, AbstractField> move : moves.entrySet()) {
+            AbstractUnit unit = move.getKey();
+
+            if (unit.hasPosition() && unit.isMobile() && this.checkMove(unit)) {
+                requests.add(new PathRequest(unit, move.getValue()));
+            }
+        }
+
+        paths = this.getGame().getBatchPathfinder().findPaths(requests);
+
+        for (int i = 0; i < requests.size(); i++) {
+            requests.get(i).getUnit().followPath(paths.get(i));
+        }
+    }
+
     /**
      * Put unit.
      *
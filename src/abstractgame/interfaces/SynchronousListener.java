@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.interfaces;
+
+/**
+ * The marker interface for listeners which have to be called synchronously,
+ * on the publishing thread before the publishing method returns, even if the
+ * {@link abstractgame.events.EventBus} delivers asynchronously or a batch is
+ * open. Listeners keeping the model consistent, like the map updating its
+ * cost graphs and unit index, must implement it, listeners like views may be
+ * called later on another thread or with the net change of a batch.
+ *
+ * @see abstractgame.events.AsyncEventDispatcher
+ */
+public interface SynchronousListener {
+
+}
@@ -20,8 +20,11 @@ import java.io.Serializable;
 import java.util.HashSet;
 
 import nkutilities.Coordinate;
-import nkutilities.graph.GraphNode;
 
+import abstractgame.events.EventBus;
+import abstractgame.events.EventType;
+import abstractgame.events.ListenerList;
+import abstractgame.events.Subscription;
 import abstractgame.events.fieldevents.FieldPositionChangedEvent;
 import abstractgame.events.fieldevents.FieldTerrainChangedEvent;
 import abstractgame.events.fieldevents.UnitAddedToFieldEvent;
@@ -35,20 +38,24 @@ import abstractgame.view.AbstractFieldView;
 
 /**
  * This class represents an abstract game field. <br>
- * Every AbstractField is a {@link GraphNode}, therefore a map is a Graph too.
- * <br>
- * This allows us to build graphs for every unit on the map to perform
- * pathfinding operations.
+ * Every AbstractField is identified by its index on the {@link AbstractMap}.
+ * Pathfinding operations work on these indices using the map's
+ * {@link abstractgame.pathfinding.CostGraph}'s.
  *
  * @author Nils Kuttkat
  */
-public abstract class AbstractField extends GraphNode implements Serializable {
+public abstract class AbstractField implements Serializable {
 
     /**
      * The Constant serialVersionUID.
      */
     private static final long serialVersionUID = -2128487589623700568L;
 
+    /**
+     * The index of the field on the map.
+     */
+    private int index = AbstractMap.NO_INDEX;
+
     /**
      * The map.
      */
@@ -65,29 +72,29 @@ public abstract class AbstractField extends GraphNode implements Serializable {
     private Coordinate position;
 
     /**
-     * The position changed listener.
+     * The position changed listener, created with the first listener.
      */
-    private HashSet<FieldPositionChangedListener> positionChangedListener = new HashSet<FieldPositionChangedListener>();
+    private ListenerList<FieldPositionChangedListener> positionChangedListener;
 
     /**
-     * The terrain.
+     * The terrain, null to use the terrain of the map's terrain layer.
      */
     private Enum<?> terrain;
 
     /**
-     * The terrain changed listener.
+     * The terrain changed listener, created with the first listener.
      */
-    private HashSet<FieldTerrainChangedListener> terrainChangedListener = new HashSet<FieldTerrainChangedListener>();
+    private ListenerList<FieldTerrainChangedListener> terrainChangedListener;
 
     /**
-     * The unit added listener.
+     * The unit added listener, created with the first listener.
      */
-    private HashSet<UnitAddedToFieldListener> unitAddedListener = new HashSet<UnitAddedToFieldListener>();
+    private ListenerList<UnitAddedToFieldListener> unitAddedListener;
 
     /**
-     * The unit removed listener.
+     * The unit removed listener, created with the first listener.
      */
-    private HashSet<UnitRemovedFromFieldListener> unitRemovedListener = new HashSet<UnitRemovedFromFieldListener>();
+    private ListenerList<UnitRemovedFromFieldListener> unitRemovedListener;
 
     /**
      * The units.
@@ -120,18 +127,28 @@ public abstract class AbstractField extends GraphNode implements Serializable {
      * Adds the position changed listener.
      *
      * @param listener the listener
+     * @return the subscription removing the listener again
      */
-    public void addPositionChangedListener(FieldPositionChangedListener listener) {
-        this.positionChangedListener.add(listener);
+    public Subscription<FieldPositionChangedListener> addPositionChangedListener(FieldPositionChangedListener listener) {
+        if (this.positionChangedListener == null) {
+            this.positionChangedListener = new ListenerList<FieldPositionChangedListener>(FieldPositionChangedListener.class);
+        }
+
+        return this.positionChangedListener.subscribe(EventType.FIELD_POSITION_CHANGED, listener, this);
     }
 
     /**
      * Adds the terrain changed listener.
      *
      * @param listener the listener
+     * @return the subscription removing the listener again
      */
-    public void addTerrainChangedListener(FieldTerrainChangedListener listener) {
-        this.terrainChangedListener.add(listener);
+    public Subscription<FieldTerrainChangedListener> addTerrainChangedListener(FieldTerrainChangedListener listener) {
+        if (this.terrainChangedListener == null) {
+            this.terrainChangedListener = new ListenerList<FieldTerrainChangedListener>(FieldTerrainChangedListener.class);
+        }
+
+        return this.terrainChangedListener.subscribe(EventType.FIELD_TERRAIN_CHANGED, listener, this);
     }
 
     /**
@@ -159,18 +176,28 @@ public abstract class AbstractField extends GraphNode implements Serializable {
      * Adds the unit added listener.
      *
      * @param listener the listener
+     * @return the subscription removing the listener again
      */
-    public void addUnitAddedListener(UnitAddedToFieldListener listener) {
-        this.unitAddedListener.add(listener);
+    public Subscription<UnitAddedToFieldListener> addUnitAddedListener(UnitAddedToFieldListener listener) {
+        if (this.unitAddedListener == null) {
+            this.unitAddedListener = new ListenerList<UnitAddedToFieldListener>(UnitAddedToFieldListener.class);
+        }
+
+        return this.unitAddedListener.subscribe(EventType.UNIT_ADDED_TO_FIELD, listener, this);
     }
 
     /**
      * Adds the unit removed listener.
      *
      * @param listener the listener
+     * @return the subscription removing the listener again
      */
-    public void addUnitRemovedListener(UnitRemovedFromFieldListener listener) {
-        this.unitRemovedListener.add(listener);
+    public Subscription<UnitRemovedFromFieldListener> addUnitRemovedListener(UnitRemovedFromFieldListener listener) {
+        if (this.unitRemovedListener == null) {
+            this.unitRemovedListener = new ListenerList<UnitRemovedFromFieldListener>(UnitRemovedFromFieldListener.class);
+        }
+
+        return this.unitRemovedListener.subscribe(EventType.UNIT_REMOVED_FROM_FIELD, listener, this);
     }
 
     /**
@@ -198,8 +225,16 @@ public abstract class AbstractField extends GraphNode implements Serializable {
      * Fire position changed event.
      */
     protected void firePositionChangedEvent() {
-        for (FieldPositionChangedListener listener : this.positionChangedListener) {
-            listener.fieldPositionChanged(new FieldPositionChangedEvent(this));
+        EventBus eventBus = this.getEventBus();
+
+        if (EventType.FIELD_POSITION_CHANGED.isObserved(this.positionChangedListener, eventBus)) {
+            FieldPositionChangedEvent event = new FieldPositionChangedEvent(this);
+
+            if (eventBus != null) {
+                eventBus.publish(EventType.FIELD_POSITION_CHANGED, event, this.positionChangedListener);
+            } else {
+                EventType.FIELD_POSITION_CHANGED.dispatch(this.positionChangedListener, event);
+            }
         }
     }
 
@@ -207,8 +242,16 @@ public abstract class AbstractField extends GraphNode implements Serializable {
      * Fire terrain changed event.
      */
     protected void fireTerrainChangedEvent() {
-        for (FieldTerrainChangedListener listener : this.terrainChangedListener) {
-            listener.fieldTerrainChanged(new FieldTerrainChangedEvent(this));
+        EventBus eventBus = this.getEventBus();
+
+        if (EventType.FIELD_TERRAIN_CHANGED.isObserved(this.terrainChangedListener, eventBus)) {
+            FieldTerrainChangedEvent event = new FieldTerrainChangedEvent(this);
+
+            if (eventBus != null) {
+                eventBus.publish(EventType.FIELD_TERRAIN_CHANGED, event, this.terrainChangedListener);
+            } else {
+                EventType.FIELD_TERRAIN_CHANGED.dispatch(this.terrainChangedListener, event);
+            }
         }
     }
 
@@ -218,9 +261,16 @@ public abstract class AbstractField extends GraphNode implements Serializable {
      * @param abstractUnit the abstract unit
      */
     protected void fireUnitAddedEvent(AbstractUnit abstractUnit) {
-        for (UnitAddedToFieldListener listener : this.unitAddedListener) {
-            listener.unitAddedToField(new UnitAddedToFieldEvent(this,
-                    abstractUnit));
+        EventBus eventBus = this.getEventBus();
+
+        if (EventType.UNIT_ADDED_TO_FIELD.isObserved(this.unitAddedListener, eventBus)) {
+            UnitAddedToFieldEvent event = new UnitAddedToFieldEvent(this, abstractUnit);
+
+            if (eventBus != null) {
+                eventBus.publish(EventType.UNIT_ADDED_TO_FIELD, event, this.unitAddedListener);
+            } else {
+                EventType.UNIT_ADDED_TO_FIELD.dispatch(this.unitAddedListener, event);
+            }
         }
     }
 
@@ -230,12 +280,57 @@ public abstract class AbstractField extends GraphNode implements Serializable {
      * @param abstractUnit the abstract unit
      */
     protected void fireUnitRemovedEvent(AbstractUnit abstractUnit) {
-        for (UnitRemovedFromFieldListener listener : this.unitRemovedListener) {
-            listener.unitRemovedFromField(new UnitRemovedFromFieldEvent(this,
-                    abstractUnit));
+        EventBus eventBus = this.getEventBus();
+
+        if (EventType.UNIT_REMOVED_FROM_FIELD.isObserved(this.unitRemovedListener, eventBus)) {
+            UnitRemovedFromFieldEvent event = new UnitRemovedFromFieldEvent(this, abstractUnit);
+
+            if (eventBus != null) {
+                eventBus.publish(EventType.UNIT_REMOVED_FROM_FIELD, event, this.unitRemovedListener);
+            } else {
+                EventType.UNIT_REMOVED_FROM_FIELD.dispatch(this.unitRemovedListener, event);
+            }
         }
     }
 
+    /**
+     * Gets the change of the x coordinate when moving from (x, y) one step
+     * into the given direction. This method is used to build the map's
+     * {@link NeighborTable}. The change may depend on the parity of x and y
+     * only. <br>
+     * By default the step is measured with {@link #getNeighbor(int)} of the
+     * first field of this class and parity placed on the map which has a
+     * neighbor in the direction, subclasses whose neighbors are looked up in
+     * the table ({@link #getTableNeighbor(int)}) have to override it.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param direction the direction
+     * @return the delta x
+     */
+    protected int getDeltaX(int x, int y, int direction) {
+        return this.getStep(x, y, direction)[0];
+    }
+
+    /**
+     * Gets the change of the y coordinate when moving from (x, y) one step
+     * into the given direction. This method is used to build the map's
+     * {@link NeighborTable}. The change may depend on the parity of x and y
+     * only. <br>
+     * By default the step is measured with {@link #getNeighbor(int)} of the
+     * first field of this class and parity placed on the map which has a
+     * neighbor in the direction, subclasses whose neighbors are looked up in
+     * the table ({@link #getTableNeighbor(int)}) have to override it.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param direction the direction
+     * @return the delta y
+     */
+    protected int getDeltaY(int x, int y, int direction) {
+        return this.getStep(x, y, direction)[1];
+    }
+
     /**
      * Gets the direction for neighbor.
      *
@@ -245,11 +340,8 @@ public abstract class AbstractField extends GraphNode implements Serializable {
     public int getDirectionForNeighbor(AbstractField abstractField) {
         int direction = Integer.MIN_VALUE;
 
-        for (int i = 0; i < this.getDirections(); i++) {
-            if (this.getNeighbor(i) == abstractField) {
-                direction = i;
-                break;
-            }
+        if (abstractField != null && this.map != null && abstractField.getMap() == this.map) {
+            direction = this.getNeighborTable().getDirection(this.index, abstractField.getIndex());
         }
 
         return direction;
@@ -264,13 +356,65 @@ public abstract class AbstractField extends GraphNode implements Serializable {
     public abstract int getDirections();
 
     /**
-     * Gets the distance to the given field.
+     * Gets the distance to the given field. This method must be implemented
+     * by concrete subclasses.
      *
      * @param abstractField the abstractField
      * @return the distance
      */
     public abstract double getDistance(AbstractField abstractField);
 
+    /**
+     * Gets the distance between two positions in this field's topology. <br>
+     * By default the distance is measured with
+     * {@link #getDistance(AbstractField)} between the fields placed at both
+     * positions of the map, so that method must not call this one unless it
+     * is overridden.
+     *
+     * @param x1 the x coordinate of the first position
+     * @param y1 the y coordinate of the first position
+     * @param x2 the x coordinate of the second position
+     * @param y2 the y coordinate of the second position
+     * @return the distance
+     * @throws UnsupportedOperationException if there is no field at one of
+     * the positions
+     */
+    protected double getDistance(int x1, int y1, int x2, int y2) {
+        AbstractField from = null, to = null;
+
+        if (this.map != null) {
+            from = this.map.getPlacedField(this.map.getIndex(x1, y1));
+            to = this.map.getPlacedField(this.map.getIndex(x2, y2));
+        }
+
+        if (from == null || to == null) {
+            throw new UnsupportedOperationException(this.getClass().getName()
+                    + " has to override getDistance(int, int, int, int) to measure positions without fields");
+        }
+
+        return from.getDistance(to);
+    }
+
+    /**
+     * Gets the event bus of the map, which gets every event of the field.
+     *
+     * @return the event bus or null if the field has no position
+     */
+    private EventBus getEventBus() {
+        return this.map == null ? null : this.map.getEventBus();
+    }
+
+    /**
+     * Gets the index of this field on its map. The index is the field's id
+     * within the map's flat, row-major storage.
+     *
+     * @return the index or {@link AbstractMap#NO_INDEX} if the field has no
+     * position
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
     /**
      * Gets the map this field belons to.
      *
@@ -290,28 +434,86 @@ public abstract class AbstractField extends GraphNode implements Serializable {
     }
 
     /**
-     * Gets the neighbor in the given direction.
+     * Gets the neighbor in the given direction. This method must be
+     * implemented by concrete subclasses, either with
+     * {@link #getTableNeighbor(int)} along with {@link #getDeltaX(int, int, int)}
+     * and {@link #getDeltaY(int, int, int)}, or by the field's coordinates.
      *
      * @param direction the direction
      * @return the abstract field
      */
     public abstract AbstractField getNeighbor(int direction);
 
+    /**
+     * Gets the index of the neighbor in the given direction.
+     *
+     * @param direction the direction
+     * @return the index of the neighbor or {@link NeighborTable#EDGE}
+     */
+    public int getNeighborIndex(int direction) {
+        NeighborTable table = this.getNeighborTable();
+        int neighborIndex = NeighborTable.EDGE;
+
+        if (table != null && direction >= 0 && direction < table.getDirections()) {
+            neighborIndex = table.getNeighbor(this.index, direction);
+        }
+
+        return neighborIndex;
+    }
+
     /**
      * Gets all the neighbors.
      *
      * @return the neighbors
      */
     public HashSet<AbstractField> getNeighbors() {
+        AbstractField[] neighbors = new AbstractField[this.getDirections()];
+        int count = this.getNeighbors(neighbors);
         HashSet<AbstractField> hashSet = new HashSet<AbstractField>();
 
-        for (int direction = 0; direction < this.getDirections(); direction++) {
-            hashSet.add(this.getNeighbor(direction));
+        for (int i = 0; i < count; i++) {
+            hashSet.add(neighbors[i]);
         }
 
         return hashSet;
     }
 
+    /**
+     * Copies the neighbors on the map into the given array, in the order of
+     * their directions. The array can be reused for the neighbors of many
+     * fields.
+     *
+     * @param neighbors the array, at least {@link #getDirections()} long
+     * @return the number of neighbors copied, 0 if the field isn't placed on
+     * a map
+     * @see NeighborTable#getNeighbors(int, int[])
+     */
+    public int getNeighbors(AbstractField[] neighbors) {
+        NeighborTable table = this.getNeighborTable();
+        int count = 0, neighbor;
+
+        if (table != null) {
+            for (int direction = 0; direction < table.getDirections(); direction++) {
+                neighbor = table.getNeighbor(this.index, direction);
+
+                if (neighbor != NeighborTable.EDGE) {
+                    neighbors[count++] = this.map.getField(neighbor);
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the neighbor table of the map for this field's topology.
+     *
+     * @return the neighbor table or null if the field isn't placed on a map
+     */
+    public NeighborTable getNeighborTable() {
+        return this.map == null ? null : this.map.getNeighborTable(this);
+    }
+
     /**
      * Gets the position.
      *
@@ -322,12 +524,76 @@ public abstract class AbstractField extends GraphNode implements Serializable {
     }
 
     /**
-     * Gets the terrain.
+     * Measures the step into the given direction with
+     * {@link #getNeighbor(int)} of the first field of this class placed on
+     * the map at a position with the same parity as (x, y) which has a
+     * neighbor in the direction. The map needn't have any inner position.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param direction the direction
+     * @return the change of the x and y coordinate, a step off the map if no
+     * field has a neighbor in the direction
+     */
+    private int[] getStep(int x, int y, int direction) {
+        int[] step = null;
+        AbstractField field, neighbor;
+
+        if (this.map != null) {
+            for (int probeY = y & 1; step == null && probeY < this.map.getHeight(); probeY += 2) {
+                for (int probeX = x & 1; step == null && probeX < this.map.getWidth(); probeX += 2) {
+                    field = this.map.getPlacedField(this.map.getIndex(probeX, probeY));
+                    neighbor = field == null || field.getClass() != this.getClass() ? null
+                            : field.getNeighbor(direction);
+
+                    if (neighbor != null && neighbor.getPosition() != null) {
+                        step = new int[]{neighbor.getPosition().getX() - probeX,
+                            neighbor.getPosition().getY() - probeY};
+                    }
+                }
+            }
+        }
+
+        // no position of the map has a neighbor in the direction, so every
+        // step leaves the map
+        return step == null ? new int[]{this.map == null ? 1 : this.map.getWidth(), 0} : step;
+    }
+
+    /**
+     * Gets the neighbor in the given direction from the map's
+     * {@link NeighborTable}. Subclasses which override
+     * {@link #getDeltaX(int, int, int)} and {@link #getDeltaY(int, int, int)}
+     * implement {@link #getNeighbor(int)} with it.
+     *
+     * @param direction the direction
+     * @return the neighbor or null if it lies off the map
+     */
+    protected final AbstractField getTableNeighbor(int direction) {
+        AbstractField neighbor = null;
+        int neighborIndex = this.getNeighborIndex(direction);
+
+        if (neighborIndex != NeighborTable.EDGE) {
+            neighbor = this.map.getField(neighborIndex);
+        }
+
+        return neighbor;
+    }
+
+    /**
+     * Gets the terrain. A field without a terrain of its own has the terrain
+     * of its map's terrain layer, see
+     * {@link AbstractMap#setTerrainLayer(MappedTerrainLayer)}.
      *
      * @return the terrain
      */
     public Enum<?> getTerrain() {
-        return terrain;
+        Enum<?> fieldTerrain = this.terrain;
+
+        if (fieldTerrain == null && this.map != null && this.map.getTerrainLayer() != null) {
+            fieldTerrain = this.map.getTerrainLayer().getTerrain(this.index);
+        }
+
+        return fieldTerrain;
     }
 
     /**
@@ -348,6 +614,40 @@ public abstract class AbstractField extends GraphNode implements Serializable {
         return view;
     }
 
+    /**
+     * Checks if any listener is registered on the field itself. The
+     * subscriptions to the field on the map's event bus aren't counted, see
+     * {@link EventBus#hasSourceSubscribers(Object)}.
+     *
+     * @return true, if the field has listeners
+     */
+    public boolean hasListeners() {
+        return (this.positionChangedListener != null && !this.positionChangedListener.isEmpty())
+                || (this.terrainChangedListener != null && !this.terrainChangedListener.isEmpty())
+                || (this.unitAddedListener != null && !this.unitAddedListener.isEmpty())
+                || (this.unitRemovedListener != null && !this.unitRemovedListener.isEmpty());
+    }
+
+    /**
+     * Checks if the field has a terrain of its own. Otherwise it has the
+     * terrain of its map's terrain layer.
+     *
+     * @return true, if the field has a terrain of its own
+     */
+    public boolean hasOwnTerrain() {
+        return this.terrain != null;
+    }
+
+    /**
+     * Checks if the field lies on the border of the map, i.e. at least one of
+     * its neighbors is off the map.
+     *
+     * @return true, if is border
+     */
+    public boolean isBorder() {
+        return this.getNeighborTable() != null && this.getNeighborTable().isBorder(this.index);
+    }
+
     /**
      * Checks if the given field is a neighbor.
      *
@@ -355,7 +655,7 @@ public abstract class AbstractField extends GraphNode implements Serializable {
      * @return true, if is neighbor
      */
     public boolean isNeighbor(AbstractField abstractField) {
-        return this.getNeighbors().contains(abstractField);
+        return this.getDirectionForNeighbor(abstractField) != Integer.MIN_VALUE;
     }
 
     /**
@@ -365,7 +665,9 @@ public abstract class AbstractField extends GraphNode implements Serializable {
      */
     public void removePositionChangedListener(
             FieldPositionChangedListener listener) {
-        this.positionChangedListener.remove(listener);
+        if (this.positionChangedListener != null) {
+            this.positionChangedListener.remove(listener);
+        }
     }
 
     /**
@@ -375,7 +677,9 @@ public abstract class AbstractField extends GraphNode implements Serializable {
      */
     public void removeTerrainChangedListener(
             FieldTerrainChangedListener listener) {
-        this.terrainChangedListener.remove(listener);
+        if (this.terrainChangedListener != null) {
+            this.terrainChangedListener.remove(listener);
+        }
     }
 
     /**
@@ -402,7 +706,9 @@ public abstract class AbstractField extends GraphNode implements Serializable {
      * @param listener the listener
      */
     public void removeUnitAddedListener(UnitAddedToFieldListener listener) {
-        this.unitAddedListener.remove(listener);
+        if (this.unitAddedListener != null) {
+            this.unitAddedListener.remove(listener);
+        }
     }
 
     /**
@@ -411,7 +717,9 @@ public abstract class AbstractField extends GraphNode implements Serializable {
      * @param listener the listener
      */
     public void removeUnitRemovedListener(UnitRemovedFromFieldListener listener) {
-        this.unitRemovedListener.remove(listener);
+        if (this.unitRemovedListener != null) {
+            this.unitRemovedListener.remove(listener);
+        }
     }
 
     /**
@@ -423,27 +731,6 @@ public abstract class AbstractField extends GraphNode implements Serializable {
         this.maxUnits = maxUnits;
     }
 
-    /**
-     * Sets the neighbor edges for the given unit.
-     *
-     * @param unit the new neighbor edges
-     */
-    public void setNeighborEdges(AbstractUnit unit) {
-        int startDirection = 0, currentDirection = startDirection;
-        AbstractField neighbor;
-        double weight = unit.getEdgeWeight(this);
-
-        do {
-            neighbor = this.getNeighbor(currentDirection);
-
-            if (neighbor != null) {
-                neighbor.setEdge(unit, this, weight * this.getDistance(neighbor));
-            }
-
-            currentDirection = (currentDirection + 1) % this.getDirections();
-        } while (currentDirection != startDirection);
-    }
-
     /**
      * Sets the position.
      *
@@ -462,6 +749,7 @@ public abstract class AbstractField extends GraphNode implements Serializable {
                 // set the new references
                 this.map = map;
                 this.position = coordinate;
+                this.index = map == null ? AbstractMap.NO_INDEX : map.getIndex(coordinate);
 
                 // tell the map to delete the old reference if there is one
                 if (currentMap != null && this.equals(currentMap.getField(currentPosition))) {
@@ -493,7 +781,8 @@ public abstract class AbstractField extends GraphNode implements Serializable {
     /**
      * Sets the terrain.
      *
-     * @param terrain the new terrain
+     * @param terrain the new terrain or null for the terrain of the map's
+     * terrain layer
      */
     public void setTerrain(Enum<?> terrain) {
         this.terrain = terrain;
@@ -17,15 +17,45 @@
 package abstractgame.map;
 
 import java.io.Serializable;
+import java.util.HashMap;
 
+import abstractgame.events.EventBus;
+import abstractgame.events.EventType;
+import abstractgame.events.fieldevents.FieldTerrainChangedEvent;
+import abstractgame.events.fieldevents.UnitAddedToFieldEvent;
+import abstractgame.events.fieldevents.UnitRemovedFromFieldEvent;
+import abstractgame.events.unitevents.UnitPlayerChangedEvent;
 import abstractgame.game.AbstractGame;
+import abstractgame.interfaces.FieldTerrainChangedListener;
+import abstractgame.interfaces.SynchronousListener;
+import abstractgame.interfaces.UnitAddedToFieldListener;
+import abstractgame.interfaces.UnitPlayerChangedListener;
+import abstractgame.interfaces.UnitRemovedFromFieldListener;
+import abstractgame.pathfinding.AbstractPathfinder;
+import abstractgame.pathfinding.CostGraph;
+import abstractgame.pathfinding.MovementClass;
 import abstractgame.unit.AbstractUnit;
 
 import nkutilities.Coordinate;
 
 /**
  * The Class AbstractMap represents a game map and consists of
- * {@link AbstractField}'s.
+ * {@link AbstractField}'s. <br>
+ * The fields are stored in a single flat array in row-major order, so every
+ * position on the map has an int index ({@code y * width + x}) which is used
+ * as the id of the field placed there. Subclasses may store the fields
+ * differently by overriding {@link #getStoredField(int)} and
+ * {@link #storeField(int, AbstractField)}, see {@link ChunkedMap}. <br>
+ * The terrain of every position is also kept as a byte in a grid, or as a
+ * char once a program uses more than 255 terrains
+ * ({@link #getTerrainOrdinal(int)}), so the pathfinding reads it without
+ * touching the fields. A map with a {@link MappedTerrainLayer} keeps no grid
+ * and translates the values of the layer instead. <br>
+ * The map keeps one {@link CostGraph} per {@link MovementClass} of the units
+ * placed on it and subscribes to the events of its fields and the units on
+ * them on its {@link EventBus} to keep these graphs up to date. Every such
+ * change also raises the map's version, which tells cached results like a
+ * {@link abstractgame.pathfinding.ReachableSet} that they are outdated.
  *
  * @author Nils Kuttkat
  */
@@ -37,41 +67,218 @@ public abstract class AbstractMap implements Serializable {
     private static final long serialVersionUID = -7491531564280512332L;
 
     /**
-     * The fields.
+     * The index returned for positions outside of the map.
      */
-    private final AbstractField[][] fields;
+    public static final int NO_INDEX = -1;
+
+    /**
+     * The cost graphs per movement class.
+     */
+    private transient HashMap<MovementClass, CostGraph> costGraphs;
+
+    /**
+     * The event bus of the fields and units on the map, created on demand.
+     */
+    private transient EventBus eventBus;
+
+    /**
+     * The fields in row-major order, allocated on the first stored field.
+     */
+    private AbstractField[] fields;
 
     /**
      * The game.
      */
     private AbstractGame game;
 
+    /**
+     * The fields as [width][height] array, built when it is asked for and
+     * dropped whenever a field is replaced.
+     */
+    private transient AbstractField[][] fieldColumns;
+
+    /**
+     * The height.
+     */
+    private final int height;
+
+    /**
+     * The neighbor table asked for last, which saves the lookup by class
+     * while all fields share one topology. It isn't volatile, which would
+     * keep the JIT from hoisting the read out of the loops over neighbors,
+     * the table's fields are final and a stale table is just looked up again.
+     */
+    private transient NeighborTable lastNeighborTable;
+
+    /**
+     * The neighbor tables per field topology, built on demand. A class maps
+     * to null while its table is built.
+     */
+    private transient HashMap<Class<? extends AbstractField>, NeighborTable> neighborTables;
+
+    /**
+     * The number of positions.
+     */
+    private final int size;
+
+    /**
+     * The {@link TerrainRegistry} ordinals of the terrains of all positions,
+     * built on demand if the map has no terrain layer, null once an ordinal
+     * doesn't fit into a byte.
+     */
+    private transient byte[] terrainGrid;
+
+    /**
+     * The terrain of the fields without a terrain of their own, not
+     * serialized.
+     */
+    private transient MappedTerrainLayer terrainLayer;
+
+    /**
+     * The spatial index of the units on the map, built on demand.
+     */
+    private transient UnitIndex unitIndex;
+
+    /**
+     * The number of changes of the fields and the units on them.
+     */
+    private long version;
+
+    /**
+     * The ordinals of all positions once an ordinal doesn't fit into a byte
+     * of the terrain grid.
+     */
+    private transient char[] wideTerrainGrid;
+
+    /**
+     * The width.
+     */
+    private final int width;
+
     /**
      * Instantiates a new abstract map.
      *
      * @param width the width
      * @param height the height
+     * @throws IllegalArgumentException if a dimension is negative or the map
+     * has more than {@link Integer#MAX_VALUE} positions
      */
     public AbstractMap(int width, int height) {
-        this.fields = new AbstractField[width][height];
+        if (width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Illegal map size " + width + "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
     }
 
     /**
-     * Builds the graph associated to a unit.
+     * Builds the graph associated to a unit. All units of a movement class
+     * share the same graph, so the graph is only built for the first of them.
      *
      * @param unit the unit
      */
     public void buildGraph(AbstractUnit unit) {
-        for (AbstractField[] column : this.fields) {
-            for (AbstractField field : column) {
-                field.setNeighborEdges(unit);
-                field.addUnitAddedListener(unit);
-                field.addUnitRemovedListener(unit);
-                field.addTerrainChangedListener(unit);
+        CostGraph costGraph;
+
+        if (unit.hasGraph()) {
+            this.removeGraph(unit);
+        }
+
+        costGraph = this.getCostGraph(unit.getMovementClass());
+        costGraph.attach();
+        unit.setCostGraph(costGraph);
+    }
+
+    /**
+     * Tells the cost graphs that the field with the given index changed.
+     *
+     * @param index the index
+     */
+    private void fieldChanged(int index) {
+        this.version++;
+
+        if (this.terrainGrid != null || this.wideTerrainGrid != null) {
+            this.storeTerrainOrdinal(index);
+        }
+
+        if (this.costGraphs != null) {
+            for (CostGraph costGraph : this.costGraphs.values()) {
+                costGraph.fieldChanged(index);
             }
         }
+    }
 
-        unit.hasGraph(true);
+    /**
+     * Tells the cost graphs that a unit entered or left the field with the
+     * given index.
+     *
+     * @param index the index
+     */
+    private void fieldOccupationChanged(int index) {
+        this.version++;
+
+        if (this.costGraphs != null) {
+            for (CostGraph costGraph : this.costGraphs.values()) {
+                costGraph.fieldOccupationChanged(index);
+            }
+        }
+    }
+
+    /**
+     * Drops the [width][height] array of {@link #getFields()} after fields
+     * have been replaced or removed.
+     */
+    void fieldsReplaced() {
+        this.fieldColumns = null;
+    }
+
+    /**
+     * Gets the cost graph of the given movement class. The graph is built if
+     * there is none yet.
+     *
+     * @param movementClass the movement class
+     * @return the cost graph
+     */
+    public CostGraph getCostGraph(MovementClass movementClass) {
+        CostGraph costGraph;
+
+        if (this.costGraphs == null) {
+            this.costGraphs = new HashMap<MovementClass, CostGraph>();
+        }
+
+        costGraph = this.costGraphs.get(movementClass);
+
+        if (costGraph == null) {
+            costGraph = new CostGraph(this, movementClass);
+            this.costGraphs.put(movementClass, costGraph);
+        }
+
+        return costGraph;
+    }
+
+    /**
+     * Gets the event bus, which gets the events of all fields placed on the
+     * map and of the units on them. The map subscribes to the types it keeps
+     * its cost graphs and indices up to date with once, instead of listening
+     * to every field. The bus isn't serialized, so its subscriptions have to
+     * be made again after deserialization.
+     *
+     * @return the event bus
+     */
+    public EventBus getEventBus() {
+        if (this.eventBus == null) {
+            MapListener listener = new MapListener();
+
+            this.eventBus = new EventBus();
+            this.eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, listener);
+            this.eventBus.subscribe(EventType.UNIT_ADDED_TO_FIELD, listener);
+            this.eventBus.subscribe(EventType.UNIT_PLAYER_CHANGED, listener);
+            this.eventBus.subscribe(EventType.UNIT_REMOVED_FROM_FIELD, listener);
+        }
+
+        return this.eventBus;
     }
 
     /**
@@ -92,20 +299,44 @@ public abstract class AbstractMap implements Serializable {
      * @return the field
      */
     public AbstractField getField(int x, int y) {
-        try {
-            return this.fields[x][y];
-        } catch (ArrayIndexOutOfBoundsException e) {
-            return null;
-        }
+        return this.getField(this.getIndex(x, y));
     }
 
     /**
-     * Gets the fields.
+     * Gets the field with the given index.
+     *
+     * @param index the index
+     * @return the field or null if there is none
+     */
+    public AbstractField getField(int index) {
+        return this.getPlacedField(index);
+    }
+
+    /**
+     * Gets the fields as a [width][height] array. <br>
+     * The map keeps its fields in a flat array. The array is built in
+     * O(width * height) on the first call after a field has been replaced and
+     * shared by the following calls, so it must not be changed. Place fields
+     * with {@link #setField(int, int, AbstractField)} and use
+     * {@link #getField(int)} together with {@link #getSize()} to iterate over
+     * large maps.
      *
      * @return the fields
      */
     public AbstractField[][] getFields() {
-        return this.fields;
+        AbstractField[][] columns = this.fieldColumns;
+
+        if (columns == null) {
+            columns = new AbstractField[this.width][this.height];
+
+            for (int index = 0; index < this.size; index++) {
+                columns[index % this.width][index / this.width] = this.getField(index);
+            }
+
+            this.fieldColumns = columns;
+        }
+
+        return columns;
     }
 
     /**
@@ -117,6 +348,224 @@ public abstract class AbstractMap implements Serializable {
         return game;
     }
 
+    /**
+     * Gets the height.
+     *
+     * @return the height
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Gets the index of the given position.
+     *
+     * @param coordinate the coordinate
+     * @return the index or {@link #NO_INDEX} if the map doesn't contain the
+     * position
+     */
+    public int getIndex(Coordinate coordinate) {
+        int index = NO_INDEX;
+
+        if (coordinate != null) {
+            index = this.getIndex(coordinate.getX(), coordinate.getY());
+        }
+
+        return index;
+    }
+
+    /**
+     * Gets the index of the given position.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the index or {@link #NO_INDEX} if the map doesn't contain the
+     * position
+     */
+    public int getIndex(int x, int y) {
+        int index = NO_INDEX;
+
+        if (this.hasPosition(x, y)) {
+            index = y * this.width + x;
+        }
+
+        return index;
+    }
+
+    /**
+     * Gets the neighbor table for the topology of the given field. The table
+     * is built the first time a field of this class asks for it.
+     *
+     * @param abstractField the abstract field
+     * @return the neighbor table
+     */
+    public NeighborTable getNeighborTable(AbstractField abstractField) {
+        NeighborTable neighborTable = this.lastNeighborTable;
+
+        if (neighborTable == null || neighborTable.getFieldClass() != abstractField.getClass()) {
+            neighborTable = this.lookUpNeighborTable(abstractField);
+            this.lastNeighborTable = neighborTable;
+        }
+
+        return neighborTable;
+    }
+
+    /**
+     * Gets the field placed at the given index without creating one, unlike
+     * {@link #getField(int)} on maps which create their fields on demand
+     * ({@link ChunkedMap}). Units can only stand on placed fields.
+     *
+     * @param index the index
+     * @return the field or null if there is none
+     */
+    public AbstractField getPlacedField(int index) {
+        AbstractField field = null;
+
+        if (index >= 0 && index < this.size) {
+            field = this.getStoredField(index);
+        }
+
+        return field;
+    }
+
+    /**
+     * Gets the number of positions on the map (width * height).
+     *
+     * @return the size
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Gets the field stored at the given index. This is the storage behind
+     * {@link #getField(int)}, which has checked the index already.
+     *
+     * @param index the index
+     * @return the field or null if there is none
+     */
+    protected AbstractField getStoredField(int index) {
+        return this.fields == null ? null : this.fields[index];
+    }
+
+    /**
+     * Gets the terrain at the given index. The cost graphs read the terrain
+     * here, so maps which create their fields on demand can answer without
+     * creating a field.
+     *
+     * @param index the index
+     * @return the terrain or null if there is no field at the index
+     */
+    public Enum<?> getTerrain(int index) {
+        AbstractField field = this.getField(index);
+        Enum<?> terrain = null;
+
+        if (field != null) {
+            terrain = field.getTerrain();
+        } else if (this.terrainLayer != null && index >= 0 && index < this.size) {
+            terrain = this.terrainLayer.getTerrain(index);
+        }
+
+        return terrain;
+    }
+
+    /**
+     * Gets the terrain layer.
+     *
+     * @return the terrain layer or null if there is none
+     */
+    public MappedTerrainLayer getTerrainLayer() {
+        return this.terrainLayer;
+    }
+
+    /**
+     * Gets the {@link TerrainRegistry} ordinal of the terrain at the given
+     * index. The ordinals of all positions are kept in a byte grid, which is
+     * built the first time an ordinal is asked for and widened to chars if
+     * an ordinal doesn't fit. With a terrain layer, the positions whose field
+     * has no terrain of its own translate the layer's value
+     * ({@link MappedTerrainLayer#getTerrainOrdinal(int)}) instead.
+     *
+     * @param index the index
+     * @return the ordinal
+     */
+    public int getTerrainOrdinal(int index) {
+        AbstractField field;
+        int ordinal;
+
+        if (this.terrainLayer != null) {
+            field = this.getStoredField(index);
+            ordinal = field != null && field.hasOwnTerrain() ? TerrainRegistry.getOrdinal(field.getTerrain())
+                    : this.terrainLayer.getTerrainOrdinal(index);
+        } else {
+            if (this.terrainGrid == null && this.wideTerrainGrid == null) {
+                this.terrainGrid = new byte[this.size];
+
+                for (int position = 0; position < this.size; position++) {
+                    this.storeTerrainOrdinal(position);
+                }
+            }
+
+            ordinal = this.terrainGrid != null ? this.terrainGrid[index] & 0xFF : this.wideTerrainGrid[index];
+        }
+
+        return ordinal;
+    }
+
+    /**
+     * Gets the spatial index of the units placed on the map. The index is
+     * built the first time it is asked for and kept up to date afterwards.
+     *
+     * @return the unit index
+     */
+    public UnitIndex getUnitIndex() {
+        if (this.unitIndex == null) {
+            this.unitIndex = new UnitIndex(this, UnitIndex.DEFAULT_BUCKET_SIZE);
+        }
+
+        return this.unitIndex;
+    }
+
+    /**
+     * Gets the version of the map, which is raised every time a field changes
+     * its terrain or is replaced, a unit enters or leaves a field or a unit on
+     * the map changes its player.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets the width.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Gets the x coordinate of the given index.
+     *
+     * @param index the index
+     * @return the x coordinate
+     */
+    public int getX(int index) {
+        return index % this.width;
+    }
+
+    /**
+     * Gets the y coordinate of the given index.
+     *
+     * @param index the index
+     * @return the y coordinate
+     */
+    public int getY(int index) {
+        return index / this.width;
+    }
+
     /**
      * Checks for position.
      *
@@ -142,33 +591,73 @@ public abstract class AbstractMap implements Serializable {
      * @return true, if successful
      */
     public boolean hasPosition(int x, int y) {
-        @SuppressWarnings("unused")
-        AbstractField dummy;
-        try {
-            dummy = this.fields[x][y];
-        } catch (ArrayIndexOutOfBoundsException e) {
-            return false;
+        return x >= 0 && x < this.width && y >= 0 && y < this.height;
+    }
+
+    /**
+     * Looks up the neighbor table for the class of the given field and builds
+     * it the first time. A field class whose neighbors come from the table
+     * itself has to provide its steps, see
+     * {@link AbstractField#getDeltaX(int, int, int)}.
+     *
+     * @param abstractField the abstract field
+     * @return the neighbor table
+     * @throws IllegalStateException if building the table needs the table
+     */
+    private NeighborTable lookUpNeighborTable(AbstractField abstractField) {
+        NeighborTable neighborTable = null;
+
+        if (this.neighborTables == null) {
+            this.neighborTables = new HashMap<Class<? extends AbstractField>, NeighborTable>();
         }
 
-        return true;
+        if (this.neighborTables.containsKey(abstractField.getClass())) {
+            neighborTable = this.neighborTables.get(abstractField.getClass());
+
+            if (neighborTable == null) {
+                throw new IllegalStateException(abstractField.getClass().getName() + " has to override "
+                        + "getDeltaX(int, int, int) and getDeltaY(int, int, int) to look up its neighbors in the "
+                        + "neighbor table");
+            }
+        } else {
+            this.neighborTables.put(abstractField.getClass(), null);
+
+            try {
+                neighborTable = new NeighborTable(this, abstractField, this.storesNeighbors());
+            } finally {
+                if (neighborTable == null) {
+                    this.neighborTables.remove(abstractField.getClass());
+                } else {
+                    this.neighborTables.put(abstractField.getClass(), neighborTable);
+                }
+            }
+        }
+
+        return neighborTable;
     }
 
     /**
-     * Removes the unit's graph.
+     * Removes the unit's graph. The graph is dropped as soon as no unit of
+     * its movement class uses it anymore. The unit's pathfinder is released,
+     * so it doesn't keep state for the unit on the graph
+     * ({@link AbstractPathfinder#release(AbstractUnit)}).
      *
      * @param unit the unit
      */
     public void removeGraph(AbstractUnit unit) {
-        for (AbstractField[] column : this.fields) {
-            for (AbstractField field : column) {
-                field.getEdges().remove(unit);
-                field.removeUnitAddedListener(unit);
-                field.removeUnitRemovedListener(unit);
-                field.removeTerrainChangedListener(unit);
+        CostGraph costGraph = unit.getCostGraph();
+
+        if (costGraph != null && costGraph.getMap() == this) {
+            if (costGraph.detach() <= 0) {
+                this.costGraphs.remove(costGraph.getMovementClass());
             }
-        }
 
-        unit.hasGraph(false);
+            unit.setCostGraph(null);
+
+            if (unit.getPathfinder() != null) {
+                unit.getPathfinder().release(unit);
+            }
+        }
     }
 
     /**
@@ -180,8 +669,10 @@ public abstract class AbstractMap implements Serializable {
     public void setField(Coordinate coordinate, AbstractField abstractField) {
         if (this.hasPosition(coordinate)) {
             // remember the old reference and set the new one
-            AbstractField currentField = this.getField(coordinate);
-            this.fields[coordinate.getX()][coordinate.getY()] = abstractField;
+            int index = this.getIndex(coordinate);
+            AbstractField currentField = this.getStoredField(index);
+            this.storeField(index, abstractField);
+            this.fieldsReplaced();
 
             // tell the old field to delete the reference if there is one
             if (currentField != null
@@ -195,6 +686,23 @@ public abstract class AbstractMap implements Serializable {
                     && (abstractField.getPosition() == null || !abstractField.getPosition().equals(coordinate))) {
                 abstractField.setPosition(coordinate, this);
             }
+
+            // the units of a replaced field leave the map with it
+            if (this.unitIndex != null && currentField != abstractField) {
+                if (currentField != null) {
+                    for (AbstractUnit unit : currentField.getUnits()) {
+                        this.unitIndex.unitRemoved(unit, currentField);
+                    }
+                }
+
+                if (abstractField != null) {
+                    for (AbstractUnit unit : abstractField.getUnits()) {
+                        this.unitIndex.unitAdded(unit, abstractField);
+                    }
+                }
+            }
+
+            this.fieldChanged(index);
         }
     }
 
@@ -217,4 +725,163 @@ public abstract class AbstractMap implements Serializable {
     public void setGame(AbstractGame game) {
         this.game = game;
     }
+
+    /**
+     * Sets the terrain layer, which provides the terrain of every field
+     * without a terrain of its own ({@link AbstractField#getTerrain()}). The
+     * layer should be set before units are placed, since every cost graph
+     * has to evaluate all fields again.
+     *
+     * @param terrainLayer the terrain layer or null
+     */
+    public void setTerrainLayer(MappedTerrainLayer terrainLayer) {
+        if (terrainLayer != null
+                && (terrainLayer.getWidth() != this.width || terrainLayer.getHeight() != this.height)) {
+            throw new IllegalArgumentException("Illegal terrain layer size "
+                    + terrainLayer.getWidth() + "x" + terrainLayer.getHeight());
+        }
+
+        this.terrainLayer = terrainLayer;
+        this.terrainGrid = null;
+        this.wideTerrainGrid = null;
+        this.version++;
+
+        if (this.costGraphs != null && !this.costGraphs.isEmpty()) {
+            for (int index = 0; index < this.size; index++) {
+                this.fieldChanged(index);
+            }
+        }
+    }
+
+    /**
+     * Stores the field at the given index. This is the storage behind
+     * {@link #setField(Coordinate, AbstractField)}, which has checked the
+     * index and takes care of the field's position and listeners.
+     *
+     * @param index the index
+     * @param abstractField the abstract field or null
+     */
+    protected void storeField(int index, AbstractField abstractField) {
+        if (this.fields == null) {
+            this.fields = new AbstractField[this.size];
+        }
+
+        this.fields[index] = abstractField;
+    }
+
+    /**
+     * Stores the ordinal of the terrain at the given index in the terrain
+     * grid. The grid is widened to chars the first time an ordinal doesn't
+     * fit into a byte.
+     *
+     * @param index the index
+     */
+    private void storeTerrainOrdinal(int index) {
+        int ordinal = TerrainRegistry.getOrdinal(this.getTerrain(index));
+
+        if (this.terrainGrid != null && ordinal > 0xFF) {
+            this.wideTerrainGrid = new char[this.size];
+
+            for (int position = 0; position < this.size; position++) {
+                this.wideTerrainGrid[position] = (char) (this.terrainGrid[position] & 0xFF);
+            }
+
+            this.terrainGrid = null;
+        }
+
+        if (this.terrainGrid != null) {
+            this.terrainGrid[index] = (byte) ordinal;
+        } else {
+            this.wideTerrainGrid[index] = (char) ordinal;
+        }
+    }
+
+    /**
+     * Checks if the neighbor tables of the map mark the border positions in
+     * a bit set. Otherwise they check the coordinates of a position on every
+     * lookup, which costs no memory per position.
+     *
+     * @return true, if the border positions are stored
+     */
+    protected boolean storesNeighbors() {
+        return true;
+    }
+
+    /**
+     * The Class MapListener keeps the cost graphs, the unit index and the
+     * version of the map up to date. It is subscribed to the map's event bus
+     * instead of the map itself, so the callbacks aren't part of the map's
+     * API. As a {@link SynchronousListener} it is called on the publishing
+     * thread.
+     */
+    private final class MapListener implements FieldTerrainChangedListener, SynchronousListener,
+            UnitAddedToFieldListener, UnitPlayerChangedListener, UnitRemovedFromFieldListener {
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.FieldTerrainChangedListener#fieldTerrainChanged(
+	 * abstractgame.events.fieldevents.FieldTerrainChangedEvent)
+         */
+        @Override
+        public void fieldTerrainChanged(FieldTerrainChangedEvent event) {
+            if (event.getSource().getMap() == AbstractMap.this) {
+                AbstractMap.this.fieldChanged(event.getSource().getIndex());
+            }
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.UnitAddedToFieldListener#unitAddedToField(
+	 * abstractgame.events.fieldevents.UnitAddedToFieldEvent)
+         */
+        @Override
+        public void unitAddedToField(UnitAddedToFieldEvent event) {
+            if (event.getSource().getMap() == AbstractMap.this) {
+                if (AbstractMap.this.unitIndex != null) {
+                    AbstractMap.this.unitIndex.unitAdded(event.getUnit(), event.getSource());
+                }
+
+                AbstractMap.this.fieldOccupationChanged(event.getSource().getIndex());
+            }
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.UnitPlayerChangedListener#unitPlayerChanged(
+	 * abstractgame.events.unitevents.UnitPlayerChangedEvent)
+         */
+        @Override
+        public void unitPlayerChanged(UnitPlayerChangedEvent event) {
+            AbstractField position = event.getSource().getPosition();
+
+            // the unit may block other units now or stop blocking them
+            if (position != null && position.getMap() == AbstractMap.this) {
+                if (AbstractMap.this.unitIndex != null) {
+                    AbstractMap.this.unitIndex.unitPlayerChanged(event.getSource());
+                }
+
+                AbstractMap.this.fieldOccupationChanged(position.getIndex());
+            }
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.UnitRemovedFromFieldListener#unitRemovedFromField(
+	 * abstractgame.events.fieldevents.UnitRemovedFromFieldEvent)
+         */
+        @Override
+        public void unitRemovedFromField(UnitRemovedFromFieldEvent event) {
+            if (event.getSource().getMap() == AbstractMap.this) {
+                if (AbstractMap.this.unitIndex != null) {
+                    AbstractMap.this.unitIndex.unitRemoved(event.getUnit(), event.getSource());
+                }
+
+                AbstractMap.this.fieldOccupationChanged(event.getSource().getIndex());
+            }
+        }
+    }
 }
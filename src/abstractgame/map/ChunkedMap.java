@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.map;
+
+import java.io.Serializable;
+
+import nkutilities.Coordinate;
+
+/**
+ * The Class ChunkedMap is an {@link AbstractMap} for very large and sparse
+ * worlds. Its positions are grouped into square chunks, and a chunk's field
+ * array is only allocated when one of its fields is set or read for the
+ * first time. <br>
+ * A position whose field has never been set or read holds the default
+ * terrain, or the terrain of the map's {@link MappedTerrainLayer}, without
+ * any field object. {@link #getField(int)} creates the field
+ * ({@link #createField()}) on the first access, so every position of the map
+ * has a field just like on a fully populated map. The cost graphs read the
+ * terrain through {@link #getTerrain(int)}, so they don't create fields.
+ * Setting a position's field to null resets the position to a default field.
+ * <br>
+ * Chunks which only hold unchanged default fields can be dropped again with
+ * {@link #evictChunks()}. The neighbor tables of the map don't mark the
+ * border positions, see {@link NeighborTable}, and the map keeps no terrain
+ * grid, so no memory is spent per position apart from the cost graphs.
+ *
+ * @author Nils Kuttkat
+ */
+public abstract class ChunkedMap extends AbstractMap {
+
+    /**
+     * The default width and height of a chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 32;
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 6182734095571236408L;
+
+    /**
+     * The chunks in row-major order, null for chunks which aren't allocated.
+     */
+    private final Chunk[] chunks;
+
+    /**
+     * The number of allocated chunks.
+     */
+    private int chunkCount;
+
+    /**
+     * The width and height of a chunk.
+     */
+    private final int chunkSize;
+
+    /**
+     * The number of chunks per row.
+     */
+    private final int chunksPerRow;
+
+    /**
+     * The terrain of the positions without a field if the map has no
+     * terrain layer.
+     */
+    private final Enum<?> defaultTerrain;
+
+    /**
+     * Instantiates a new chunked map with the default chunk size.
+     *
+     * @param width the width
+     * @param height the height
+     * @param defaultTerrain the terrain of the positions without a field
+     */
+    public ChunkedMap(int width, int height, Enum<?> defaultTerrain) {
+        this(width, height, defaultTerrain, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Instantiates a new chunked map.
+     *
+     * @param width the width
+     * @param height the height
+     * @param defaultTerrain the terrain of the positions without a field
+     * @param chunkSize the width and height of a chunk
+     */
+    public ChunkedMap(int width, int height, Enum<?> defaultTerrain, int chunkSize) {
+        super(width, height);
+
+        if (defaultTerrain == null) {
+            throw new IllegalArgumentException("Illegal default terrain null");
+        }
+
+        if (chunkSize < 1 || chunkSize > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Illegal chunk size " + chunkSize);
+        }
+
+        this.defaultTerrain = defaultTerrain;
+        this.chunkSize = chunkSize;
+        this.chunksPerRow = (width + chunkSize - 1) / chunkSize;
+        this.chunks = new Chunk[this.chunksPerRow * ((height + chunkSize - 1) / chunkSize)];
+    }
+
+    /**
+     * Creates a new field of the map's topology (e.g. a {@link HexField}).
+     * The map gives it the default terrain and places it.
+     *
+     * @return the abstract field
+     */
+    protected abstract AbstractField createField();
+
+    /**
+     * Drops every chunk which only holds fields accepted by
+     * {@link #isEvictable(AbstractField)}. The map creates new fields when
+     * the positions are accessed again, so references to the old fields must
+     * not be kept.
+     *
+     * @return the number of dropped chunks
+     */
+    public int evictChunks() {
+        int evicted = 0;
+        boolean evictable;
+
+        for (int chunk = 0; chunk < this.chunks.length; chunk++) {
+            if (this.chunks[chunk] != null) {
+                evictable = true;
+
+                for (AbstractField field : this.chunks[chunk].fields) {
+                    if (field != null && !this.isEvictable(field)) {
+                        evictable = false;
+                        break;
+                    }
+                }
+
+                if (evictable) {
+                    this.chunks[chunk] = null;
+                    this.chunkCount--;
+                    evicted++;
+                }
+            }
+        }
+
+        if (evicted > 0) {
+            this.fieldsReplaced();
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Gets the number of allocated chunks.
+     *
+     * @return the chunk count
+     */
+    public int getChunkCount() {
+        return this.chunkCount;
+    }
+
+    /**
+     * Gets the index of the chunk holding the field with the given index.
+     *
+     * @param index the index
+     * @return the index of the chunk
+     */
+    private int getChunkIndex(int index) {
+        return (this.getY(index) / this.chunkSize) * this.chunksPerRow + this.getX(index) / this.chunkSize;
+    }
+
+    /**
+     * Gets the width and height of a chunk.
+     *
+     * @return the chunk size
+     */
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * Gets the terrain of the positions without a field if the map has no
+     * terrain layer.
+     *
+     * @return the default terrain
+     */
+    public Enum<?> getDefaultTerrain() {
+        return this.defaultTerrain;
+    }
+
+    /**
+     * Gets the field with the given index. A position without a field gets a
+     * new field with the default terrain, or no terrain of its own if the map
+     * has a terrain layer, which doesn't change the map's version.
+     *
+     * @param index the index
+     * @return the field or null if the index is outside of the map
+     */
+    @Override
+    public AbstractField getField(int index) {
+        AbstractField field = super.getField(index);
+
+        if (field == null && index >= 0 && index < this.getSize()) {
+            field = this.createField();
+            field.setTerrain(this.getTerrainLayer() == null ? this.defaultTerrain : null);
+
+            // the field is stored first, so placing it doesn't set it again
+            this.storeField(index, field);
+            field.setPosition(new Coordinate(this.getX(index), this.getY(index)), this);
+        }
+
+        return field;
+    }
+
+    /**
+     * Gets the position of the field with the given index in its chunk.
+     *
+     * @param index the index
+     * @return the position
+     */
+    private int getPositionInChunk(int index) {
+        return (this.getY(index) % this.chunkSize) * this.chunkSize + this.getX(index) % this.chunkSize;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.map.AbstractMap#getStoredField(int)
+     */
+    @Override
+    protected AbstractField getStoredField(int index) {
+        Chunk chunk = this.chunks[this.getChunkIndex(index)];
+
+        return chunk == null ? null : chunk.fields[this.getPositionInChunk(index)];
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.map.AbstractMap#getTerrain(int)
+     */
+    @Override
+    public Enum<?> getTerrain(int index) {
+        Enum<?> terrain = null;
+        AbstractField field;
+
+        if (index >= 0 && index < this.getSize()) {
+            field = this.getStoredField(index);
+
+            if (field != null) {
+                terrain = field.getTerrain();
+            } else if (this.getTerrainLayer() != null) {
+                terrain = this.getTerrainLayer().getTerrain(index);
+            } else {
+                terrain = this.defaultTerrain;
+            }
+        }
+
+        return terrain;
+    }
+
+    /**
+     * Gets the {@link TerrainRegistry} ordinal of the terrain at the given
+     * index. A chunked map keeps no terrain grid: without a terrain layer the
+     * ordinal is looked up from the terrain, with a layer it is translated
+     * like on every map ({@link AbstractMap#getTerrainOrdinal(int)}).
+     *
+     * @param index the index
+     * @return the ordinal
+     */
+    @Override
+    public int getTerrainOrdinal(int index) {
+        return this.getTerrainLayer() == null ? TerrainRegistry.getOrdinal(this.getTerrain(index))
+                : super.getTerrainOrdinal(index);
+    }
+
+    /**
+     * Checks if the field may be dropped together with its chunk. By default
+     * this is every field which still has the terrain of a position without
+     * a field and neither units nor a view, nor any listener or subscription
+     * to its events, which the new field created in its place wouldn't
+     * have.
+     *
+     * @param abstractField the abstract field
+     * @return true, if is evictable
+     */
+    protected boolean isEvictable(AbstractField abstractField) {
+        Enum<?> terrain = this.getTerrainLayer() == null ? this.defaultTerrain
+                : this.getTerrainLayer().getTerrain(abstractField.getIndex());
+
+        return abstractField.getTerrain() == terrain && abstractField.getUnits().isEmpty()
+                && abstractField.getView() == null && !abstractField.hasListeners()
+                && !this.getEventBus().hasSourceSubscribers(abstractField);
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.map.AbstractMap#storeField(int, abstractgame.map.AbstractField)
+     */
+    @Override
+    protected void storeField(int index, AbstractField abstractField) {
+        int chunkIndex = this.getChunkIndex(index);
+
+        if (this.chunks[chunkIndex] == null && abstractField != null) {
+            this.chunks[chunkIndex] = new Chunk(this.chunkSize * this.chunkSize);
+            this.chunkCount++;
+        }
+
+        if (this.chunks[chunkIndex] != null) {
+            this.chunks[chunkIndex].fields[this.getPositionInChunk(index)] = abstractField;
+        }
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.map.AbstractMap#storesNeighbors()
+     */
+    @Override
+    protected boolean storesNeighbors() {
+        return false;
+    }
+
+    /**
+     * The Class Chunk holds the fields of a square part of the map.
+     */
+    private static final class Chunk implements Serializable {
+
+        /**
+         * The Constant serialVersionUID.
+         */
+        private static final long serialVersionUID = -3320961784411170926L;
+
+        /**
+         * The fields in row-major order, null for positions without a field.
+         */
+        private final AbstractField[] fields;
+
+        /**
+         * Instantiates a new chunk.
+         *
+         * @param size the number of positions
+         */
+        Chunk(int size) {
+            this.fields = new AbstractField[size];
+        }
+    }
+}
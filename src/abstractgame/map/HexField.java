@@ -39,6 +39,50 @@ public class HexField extends AbstractField {
      */
     private static final long serialVersionUID = -6326943570564475489L;
 
+    /**
+     * The delta x for every direction.
+     */
+    private static final int[] DELTA_X = {0, 1, 1, 0, -1, -1};
+
+    /**
+     * The delta y for every direction if x is even.
+     */
+    private static final int[] DELTA_Y_EVEN = {1, 0, -1, -1, -1, 0};
+
+    /**
+     * The delta y for every direction if x is uneven.
+     */
+    private static final int[] DELTA_Y_UNEVEN = {1, 1, 0, -1, 0, 1};
+
+    /*
+	 * (non-Javadoc)
+	 * 
+	 * @see abstractgame.map.AbstractField#getDeltaX(int, int, int)
+     */
+    @Override
+    protected int getDeltaX(int x, int y, int direction) {
+        return DELTA_X[direction];
+    }
+
+    /*
+	 * (non-Javadoc)
+	 * 
+	 * @see abstractgame.map.AbstractField#getDeltaY(int, int, int)
+     */
+    @Override
+    protected int getDeltaY(int x, int y, int direction) {
+        int deltaY;
+
+        // a move in x-direction potentially is a move in y-direction too
+        if (x % 2 == 0) {
+            deltaY = DELTA_Y_EVEN[direction];
+        } else {
+            deltaY = DELTA_Y_UNEVEN[direction];
+        }
+
+        return deltaY;
+    }
+
     /*
 	 * (non-Javadoc)
 	 * 
@@ -52,16 +96,23 @@ public class HexField extends AbstractField {
     /*
 	 * (non-Javadoc)
 	 * 
-	 * @see util.game.AbstractField#getDistance(util.game.AbstractField)
+	 * @see abstractgame.map.AbstractField#getDistance(abstractgame.map.AbstractField)
      */
     @Override
     public double getDistance(AbstractField abstractField) {
-        double deltaX, deltaY, x1, x2, y1, y2, yPotentially, distance;
+        return this.getDistance(this.getPosition().getX(), this.getPosition().getY(),
+                abstractField.getPosition().getX(), abstractField.getPosition().getY());
+    }
+
+    /*
+	 * (non-Javadoc)
+	 * 
+	 * @see abstractgame.map.AbstractField#getDistance(int, int, int, int)
+     */
+    @Override
+    protected double getDistance(int x1, int y1, int x2, int y2) {
+        double deltaX, deltaY, yPotentially, distance;
 
-        x1 = this.getPosition().getX();
-        y1 = this.getPosition().getY();
-        x2 = abstractField.getPosition().getX();
-        y2 = abstractField.getPosition().getY();
         deltaX = Math.abs(x2 - x1);
         deltaY = Math.abs(y2 - y1);
         yPotentially = 0;
@@ -108,60 +159,10 @@ public class HexField extends AbstractField {
     /*
 	 * (non-Javadoc)
 	 * 
-	 * @see util.game.AbstractField#getNeighbor(int)
+	 * @see abstractgame.map.AbstractField#getNeighbor(int)
      */
     @Override
     public AbstractField getNeighbor(int direction) {
-        int x1, x2, y1, y2;
-
-        x1 = this.getPosition().getX();
-        y1 = this.getPosition().getY();
-        x2 = -1;
-        y2 = -1;
-
-        switch (direction) {
-            case 0:
-                y2 = y1 + 1;
-                x2 = x1;
-                break;
-            case 1:
-                if (x1 % 2 == 0) {
-                    y2 = y1;
-                } else {
-                    y2 = y1 + 1;
-                }
-                x2 = x1 + 1;
-                break;
-            case 2:
-                if (x1 % 2 == 0) {
-                    y2 = y1 - 1;
-                } else {
-                    y2 = y1;
-                }
-                x2 = x1 + 1;
-                break;
-            case 3:
-                y2 = y1 - 1;
-                x2 = x1;
-                break;
-            case 4:
-                if (x1 % 2 == 0) {
-                    y2 = y1 - 1;
-                } else {
-                    y2 = y1;
-                }
-                x2 = x1 - 1;
-                break;
-            case 5:
-                if (x1 % 2 == 0) {
-                    y2 = y1;
-                } else {
-                    y2 = y1 + 1;
-                }
-                x2 = x1 - 1;
-                break;
-        }
-
-        return this.getMap().getField(x2, y2);
+        return this.getTableNeighbor(direction);
     }
 }
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.map;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The Class MappedTerrainLayer holds the static terrain of a map in a memory
+ * mapped file, see {@link AbstractMap#setTerrainLayer(MappedTerrainLayer)}.
+ * Every position takes one byte, or two if the terrain enum has more than 255
+ * constants, holding the terrain's ordinal + 1, so 0 means no terrain. <br>
+ * Opening a layer maps the file without reading it, the operating system
+ * loads the pages on the first access and shares them between all processes
+ * mapping the same file read-only. Files larger than 2 GB are mapped in
+ * several segments. <br>
+ * The file starts with a header of four ints: a magic number, the width,
+ * the height and the number of constants of the terrain enum. The positions
+ * follow in row-major order like the indices of an {@link AbstractMap}.
+ *
+ * @author Nils Kuttkat
+ */
+public class MappedTerrainLayer {
+
+    /**
+     * The size of the header in bytes.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * The magic number at the start of a terrain layer file ("AGTL").
+     */
+    private static final int MAGIC = 0x4147544C;
+
+    /**
+     * The number of bits of the offset within a segment.
+     */
+    private static final int SEGMENT_BITS = 30;
+
+    /**
+     * The mask of the offset within a segment.
+     */
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    /**
+     * The bytes per position, 1 or 2.
+     */
+    private final int bytesPerPosition;
+
+    /**
+     * The height.
+     */
+    private final int height;
+
+    /**
+     * The {@link TerrainRegistry} ordinals by stored value, built on demand.
+     */
+    private volatile int[] ordinals;
+
+    /**
+     * The mapped segments of the file, each {@code 1 << SEGMENT_BITS} bytes
+     * except the last one.
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * The terrains by ordinal.
+     */
+    private final Enum<?>[] terrains;
+
+    /**
+     * The width.
+     */
+    private final int width;
+
+    /**
+     * True if the layer can be written.
+     */
+    private final boolean writable;
+
+    /**
+     * Opens the terrain layer stored in the given file.
+     *
+     * @param <E> the type of the terrain
+     * @param file the file
+     * @param terrainClass the class of the terrain enum the file was written
+     * for
+     * @param writable true to map the file for writing, otherwise the pages
+     * are shared with every other process mapping the file
+     * @throws IOException if the file can't be read or isn't a terrain layer
+     * for the terrain enum
+     */
+    public <E extends Enum<E>> MappedTerrainLayer(File file, Class<E> terrainClass, boolean writable)
+            throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, writable ? "rw" : "r");
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        this.terrains = terrainClass.getEnumConstants();
+        this.writable = writable;
+
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+
+            header.flip();
+
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Illegal terrain layer " + file);
+            }
+
+            this.width = header.getInt();
+            this.height = header.getInt();
+            this.bytesPerPosition = getBytesPerPosition(this.terrains.length);
+
+            if (this.width < 0 || this.height < 0 || (long) this.width * this.height > Integer.MAX_VALUE
+                    || header.getInt() != this.terrains.length
+                    || channel.size() < getFileSize(this.width, this.height, this.bytesPerPosition)) {
+                throw new IOException("Illegal terrain layer " + file + " for " + terrainClass.getName());
+            }
+
+            this.segments = map(channel, getFileSize(this.width, this.height, this.bytesPerPosition), writable);
+        } finally {
+            // the mapping stays valid after the file is closed
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Creates a new terrain layer file, in which no position has a terrain
+     * yet, and opens it for writing.
+     *
+     * @param <E> the type of the terrain
+     * @param file the file, which is overwritten if it exists
+     * @param width the width
+     * @param height the height
+     * @param terrainClass the class of the terrain enum
+     * @return the writable terrain layer
+     * @throws IOException if the file can't be written
+     */
+    public static <E extends Enum<E>> MappedTerrainLayer create(File file, int width, int height,
+            Class<E> terrainClass) throws IOException {
+        int terrains = terrainClass.getEnumConstants().length;
+        int bytesPerPosition = getBytesPerPosition(terrains);
+        RandomAccessFile randomAccessFile;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        if (width < 0 || height < 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Illegal map size " + width + "x" + height);
+        }
+
+        header.putInt(MAGIC).putInt(width).putInt(height).putInt(terrains).flip();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+
+        try {
+            // the file is extended with zeros, i.e. without terrain
+            randomAccessFile.setLength(0);
+            randomAccessFile.setLength(getFileSize(width, height, bytesPerPosition));
+            randomAccessFile.getChannel().write(header, 0);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        return new MappedTerrainLayer(file, terrainClass, true);
+    }
+
+    /**
+     * Writes the changes of a writable layer to the file.
+     */
+    public void force() {
+        if (this.writable) {
+            for (MappedByteBuffer segment : this.segments) {
+                segment.force();
+            }
+        }
+    }
+
+    /**
+     * Gets the bytes per position needed for the given number of terrains.
+     *
+     * @param terrains the number of terrains
+     * @return the bytes per position
+     */
+    private static int getBytesPerPosition(int terrains) {
+        // the ordinal + 1 must fit, 0 means no terrain
+        if (terrains > 0xFFFF) {
+            throw new IllegalArgumentException("Illegal number of terrains " + terrains);
+        }
+
+        return terrains <= 0xFF ? 1 : 2;
+    }
+
+    /**
+     * Gets the size of a terrain layer file.
+     *
+     * @param width the width
+     * @param height the height
+     * @param bytesPerPosition the bytes per position
+     * @return the size in bytes
+     */
+    private static long getFileSize(int width, int height, int bytesPerPosition) {
+        return HEADER_SIZE + (long) width * height * bytesPerPosition;
+    }
+
+    /**
+     * Gets the height.
+     *
+     * @return the height
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Gets the number of positions (width * height).
+     *
+     * @return the size
+     */
+    public int getSize() {
+        return this.width * this.height;
+    }
+
+    /**
+     * Gets the terrain at the given index.
+     *
+     * @param index the index
+     * @return the terrain or null if the position has no terrain
+     */
+    public Enum<?> getTerrain(int index) {
+        int value = this.getValue(index);
+
+        return value == 0 || value > this.terrains.length ? null : this.terrains[value - 1];
+    }
+
+    /**
+     * Gets the {@link TerrainRegistry} ordinal of the terrain at the given
+     * index. The stored values are translated through a table, which
+     * registers all terrains of the layer's enum the first time it is asked
+     * for.
+     *
+     * @param index the index
+     * @return the ordinal or {@link TerrainRegistry#NO_TERRAIN} if the
+     * position has no terrain
+     */
+    public int getTerrainOrdinal(int index) {
+        int[] table = this.ordinals;
+        int value = this.getValue(index);
+
+        if (table == null) {
+            table = new int[this.terrains.length + 1];
+
+            for (int terrain = 0; terrain < this.terrains.length; terrain++) {
+                table[terrain + 1] = TerrainRegistry.getOrdinal(this.terrains[terrain]);
+            }
+
+            this.ordinals = table;
+        }
+
+        return value < table.length ? table[value] : TerrainRegistry.NO_TERRAIN;
+    }
+
+    /**
+     * Gets the value stored at the given index, the terrain's ordinal + 1.
+     *
+     * @param index the index
+     * @return the value
+     */
+    private int getValue(int index) {
+        long position = HEADER_SIZE + (long) index * this.bytesPerPosition;
+        MappedByteBuffer segment = this.segments[(int) (position >>> SEGMENT_BITS)];
+        int value;
+
+        if (this.bytesPerPosition == 1) {
+            value = segment.get((int) (position & SEGMENT_MASK)) & 0xFF;
+        } else {
+            value = segment.getShort((int) (position & SEGMENT_MASK)) & 0xFFFF;
+        }
+
+        return value;
+    }
+
+    /**
+     * Gets the width.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Checks if the layer can be written.
+     *
+     * @return true, if is writable
+     */
+    public boolean isWritable() {
+        return this.writable;
+    }
+
+    /**
+     * Maps the file in segments.
+     *
+     * @param channel the channel
+     * @param size the size of the file
+     * @param writable true to map the file for writing
+     * @return the segments
+     * @throws IOException if the file can't be mapped
+     */
+    private static MappedByteBuffer[] map(FileChannel channel, long size, boolean writable) throws IOException {
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+        long start;
+
+        for (int segment = 0; segment < segments.length; segment++) {
+            start = (long) segment << SEGMENT_BITS;
+            segments[segment] = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    start, Math.min(SEGMENT_MASK + 1, size - start));
+        }
+
+        return segments;
+    }
+
+    /**
+     * Sets the terrain at the given index. The map showing the layer isn't
+     * told about the change, so the layer should be written before it is
+     * used by a map.
+     *
+     * @param index the index
+     * @param terrain the terrain or null for no terrain
+     */
+    public void setTerrain(int index, Enum<?> terrain) {
+        long position = HEADER_SIZE + (long) index * this.bytesPerPosition;
+        MappedByteBuffer segment = this.segments[(int) (position >>> SEGMENT_BITS)];
+        int value = 0;
+
+        if (!this.writable) {
+            throw new IllegalStateException("Illegal write to a read-only terrain layer");
+        }
+
+        if (terrain != null) {
+            if (terrain.ordinal() >= this.terrains.length || this.terrains[terrain.ordinal()] != terrain) {
+                throw new IllegalArgumentException("Illegal terrain " + terrain);
+            }
+
+            value = terrain.ordinal() + 1;
+        }
+
+        if (this.bytesPerPosition == 1) {
+            segment.put((int) (position & SEGMENT_MASK), (byte) value);
+        } else {
+            segment.putShort((int) (position & SEGMENT_MASK), (short) value);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.map;
+
+/**
+ * The Class NeighborTable holds the neighborhood of every position of an
+ * {@link AbstractMap} for one field topology (hex, square, octagon...). <br>
+ * The table is built once per map and topology. It stores the offset of the
+ * neighbor's index in every direction for each parity of the coordinates,
+ * e.g. the neighbors of a hex field depend on whether its x coordinate is
+ * even, so it costs at most {@code 4 * directions} ints no matter how large
+ * the map is. The neighbor of an inner position is its index plus the offset,
+ * without any allocation. <br>
+ * Positions with at least one neighbor off the map are border positions
+ * ({@link #isBorder(int)}), their neighbors are {@link #EDGE} in the
+ * directions which would leave the map. The table keeps a byte per position
+ * with a bit for every such direction and, above them, the parity of the
+ * position if the neighbors depend on it, so a lookup never has to compute the
+ * coordinates of a position. Maps which must not spend any memory per
+ * position, like a {@link ChunkedMap}, and topologies whose directions and
+ * parity don't fit into {@link #MAX_STORED_DIRECTIONS} bits check the
+ * coordinates of the border positions instead. <br>
+ * Loops over the neighbors of inner positions may skip the {@link #EDGE}
+ * checks, {@link #getNeighbors(int, int[])} copies only the neighbors on the
+ * map.
+ *
+ * @author Nils Kuttkat
+ */
+public final class NeighborTable {
+
+    /**
+     * The sentinel for neighbors outside of the map.
+     */
+    public static final int EDGE = AbstractMap.NO_INDEX;
+
+    /**
+     * The largest number of directions whose edges fit into the byte of a
+     * position, two less if the neighbors depend on the parity.
+     */
+    public static final int MAX_STORED_DIRECTIONS = 8;
+
+    /**
+     * The number of parities of the coordinates (x even or odd, y even or
+     * odd).
+     */
+    private static final int PARITIES = 4;
+
+    /**
+     * The delta x for every parity and direction.
+     */
+    private final int[] deltaX;
+
+    /**
+     * The delta y for every parity and direction.
+     */
+    private final int[] deltaY;
+
+    /**
+     * The number of directions.
+     */
+    private final int directions;
+
+    /**
+     * The directions leading off the map of every position, bit n for
+     * direction n, followed by the parity of the position, null if the table
+     * checks the coordinates instead.
+     */
+    private final byte[] edges;
+
+    /**
+     * The height of the map.
+     */
+    private final int height;
+
+    /**
+     * The offsets of the neighbors' indices for every parity and direction.
+     */
+    private final int[] offsets;
+
+    /**
+     * The parity bits the neighbors depend on, 1 for the parity of x and 2
+     * for the parity of y.
+     */
+    private final int parityMask;
+
+    /**
+     * The field which provides the topology.
+     */
+    private final AbstractField prototype;
+
+    /**
+     * The width of the map.
+     */
+    private final int width;
+
+    /**
+     * Instantiates a new neighbor table. The neighbors of the topology may
+     * depend on the parity of the coordinates only.
+     *
+     * @param map the map
+     * @param prototype the field which provides the topology
+     * @param stored false to check the coordinates of a position instead of
+     * storing the directions leading off the map
+     */
+    NeighborTable(AbstractMap map, AbstractField prototype, boolean stored) {
+        int parity, parityMask = 0, margin = 0;
+
+        this.directions = prototype.getDirections();
+        this.prototype = prototype;
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.deltaX = new int[PARITIES * this.directions];
+        this.deltaY = new int[PARITIES * this.directions];
+        this.offsets = new int[PARITIES * this.directions];
+
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                parity = (x & 1) | (y & 1) << 1;
+
+                for (int direction = 0; direction < this.directions; direction++) {
+                    if (x < 2 && y < 2) {
+                        this.deltaX[parity * this.directions + direction] = prototype.getDeltaX(x, y, direction);
+                        this.deltaY[parity * this.directions + direction] = prototype.getDeltaY(x, y, direction);
+                    } else if (this.deltaX[parity * this.directions + direction] != prototype.getDeltaX(x, y, direction)
+                            || this.deltaY[parity * this.directions + direction] != prototype.getDeltaY(x, y, direction)) {
+                        throw new IllegalArgumentException("Illegal topology of " + prototype.getClass().getName()
+                                + ", the neighbors may only depend on the parity of the coordinates");
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < this.offsets.length; i++) {
+            parity = i / this.directions;
+            this.offsets[i] = this.deltaY[i] * this.width + this.deltaX[i];
+            margin = Math.max(margin, Math.max(Math.abs(this.deltaX[i]), Math.abs(this.deltaY[i])));
+
+            // the parity matters if the step differs from the one of the
+            // other parity of x or y
+            if (!this.isSameStep(i, i + ((parity ^ 1) - parity) * this.directions)) {
+                parityMask |= 1;
+            }
+
+            if (!this.isSameStep(i, i + ((parity ^ 2) - parity) * this.directions)) {
+                parityMask |= 2;
+            }
+        }
+
+        this.parityMask = parityMask;
+
+        if (stored && this.directions + (parityMask == 0 ? 0 : 2) <= MAX_STORED_DIRECTIONS) {
+            this.edges = new byte[map.getSize()];
+
+            // only the positions within the largest step of the edges can
+            // have neighbors off the map, the inner ones only need their
+            // parity
+            for (int y = 0; y < this.height; y++) {
+                for (int x = 0; x < this.width; x++) {
+                    if (parityMask == 0 && y >= margin && y < this.height - margin && x == margin) {
+                        x = Math.max(x, this.width - margin);
+                    }
+
+                    this.edges[y * this.width + x] = (byte) (this.computeEdges(x, y)
+                            | (long) this.getParity(x, y) << this.directions);
+                }
+            }
+        } else {
+            this.edges = null;
+        }
+    }
+
+    /**
+     * Computes the directions leading off the map from the position.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the directions, bit n for direction n
+     */
+    private long computeEdges(int x, int y) {
+        long edges = 0;
+        int start = this.getParity(x, y) * this.directions;
+
+        for (int direction = 0; direction < this.directions; direction++) {
+            if (!this.contains(x + this.deltaX[start + direction], y + this.deltaY[start + direction])) {
+                edges |= 1L << direction;
+            }
+        }
+
+        return edges;
+    }
+
+    /**
+     * Computes the neighbor of index in the given direction from its
+     * coordinates.
+     *
+     * @param index the index
+     * @param direction the direction
+     * @return the index of the neighbor or {@link #EDGE}
+     */
+    private int computeNeighbor(int index, int direction) {
+        int y = index / this.width, x = index - y * this.width, neighbor = EDGE;
+        int i = this.getParity(x, y) * this.directions + direction;
+
+        if (this.contains(x + this.deltaX[i], y + this.deltaY[i])) {
+            neighbor = index + this.offsets[i];
+        }
+
+        return neighbor;
+    }
+
+    /**
+     * Checks if the position lies on the map.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return true, if the map contains the position
+     */
+    private boolean contains(int x, int y) {
+        return x >= 0 && x < this.width && y >= 0 && y < this.height;
+    }
+
+    /**
+     * Gets the direction in which neighbor lies seen from index.
+     *
+     * @param index the index
+     * @param neighbor the index of the neighbor
+     * @return the direction or Integer.MIN_VALUE if neighbor isn't a neighbor
+     */
+    public int getDirection(int index, int neighbor) {
+        if (neighbor != EDGE) {
+            for (int direction = 0; direction < this.directions; direction++) {
+                if (this.getNeighbor(index, direction) == neighbor) {
+                    return direction;
+                }
+            }
+        }
+
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * Gets the number of directions.
+     *
+     * @return the directions
+     */
+    public int getDirections() {
+        return this.directions;
+    }
+
+    /**
+     * Gets the distance between two positions using the topology's distance
+     * function.
+     *
+     * @param from the index of the first position
+     * @param to the index of the second position
+     * @return the distance
+     */
+    public double getDistance(int from, int to) {
+        return this.prototype.getDistance(from % this.width, from / this.width,
+                to % this.width, to / this.width);
+    }
+
+    /**
+     * Gets the directions leading off the map from index.
+     *
+     * @param index the index
+     * @return the directions, bit n for direction n
+     */
+    private long getEdges(int index) {
+        long edges;
+
+        if (this.edges != null) {
+            edges = this.edges[index] & (1 << this.directions) - 1;
+        } else {
+            edges = this.computeEdges(index % this.width, index / this.width);
+        }
+
+        return edges;
+    }
+
+    /**
+     * Gets the class of the fields with this table's topology.
+     *
+     * @return the field class
+     */
+    Class<?> getFieldClass() {
+        return this.prototype.getClass();
+    }
+
+    /**
+     * Gets the neighbor of index in the given direction.
+     *
+     * @param index the index
+     * @param direction the direction
+     * @return the index of the neighbor or {@link #EDGE}
+     */
+    public int getNeighbor(int index, int direction) {
+        int neighbor, edges;
+
+        if (this.edges == null) {
+            neighbor = this.computeNeighbor(index, direction);
+        } else {
+            edges = this.edges[index] & 0xFF;
+            neighbor = (edges & 1 << direction) != 0 ? EDGE
+                    : index + this.offsets[(edges >>> this.directions) * this.directions + direction];
+        }
+
+        return neighbor;
+    }
+
+    /**
+     * Gets the number of neighbors of index on the map.
+     *
+     * @param index the index
+     * @return the number of neighbors
+     */
+    public int getNeighborCount(int index) {
+        return this.directions - Long.bitCount(this.getEdges(index));
+    }
+
+    /**
+     * Copies the indices of the neighbors of index on the map into the given
+     * array, in the order of their directions. Inner positions add the
+     * offsets without any checks, border positions skip the directions
+     * leading off the map.
+     *
+     * @param index the index
+     * @param neighbors the array, at least {@link #getDirections()} long
+     * @return the number of neighbors copied
+     */
+    public int getNeighbors(int index, int[] neighbors) {
+        long edges = this.getEdges(index);
+        int count = 0, start = this.getParity(index) * this.directions;
+
+        if (edges == 0) {
+            for (; count < this.directions; count++) {
+                neighbors[count] = index + this.offsets[start + count];
+            }
+        } else {
+            for (int direction = 0; direction < this.directions; direction++) {
+                if ((edges & 1L << direction) == 0) {
+                    neighbors[count++] = index + this.offsets[start + direction];
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the parity of the position with the given index, as far as the
+     * neighbors depend on it. A stored table reads it from the byte of the
+     * position.
+     *
+     * @param index the index
+     * @return the parity
+     */
+    private int getParity(int index) {
+        int parity = 0, y;
+
+        if (this.edges != null) {
+            parity = (this.edges[index] & 0xFF) >>> this.directions;
+        } else if (this.parityMask == 1 && (this.width & 1) == 0) {
+            // the parity of x is the parity of the index on even widths
+            parity = index & 1;
+        } else if (this.parityMask != 0) {
+            y = index / this.width;
+            parity = this.getParity(index - y * this.width, y);
+        }
+
+        return parity;
+    }
+
+    /**
+     * Gets the parity of the position, as far as the neighbors depend on it.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return the parity
+     */
+    private int getParity(int x, int y) {
+        return ((x & 1) | (y & 1) << 1) & this.parityMask;
+    }
+
+    /**
+     * Checks if index lies on the border of the map, i.e. at least one of
+     * its neighbors is off the map.
+     *
+     * @param index the index
+     * @return true, if is border
+     */
+    public boolean isBorder(int index) {
+        return this.getEdges(index) != 0;
+    }
+
+    /**
+     * Checks if the two positions are neighbors.
+     *
+     * @param index the index
+     * @param other the index of the other position
+     * @return true, if is neighbor
+     */
+    public boolean isNeighbor(int index, int other) {
+        return this.getDirection(index, other) != Integer.MIN_VALUE;
+    }
+
+    /**
+     * Checks if two entries of the deltas describe the same step.
+     *
+     * @param i the first entry
+     * @param j the second entry
+     * @return true, if is same step
+     */
+    private boolean isSameStep(int i, int j) {
+        return this.deltaX[i] == this.deltaX[j] && this.deltaY[i] == this.deltaY[j];
+    }
+
+    /**
+     * Checks if the table stores the directions leading off the map or checks
+     * the coordinates of the border positions.
+     *
+     * @return true, if the edges are stored
+     */
+    public boolean isStored() {
+        return this.edges != null;
+    }
+}
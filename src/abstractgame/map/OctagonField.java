@@ -36,6 +36,36 @@ public class OctagonField extends AbstractField {
      */
     private static final long serialVersionUID = -8617192801284851474L;
 
+    /**
+     * The delta x for every direction.
+     */
+    private static final int[] DELTA_X = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    /**
+     * The delta y for every direction.
+     */
+    private static final int[] DELTA_Y = {1, 1, 0, -1, -1, -1, 0, 1};
+
+    /*
+	 * (non-Javadoc)
+	 * 
+	 * @see abstractgame.map.AbstractField#getDeltaX(int, int, int)
+     */
+    @Override
+    protected int getDeltaX(int x, int y, int direction) {
+        return DELTA_X[direction];
+    }
+
+    /*
+	 * (non-Javadoc)
+	 * 
+	 * @see abstractgame.map.AbstractField#getDeltaY(int, int, int)
+     */
+    @Override
+    protected int getDeltaY(int x, int y, int direction) {
+        return DELTA_Y[direction];
+    }
+
     /*
 	 * (non-Javadoc)
 	 * 
@@ -49,15 +79,26 @@ public class OctagonField extends AbstractField {
     /*
 	 * (non-Javadoc)
 	 * 
-	 * @see util.game.AbstractField#getDistance(util.game.AbstractField)
+	 * @see abstractgame.map.AbstractField#getDistance(abstractgame.map.AbstractField)
      */
     @Override
-    public double getDistance(AbstractField af) {
+    public double getDistance(AbstractField abstractField) {
+        return this.getDistance(this.getPosition().getX(), this.getPosition().getY(),
+                abstractField.getPosition().getX(), abstractField.getPosition().getY());
+    }
+
+    /*
+	 * (non-Javadoc)
+	 * 
+	 * @see abstractgame.map.AbstractField#getDistance(int, int, int, int)
+     */
+    @Override
+    protected double getDistance(int x1, int y1, int x2, int y2) {
         int deltaX, deltaY;
         double distance;
 
-        deltaX = Math.abs(this.getPosition().getX() - af.getPosition().getX());
-        deltaY = Math.abs(this.getPosition().getY() - af.getPosition().getY());
+        deltaX = Math.abs(x1 - x2);
+        deltaY = Math.abs(y1 - y2);
 
         if (deltaX >= deltaY) {
             distance = Math.abs(deltaX - deltaY) + (Math.sqrt(2) * deltaY);
@@ -71,39 +112,10 @@ public class OctagonField extends AbstractField {
     /*
 	 * (non-Javadoc)
 	 * 
-	 * @see util.game.AbstractField#getNeighbor(int)
+	 * @see abstractgame.map.AbstractField#getNeighbor(int)
      */
     @Override
     public AbstractField getNeighbor(int direction) {
-        AbstractField neighbor = null;
-
-        switch (direction) {
-            case 0:
-                neighbor = this.getMap().getField(this.getPosition().translate(0, 1));
-                break;
-            case 1:
-                neighbor = this.getMap().getField(this.getPosition().translate(1, 1));
-                break;
-            case 2:
-                neighbor = this.getMap().getField(this.getPosition().translate(1, 0));
-                break;
-            case 3:
-                neighbor = this.getMap().getField(this.getPosition().translate(1, -1));
-                break;
-            case 4:
-                neighbor = this.getMap().getField(this.getPosition().translate(0, -1));
-                break;
-            case 5:
-                neighbor = this.getMap().getField(this.getPosition().translate(-1, -1));
-                break;
-            case 6:
-                neighbor = this.getMap().getField(this.getPosition().translate(-1, 0));
-                break;
-            case 7:
-                neighbor = this.getMap().getField(this.getPosition().translate(-1, 1));
-                break;
-        }
-
-        return neighbor;
+        return this.getTableNeighbor(direction);
     }
 }
@@ -36,6 +36,36 @@ public class SquareField extends AbstractField {
      */
     private static final long serialVersionUID = -641946286682753472L;
 
+    /**
+     * The delta x for every direction.
+     */
+    private static final int[] DELTA_X = {0, 1, 0, -1};
+
+    /**
+     * The delta y for every direction.
+     */
+    private static final int[] DELTA_Y = {1, 0, -1, 0};
+
+    /*
+	 * (non-Javadoc)
+	 * 
+	 * @see abstractgame.map.AbstractField#getDeltaX(int, int, int)
+     */
+    @Override
+    protected int getDeltaX(int x, int y, int direction) {
+        return DELTA_X[direction];
+    }
+
+    /*
+	 * (non-Javadoc)
+	 * 
+	 * @see abstractgame.map.AbstractField#getDeltaY(int, int, int)
+     */
+    @Override
+    protected int getDeltaY(int x, int y, int direction) {
+        return DELTA_Y[direction];
+    }
+
     /*
 	 * (non-Javadoc)
 	 * 
@@ -49,40 +79,34 @@ public class SquareField extends AbstractField {
     /*
 	 * (non-Javadoc)
 	 * 
-	 * @see util.game.AbstractField#getDistance(util.game.AbstractField)
+	 * @see abstractgame.map.AbstractField#getDistance(abstractgame.map.AbstractField)
      */
     @Override
     public double getDistance(AbstractField abstractField) {
+        return this.getDistance(this.getPosition().getX(), this.getPosition().getY(),
+                abstractField.getPosition().getX(), abstractField.getPosition().getY());
+    }
+
+    /*
+	 * (non-Javadoc)
+	 * 
+	 * @see abstractgame.map.AbstractField#getDistance(int, int, int, int)
+     */
+    @Override
+    protected double getDistance(int x1, int y1, int x2, int y2) {
         int deltaX, deltaY;
-        deltaX = this.getPosition().getX() - abstractField.getPosition().getX();
-        deltaY = this.getPosition().getY() - abstractField.getPosition().getY();
+        deltaX = x1 - x2;
+        deltaY = y1 - y2;
         return Math.abs(deltaX) + Math.abs(deltaY);
     }
 
     /*
 	 * (non-Javadoc)
 	 * 
-	 * @see util.game.AbstractField#getNeighbor(int)
+	 * @see abstractgame.map.AbstractField#getNeighbor(int)
      */
     @Override
     public AbstractField getNeighbor(int direction) {
-        AbstractField neighbor = null;
-
-        switch (direction) {
-            case 0:
-                neighbor = this.getMap().getField(this.getPosition().translate(0, 1));
-                break;
-            case 1:
-                neighbor = this.getMap().getField(this.getPosition().translate(1, 0));
-                break;
-            case 2:
-                neighbor = this.getMap().getField(this.getPosition().translate(0, -1));
-                break;
-            case 3:
-                neighbor = this.getMap().getField(this.getPosition().translate(-1, 0));
-                break;
-        }
-
-        return neighbor;
+        return this.getTableNeighbor(direction);
     }
 }
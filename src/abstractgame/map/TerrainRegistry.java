@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.map;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Class TerrainRegistry assigns dense ordinals to the terrains of all
+ * enums used as terrain, so a terrain fits into a byte as long as a program
+ * uses at most 255 terrains, and into a char like the values of a two byte
+ * {@link MappedTerrainLayer} otherwise: the ordinal 0 stands for no terrain,
+ * every other terrain gets the next free ordinal the first time it is asked
+ * for. <br>
+ * The ordinals only hold for the running program, so they must not be
+ * stored, e.g. serialized with a map.
+ *
+ * @author Nils Kuttkat
+ */
+public final class TerrainRegistry {
+
+    /**
+     * The number of ordinals including {@link #NO_TERRAIN}, so an ordinal
+     * fits into a char.
+     */
+    public static final int CAPACITY = 0x10000;
+
+    /**
+     * The ordinal of no terrain.
+     */
+    public static final int NO_TERRAIN = 0;
+
+    /**
+     * The ordinals of the registered terrains.
+     */
+    private static final ConcurrentHashMap<Enum<?>, Integer> ORDINALS = new ConcurrentHashMap<Enum<?>, Integer>();
+
+    /**
+     * The registered terrains by ordinal.
+     */
+    private static volatile Enum<?>[] terrains = new Enum<?>[1];
+
+    /**
+     * Instantiates a new terrain registry.
+     */
+    private TerrainRegistry() {
+    }
+
+    /**
+     * Gets the ordinal of the terrain and registers the terrain if it has
+     * none yet.
+     *
+     * @param terrain the terrain
+     * @return the ordinal or {@link #NO_TERRAIN} for null
+     */
+    public static int getOrdinal(Enum<?> terrain) {
+        Integer ordinal = NO_TERRAIN;
+
+        if (terrain != null) {
+            ordinal = ORDINALS.get(terrain);
+
+            if (ordinal == null) {
+                ordinal = register(terrain);
+            }
+        }
+
+        return ordinal;
+    }
+
+    /**
+     * Gets the terrain with the given ordinal.
+     *
+     * @param ordinal the ordinal
+     * @return the terrain or null for {@link #NO_TERRAIN} and unused ordinals
+     */
+    public static Enum<?> getTerrain(int ordinal) {
+        Enum<?>[] registered = terrains;
+
+        return ordinal > NO_TERRAIN && ordinal < registered.length ? registered[ordinal] : null;
+    }
+
+    /**
+     * Registers the terrain.
+     *
+     * @param terrain the terrain
+     * @return the ordinal
+     */
+    private static synchronized int register(Enum<?> terrain) {
+        Integer ordinal = ORDINALS.get(terrain);
+        Enum<?>[] registered;
+
+        if (ordinal == null) {
+            if (terrains.length == CAPACITY) {
+                throw new IllegalArgumentException("Illegal terrain " + terrain + ", there are more than "
+                        + (CAPACITY - 1) + " terrains");
+            }
+
+            // publish the terrain before its ordinal
+            ordinal = terrains.length;
+            registered = Arrays.copyOf(terrains, ordinal + 1);
+            registered[ordinal] = terrain;
+            terrains = registered;
+            ORDINALS.put(terrain, ordinal);
+        }
+
+        return ordinal;
+    }
+
+    /**
+     * Gets the number of ordinals in use including {@link #NO_TERRAIN}.
+     *
+     * @return the size
+     */
+    public static int size() {
+        return terrains.length;
+    }
+}
@@ -0,0 +1,551 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import abstractgame.game.AbstractPlayer;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class UnitIndex is a spatial index of the units placed on an
+ * {@link AbstractMap}. The map is divided into square buckets of offset
+ * coordinates, and every player has a grid of these buckets holding the
+ * player's units. A query only visits the buckets which may hold units in
+ * range, of the players asked for. <br>
+ * The index is kept up to date by the map, which forwards the
+ * {@link abstractgame.events.fieldevents.UnitAddedToFieldEvent}s,
+ * {@link abstractgame.events.fieldevents.UnitRemovedFromFieldEvent}s and
+ * {@link abstractgame.events.unitevents.UnitPlayerChangedEvent}s of its
+ * fields, see {@link AbstractMap#getUnitIndex()}. <br>
+ * Distances are the distances of the field topology
+ * ({@link AbstractField#getDistance(AbstractField)}). They are never lower
+ * than the larger difference of the x and y coordinates, which holds for hex,
+ * square and octagon fields, so this difference bounds the buckets to visit.
+ *
+ * @author Nils Kuttkat
+ */
+public class UnitIndex {
+
+    /**
+     * The default width and height of a bucket.
+     */
+    public static final int DEFAULT_BUCKET_SIZE = 8;
+
+    /**
+     * The width and height of a bucket.
+     */
+    private final int bucketSize;
+
+    /**
+     * The number of buckets per column.
+     */
+    private final int bucketsPerColumn;
+
+    /**
+     * The number of buckets per row.
+     */
+    private final int bucketsPerRow;
+
+    /**
+     * The bucket grids per player.
+     */
+    private final HashMap<AbstractPlayer, Grid> grids = new HashMap<AbstractPlayer, Grid>();
+
+    /**
+     * The map.
+     */
+    private final AbstractMap map;
+
+    /**
+     * The position and player every unit is indexed with.
+     */
+    private final HashMap<AbstractUnit, Placement> placements = new HashMap<AbstractUnit, Placement>();
+
+    /**
+     * Instantiates a new unit index and adds all units placed on the map.
+     *
+     * @param map the map
+     * @param bucketSize the width and height of a bucket
+     */
+    public UnitIndex(AbstractMap map, int bucketSize) {
+        AbstractField field;
+
+        if (bucketSize < 1) {
+            throw new IllegalArgumentException("Illegal bucket size " + bucketSize);
+        }
+
+        this.map = map;
+        this.bucketSize = bucketSize;
+        this.bucketsPerRow = (map.getWidth() + bucketSize - 1) / bucketSize;
+        this.bucketsPerColumn = (map.getHeight() + bucketSize - 1) / bucketSize;
+
+        // only stored fields can carry units
+        for (int index = 0; index < map.getSize(); index++) {
+            field = map.getStoredField(index);
+
+            if (field != null) {
+                for (AbstractUnit unit : field.getUnits()) {
+                    this.unitAdded(unit, field);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the units of the matching players in the buckets from (minBucketX,
+     * minBucketY) to (maxBucketX, maxBucketY) which are accepted by the
+     * filter.
+     *
+     * @param minBucketX the min bucket x
+     * @param minBucketY the min bucket y
+     * @param maxBucketX the max bucket x
+     * @param maxBucketY the max bucket y
+     * @param player the player
+     * @param enemies true for the units of all players but the given one
+     * @param filter the filter
+     * @param units the units found
+     */
+    private void collect(int minBucketX, int minBucketY, int maxBucketX, int maxBucketY,
+            AbstractPlayer player, boolean enemies, Filter filter, List<AbstractUnit> units) {
+        ArrayList<AbstractUnit> bucket;
+
+        for (Map.Entry<AbstractPlayer, Grid> entry : this.grids.entrySet()) {
+            if (matches(entry.getKey(), player, enemies)) {
+                for (int bucketY = Math.max(minBucketY, 0); bucketY <= Math.min(maxBucketY, this.bucketsPerColumn - 1); bucketY++) {
+                    for (int bucketX = Math.max(minBucketX, 0); bucketX <= Math.min(maxBucketX, this.bucketsPerRow - 1); bucketX++) {
+                        bucket = entry.getValue().buckets.get(bucketY * this.bucketsPerRow + bucketX);
+
+                        if (bucket != null) {
+                            for (AbstractUnit unit : bucket) {
+                                if (filter.accepts(unit)) {
+                                    units.add(unit);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the units of all players but the given one within the radius
+     * around the center.
+     *
+     * @param center the center
+     * @param radius the radius
+     * @param player the player
+     * @return the units
+     */
+    public List<AbstractUnit> findEnemyUnits(AbstractField center, double radius, AbstractPlayer player) {
+        return this.findUnits(center, radius, player, true);
+    }
+
+    /**
+     * Finds the units of the player nearest to the center, ordered by their
+     * distance.
+     *
+     * @param center the center
+     * @param count the max number of units
+     * @param player the player or null for the units of all players
+     * @return the units
+     */
+    public List<AbstractUnit> findNearestUnits(AbstractField center, int count, AbstractPlayer player) {
+        PriorityQueue<Candidate> nearest = new PriorityQueue<Candidate>(Math.max(count, 1), Collections.reverseOrder());
+        List<AbstractUnit> ring = new ArrayList<AbstractUnit>();
+        List<Candidate> candidates;
+        List<AbstractUnit> units = new ArrayList<AbstractUnit>();
+        int centerX, centerY, rings;
+        double distance;
+
+        if (center != null && center.getMap() == this.map && count > 0) {
+            centerX = center.getPosition().getX() / this.bucketSize;
+            centerY = center.getPosition().getY() / this.bucketSize;
+            rings = Math.max(this.bucketsPerRow, this.bucketsPerColumn);
+
+            for (int r = 0; r < rings; r++) {
+                // every position r buckets away is at least this far away
+                if (nearest.size() == count && r > 0 && (r - 1) * this.bucketSize + 1 > nearest.peek().distance) {
+                    break;
+                }
+
+                ring.clear();
+
+                // the top and bottom row of the ring, then the sides
+                this.collect(centerX - r, centerY - r, centerX + r, centerY - r, player, false, Filter.ALL, ring);
+
+                if (r > 0) {
+                    this.collect(centerX - r, centerY + r, centerX + r, centerY + r, player, false, Filter.ALL, ring);
+                    this.collect(centerX - r, centerY - r + 1, centerX - r, centerY + r - 1, player, false, Filter.ALL, ring);
+                    this.collect(centerX + r, centerY - r + 1, centerX + r, centerY + r - 1, player, false, Filter.ALL, ring);
+                }
+
+                for (AbstractUnit unit : ring) {
+                    distance = center.getDistance(unit.getPosition());
+
+                    if (nearest.size() < count) {
+                        nearest.offer(new Candidate(unit, distance));
+                    } else if (distance < nearest.peek().distance) {
+                        nearest.poll();
+                        nearest.offer(new Candidate(unit, distance));
+                    }
+                }
+            }
+
+            candidates = new ArrayList<Candidate>(nearest);
+            Collections.sort(candidates);
+
+            for (Candidate candidate : candidates) {
+                units.add(candidate.unit);
+            }
+        }
+
+        return units;
+    }
+
+    /**
+     * Finds the units of the player within the radius around the center.
+     *
+     * @param center the center
+     * @param radius the radius
+     * @param player the player or null for the units of all players
+     * @return the units
+     */
+    public List<AbstractUnit> findUnits(AbstractField center, double radius, AbstractPlayer player) {
+        return this.findUnits(center, radius, player, false);
+    }
+
+    /**
+     * Finds the units within the radius around the center.
+     *
+     * @param center the center
+     * @param radius the radius
+     * @param player the player
+     * @param enemies true for the units of all players but the given one
+     * @return the units
+     */
+    private List<AbstractUnit> findUnits(final AbstractField center, final double radius, AbstractPlayer player,
+            boolean enemies) {
+        List<AbstractUnit> units = new ArrayList<AbstractUnit>();
+        int reach, x, y;
+
+        if (center != null && center.getMap() == this.map && radius >= 0) {
+            // no field farther away than the radius in x or y is in range
+            reach = (int) Math.min(Math.floor(radius), Math.max(this.map.getWidth(), this.map.getHeight()));
+            x = center.getPosition().getX();
+            y = center.getPosition().getY();
+            this.collect(Math.max(x - reach, 0) / this.bucketSize, Math.max(y - reach, 0) / this.bucketSize,
+                    (x + reach) / this.bucketSize, (y + reach) / this.bucketSize, player, enemies, new Filter() {
+
+                @Override
+                boolean accepts(AbstractUnit unit) {
+                    return center.getDistance(unit.getPosition()) <= radius;
+                }
+            }, units);
+        }
+
+        return units;
+    }
+
+    /**
+     * Finds the units of the player in the rectangle from (minX, minY) to
+     * (maxX, maxY) including both corners.
+     *
+     * @param minX the min x
+     * @param minY the min y
+     * @param maxX the max x
+     * @param maxY the max y
+     * @param player the player or null for the units of all players
+     * @return the units
+     */
+    public List<AbstractUnit> findUnits(final int minX, final int minY, final int maxX, final int maxY,
+            AbstractPlayer player) {
+        List<AbstractUnit> units = new ArrayList<AbstractUnit>();
+        int fromX = Math.max(minX, 0), fromY = Math.max(minY, 0);
+        int toX = Math.min(maxX, this.map.getWidth() - 1), toY = Math.min(maxY, this.map.getHeight() - 1);
+
+        if (fromX <= toX && fromY <= toY) {
+            this.collect(fromX / this.bucketSize, fromY / this.bucketSize, toX / this.bucketSize, toY / this.bucketSize,
+                    player, false, new Filter() {
+
+                @Override
+                boolean accepts(AbstractUnit unit) {
+                    int x = unit.getPosition().getPosition().getX(), y = unit.getPosition().getPosition().getY();
+
+                    return x >= minX && x <= maxX && y >= minY && y <= maxY;
+                }
+            }, units);
+        }
+
+        return units;
+    }
+
+    /**
+     * Gets the index of the bucket holding the field with the given index.
+     *
+     * @param index the index
+     * @return the bucket
+     */
+    private int getBucket(int index) {
+        return (this.map.getY(index) / this.bucketSize) * this.bucketsPerRow + this.map.getX(index) / this.bucketSize;
+    }
+
+    /**
+     * Gets the width and height of a bucket.
+     *
+     * @return the bucket size
+     */
+    public int getBucketSize() {
+        return this.bucketSize;
+    }
+
+    /**
+     * Gets the map.
+     *
+     * @return the map
+     */
+    public AbstractMap getMap() {
+        return this.map;
+    }
+
+    /**
+     * Checks if the units of a player match a query.
+     *
+     * @param candidate the player of the units
+     * @param player the player of the query, null for all players
+     * @param enemies true for the units of all players but the given one
+     * @return true, if successful
+     */
+    private static boolean matches(AbstractPlayer candidate, AbstractPlayer player, boolean enemies) {
+        return enemies ? candidate != player : player == null || candidate == player;
+    }
+
+    /**
+     * Removes the unit from the bucket it is indexed in.
+     *
+     * @param unit the unit
+     * @param placement the placement
+     */
+    private void remove(AbstractUnit unit, Placement placement) {
+        Grid grid = this.grids.get(placement.player);
+        int bucket = this.getBucket(placement.index);
+
+        grid.buckets.get(bucket).remove(unit);
+
+        if (grid.buckets.get(bucket).isEmpty()) {
+            grid.buckets.set(bucket, null);
+        }
+
+        if (--grid.units == 0) {
+            this.grids.remove(placement.player);
+        }
+    }
+
+    /**
+     * Gets the number of indexed units.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.placements.size();
+    }
+
+    /**
+     * Adds the unit which entered the field. A unit still indexed on another
+     * field is moved.
+     *
+     * @param unit the unit
+     * @param abstractField the abstract field
+     */
+    void unitAdded(AbstractUnit unit, AbstractField abstractField) {
+        Placement placement = this.placements.get(unit);
+        Grid grid;
+        int bucket;
+
+        if (placement != null) {
+            this.remove(unit, placement);
+        }
+
+        placement = new Placement(abstractField.getIndex(), unit.getPlayer());
+        this.placements.put(unit, placement);
+        grid = this.grids.get(placement.player);
+
+        if (grid == null) {
+            grid = new Grid(this.bucketsPerRow * this.bucketsPerColumn);
+            this.grids.put(placement.player, grid);
+        }
+
+        bucket = this.getBucket(placement.index);
+
+        if (grid.buckets.get(bucket) == null) {
+            grid.buckets.set(bucket, new ArrayList<AbstractUnit>(4));
+        }
+
+        grid.buckets.get(bucket).add(unit);
+        grid.units++;
+    }
+
+    /**
+     * Moves the unit to the grid of its new player.
+     *
+     * @param unit the unit
+     */
+    void unitPlayerChanged(AbstractUnit unit) {
+        Placement placement = this.placements.get(unit);
+
+        if (placement != null && placement.player != unit.getPlayer()) {
+            this.unitAdded(unit, this.map.getField(placement.index));
+        }
+    }
+
+    /**
+     * Removes the unit which left the field, unless it is indexed on another
+     * field already.
+     *
+     * @param unit the unit
+     * @param abstractField the abstract field
+     */
+    void unitRemoved(AbstractUnit unit, AbstractField abstractField) {
+        Placement placement = this.placements.get(unit);
+
+        if (placement != null && placement.index == abstractField.getIndex()) {
+            this.remove(unit, placement);
+            this.placements.remove(unit);
+        }
+    }
+
+    /**
+     * The Class Candidate is a unit found by a nearest units query.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+
+        /**
+         * The distance to the center.
+         */
+        private final double distance;
+
+        /**
+         * The unit.
+         */
+        private final AbstractUnit unit;
+
+        /**
+         * Instantiates a new candidate.
+         *
+         * @param unit the unit
+         * @param distance the distance to the center
+         */
+        Candidate(AbstractUnit unit, double distance) {
+            this.unit = unit;
+            this.distance = distance;
+        }
+
+        /*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+         */
+        @Override
+        public int compareTo(Candidate other) {
+            return Double.compare(this.distance, other.distance);
+        }
+    }
+
+    /**
+     * The Class Filter decides which units of the visited buckets a query
+     * returns.
+     */
+    private abstract static class Filter {
+
+        /**
+         * The filter accepting every unit.
+         */
+        static final Filter ALL = new Filter() {
+
+            @Override
+            boolean accepts(AbstractUnit unit) {
+                return true;
+            }
+        };
+
+        /**
+         * Checks if the query returns the unit.
+         *
+         * @param unit the unit
+         * @return true, if successful
+         */
+        abstract boolean accepts(AbstractUnit unit);
+    }
+
+    /**
+     * The Class Grid holds the buckets of one player.
+     */
+    private static final class Grid {
+
+        /**
+         * The buckets in row-major order, null for empty buckets.
+         */
+        private final ArrayList<ArrayList<AbstractUnit>> buckets;
+
+        /**
+         * The number of units in the buckets.
+         */
+        private int units;
+
+        /**
+         * Instantiates a new grid.
+         *
+         * @param size the number of buckets
+         */
+        Grid(int size) {
+            this.buckets = new ArrayList<ArrayList<AbstractUnit>>(Collections.<ArrayList<AbstractUnit>>nCopies(size, null));
+        }
+    }
+
+    /**
+     * The Class Placement is the position and player a unit is indexed with.
+     */
+    private static final class Placement {
+
+        /**
+         * The index of the field.
+         */
+        private final int index;
+
+        /**
+         * The player.
+         */
+        private final AbstractPlayer player;
+
+        /**
+         * Instantiates a new placement.
+         *
+         * @param index the index of the field
+         * @param player the player
+         */
+        Placement(int index, AbstractPlayer player) {
+            this.index = index;
+            this.player = player;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import abstractgame.map.AbstractField;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class ALTPathfinder finds the cheapest path using A* with the lower
+ * bounds of the {@link LandmarkTable} of the movement class as heuristic
+ * (ALT). The bounds know about the terrain, so they are much tighter than the
+ * topology distance on maps with expensive or impassable regions. The
+ * heuristic is the higher one of both, so the search never expands more
+ * fields than the {@link AStarPathfinder}, apart from ties. <br>
+ * The table is also available for cost estimates without a search, see
+ * {@link #getLandmarkTable(AbstractUnit)}.
+ *
+ * @author Nils Kuttkat
+ */
+public class ALTPathfinder extends AStarPathfinder {
+
+    /**
+     * The default number of landmarks.
+     */
+    public static final int DEFAULT_LANDMARKS = 8;
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 6203379137744165916L;
+
+    /**
+     * The landmark table of the current search.
+     */
+    private transient LandmarkTable landmarkTable;
+
+    /**
+     * The number of landmarks.
+     */
+    private final int landmarks;
+
+    /**
+     * Instantiates a new ALT pathfinder with the default number of landmarks.
+     */
+    public ALTPathfinder() {
+        this(DEFAULT_LANDMARKS);
+    }
+
+    /**
+     * Instantiates a new ALT pathfinder.
+     *
+     * @param landmarks the number of landmarks
+     */
+    public ALTPathfinder(int landmarks) {
+        super();
+
+        if (landmarks < 1) {
+            throw new IllegalArgumentException("Illegal number of landmarks " + landmarks);
+        }
+
+        this.landmarks = landmarks;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.AStarPathfinder#estimate(abstractgame.pathfinding.SearchWorkspace, int, int)
+     */
+    @Override
+    protected double estimate(SearchWorkspace workspace, int index, int target) {
+        return Math.max(super.estimate(workspace, index, target), this.landmarkTable.getLowerBound(index, target));
+    }
+
+    /**
+     * Gets the landmark table of the unit's movement class, up to date with
+     * all changes of the map. Its bounds and estimates of the cost between two
+     * fields take O(landmarks), which is enough for scoring many targets
+     * without searching a path to each of them.
+     *
+     * @param unit the unit
+     * @return the landmark table or null if the unit has no position
+     */
+    public LandmarkTable getLandmarkTable(AbstractUnit unit) {
+        LandmarkTable table = null;
+
+        if (unit.hasPosition()) {
+            if (!unit.hasGraph()) {
+                unit.getGame().getMap().buildGraph(unit);
+            }
+
+            table = unit.getCostGraph().getLandmarkTable(unit.getPosition().getNeighborTable(), this.landmarks);
+        }
+
+        return table;
+    }
+
+    /**
+     * Gets the number of landmarks.
+     *
+     * @return the number of landmarks
+     */
+    public int getLandmarks() {
+        return this.landmarks;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.AStarPathfinder#prepareSearch(abstractgame.pathfinding.CostGraph,
+	 * abstractgame.unit.AbstractUnit, abstractgame.map.AbstractField,
+	 * abstractgame.pathfinding.SearchWorkspace)
+     */
+    @Override
+    protected void prepareSearch(CostGraph graph, AbstractUnit unit, AbstractField target,
+            SearchWorkspace workspace) {
+        super.prepareSearch(graph, unit, target, workspace);
+        this.landmarkTable = graph.getLandmarkTable(target.getNeighborTable(), this.landmarks);
+    }
+}
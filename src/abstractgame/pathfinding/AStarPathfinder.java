@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import abstractgame.map.AbstractField;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class AStarPathfinder finds the cheapest path using the A* algorithm.
+ * The heuristic is the topology distance of the fields
+ * ({@link AbstractField#getDistance(AbstractField)}: hex distance, octile
+ * distance or Manhattan distance) times the lowest terrain cost of the
+ * movement class ({@link CostGraph#getMinimumCost()}). <br>
+ * Every step costs at least its distance times the lowest terrain cost, so the
+ * heuristic is admissible and consistent and the paths are as cheap as the
+ * ones of the {@link DijkstraPathfinder}. The data of the estimate is kept in
+ * the search's {@link SearchWorkspace}.
+ *
+ * @author Nils Kuttkat
+ */
+public class AStarPathfinder extends DijkstraPathfinder {
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = -5318043587912520704L;
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.DijkstraPathfinder#estimate(abstractgame.pathfinding.SearchWorkspace, int,
+	 * int)
+     */
+    @Override
+    protected double estimate(SearchWorkspace workspace, int index, int target) {
+        return workspace.getNeighborTable().getDistance(index, target) * workspace.getMinimumCost();
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.DijkstraPathfinder#prepareSearch(abstractgame.pathfinding.CostGraph,
+	 * abstractgame.unit.AbstractUnit, abstractgame.map.AbstractField,
+	 * abstractgame.pathfinding.SearchWorkspace)
+     */
+    @Override
+    protected void prepareSearch(CostGraph graph, AbstractUnit unit, AbstractField target,
+            SearchWorkspace workspace) {
+        double minimumCost = graph.getMinimumCost();
+
+        // nothing is accessible, every estimate would be infinite (or NaN)
+        workspace.setEstimate(target.getNeighborTable(), minimumCost == Double.POSITIVE_INFINITY ? 0 : minimumCost);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.io.Serializable;
+
+import abstractgame.map.AbstractField;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class AbstractPathfinder is the superclass of all pathfinders. A
+ * pathfinder searches the {@link CostGraph} of a unit's movement class for
+ * the cheapest {@link Path} between two fields.
+ *
+ * @author Nils Kuttkat
+ */
+public abstract class AbstractPathfinder implements Serializable {
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = -2964563402612785103L;
+
+    /**
+     * The number of fields the last search expanded.
+     */
+    private transient int expandedNodes;
+
+    /**
+     * Finds the cheapest path for the unit on the cost graph of its movement
+     * class.
+     *
+     * @param unit the unit
+     * @param start the start
+     * @param target the target
+     * @param maxCost the max cost
+     * @return the path or {@link Path#EMPTY} if the target can't be reached
+     * with at most maxCost
+     */
+    public Path findPath(AbstractUnit unit, AbstractField start, AbstractField target, double maxCost) {
+        if (!unit.hasGraph()) {
+            unit.getGame().getMap().buildGraph(unit);
+        }
+
+        return this.findPath(unit.getCostGraph(), unit, start, target, maxCost);
+    }
+
+    /**
+     * Finds the cheapest path for the unit on the given cost graph.
+     *
+     * @param graph the graph
+     * @param unit the unit
+     * @param start the start
+     * @param target the target
+     * @param maxCost the max cost
+     * @return the path or {@link Path#EMPTY} if the target can't be reached
+     * with at most maxCost
+     */
+    public abstract Path findPath(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target, double maxCost);
+
+    /**
+     * Finds the cheapest path for the unit on the given cost graph and loads
+     * it into the cursor. Pathfinders searching in a {@link SearchWorkspace}
+     * don't allocate anything, the others copy the path into the cursor.
+     *
+     * @param graph the graph
+     * @param unit the unit
+     * @param start the start
+     * @param target the target
+     * @param maxCost the max cost
+     * @param cursor the cursor, empty if the target can't be reached with at
+     * most maxCost
+     * @return true, if a path has been found
+     */
+    public boolean findPath(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target,
+            double maxCost, PathCursor cursor) {
+        cursor.load(this.findPath(graph, unit, start, target, maxCost));
+        return !cursor.isEmpty();
+    }
+
+    /**
+     * Gets the number of fields the last search expanded (took from its open
+     * list). This is the usual measure to compare the work of different
+     * pathfinders.
+     *
+     * @return the expanded nodes
+     */
+    public int getExpandedNodes() {
+        return this.expandedNodes;
+    }
+
+    /**
+     * Checks if the pathfinder always finds the cheapest path, so a path
+     * found with one max cost is the answer for every max cost it doesn't
+     * exceed. Pathfinders trading the cost of the path for speed, like the
+     * {@link HierarchicalPathfinder}, return false.
+     *
+     * @return true, if exact
+     */
+    public boolean isExact() {
+        return true;
+    }
+
+    /**
+     * Checks if both fields are placed on the graph's map.
+     *
+     * @param graph the graph
+     * @param start the start
+     * @param target the target
+     * @return true, if successful
+     */
+    protected static boolean isSearchable(CostGraph graph, AbstractField start, AbstractField target) {
+        return start != null && target != null
+                && start.getMap() == graph.getMap() && target.getMap() == graph.getMap();
+    }
+
+    /**
+     * Tells the pathfinder that the unit doesn't use it anymore, because the
+     * unit got another pathfinder or its graph has been removed from the map.
+     * Pathfinders keeping state for a unit drop it here, so they don't keep
+     * the unit reachable. The default does nothing.
+     *
+     * @param unit the unit
+     */
+    public void release(AbstractUnit unit) {
+    }
+
+    /**
+     * Sets the number of fields the last search expanded.
+     *
+     * @param expandedNodes the new expanded nodes
+     */
+    protected void setExpandedNodes(int expandedNodes) {
+        this.expandedNodes = expandedNodes;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class BatchPathfinder finds the paths of many units at once, e.g. all
+ * moves of a player's turn. The weights of every movement class and pass
+ * group ({@link AbstractUnit#getPassGroup()}) are copied into a
+ * {@link CostGraphSnapshot} first, then the searches run in parallel on a
+ * {@link ForkJoinPool} against the snapshots only. <br>
+ * The paths are not applied, they are meant to be followed one after another
+ * by {@link AbstractUnit#followPath(Path)}, which still checks every step. A
+ * unit moving first may block the path of a later one, which then stops in
+ * front of it.
+ *
+ * @author Nils Kuttkat
+ */
+public class BatchPathfinder {
+
+    /**
+     * The pathfinder whose search loop all searches run. Its estimate keeps
+     * no state of its own, so it is shared by all threads.
+     */
+    private static final AStarPathfinder SEARCH = new AStarPathfinder();
+
+    /**
+     * The number of fields the last batch expanded.
+     */
+    private int expandedNodes;
+
+    /**
+     * The pool the searches run on.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Instantiates a new batch pathfinder running on the common pool.
+     */
+    public BatchPathfinder() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Instantiates a new batch pathfinder.
+     *
+     * @param pool the pool the searches run on
+     */
+    public BatchPathfinder(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Illegal pool null");
+        }
+
+        this.pool = pool;
+    }
+
+    /**
+     * Finds the cheapest path on the snapshot with the search loop of the
+     * {@link AStarPathfinder}, whose estimate reads the lowest weight of the
+     * snapshot from the workspace. Only the snapshot and the workspace of the
+     * thread are touched, so searches may run at the same time.
+     *
+     * @param snapshot the snapshot
+     * @param start the start
+     * @param target the target
+     * @param maxCost the max cost
+     * @param expandedNodes the array to store the number of expanded fields
+     * in
+     * @param slot the slot of expandedNodes
+     * @return the path or {@link Path#EMPTY} if the target can't be reached
+     * with at most maxCost
+     */
+    private static Path findPath(CostGraphSnapshot snapshot, AbstractField start, AbstractField target,
+            double maxCost, int[] expandedNodes, int slot) {
+        Path path = Path.EMPTY;
+        AbstractMap map = snapshot.getMap();
+        SearchWorkspace workspace = SearchWorkspace.acquire(map.getSize());
+
+        try {
+            workspace.setWeights(snapshot);
+            workspace.setEstimate(snapshot.getNeighborTable(), snapshot.getMinimumWeight());
+            expandedNodes[slot] = SEARCH.search(snapshot.getNeighborTable(), start.getIndex(), target.getIndex(),
+                    maxCost, workspace);
+
+            if (workspace.isClosed(target.getIndex())) {
+                path = workspace.buildPath(map, target.getIndex());
+            }
+        } finally {
+            workspace.release();
+        }
+
+        return path;
+    }
+
+    /**
+     * Finds the paths of all requests. The snapshots are taken on the calling
+     * thread, which has to be the thread changing the map, and the call
+     * returns when all searches are done.
+     *
+     * @param requests the requests
+     * @return the paths in the order of the requests, {@link Path#EMPTY} for
+     * every target which can't be reached with at most the request's max cost
+     */
+    public List<Path> findPaths(List<PathRequest> requests) {
+        HashMap<List<Object>, CostGraphSnapshot> snapshots = new HashMap<List<Object>, CostGraphSnapshot>();
+        CostGraphSnapshot[] requestSnapshots = new CostGraphSnapshot[requests.size()];
+        Path[] paths = new Path[requests.size()];
+        int[] expanded = new int[requests.size()];
+        List<Object> key;
+        AbstractUnit unit;
+        PathRequest request;
+
+        for (int i = 0; i < requestSnapshots.length; i++) {
+            request = requests.get(i);
+            unit = request.getUnit();
+            paths[i] = Path.EMPTY;
+
+            if (!unit.hasGraph()) {
+                unit.getGame().getMap().buildGraph(unit);
+            }
+
+            if (AbstractPathfinder.isSearchable(unit.getCostGraph(), request.getStart(), request.getTarget())) {
+                key = Arrays.<Object>asList(unit.getCostGraph(), unit.getPassGroup());
+                requestSnapshots[i] = snapshots.get(key);
+
+                if (requestSnapshots[i] == null) {
+                    requestSnapshots[i] = new CostGraphSnapshot(unit.getCostGraph(), unit,
+                            request.getStart().getNeighborTable());
+                    snapshots.put(key, requestSnapshots[i]);
+                }
+            }
+        }
+
+        this.pool.invoke(new SearchTask(requests, requestSnapshots, paths, expanded, 0, paths.length));
+        this.expandedNodes = 0;
+
+        for (int count : expanded) {
+            this.expandedNodes += count;
+        }
+
+        return new ArrayList<Path>(Arrays.asList(paths));
+    }
+
+    /**
+     * Gets the number of fields all searches of the last batch expanded.
+     *
+     * @return the expanded nodes
+     */
+    public int getExpandedNodes() {
+        return this.expandedNodes;
+    }
+
+    /**
+     * Gets the pool the searches run on.
+     *
+     * @return the pool
+     */
+    public ForkJoinPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * The Class SearchTask runs the searches of a range of requests, split in
+     * halves until a task runs a single search.
+     */
+    private static final class SearchTask extends RecursiveAction {
+
+        /**
+         * The Constant serialVersionUID.
+         */
+        private static final long serialVersionUID = 2781349562094722018L;
+
+        /**
+         * The number of expanded fields of every request.
+         */
+        private final int[] expandedNodes;
+
+        /**
+         * The first request of the range.
+         */
+        private final int from;
+
+        /**
+         * The paths of the requests.
+         */
+        private final Path[] paths;
+
+        /**
+         * The requests.
+         */
+        private final List<PathRequest> requests;
+
+        /**
+         * The snapshot of every request, null if it can't be searched.
+         */
+        private final CostGraphSnapshot[] snapshots;
+
+        /**
+         * The end of the range (exclusive).
+         */
+        private final int to;
+
+        /**
+         * Instantiates a new search task.
+         *
+         * @param requests the requests
+         * @param snapshots the snapshot of every request
+         * @param paths the paths of the requests
+         * @param expandedNodes the number of expanded fields of every request
+         * @param from the first request of the range
+         * @param to the end of the range (exclusive)
+         */
+        SearchTask(List<PathRequest> requests, CostGraphSnapshot[] snapshots, Path[] paths, int[] expandedNodes,
+                int from, int to) {
+            this.requests = requests;
+            this.snapshots = snapshots;
+            this.paths = paths;
+            this.expandedNodes = expandedNodes;
+            this.from = from;
+            this.to = to;
+        }
+
+        /*
+    	 * (non-Javadoc)
+    	 *
+    	 * @see java.util.concurrent.RecursiveAction#compute()
+         */
+        @Override
+        protected void compute() {
+            int middle = (this.from + this.to) >>> 1;
+            PathRequest request;
+
+            if (this.to - this.from > 1) {
+                invokeAll(new SearchTask(this.requests, this.snapshots, this.paths, this.expandedNodes, this.from, middle),
+                        new SearchTask(this.requests, this.snapshots, this.paths, this.expandedNodes, middle, this.to));
+            } else if (this.to > this.from && this.snapshots[this.from] != null) {
+                request = this.requests.get(this.from);
+                this.paths[this.from] = findPath(this.snapshots[this.from], request.getStart(), request.getTarget(),
+                        request.getMaxCost(), this.expandedNodes, this.from);
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class CachingPathfinder remembers the paths another pathfinder found.
+ * Units of the same movement class and pass group
+ * ({@link AbstractUnit#getPassGroup()}) searching between the same fields get
+ * the cached path without any search, as long as the map hasn't changed
+ * ({@link AbstractMap#getVersion()}). <br>
+ * If the pathfinder is exact ({@link AbstractPathfinder#isExact()}) a cached
+ * path also answers a search with another max cost: a path is returned if its
+ * cost is within the new max cost, no path if the target couldn't be reached
+ * with a higher max cost either. The path of an inexact pathfinder may be
+ * more expensive than needed and answers only a search with the same max
+ * cost. Every other search is passed on and its result replaces the cached
+ * one. <br>
+ * The most recently used paths are cached, the least recently used one is
+ * dropped when the cache is full.
+ *
+ * @author Nils Kuttkat
+ */
+public class CachingPathfinder extends AbstractPathfinder {
+
+    /**
+     * The default number of cached paths.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 6182440395773410125L;
+
+    /**
+     * The number of cached paths.
+     */
+    private final int capacity;
+
+    /**
+     * The number of searches answered by the cache.
+     */
+    private transient long hits;
+
+    /**
+     * The number of searches passed on.
+     */
+    private transient long misses;
+
+    /**
+     * The pathfinder searching the paths which aren't cached.
+     */
+    private final AbstractPathfinder pathfinder;
+
+    /**
+     * The cached paths by graph, pass group, start and target, in access
+     * order.
+     */
+    private transient LinkedHashMap<List<Object>, CachedPath> paths;
+
+    /**
+     * Instantiates a new caching pathfinder with the default capacity using
+     * an {@link AStarPathfinder}.
+     */
+    public CachingPathfinder() {
+        this(new AStarPathfinder(), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new caching pathfinder.
+     *
+     * @param pathfinder the pathfinder searching the paths which aren't
+     * cached
+     * @param capacity the number of cached paths
+     */
+    public CachingPathfinder(AbstractPathfinder pathfinder, int capacity) {
+        if (pathfinder == null) {
+            throw new IllegalArgumentException("Illegal pathfinder null");
+        }
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Illegal capacity " + capacity);
+        }
+
+        this.pathfinder = pathfinder;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Drops all cached paths.
+     */
+    public void clear() {
+        if (this.paths != null) {
+            this.paths.clear();
+        }
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.AbstractPathfinder#findPath(abstractgame.pathfinding.CostGraph,
+	 * abstractgame.unit.AbstractUnit, abstractgame.map.AbstractField,
+	 * abstractgame.map.AbstractField, double)
+     */
+    @Override
+    public Path findPath(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target, double maxCost) {
+        Path path = Path.EMPTY;
+        List<Object> key;
+        CachedPath cachedPath;
+        int expandedNodes = 0;
+
+        if (isSearchable(graph, start, target)) {
+            key = Arrays.<Object>asList(graph, unit.getPassGroup(), start.getIndex(), target.getIndex());
+            cachedPath = this.getPaths().get(key);
+
+            if (cachedPath != null && cachedPath.answers(graph.getMap().getVersion(), maxCost,
+                    this.pathfinder.isExact())) {
+                path = cachedPath.path.getTotalCost() <= maxCost ? cachedPath.path : Path.EMPTY;
+                this.hits++;
+            } else {
+                path = this.pathfinder.findPath(graph, unit, start, target, maxCost);
+                expandedNodes = this.pathfinder.getExpandedNodes();
+                this.getPaths().put(key, new CachedPath(path, maxCost, graph.getMap().getVersion()));
+                this.misses++;
+            }
+        }
+
+        this.setExpandedNodes(expandedNodes);
+        return path;
+    }
+
+    /**
+     * Gets the number of cached paths.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Gets the share of the searches answered by the cache.
+     *
+     * @return the hit rate between 0 and 1, 0 if there was no search yet
+     */
+    public double getHitRate() {
+        return this.hits + this.misses == 0 ? 0 : this.hits / (double) (this.hits + this.misses);
+    }
+
+    /**
+     * Gets the number of searches answered by the cache.
+     *
+     * @return the hits
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Gets the number of searches passed on.
+     *
+     * @return the misses
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Gets the pathfinder searching the paths which aren't cached.
+     *
+     * @return the pathfinder
+     */
+    public AbstractPathfinder getPathfinder() {
+        return this.pathfinder;
+    }
+
+    /**
+     * Gets the cached paths, creating the cache on first use.
+     *
+     * @return the paths
+     */
+    private LinkedHashMap<List<Object>, CachedPath> getPaths() {
+        if (this.paths == null) {
+            this.paths = new LinkedHashMap<List<Object>, CachedPath>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, CachedPath> eldest) {
+                    return this.size() > CachingPathfinder.this.capacity;
+                }
+            };
+        }
+
+        return this.paths;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.AbstractPathfinder#isExact()
+     */
+    @Override
+    public boolean isExact() {
+        return this.pathfinder.isExact();
+    }
+
+    /**
+     * Resets the hits and misses.
+     */
+    public void resetStatistics() {
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Gets the number of cached paths, including the ones of previous versions
+     * of the map which haven't been dropped yet.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.paths == null ? 0 : this.paths.size();
+    }
+
+    /**
+     * The Class CachedPath is a search result with the max cost it was
+     * searched with and the version of the map.
+     */
+    private static final class CachedPath {
+
+        /**
+         * The max cost of the search.
+         */
+        private final double maxCost;
+
+        /**
+         * The path.
+         */
+        private final Path path;
+
+        /**
+         * The version of the map.
+         */
+        private final long version;
+
+        /**
+         * Instantiates a new cached path.
+         *
+         * @param path the path
+         * @param maxCost the max cost of the search
+         * @param version the version of the map
+         */
+        CachedPath(Path path, double maxCost, long version) {
+            this.path = path;
+            this.maxCost = maxCost;
+            this.version = version;
+        }
+
+        /**
+         * Checks if the cached path is the result of a search with the max
+         * cost on the map's version.
+         *
+         * @param version the version of the map
+         * @param maxCost the max cost
+         * @param exact true if the path has been found by an exact pathfinder
+         * @return true, if successful
+         */
+        boolean answers(long version, double maxCost, boolean exact) {
+            boolean answers = false;
+
+            if (version == this.version) {
+                // a path an exact pathfinder found is the cheapest one, no
+                // path means even the cheapest one exceeds the max cost of
+                // the search
+                answers = maxCost == this.maxCost
+                        || (exact && (!this.path.isEmpty() || maxCost <= this.maxCost));
+            }
+
+            return answers;
+        }
+    }
+}
@@ -0,0 +1,565 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import abstractgame.map.AbstractMap;
+import abstractgame.map.NeighborTable;
+
+/**
+ * The Class ClusterGraph is the abstract graph of a {@link CostGraph} used by
+ * the {@link HierarchicalPathfinder} (HPA*). The map is split into square
+ * clusters of clusterSize x clusterSize positions. Wherever two clusters
+ * touch, every connected run of passable border fields gets one transition
+ * (two at the ends of long runs): a pair of neighboring fields, one in each
+ * cluster. These fields are the nodes of the abstract graph, connected by the
+ * transitions and, inside a cluster, by the cost of the cheapest path through
+ * the cluster. <br>
+ * The graph is built from the terrain costs only, so it is shared by all
+ * units of a movement class. Changed fields only mark their cluster, which is
+ * repaired together with the borders to its neighbor clusters before the next
+ * search.
+ *
+ * @author Nils Kuttkat
+ */
+public class ClusterGraph {
+
+    /**
+     * The length of border runs which get a transition at both ends.
+     */
+    private static final int LONG_RUN = 6;
+
+    /**
+     * The size of the clusters.
+     */
+    private final int clusterSize;
+
+    /**
+     * The clusters.
+     */
+    private final Cluster[] clusters;
+
+    /**
+     * The number of clusters per row.
+     */
+    private final int clustersX;
+
+    /**
+     * The number of clusters per column.
+     */
+    private final int clustersY;
+
+    /**
+     * The clusters changed since the last update.
+     */
+    private final BitSet dirtyClusters;
+
+    /**
+     * The graph.
+     */
+    private final CostGraph graph;
+
+    /**
+     * The open list of the searches inside a cluster.
+     */
+    private final FieldHeap heap;
+
+    /**
+     * The map.
+     */
+    private final AbstractMap map;
+
+    /**
+     * The neighbor table.
+     */
+    private final NeighborTable neighborTable;
+
+    /**
+     * The transitions between two clusters, stored as pairs of field indices
+     * (field in the lower cluster, field in the higher cluster) and keyed by
+     * both cluster ids.
+     */
+    private final HashMap<Long, int[]> transitions;
+
+    /**
+     * Instantiates a new cluster graph and builds it for the whole map.
+     *
+     * @param graph the graph
+     * @param neighborTable the neighbor table of the map's fields
+     * @param clusterSize the size of the clusters
+     */
+    public ClusterGraph(CostGraph graph, NeighborTable neighborTable, int clusterSize) {
+        if (clusterSize < 2) {
+            throw new IllegalArgumentException("Illegal cluster size " + clusterSize);
+        }
+
+        this.graph = graph;
+        this.map = graph.getMap();
+        this.neighborTable = neighborTable;
+        this.clusterSize = clusterSize;
+        this.clustersX = (this.map.getWidth() + clusterSize - 1) / clusterSize;
+        this.clustersY = (this.map.getHeight() + clusterSize - 1) / clusterSize;
+        this.clusters = new Cluster[this.clustersX * this.clustersY];
+        this.dirtyClusters = new BitSet(this.clusters.length);
+        this.heap = new FieldHeap(clusterSize * clusterSize);
+        this.transitions = new HashMap<Long, int[]>();
+
+        for (int cluster = 0; cluster < this.clusters.length; cluster++) {
+            this.clusters[cluster] = new Cluster();
+        }
+
+        this.dirtyClusters.set(0, this.clusters.length);
+        this.update();
+    }
+
+    /**
+     * Tells the graph that the terrain of the field with the given index
+     * changed.
+     *
+     * @param index the index
+     */
+    public void fieldChanged(int index) {
+        this.dirtyClusters.set(this.getCluster(index));
+    }
+
+    /**
+     * Gets the cluster of the field with the given index.
+     *
+     * @param index the index
+     * @return the cluster
+     */
+    public int getCluster(int index) {
+        return (this.map.getY(index) / this.clusterSize) * this.clustersX + this.map.getX(index) / this.clusterSize;
+    }
+
+    /**
+     * Gets the number of local indices of a cluster, the size of the arrays
+     * passed to
+     * {@link #search(int, int, SearchWorkspace, boolean, int, double[], int[])}.
+     *
+     * @return the capacity
+     */
+    public int getClusterCapacity() {
+        return this.clusterSize * this.clusterSize;
+    }
+
+    /**
+     * Gets the size of the clusters.
+     *
+     * @return the cluster size
+     */
+    public int getClusterSize() {
+        return this.clusterSize;
+    }
+
+    /**
+     * Gets the cost of the cheapest path through the cluster between two of
+     * its nodes.
+     *
+     * @param cluster the cluster
+     * @param from the position of the first node in {@link #getNodes(int)}
+     * @param to the position of the second node in {@link #getNodes(int)}
+     * @return the cost or Double.POSITIVE_INFINITY
+     */
+    public double getCost(int cluster, int from, int to) {
+        return this.clusters[cluster].costs[from * this.clusters[cluster].nodes.length + to];
+    }
+
+    /**
+     * Gets the cost of the transitions leaving the cluster.
+     *
+     * @param cluster the cluster
+     * @return the exit costs
+     */
+    public double[] getExitCosts(int cluster) {
+        return this.clusters[cluster].exitCosts;
+    }
+
+    /**
+     * Gets the positions (in {@link #getNodes(int)}) of the nodes the
+     * transitions leaving the cluster start at.
+     *
+     * @param cluster the cluster
+     * @return the exit nodes
+     */
+    public int[] getExitNodes(int cluster) {
+        return this.clusters[cluster].exitNodes;
+    }
+
+    /**
+     * Gets the fields (in the neighbor clusters) the transitions leaving the
+     * cluster end at.
+     *
+     * @param cluster the cluster
+     * @return the exit targets
+     */
+    public int[] getExitTargets(int cluster) {
+        return this.clusters[cluster].exitTargets;
+    }
+
+    /**
+     * Gets the local index of a field inside its cluster.
+     *
+     * @param index the index
+     * @return the local index
+     */
+    public int getLocalIndex(int index) {
+        return (this.map.getY(index) % this.clusterSize) * this.clusterSize + this.map.getX(index) % this.clusterSize;
+    }
+
+    /**
+     * Gets the map.
+     *
+     * @return the map
+     */
+    public AbstractMap getMap() {
+        return this.map;
+    }
+
+    /**
+     * Gets the nodes (field indices, sorted) of the cluster.
+     *
+     * @param cluster the cluster
+     * @return the nodes
+     */
+    public int[] getNodes(int cluster) {
+        return this.clusters[cluster].nodes;
+    }
+
+    /**
+     * Gets the cheapest passable neighbor of a field inside another cluster.
+     *
+     * @param index the index
+     * @param cluster the other cluster
+     * @return the neighbor or {@link AbstractMap#NO_INDEX}
+     */
+    private int getPartner(int index, int cluster) {
+        int partner = AbstractMap.NO_INDEX, neighbor;
+
+        for (int direction = 0; direction < this.neighborTable.getDirections(); direction++) {
+            neighbor = this.neighborTable.getNeighbor(index, direction);
+
+            if (this.isInside(cluster, neighbor) && this.graph.getCost(neighbor) != Double.POSITIVE_INFINITY
+                    && (partner == AbstractMap.NO_INDEX || this.graph.getCost(neighbor) < this.graph.getCost(partner))) {
+                partner = neighbor;
+            }
+        }
+
+        return partner;
+    }
+
+    /**
+     * Gets the key of the transitions between two clusters.
+     *
+     * @param lower the lower cluster
+     * @param higher the higher cluster
+     * @return the key
+     */
+    private long getTransitionKey(int lower, int higher) {
+        return (long) lower * this.clusters.length + higher;
+    }
+
+    /**
+     * Gets the weight of entering a field: the terrain cost or the weight of
+     * the given search.
+     *
+     * @param index the index
+     * @param workspace the workspace of the search or null for the terrain
+     * cost
+     * @return the weight
+     */
+    private double getWeight(int index, SearchWorkspace workspace) {
+        return workspace == null ? this.graph.getCost(index) : workspace.getWeight(index);
+    }
+
+    /**
+     * Checks if the field lies inside the cluster.
+     *
+     * @param cluster the cluster
+     * @param index the index
+     * @return true, if successful
+     */
+    private boolean isInside(int cluster, int index) {
+        return index != NeighborTable.EDGE && this.getCluster(index) == cluster;
+    }
+
+    /**
+     * Searches the cheapest paths inside a cluster from (or, if reverse, to)
+     * the source field using Dijkstra's algorithm.
+     *
+     * @param cluster the cluster
+     * @param source the source
+     * @param workspace the workspace of a unit's search, holding its weights,
+     * or null for the terrain costs
+     * @param reverse true to search the paths leading to the source
+     * @param target the field to stop at or {@link AbstractMap#NO_INDEX}
+     * @param costs receives the cost of every local index
+     * @param parents receives the previous (if reverse, the next) field on the
+     * path of every local index
+     * @return the number of expanded fields
+     */
+    public int search(int cluster, int source, SearchWorkspace workspace, boolean reverse, int target,
+            double[] costs, int[] parents) {
+        int expandedNodes = 0, index, local, neighbor, neighborLocal;
+        int left = (cluster % this.clustersX) * this.clusterSize, bottom = (cluster / this.clustersX) * this.clusterSize;
+        double cost;
+
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        costs[this.getLocalIndex(source)] = 0;
+        parents[this.getLocalIndex(source)] = AbstractMap.NO_INDEX;
+        this.heap.offer(this.getLocalIndex(source), 0);
+
+        while (!this.heap.isEmpty()) {
+            local = this.heap.poll();
+            index = this.map.getIndex(left + local % this.clusterSize, bottom + local / this.clusterSize);
+            expandedNodes++;
+
+            if (index == target) {
+                break;
+            }
+
+            for (int direction = 0; direction < this.neighborTable.getDirections(); direction++) {
+                neighbor = this.neighborTable.getNeighbor(index, direction);
+
+                if (this.isInside(cluster, neighbor)) {
+                    neighborLocal = this.getLocalIndex(neighbor);
+                    cost = costs[local] + this.getWeight(reverse ? index : neighbor, workspace)
+                            * this.neighborTable.getDistance(index, neighbor);
+
+                    if (cost < costs[neighborLocal]) {
+                        costs[neighborLocal] = cost;
+                        parents[neighborLocal] = index;
+                        this.heap.offer(neighborLocal, cost);
+                    }
+                }
+            }
+        }
+
+        this.heap.clear();
+        return expandedNodes;
+    }
+
+    /**
+     * Repairs the graph for all clusters changed since the last update.
+     */
+    public void update() {
+        BitSet touched;
+        int cx, cy, other;
+
+        if (!this.dirtyClusters.isEmpty()) {
+            touched = new BitSet(this.clusters.length);
+
+            for (int cluster = this.dirtyClusters.nextSetBit(0); cluster >= 0; cluster = this.dirtyClusters.nextSetBit(cluster + 1)) {
+                cx = cluster % this.clustersX;
+                cy = cluster / this.clustersX;
+
+                for (int y = Math.max(0, cy - 1); y <= Math.min(this.clustersY - 1, cy + 1); y++) {
+                    for (int x = Math.max(0, cx - 1); x <= Math.min(this.clustersX - 1, cx + 1); x++) {
+                        other = y * this.clustersX + x;
+
+                        if (other != cluster && (!this.dirtyClusters.get(other) || other > cluster)) {
+                            this.updateTransitions(Math.min(cluster, other), Math.max(cluster, other));
+                            touched.set(other);
+                        }
+                    }
+                }
+
+                touched.set(cluster);
+            }
+
+            for (int cluster = touched.nextSetBit(0); cluster >= 0; cluster = touched.nextSetBit(cluster + 1)) {
+                this.updateNodes(cluster, this.dirtyClusters.get(cluster));
+            }
+
+            this.dirtyClusters.clear();
+        }
+    }
+
+    /**
+     * Updates the nodes, exits and inner costs of a cluster from the
+     * transitions to its neighbor clusters.
+     *
+     * @param cluster the cluster
+     * @param changed true if the fields of the cluster changed
+     */
+    private void updateNodes(int cluster, boolean changed) {
+        Cluster data = this.clusters[cluster];
+        int cx = cluster % this.clustersX, cy = cluster / this.clustersX, other, exits = 0, count = 0;
+        int[] nodes = new int[0], exitNodes = new int[0], exitTargets = new int[0], pairs, parents;
+        double[] exitCosts = new double[0], costs;
+        int own, foreign;
+
+        for (int y = Math.max(0, cy - 1); y <= Math.min(this.clustersY - 1, cy + 1); y++) {
+            for (int x = Math.max(0, cx - 1); x <= Math.min(this.clustersX - 1, cx + 1); x++) {
+                other = y * this.clustersX + x;
+                pairs = other == cluster ? null
+                        : this.transitions.get(this.getTransitionKey(Math.min(cluster, other), Math.max(cluster, other)));
+
+                if (pairs != null) {
+                    exitNodes = Arrays.copyOf(exitNodes, exits + pairs.length / 2);
+                    exitTargets = Arrays.copyOf(exitTargets, exits + pairs.length / 2);
+                    exitCosts = Arrays.copyOf(exitCosts, exits + pairs.length / 2);
+                    nodes = Arrays.copyOf(nodes, count + pairs.length / 2);
+
+                    for (int pair = 0; pair < pairs.length; pair += 2) {
+                        own = cluster < other ? pairs[pair] : pairs[pair + 1];
+                        foreign = cluster < other ? pairs[pair + 1] : pairs[pair];
+                        nodes[count++] = own;
+                        exitNodes[exits] = own;
+                        exitTargets[exits] = foreign;
+                        exitCosts[exits++] = this.graph.getCost(foreign) * this.neighborTable.getDistance(own, foreign);
+                    }
+                }
+            }
+        }
+
+        // distinct, sorted nodes and the exits refering to their positions
+        Arrays.sort(nodes);
+        count = 0;
+
+        for (int node = 0; node < nodes.length; node++) {
+            if (node == 0 || nodes[node] != nodes[node - 1]) {
+                nodes[count++] = nodes[node];
+            }
+        }
+
+        nodes = Arrays.copyOf(nodes, count);
+
+        for (int exit = 0; exit < exits; exit++) {
+            exitNodes[exit] = Arrays.binarySearch(nodes, exitNodes[exit]);
+        }
+
+        if (changed || !Arrays.equals(nodes, data.nodes)) {
+            costs = new double[this.getClusterCapacity()];
+            parents = new int[this.getClusterCapacity()];
+            data.costs = new double[nodes.length * nodes.length];
+
+            for (int from = 0; from < nodes.length; from++) {
+                this.search(cluster, nodes[from], null, false, AbstractMap.NO_INDEX, costs, parents);
+
+                for (int to = 0; to < nodes.length; to++) {
+                    data.costs[from * nodes.length + to] = costs[this.getLocalIndex(nodes[to])];
+                }
+            }
+        }
+
+        data.nodes = nodes;
+        data.exitNodes = exitNodes;
+        data.exitTargets = exitTargets;
+        data.exitCosts = exitCosts;
+    }
+
+    /**
+     * Updates the transitions between two clusters.
+     *
+     * @param lower the lower cluster
+     * @param higher the higher cluster
+     */
+    private void updateTransitions(int lower, int higher) {
+        int left = (lower % this.clustersX) * this.clusterSize, bottom = (lower / this.clustersX) * this.clusterSize;
+        int right = Math.min(this.map.getWidth(), left + this.clusterSize) - 1;
+        int top = Math.min(this.map.getHeight(), bottom + this.clusterSize) - 1;
+        int[] border = new int[2 * (right - left + 1) + 2 * (top - bottom + 1)], pairs, run;
+        boolean[] grouped;
+        int count = 0, index, length, node, pairCount = 0;
+
+        // the passable fields of the lower cluster next to the higher one
+        for (int y = bottom; y <= top; y++) {
+            for (int x = left; x <= right; x += (y == bottom || y == top) ? 1 : Math.max(1, right - left)) {
+                index = this.map.getIndex(x, y);
+
+                if (this.graph.getCost(index) != Double.POSITIVE_INFINITY
+                        && this.getPartner(index, higher) != AbstractMap.NO_INDEX) {
+                    border[count++] = index;
+                }
+            }
+        }
+
+        // the rim of the cluster holds every border field, a run gets at
+        // most two transitions
+        Arrays.sort(border, 0, count);
+        grouped = new boolean[count];
+        run = new int[count];
+        pairs = new int[4 * count];
+
+        // one or two transitions per connected run of border fields
+        for (int first = 0; first < count; first++) {
+            if (!grouped[first]) {
+                grouped[first] = true;
+                run[0] = border[first];
+                length = 1;
+
+                for (int member = 0; member < length; member++) {
+                    for (int other = first + 1; other < count; other++) {
+                        if (!grouped[other] && this.neighborTable.isNeighbor(run[member], border[other])) {
+                            grouped[other] = true;
+                            run[length++] = border[other];
+                        }
+                    }
+                }
+
+                Arrays.sort(run, 0, length);
+
+                for (int member : length >= LONG_RUN ? new int[]{0, length - 1} : new int[]{length / 2}) {
+                    node = run[member];
+                    pairs[pairCount++] = node;
+                    pairs[pairCount++] = this.getPartner(node, higher);
+                }
+            }
+        }
+
+        if (pairCount > 0) {
+            this.transitions.put(this.getTransitionKey(lower, higher), Arrays.copyOf(pairs, pairCount));
+        } else {
+            this.transitions.remove(this.getTransitionKey(lower, higher));
+        }
+    }
+
+    /**
+     * The abstract graph inside a cluster.
+     */
+    private static final class Cluster {
+
+        /**
+         * The costs between the nodes, nodes.length * nodes.length entries.
+         */
+        private double[] costs = new double[0];
+
+        /**
+         * The costs of the transitions leaving the cluster.
+         */
+        private double[] exitCosts = new double[0];
+
+        /**
+         * The node positions the transitions leaving the cluster start at.
+         */
+        private int[] exitNodes = new int[0];
+
+        /**
+         * The fields the transitions leaving the cluster end at.
+         */
+        private int[] exitTargets = new int[0];
+
+        /**
+         * The nodes.
+         */
+        private int[] nodes = new int[0];
+    }
+}
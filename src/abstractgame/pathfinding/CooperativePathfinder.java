@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.map.NeighborTable;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class CooperativePathfinder plans the paths of a group of units
+ * together (windowed hierarchical cooperative A*, WHCA*). The units are
+ * planned one after another, every path is reserved in a
+ * {@link ReservationTable} and the later units plan around the reservations,
+ * so no field holds more units than {@link AbstractField#getMaxUnits()} at any
+ * step. A unit enters a field only if the field has room for it already one
+ * step earlier, so the units of a step may move in any order. <br>
+ * A search runs on fields and steps: in every step a unit moves to a neighbor
+ * or waits, waiting costs as much as the cheapest step of the movement class
+ * but no movement points. The heuristic is the real cost to the target
+ * ignoring the other units of the group, taken from a {@link FlowField}.
+ * Only the first {@link #getWindow()} steps are planned cooperatively, the
+ * rest of the path follows the flow field and has to be planned again in a
+ * later move.
+ *
+ * @author Nils Kuttkat
+ */
+public class CooperativePathfinder {
+
+    /**
+     * The default number of steps planned cooperatively.
+     */
+    public static final int DEFAULT_WINDOW = 16;
+
+    /**
+     * The number of fields the last group expanded.
+     */
+    private int expandedNodes;
+
+    /**
+     * The flow fields used as heuristic.
+     */
+    private final FlowFieldPathfinder flowFieldPathfinder = new FlowFieldPathfinder();
+
+    /**
+     * The reservation table of the last group.
+     */
+    private ReservationTable reservationTable;
+
+    /**
+     * The number of steps planned cooperatively.
+     */
+    private final int window;
+
+    /**
+     * Instantiates a new cooperative pathfinder with the default window.
+     */
+    public CooperativePathfinder() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * Instantiates a new cooperative pathfinder.
+     *
+     * @param window the number of steps planned cooperatively
+     */
+    public CooperativePathfinder(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Illegal window " + window);
+        }
+
+        this.window = window;
+    }
+
+    /**
+     * Builds the path from the last node of the search, continued by the flow
+     * field if the node isn't the target.
+     *
+     * @param graph the graph
+     * @param unit the unit
+     * @param flowField the flow field
+     * @param last the last node of the search
+     * @return the path
+     */
+    private static Path buildPath(CostGraph graph, AbstractUnit unit, FlowField flowField, Node last) {
+        NeighborTable neighborTable = graph.getMap().getField(last.index).getNeighborTable();
+        int length = last.step + 1;
+        int[] indices;
+        double[] costs;
+
+        for (int index = last.index; index != flowField.getTarget(); index = flowField.getNextIndex(index)) {
+            length++;
+        }
+
+        indices = new int[length];
+        costs = new double[length];
+
+        for (Node node = last; node != null; node = node.parent) {
+            indices[node.step] = node.index;
+            costs[node.step] = node.movementCost;
+        }
+
+        for (int step = last.step + 1; step < length; step++) {
+            indices[step] = flowField.getNextIndex(indices[step - 1]);
+            costs[step] = costs[step - 1] + graph.getWeight(unit, indices[step])
+                    * neighborTable.getDistance(indices[step - 1], indices[step]);
+        }
+
+        return new Path(graph.getMap(), indices, costs);
+    }
+
+    /**
+     * Plans the path of the unit around the reservations.
+     *
+     * @param graph the graph
+     * @param unit the unit
+     * @param start the start
+     * @param target the target
+     * @param maxCost the max movement cost
+     * @return the path with one field per step or {@link Path#EMPTY} if the
+     * target can't be reached with at most maxCost
+     */
+    private Path findPath(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target,
+            double maxCost) {
+        Path path = Path.EMPTY;
+        FlowField flowField = this.flowFieldPathfinder.getFlowField(graph, unit, target);
+        NeighborTable neighborTable = start.getNeighborTable();
+        HashMap<Long, Node> nodes = new HashMap<Long, Node>();
+        PriorityQueue<Node> open = new PriorityQueue<Node>();
+        double waitCost = graph.getMinimumCost();
+        double movementCost, estimate;
+        int neighbor, nextStep;
+        Node node;
+
+        if (waitCost <= 0 || waitCost == Double.POSITIVE_INFINITY) {
+            waitCost = 1;
+        }
+
+        // the flow field's cost is finite for every field which can reach
+        // the target, the tail of a path beyond the window relies on it
+        if (flowField.getCost(start.getIndex()) <= maxCost
+                && flowField.getCost(start.getIndex()) != Double.POSITIVE_INFINITY) {
+            node = new Node(start.getIndex(), 0, 0, 0, flowField.getCost(start.getIndex()), null);
+            nodes.put(node.getKey(), node);
+            open.add(node);
+        }
+
+        while (!open.isEmpty()) {
+            node = open.poll();
+
+            // skip nodes which have been improved after they were queued
+            if (node.closed || nodes.get(node.getKey()) != node) {
+                continue;
+            }
+
+            node.closed = true;
+            this.expandedNodes++;
+
+            if (node.step == this.window
+                    || (node.index == target.getIndex()
+                    && this.reservationTable.isFreeFrom(node.index, node.step))) {
+                path = buildPath(graph, unit, flowField, node);
+                break;
+            }
+
+            nextStep = node.step + 1;
+
+            // wait
+            if (this.reservationTable.isFree(node.index, nextStep)) {
+                this.offer(nodes, open, new Node(node.index, nextStep, node.cost + waitCost,
+                        node.movementCost, flowField.getCost(node.index), node));
+            }
+
+            for (int direction = 0; direction < neighborTable.getDirections(); direction++) {
+                neighbor = neighborTable.getNeighbor(node.index, direction);
+
+                if (neighbor != NeighborTable.EDGE) {
+                    movementCost = graph.getWeight(unit, neighbor) * neighborTable.getDistance(node.index, neighbor);
+                    estimate = flowField.getCost(neighbor);
+
+                    if (estimate != Double.POSITIVE_INFINITY && movementCost != Double.POSITIVE_INFINITY
+                            && node.movementCost + movementCost + estimate <= maxCost
+                            && this.reservationTable.isFree(neighbor, nextStep)
+                            && this.reservationTable.isFree(neighbor, node.step)) {
+                        this.offer(nodes, open, new Node(neighbor, nextStep, node.cost + movementCost,
+                                node.movementCost + movementCost, estimate, node));
+                    }
+                }
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * Plans the paths of the group. Every path holds the field of every step,
+     * the same field twice in a row for waiting, and the accumulated movement
+     * cost. Units following their paths step by step, all units making one
+     * step in any order before any unit makes the next, never exceed the
+     * capacity of a field within the window.
+     *
+     * @param requests the requests, planned in this order
+     * @return the paths in the order of the requests, {@link Path#EMPTY} for
+     * every unit which can't reach its target with at most the request's max
+     * cost and stays on its start
+     */
+    public List<Path> findPaths(List<PathRequest> requests) {
+        List<Path> paths = new ArrayList<Path>(requests.size());
+        AbstractMap map = null;
+        AbstractUnit unit;
+        Path path;
+
+        this.expandedNodes = 0;
+
+        for (PathRequest request : requests) {
+            if (request.getStart() != null) {
+                map = request.getStart().getMap();
+                break;
+            }
+        }
+
+        this.reservationTable = new ReservationTable(map);
+
+        for (PathRequest request : requests) {
+            this.reservationTable.addUnit(request.getUnit(), request.getStart());
+        }
+
+        for (PathRequest request : requests) {
+            unit = request.getUnit();
+            path = Path.EMPTY;
+
+            if (!unit.hasGraph()) {
+                unit.getGame().getMap().buildGraph(unit);
+            }
+
+            if (AbstractPathfinder.isSearchable(unit.getCostGraph(), request.getStart(), request.getTarget())
+                    && map == request.getStart().getMap()) {
+                this.reservationTable.release(unit);
+                path = this.findPath(unit.getCostGraph(), unit, request.getStart(), request.getTarget(),
+                        request.getMaxCost());
+
+                // a unit which doesn't move keeps resting on its start
+                this.reservationTable.reserve(unit, path.isEmpty()
+                        ? new Path(map, new int[]{request.getStart().getIndex()}, new double[1]) : path);
+            }
+
+            paths.add(path);
+        }
+
+        return paths;
+    }
+
+    /**
+     * Gets the number of fields all searches of the last group expanded.
+     *
+     * @return the expanded nodes
+     */
+    public int getExpandedNodes() {
+        return this.expandedNodes;
+    }
+
+    /**
+     * Gets the reservation table of the last group.
+     *
+     * @return the reservation table or null if no group has been planned
+     */
+    public ReservationTable getReservationTable() {
+        return this.reservationTable;
+    }
+
+    /**
+     * Gets the number of steps planned cooperatively.
+     *
+     * @return the window
+     */
+    public int getWindow() {
+        return this.window;
+    }
+
+    /**
+     * Queues the node unless its field is already reached at its step with a
+     * lower cost.
+     *
+     * @param nodes the best node of every field and step
+     * @param open the open list
+     * @param node the node
+     */
+    private void offer(HashMap<Long, Node> nodes, PriorityQueue<Node> open, Node node) {
+        Node previous = nodes.get(node.getKey());
+
+        if (previous == null || (!previous.closed && node.cost < previous.cost)) {
+            nodes.put(node.getKey(), node);
+            open.add(node);
+        }
+    }
+
+    /**
+     * The Class Node is a field at a step of the search.
+     */
+    private static final class Node implements Comparable<Node> {
+
+        /**
+         * True if the node has been expanded.
+         */
+        private boolean closed;
+
+        /**
+         * The cost of the search, including waiting.
+         */
+        private final double cost;
+
+        /**
+         * The estimated cost to the target.
+         */
+        private final double estimate;
+
+        /**
+         * The field index.
+         */
+        private final int index;
+
+        /**
+         * The movement cost.
+         */
+        private final double movementCost;
+
+        /**
+         * The previous node.
+         */
+        private final Node parent;
+
+        /**
+         * The step.
+         */
+        private final int step;
+
+        /**
+         * Instantiates a new node.
+         *
+         * @param index the field index
+         * @param step the step
+         * @param cost the cost of the search
+         * @param movementCost the movement cost
+         * @param estimate the estimated cost to the target
+         * @param parent the previous node
+         */
+        Node(int index, int step, double cost, double movementCost, double estimate, Node parent) {
+            this.index = index;
+            this.step = step;
+            this.cost = cost;
+            this.movementCost = movementCost;
+            this.estimate = estimate;
+            this.parent = parent;
+        }
+
+        /*
+    	 * (non-Javadoc)
+    	 *
+    	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+         */
+        @Override
+        public int compareTo(Node node) {
+            return Double.compare(this.cost + this.estimate, node.cost + node.estimate);
+        }
+
+        /**
+         * Gets the key of the field and step.
+         *
+         * @return the key
+         */
+        long getKey() {
+            return ((long) this.step << 32) | this.index;
+        }
+    }
+}
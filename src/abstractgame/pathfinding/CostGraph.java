@@ -0,0 +1,483 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+
+import abstractgame.events.ListenerList;
+import abstractgame.events.graphevents.CostGraphChangedEvent;
+import abstractgame.interfaces.CostGraphChangedListener;
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.map.NeighborTable;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class CostGraph is the pathfinding graph of one {@link MovementClass} on
+ * an {@link AbstractMap}. It is shared by every unit of the movement class.
+ * <br>
+ * The graph stores the terrain cost of entering every field, indexed by the
+ * field's index. Moving from a field to its neighbor costs the neighbor's
+ * terrain cost times the distance between both fields. The costs are
+ * evaluated lazily the first time a search asks for them, so building a graph
+ * is cheap and a changed field is only evaluated again if a search reaches
+ * it. They are kept in pages of {@link #PAGE_SIZE} fields which are allocated
+ * when a search reaches one of their fields, so the graph of a large, sparse
+ * {@link abstractgame.map.ChunkedMap} only spends memory on the parts of the
+ * map which are searched. The uniformity of the fields which jump point
+ * searches ask for ({@link #isUniform(int)}) is kept the same way. <br>
+ * Everything which differs from unit to unit, like being blocked by enemy
+ * units, is not part of the graph but applied as an overlay by
+ * {@link #getWeight(AbstractUnit, int)} while a search runs. <br>
+ * Listeners are told about every field whose weight may have changed, see
+ * {@link CostGraphChangedListener}.
+ *
+ * @author Nils Kuttkat
+ */
+public class CostGraph {
+
+    /**
+     * The number of bits of a field index within its page. The pathfinding
+     * arrays holding a value per field are split into pages of this size.
+     */
+    static final int PAGE_SHIFT = 10;
+
+    /**
+     * The number of fields per page.
+     */
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    /**
+     * The mask of a field index within its page.
+     */
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /**
+     * The marker for costs which haven't been evaluated yet.
+     */
+    private static final double UNKNOWN = Double.NaN;
+
+    /**
+     * The uniformity of fields which are not uniform.
+     */
+    private static final byte NOT_UNIFORM = 2;
+
+    /**
+     * The uniformity of uniform fields.
+     */
+    private static final byte UNIFORM = 1;
+
+    /**
+     * The uniformity of fields which haven't been checked yet.
+     */
+    private static final byte UNKNOWN_UNIFORMITY = 0;
+
+    /**
+     * The changed listener.
+     */
+    private final ListenerList<CostGraphChangedListener> changedListener = new ListenerList<CostGraphChangedListener>(CostGraphChangedListener.class);
+
+    /**
+     * The cluster graph, built when a hierarchical search asks for it.
+     */
+    private ClusterGraph clusterGraph;
+
+    /**
+     * The pages of the terrain costs, null for pages no search has reached.
+     */
+    private final double[][] costs;
+
+    /**
+     * The jump table, built when a jump point search asks for it.
+     */
+    private JumpTable jumpTable;
+
+    /**
+     * The landmark table, built when an ALT search asks for it.
+     */
+    private LandmarkTable landmarkTable;
+
+    /**
+     * The map.
+     */
+    private final AbstractMap map;
+
+    /**
+     * The lowest terrain cost of all fields, UNKNOWN until it is asked for.
+     */
+    private double minimumCost = UNKNOWN;
+
+    /**
+     * The movement class.
+     */
+    private final MovementClass movementClass;
+
+    /**
+     * The pages of the uniformity of the fields, null for pages no jump point
+     * search has reached.
+     */
+    private final byte[][] uniformity;
+
+    /**
+     * The number of units using this graph.
+     */
+    private int units;
+
+    /**
+     * Instantiates a new cost graph.
+     *
+     * @param map the map
+     * @param movementClass the movement class
+     */
+    public CostGraph(AbstractMap map, MovementClass movementClass) {
+        this.map = map;
+        this.movementClass = movementClass;
+        this.costs = new double[getPageCount(map.getSize())][];
+        this.uniformity = new byte[this.costs.length][];
+    }
+
+    /**
+     * Adds the changed listener.
+     *
+     * @param listener the listener
+     */
+    public void addChangedListener(CostGraphChangedListener listener) {
+        this.changedListener.add(listener);
+    }
+
+    /**
+     * Registers a unit using this graph.
+     *
+     * @return the number of units using this graph
+     */
+    public int attach() {
+        return ++this.units;
+    }
+
+    /**
+     * Computes the terrain cost of entering the field with the given index.
+     *
+     * @param index the index
+     * @return the cost
+     */
+    private double computeCost(int index) {
+        return this.movementClass.getCost(this.map, index);
+    }
+
+    /**
+     * Unregisters a unit using this graph.
+     *
+     * @return the number of units still using this graph
+     */
+    public int detach() {
+        return --this.units;
+    }
+
+    /**
+     * Tells the graph that the field with the given index changed its terrain
+     * or has been replaced.
+     *
+     * @param index the index
+     */
+    public void fieldChanged(int index) {
+        double cost = UNKNOWN;
+        double[] page = this.costs[index >>> PAGE_SHIFT];
+        int x = this.map.getX(index), y = this.map.getY(index), neighbor;
+
+        // keep the minimum a lower bound, a field becoming more expensive
+        // leaves it too low, which is safe for heuristics
+        if (!Double.isNaN(this.minimumCost)) {
+            cost = this.computeCost(index);
+            this.minimumCost = Math.min(this.minimumCost, cost);
+        }
+
+        if (page != null) {
+            page[index & PAGE_MASK] = cost;
+        }
+
+        // the field's cost is part of the uniformity of its neighbors
+        for (int neighborY = Math.max(0, y - 1); neighborY <= Math.min(this.map.getHeight() - 1, y + 1); neighborY++) {
+            for (int neighborX = Math.max(0, x - 1); neighborX <= Math.min(this.map.getWidth() - 1, x + 1); neighborX++) {
+                neighbor = neighborY * this.map.getWidth() + neighborX;
+
+                if (this.uniformity[neighbor >>> PAGE_SHIFT] != null) {
+                    this.uniformity[neighbor >>> PAGE_SHIFT][neighbor & PAGE_MASK] = UNKNOWN_UNIFORMITY;
+                }
+            }
+        }
+
+        if (this.clusterGraph != null) {
+            this.clusterGraph.fieldChanged(index);
+        }
+
+        if (this.jumpTable != null) {
+            this.jumpTable.fieldChanged(index);
+        }
+
+        if (this.landmarkTable != null) {
+            this.landmarkTable.fieldChanged(index);
+        }
+
+        this.fireChangedEvent(index, true);
+    }
+
+    /**
+     * Tells the graph that a unit entered or left the field with the given
+     * index. The terrain costs don't depend on the units, but the
+     * {@link JumpTable} does.
+     *
+     * @param index the index
+     */
+    public void fieldOccupationChanged(int index) {
+        if (this.jumpTable != null) {
+            this.jumpTable.fieldChanged(index);
+        }
+
+        this.fireChangedEvent(index, false);
+    }
+
+    /**
+     * Fire changed event.
+     *
+     * @param index the index of the changed field
+     * @param terrainChanged true if the terrain cost changed
+     */
+    protected void fireChangedEvent(int index, boolean terrainChanged) {
+        CostGraphChangedListener[] listeners = this.changedListener.getListeners();
+
+        if (listeners.length > 0) {
+            CostGraphChangedEvent event = new CostGraphChangedEvent(this, index, terrainChanged);
+
+            for (CostGraphChangedListener listener : listeners) {
+                listener.costGraphChanged(event);
+            }
+        }
+    }
+
+    /**
+     * Gets the cluster graph of this graph, up to date with all changes of the
+     * map. The graph is built the first time it is asked for.
+     *
+     * @param neighborTable the neighbor table of the map's fields
+     * @param clusterSize the size of the clusters
+     * @return the cluster graph
+     */
+    public ClusterGraph getClusterGraph(NeighborTable neighborTable, int clusterSize) {
+        if (this.clusterGraph == null || this.clusterGraph.getClusterSize() != clusterSize) {
+            this.clusterGraph = new ClusterGraph(this, neighborTable, clusterSize);
+        } else {
+            this.clusterGraph.update();
+        }
+
+        return this.clusterGraph;
+    }
+
+    /**
+     * Gets the terrain cost of entering the field with the given index.
+     *
+     * @param index the index
+     * @return the cost or Double.POSITIVE_INFINITY if the field is not
+     * accessible
+     */
+    public double getCost(int index) {
+        double[] page = this.costs[index >>> PAGE_SHIFT];
+        double cost;
+
+        if (page == null) {
+            page = new double[PAGE_SIZE];
+            Arrays.fill(page, UNKNOWN);
+            this.costs[index >>> PAGE_SHIFT] = page;
+        }
+
+        cost = page[index & PAGE_MASK];
+
+        if (Double.isNaN(cost)) {
+            cost = this.computeCost(index);
+            page[index & PAGE_MASK] = cost;
+        }
+
+        return cost;
+    }
+
+    /**
+     * Gets the jump table of this graph, up to date with all changes of the
+     * map. The table is built the first time it is asked for.
+     *
+     * @param diagonal true for 8-connected maps
+     * @return the jump table
+     */
+    public JumpTable getJumpTable(boolean diagonal) {
+        if (this.jumpTable == null || this.jumpTable.isDiagonal() != diagonal) {
+            this.jumpTable = new JumpTable(this, diagonal);
+        } else {
+            this.jumpTable.update();
+        }
+
+        return this.jumpTable;
+    }
+
+    /**
+     * Gets the landmark table of this graph, up to date with all changes of
+     * the map. The table is built the first time it is asked for.
+     *
+     * @param neighborTable the neighbor table of the map's fields
+     * @param landmarks the number of landmarks
+     * @return the landmark table
+     */
+    public LandmarkTable getLandmarkTable(NeighborTable neighborTable, int landmarks) {
+        if (this.landmarkTable == null || this.landmarkTable.getSize() != landmarks) {
+            this.landmarkTable = new LandmarkTable(this, neighborTable, landmarks);
+        } else {
+            this.landmarkTable.update();
+        }
+
+        return this.landmarkTable;
+    }
+
+    /**
+     * Gets the map.
+     *
+     * @return the map
+     */
+    public AbstractMap getMap() {
+        return this.map;
+    }
+
+    /**
+     * Gets the lowest terrain cost of all fields of the map. This is the
+     * cheapest terrain modifier of the movement class among the terrains which
+     * actually occur on the map. It is computed the first time it is asked
+     * for (evaluating every field once, without keeping the costs of pages
+     * no search has reached) and afterwards only lowered when fields change,
+     * so it may be lower than the real minimum but never higher.
+     *
+     * @return the minimum cost or Double.POSITIVE_INFINITY if no field is
+     * accessible
+     */
+    public double getMinimumCost() {
+        double minimum;
+
+        if (Double.isNaN(this.minimumCost)) {
+            minimum = Double.POSITIVE_INFINITY;
+
+            for (int index = 0; index < this.map.getSize(); index++) {
+                minimum = Math.min(minimum, this.costs[index >>> PAGE_SHIFT] == null ? this.computeCost(index)
+                        : this.getCost(index));
+            }
+
+            this.minimumCost = minimum;
+        }
+
+        return this.minimumCost;
+    }
+
+    /**
+     * Gets the movement class.
+     *
+     * @return the movement class
+     */
+    public MovementClass getMovementClass() {
+        return this.movementClass;
+    }
+
+    /**
+     * Gets the number of pages holding a value for each of the given number
+     * of fields.
+     *
+     * @param size the number of fields
+     * @return the number of pages
+     */
+    static int getPageCount(int size) {
+        return (size >>> PAGE_SHIFT) + ((size & PAGE_MASK) == 0 ? 0 : 1);
+    }
+
+    /**
+     * Gets the weight of entering the field with the given index for the
+     * given unit. This is the terrain cost unless the unit can't pass the
+     * field ({@link AbstractUnit#canPass(AbstractField)}). Only placed
+     * fields are checked ({@link AbstractMap#getPlacedField(int)}): a
+     * position without a field carries no units, and no field is created
+     * for it.
+     *
+     * @param unit the unit
+     * @param index the index
+     * @return the weight
+     */
+    public double getWeight(AbstractUnit unit, int index) {
+        double weight = this.getCost(index);
+        AbstractField field;
+
+        if (weight != Double.POSITIVE_INFINITY) {
+            field = this.map.getPlacedField(index);
+
+            if (field != null && !unit.canPass(field)) {
+                weight = Double.POSITIVE_INFINITY;
+            }
+        }
+
+        return weight;
+    }
+
+    /**
+     * Checks if the field with the given index and all its neighbors on a
+     * square grid which aren't blocked have the same terrain cost, see
+     * {@link JumpGrid#isUniform(int)}. The uniformity is computed the first
+     * time a search asks for it and kept until the field or one of its
+     * neighbors changes.
+     *
+     * @param index the index
+     * @return true, if is uniform
+     */
+    boolean isUniform(int index) {
+        byte[] page = this.uniformity[index >>> PAGE_SHIFT];
+        int x, y;
+        double cost, neighborCost;
+
+        if (page == null) {
+            page = new byte[PAGE_SIZE];
+            this.uniformity[index >>> PAGE_SHIFT] = page;
+        }
+
+        if (page[index & PAGE_MASK] == UNKNOWN_UNIFORMITY) {
+            page[index & PAGE_MASK] = UNIFORM;
+            cost = this.getCost(index);
+            x = this.map.getX(index);
+            y = this.map.getY(index);
+
+            for (int neighborY = Math.max(0, y - 1); neighborY <= Math.min(this.map.getHeight() - 1, y + 1); neighborY++) {
+                for (int neighborX = Math.max(0, x - 1); neighborX <= Math.min(this.map.getWidth() - 1, x + 1); neighborX++) {
+                    neighborCost = this.getCost(neighborY * this.map.getWidth() + neighborX);
+
+                    if (neighborCost != Double.POSITIVE_INFINITY && neighborCost != cost) {
+                        page[index & PAGE_MASK] = NOT_UNIFORM;
+                    }
+                }
+            }
+        }
+
+        return page[index & PAGE_MASK] == UNIFORM;
+    }
+
+    /**
+     * Removes the changed listener.
+     *
+     * @param listener the listener
+     */
+    public void removeChangedListener(CostGraphChangedListener listener) {
+        this.changedListener.remove(listener);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import abstractgame.map.AbstractMap;
+import abstractgame.map.NeighborTable;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class CostGraphSnapshot is a read-only copy of the weights of a
+ * {@link CostGraph} for the units of one pass group
+ * ({@link AbstractUnit#getPassGroup()}). All weights, including
+ * {@link AbstractUnit#canPass(abstractgame.map.AbstractField)}, are evaluated
+ * once when the snapshot is taken, afterwards the snapshot doesn't touch the
+ * graph, the map or the units anymore, so any number of threads may search it
+ * at the same time. <br>
+ * The snapshot doesn't follow changes of the map, see {@link #isValid()}.
+ *
+ * @author Nils Kuttkat
+ */
+public class CostGraphSnapshot {
+
+    /**
+     * The graph.
+     */
+    private final CostGraph graph;
+
+    /**
+     * The lowest finite weight, 0 if no field is accessible.
+     */
+    private final double minimumWeight;
+
+    /**
+     * The neighbor table.
+     */
+    private final NeighborTable neighborTable;
+
+    /**
+     * The pass group.
+     */
+    private final Object passGroup;
+
+    /**
+     * The version of the map the snapshot was taken of.
+     */
+    private final long version;
+
+    /**
+     * The weight of entering every field.
+     */
+    private final double[] weights;
+
+    /**
+     * Instantiates a new snapshot of the graph's weights for the unit's pass
+     * group.
+     *
+     * @param graph the graph
+     * @param unit the unit the weights are evaluated for
+     * @param neighborTable the neighbor table of the map's fields
+     */
+    public CostGraphSnapshot(CostGraph graph, AbstractUnit unit, NeighborTable neighborTable) {
+        AbstractMap map = graph.getMap();
+        double minimum = Double.POSITIVE_INFINITY;
+
+        this.graph = graph;
+        this.passGroup = unit.getPassGroup();
+        this.neighborTable = neighborTable;
+        this.version = map.getVersion();
+        this.weights = new double[map.getSize()];
+
+        for (int index = 0; index < this.weights.length; index++) {
+            this.weights[index] = graph.getWeight(unit, index);
+            minimum = Math.min(minimum, this.weights[index]);
+        }
+
+        this.minimumWeight = minimum == Double.POSITIVE_INFINITY ? 0 : minimum;
+    }
+
+    /**
+     * Gets the graph.
+     *
+     * @return the graph
+     */
+    public CostGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * Gets the map.
+     *
+     * @return the map
+     */
+    public AbstractMap getMap() {
+        return this.graph.getMap();
+    }
+
+    /**
+     * Gets the lowest finite weight of all fields.
+     *
+     * @return the minimum weight or 0 if no field is accessible
+     */
+    public double getMinimumWeight() {
+        return this.minimumWeight;
+    }
+
+    /**
+     * Gets the neighbor table.
+     *
+     * @return the neighbor table
+     */
+    public NeighborTable getNeighborTable() {
+        return this.neighborTable;
+    }
+
+    /**
+     * Gets the pass group.
+     *
+     * @return the pass group
+     */
+    public Object getPassGroup() {
+        return this.passGroup;
+    }
+
+    /**
+     * Gets the version of the map the snapshot was taken of.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets the weight of entering the field with the given index.
+     *
+     * @param index the index
+     * @return the weight
+     * @see CostGraph#getWeight(AbstractUnit, int)
+     */
+    public double getWeight(int index) {
+        return this.weights[index];
+    }
+
+    /**
+     * Checks if the map hasn't changed since the snapshot was taken.
+     *
+     * @return true, if is valid
+     */
+    public boolean isValid() {
+        return this.graph.getMap().getVersion() == this.version;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.map.NeighborTable;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class DijkstraPathfinder finds the cheapest path using Dijkstra's
+ * algorithm on the fields' indices. <br>
+ * Subclasses may guide the search towards the target by overriding
+ * {@link #estimate(SearchWorkspace, int, int)}, which turns it into A*. The
+ * search loop keeps its state in the {@link SearchWorkspace}, so it may run
+ * on several threads at once if the estimate does too, see
+ * {@link BatchPathfinder}.
+ *
+ * @author Nils Kuttkat
+ */
+public class DijkstraPathfinder extends AbstractPathfinder {
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 4424616479837436165L;
+
+    /**
+     * Estimates the cost from the field with the given index to the target.
+     * The estimate must never be higher than the real cost and must not drop
+     * by more than the cost of a step between neighbors (a consistent
+     * heuristic), because every field is expanded only once. <br>
+     * Dijkstra's algorithm estimates 0.
+     *
+     * @param workspace the workspace of the search
+     * @param index the index
+     * @param target the index of the target
+     * @return the estimate
+     */
+    protected double estimate(SearchWorkspace workspace, int index, int target) {
+        return 0;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.AbstractPathfinder#findPath(abstractgame.pathfinding.CostGraph,
+	 * abstractgame.unit.AbstractUnit, abstractgame.map.AbstractField,
+	 * abstractgame.map.AbstractField, double)
+     */
+    @Override
+    public Path findPath(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target, double maxCost) {
+        Path path = Path.EMPTY;
+        SearchWorkspace workspace;
+
+        if (isSearchable(graph, start, target)) {
+            workspace = SearchWorkspace.acquire(graph.getMap().getSize());
+
+            try {
+                if (this.search(graph, unit, start, target, maxCost, workspace)) {
+                    path = workspace.buildPath(graph.getMap(), target.getIndex());
+                }
+            } finally {
+                workspace.release();
+            }
+        } else {
+            this.setExpandedNodes(0);
+        }
+
+        return path;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.AbstractPathfinder#findPath(abstractgame.pathfinding.CostGraph,
+	 * abstractgame.unit.AbstractUnit, abstractgame.map.AbstractField,
+	 * abstractgame.map.AbstractField, double, abstractgame.pathfinding.PathCursor)
+     */
+    @Override
+    public boolean findPath(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target,
+            double maxCost, PathCursor cursor) {
+        boolean found = false;
+        SearchWorkspace workspace;
+
+        cursor.clear();
+
+        if (isSearchable(graph, start, target)) {
+            workspace = SearchWorkspace.acquire(graph.getMap().getSize());
+
+            try {
+                found = this.search(graph, unit, start, target, maxCost, workspace);
+
+                if (found) {
+                    workspace.load(graph.getMap(), target.getIndex(), cursor);
+                }
+            } finally {
+                workspace.release();
+            }
+        } else {
+            this.setExpandedNodes(0);
+        }
+
+        return found;
+    }
+
+    /**
+     * Finds every field the unit can reach from the start with at most
+     * maxCost on the cost graph of its movement class.
+     *
+     * @param unit the unit
+     * @param start the start
+     * @param maxCost the max cost
+     * @return the reachable set
+     */
+    public ReachableSet findReachableFields(AbstractUnit unit, AbstractField start, double maxCost) {
+        if (!unit.hasGraph()) {
+            unit.getGame().getMap().buildGraph(unit);
+        }
+
+        return this.findReachableFields(unit.getCostGraph(), unit, start, maxCost);
+    }
+
+    /**
+     * Finds every field the unit can reach from the start with at most
+     * maxCost in a single search, which stops as soon as the cheapest open
+     * field exceeds maxCost.
+     *
+     * @param graph the graph
+     * @param unit the unit
+     * @param start the start
+     * @param maxCost the max cost
+     * @return the reachable set or {@link ReachableSet#EMPTY} if the start
+     * isn't placed on the graph's map
+     */
+    public ReachableSet findReachableFields(CostGraph graph, AbstractUnit unit, AbstractField start, double maxCost) {
+        ReachableSet reachableSet = ReachableSet.EMPTY;
+        int expandedNodes = 0;
+
+        if (start != null && start.getMap() == graph.getMap()) {
+            AbstractMap map = graph.getMap();
+            NeighborTable neighborTable = start.getNeighborTable();
+            SearchWorkspace workspace = SearchWorkspace.acquire(map.getSize());
+            FieldHeap open = workspace.getOpen();
+            int[] reached = new int[64];
+            double[] reachedCosts;
+            int[] reachedParents;
+            int index, neighbor;
+            double cost;
+
+            try {
+                workspace.setWeights(graph, unit);
+                workspace.reach(start.getIndex(), 0, AbstractMap.NO_INDEX);
+                open.offer(start.getIndex(), 0);
+
+                while (!open.isEmpty()) {
+                    index = open.poll();
+                    workspace.close(index);
+
+                    if (expandedNodes == reached.length) {
+                        reached = Arrays.copyOf(reached, expandedNodes * 2);
+                    }
+
+                    reached[expandedNodes++] = index;
+
+                    for (int direction = 0; direction < neighborTable.getDirections(); direction++) {
+                        neighbor = neighborTable.getNeighbor(index, direction);
+
+                        if (neighbor != NeighborTable.EDGE && !workspace.isClosed(neighbor)) {
+                            cost = workspace.getCost(index)
+                                    + workspace.getWeight(neighbor) * neighborTable.getDistance(index, neighbor);
+
+                            if (cost < workspace.getCost(neighbor) && cost <= maxCost) {
+                                workspace.reach(neighbor, cost, index);
+                                open.offer(neighbor, cost);
+                            }
+                        }
+                    }
+                }
+
+                // store the fields sorted by index for the lookups
+                reached = Arrays.copyOf(reached, expandedNodes);
+                Arrays.sort(reached);
+                reachedCosts = new double[reached.length];
+                reachedParents = new int[reached.length];
+
+                for (int position = 0; position < reached.length; position++) {
+                    reachedCosts[position] = workspace.getCost(reached[position]);
+                    reachedParents[position] = workspace.getParent(reached[position]);
+                }
+            } finally {
+                workspace.release();
+            }
+
+            reachableSet = new ReachableSet(graph, start.getIndex(), maxCost, map.getVersion(),
+                    reached, reachedCosts, reachedParents);
+        }
+
+        this.setExpandedNodes(expandedNodes);
+        return reachableSet;
+    }
+
+    /**
+     * Prepares a new search, e.g. the data
+     * {@link #estimate(SearchWorkspace, int, int)} needs.
+     *
+     * @param graph the graph
+     * @param unit the unit
+     * @param target the target
+     * @param workspace the workspace of the search
+     */
+    protected void prepareSearch(CostGraph graph, AbstractUnit unit, AbstractField target,
+            SearchWorkspace workspace) {
+    }
+
+    /**
+     * Searches the cheapest path in the workspace. The fields' costs and
+     * parents stay in the workspace until it is released.
+     *
+     * @param graph the graph
+     * @param unit the unit
+     * @param start the start
+     * @param target the target
+     * @param maxCost the max cost
+     * @param workspace the workspace
+     * @return true, if the target has been reached with at most maxCost
+     */
+    private boolean search(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target,
+            double maxCost, SearchWorkspace workspace) {
+        this.prepareSearch(graph, unit, target, workspace);
+        workspace.setWeights(graph, unit);
+        this.setExpandedNodes(this.search(start.getNeighborTable(), start.getIndex(), target.getIndex(), maxCost,
+                workspace));
+        return workspace.isClosed(target.getIndex());
+    }
+
+    /**
+     * Runs the search loop in a workspace whose weights and estimate are set.
+     * Only the workspace is changed, so the loop may run on several threads
+     * at once as long as {@link #estimate(SearchWorkspace, int, int)} only
+     * reads the workspace.
+     *
+     * @param neighborTable the neighbor table
+     * @param start the index of the start
+     * @param target the index of the target
+     * @param maxCost the max cost
+     * @param workspace the workspace
+     * @return the number of expanded fields, the target has been reached with
+     * at most maxCost if it is closed afterwards
+     */
+    int search(NeighborTable neighborTable, int start, int target, double maxCost, SearchWorkspace workspace) {
+        FieldHeap open = workspace.getOpen();
+        int index, neighbor, expandedNodes = 0;
+        double cost, estimate;
+
+        workspace.reach(start, 0, AbstractMap.NO_INDEX);
+        open.offer(start, this.estimate(workspace, start, target));
+
+        while (!open.isEmpty()) {
+            index = open.poll();
+            workspace.close(index);
+            expandedNodes++;
+
+            if (index == target) {
+                break;
+            }
+
+            for (int direction = 0; direction < neighborTable.getDirections(); direction++) {
+                neighbor = neighborTable.getNeighbor(index, direction);
+
+                if (neighbor != NeighborTable.EDGE && !workspace.isClosed(neighbor)) {
+                    cost = workspace.getCost(index)
+                            + workspace.getWeight(neighbor) * neighborTable.getDistance(index, neighbor);
+
+                    if (cost < workspace.getCost(neighbor)) {
+                        estimate = this.estimate(workspace, neighbor, target);
+
+                        // the target can't be reached within maxCost via
+                        // this neighbor if even the estimate exceeds it
+                        if (cost + estimate <= maxCost) {
+                            workspace.reach(neighbor, cost, index);
+                            open.offer(neighbor, cost + estimate);
+                        }
+                    }
+                }
+            }
+        }
+
+        return expandedNodes;
+    }
+}
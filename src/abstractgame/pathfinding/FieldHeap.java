@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * The Class FieldHeap is a binary min-heap of field indices, ordered by a
+ * double priority. Every index is contained at most once, offering an index
+ * again lowers its priority (decrease-key), so a search never has to skip
+ * stale entries. <br>
+ * Ties are broken by an optional secondary priority, which incremental
+ * searches use for their two-part keys. <br>
+ * The heap itself grows with the number of queued fields, only the slot
+ * lookup has one int per field of the map, in pages of
+ * {@link CostGraph#PAGE_SIZE} fields which are allocated when one of their
+ * fields is queued.
+ *
+ * @author Nils Kuttkat
+ */
+public class FieldHeap {
+
+    /**
+     * The number of fields this heap can hold.
+     */
+    private final int capacity;
+
+    /**
+     * The queued field indices in heap order.
+     */
+    private int[] heap;
+
+    /**
+     * The priorities in heap order.
+     */
+    private double[] priorities;
+
+    /**
+     * The secondary priorities in heap order.
+     */
+    private double[] secondaries;
+
+    /**
+     * The number of queued fields.
+     */
+    private int size;
+
+    /**
+     * The pages of the heap slot + 1 of every field index, 0 if the field
+     * isn't queued, null for pages none of whose fields has been queued.
+     */
+    private final int[][] slots;
+
+    /**
+     * Instantiates a new field heap.
+     *
+     * @param capacity the number of fields (the size of the map)
+     */
+    public FieldHeap(int capacity) {
+        this.capacity = capacity;
+        this.slots = new int[CostGraph.getPageCount(capacity)][];
+        this.heap = new int[64];
+        this.priorities = new double[64];
+        this.secondaries = new double[64];
+    }
+
+    /**
+     * Gets the number of fields this heap can hold.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Removes all fields. This only touches the queued fields, so a heap can
+     * be reused for many searches.
+     */
+    public void clear() {
+        for (int slot = 0; slot < this.size; slot++) {
+            this.slots[this.heap[slot] >>> CostGraph.PAGE_SHIFT][this.heap[slot] & CostGraph.PAGE_MASK] = 0;
+        }
+
+        this.size = 0;
+    }
+
+    /**
+     * Checks if the field is queued.
+     *
+     * @param index the index
+     * @return true, if successful
+     */
+    public boolean contains(int index) {
+        return this.getSlot(index) >= 0;
+    }
+
+    /**
+     * Gets the heap slot of the field.
+     *
+     * @param index the index
+     * @return the slot or -1 if the field isn't queued
+     */
+    private int getSlot(int index) {
+        int[] page = this.slots[index >>> CostGraph.PAGE_SHIFT];
+
+        return page == null ? -1 : page[index & CostGraph.PAGE_MASK] - 1;
+    }
+
+    /**
+     * Compares two (priority, secondary priority) keys.
+     *
+     * @param priority the priority of the first key
+     * @param secondary the secondary priority of the first key
+     * @param otherPriority the priority of the second key
+     * @param otherSecondary the secondary priority of the second key
+     * @return true, if the first key is lower
+     */
+    private static boolean isLess(double priority, double secondary, double otherPriority, double otherSecondary) {
+        return priority < otherPriority || (priority == otherPriority && secondary < otherSecondary);
+    }
+
+    /**
+     * Checks if the heap is empty.
+     *
+     * @return true, if is empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Queues the field or lowers its priority if it is already queued with a
+     * higher one.
+     *
+     * @param index the index
+     * @param priority the priority
+     */
+    public void offer(int index, double priority) {
+        int slot = this.getSlot(index);
+
+        if (slot < 0 || priority < this.priorities[slot]) {
+            this.update(index, priority, 0);
+        }
+    }
+
+    /**
+     * Gets the field with the lowest priority without removing it.
+     *
+     * @return the index
+     */
+    public int peek() {
+        return this.heap[0];
+    }
+
+    /**
+     * Gets the lowest priority.
+     *
+     * @return the priority
+     */
+    public double peekPriority() {
+        return this.priorities[0];
+    }
+
+    /**
+     * Gets the secondary priority of the field with the lowest priority.
+     *
+     * @return the secondary priority
+     */
+    public double peekSecondary() {
+        return this.secondaries[0];
+    }
+
+    /**
+     * Stores the field at the given slot.
+     *
+     * @param slot the slot
+     * @param index the index
+     * @param priority the priority
+     * @param secondary the secondary priority
+     */
+    private void place(int slot, int index, double priority, double secondary) {
+        this.heap[slot] = index;
+        this.priorities[slot] = priority;
+        this.secondaries[slot] = secondary;
+        this.setSlot(index, slot + 1);
+    }
+
+    /**
+     * Removes the field with the lowest priority.
+     *
+     * @return the index
+     */
+    public int poll() {
+        int index = this.heap[0];
+
+        this.remove(index);
+        return index;
+    }
+
+    /**
+     * Removes the field if it is queued.
+     *
+     * @param index the index
+     */
+    public void remove(int index) {
+        int slot = this.getSlot(index), last, parent;
+
+        if (slot >= 0) {
+            this.setSlot(index, 0);
+            last = --this.size;
+
+            // the last field fills the gap and moves either up or down
+            if (slot < last) {
+                parent = (slot - 1) / 2;
+
+                if (slot > 0 && isLess(this.priorities[last], this.secondaries[last],
+                        this.priorities[parent], this.secondaries[parent])) {
+                    this.siftUp(slot, this.heap[last], this.priorities[last], this.secondaries[last]);
+                } else {
+                    this.siftDown(slot, this.heap[last], this.priorities[last], this.secondaries[last]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the heap slot + 1 of the field, 0 if it isn't queued.
+     *
+     * @param index the index
+     * @param slot the slot + 1
+     */
+    private void setSlot(int index, int slot) {
+        int[] page = this.slots[index >>> CostGraph.PAGE_SHIFT];
+
+        if (page == null) {
+            page = new int[CostGraph.PAGE_SIZE];
+            this.slots[index >>> CostGraph.PAGE_SHIFT] = page;
+        }
+
+        page[index & CostGraph.PAGE_MASK] = slot;
+    }
+
+    /**
+     * Places the field at the given slot or further down.
+     *
+     * @param slot the slot
+     * @param index the index
+     * @param priority the priority
+     * @param secondary the secondary priority
+     */
+    private void siftDown(int slot, int index, double priority, double secondary) {
+        int child;
+
+        while ((child = 2 * slot + 1) < this.size) {
+            if (child + 1 < this.size && isLess(this.priorities[child + 1], this.secondaries[child + 1],
+                    this.priorities[child], this.secondaries[child])) {
+                child++;
+            }
+
+            if (!isLess(this.priorities[child], this.secondaries[child], priority, secondary)) {
+                break;
+            }
+
+            this.place(slot, this.heap[child], this.priorities[child], this.secondaries[child]);
+            slot = child;
+        }
+
+        this.place(slot, index, priority, secondary);
+    }
+
+    /**
+     * Places the field at the given slot or further up.
+     *
+     * @param slot the slot
+     * @param index the index
+     * @param priority the priority
+     * @param secondary the secondary priority
+     */
+    private void siftUp(int slot, int index, double priority, double secondary) {
+        int parent;
+
+        while (slot > 0) {
+            parent = (slot - 1) / 2;
+
+            if (!isLess(priority, secondary, this.priorities[parent], this.secondaries[parent])) {
+                break;
+            }
+
+            this.place(slot, this.heap[parent], this.priorities[parent], this.secondaries[parent]);
+            slot = parent;
+        }
+
+        this.place(slot, index, priority, secondary);
+    }
+
+    /**
+     * Gets the number of queued fields.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Queues the field or changes its priority, which may be higher or lower
+     * than before.
+     *
+     * @param index the index
+     * @param priority the priority
+     * @param secondary the secondary priority
+     */
+    public void update(int index, double priority, double secondary) {
+        int slot = this.getSlot(index);
+
+        if (slot < 0) {
+            if (this.size == this.heap.length) {
+                this.heap = Arrays.copyOf(this.heap, this.size * 2);
+                this.priorities = Arrays.copyOf(this.priorities, this.size * 2);
+                this.secondaries = Arrays.copyOf(this.secondaries, this.size * 2);
+            }
+
+            this.siftUp(this.size++, index, priority, secondary);
+        } else if (isLess(priority, secondary, this.priorities[slot], this.secondaries[slot])) {
+            this.siftUp(slot, index, priority, secondary);
+        } else {
+            this.siftDown(slot, index, priority, secondary);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import abstractgame.events.graphevents.CostGraphChangedEvent;
+import abstractgame.interfaces.CostGraphChangedListener;
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.map.NeighborTable;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class FlowField holds the cost from every field of the map to one target
+ * together with the next field of the cheapest path, for all units of one
+ * movement class and one pass group ({@link AbstractUnit#getPassGroup()}). It
+ * is computed by a single Dijkstra search
+ * running backwards from the target, afterwards every unit finds its next step
+ * with a single lookup, no matter how many units move to the target. <br>
+ * The weights are evaluated for the units of the pass group, which pass the
+ * same fields ({@link AbstractUnit#canPass(AbstractField)}). <br>
+ * The flow field listens to its {@link CostGraph} and is computed again on the
+ * next use if a field it used changed its weight, see
+ * {@link #update(AbstractUnit)}.
+ *
+ * @author Nils Kuttkat
+ */
+public class FlowField implements CostGraphChangedListener {
+
+    /**
+     * The fields which changed since the flow field was computed.
+     */
+    private final BitSet changedFields;
+
+    /**
+     * The cost from every field to the target.
+     */
+    private final double[] costs;
+
+    /**
+     * The number of fields the last computation expanded.
+     */
+    private int expandedNodes;
+
+    /**
+     * The graph.
+     */
+    private final CostGraph graph;
+
+    /**
+     * The index of the next field on the cheapest path of every field,
+     * {@link AbstractMap#NO_INDEX} for the target and unreachable fields.
+     */
+    private final int[] next;
+
+    /**
+     * The pass group.
+     */
+    private final Object passGroup;
+
+    /**
+     * True if the flow field has to be computed before the next use.
+     */
+    private boolean stale;
+
+    /**
+     * The index of the target.
+     */
+    private final int target;
+
+    /**
+     * The weights the flow field is based on, NaN if the search didn't
+     * evaluate them.
+     */
+    private final double[] weights;
+
+    /**
+     * Instantiates a new flow field. It is computed on the first
+     * {@link #update(AbstractUnit)}.
+     *
+     * @param graph the graph
+     * @param passGroup the pass group
+     * @param target the target
+     */
+    public FlowField(CostGraph graph, Object passGroup, AbstractField target) {
+        int size = graph.getMap().getSize();
+
+        this.graph = graph;
+        this.passGroup = passGroup;
+        this.target = target.getIndex();
+        this.costs = new double[size];
+        this.next = new int[size];
+        this.weights = new double[size];
+        this.changedFields = new BitSet(size);
+        this.stale = true;
+        graph.addChangedListener(this);
+    }
+
+    /**
+     * Computes the costs and next fields with a backward Dijkstra search from
+     * the target.
+     *
+     * @param unit the unit the weights are evaluated for
+     */
+    private void compute(AbstractUnit unit) {
+        AbstractMap map = this.graph.getMap();
+        NeighborTable neighborTable = map.getField(this.target).getNeighborTable();
+        FieldHeap open = new FieldHeap(map.getSize());
+        boolean[] closed = new boolean[map.getSize()];
+        int index, neighbor;
+        double cost;
+
+        Arrays.fill(this.costs, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.next, AbstractMap.NO_INDEX);
+        Arrays.fill(this.weights, Double.NaN);
+        this.expandedNodes = 0;
+        this.costs[this.target] = 0;
+        open.offer(this.target, 0);
+
+        while (!open.isEmpty()) {
+            index = open.poll();
+            closed[index] = true;
+            this.expandedNodes++;
+
+            // the weight of a field is the cost of stepping into it, so it is
+            // the same for all neighbors stepping into this field
+            this.weights[index] = this.graph.getWeight(unit, index);
+
+            if (this.weights[index] == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+
+            for (int direction = 0; direction < neighborTable.getDirections(); direction++) {
+                neighbor = neighborTable.getNeighbor(index, direction);
+
+                if (neighbor != NeighborTable.EDGE && !closed[neighbor]) {
+                    cost = this.costs[index] + this.weights[index] * neighborTable.getDistance(neighbor, index);
+
+                    if (cost < this.costs[neighbor]) {
+                        this.costs[neighbor] = cost;
+                        this.next[neighbor] = index;
+                        open.offer(neighbor, cost);
+                    }
+                }
+            }
+        }
+
+        this.changedFields.clear();
+        this.stale = false;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.CostGraphChangedListener#costGraphChanged(abstractgame.events.graphevents.CostGraphChangedEvent)
+     */
+    @Override
+    public void costGraphChanged(CostGraphChangedEvent event) {
+        if (event.getSource() == this.graph) {
+            this.changedFields.set(event.getIndex());
+        }
+    }
+
+    /**
+     * Gets the cost from the field with the given index to the target.
+     *
+     * @param index the index
+     * @return the cost or Double.POSITIVE_INFINITY if the target can't be
+     * reached
+     */
+    public double getCost(int index) {
+        return this.costs[index];
+    }
+
+    /**
+     * Gets the direction of the next step from the field to the target.
+     *
+     * @param abstractField the abstract field
+     * @return the direction or Integer.MIN_VALUE if there is no next step
+     * @see AbstractField#getDirectionForNeighbor(AbstractField)
+     */
+    public int getDirection(AbstractField abstractField) {
+        return abstractField.getDirectionForNeighbor(this.getNextField(abstractField));
+    }
+
+    /**
+     * Gets the number of fields the last computation expanded.
+     *
+     * @return the expanded nodes
+     */
+    public int getExpandedNodes() {
+        return this.expandedNodes;
+    }
+
+    /**
+     * Gets the graph.
+     *
+     * @return the graph
+     */
+    public CostGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * Gets the next field on the cheapest path from the field to the target.
+     *
+     * @param abstractField the abstract field
+     * @return the next field or null for the target and fields which can't
+     * reach it
+     */
+    public AbstractField getNextField(AbstractField abstractField) {
+        AbstractField nextField = null;
+
+        if (abstractField != null && abstractField.getMap() == this.graph.getMap()
+                && this.next[abstractField.getIndex()] != AbstractMap.NO_INDEX) {
+            nextField = this.graph.getMap().getField(this.next[abstractField.getIndex()]);
+        }
+
+        return nextField;
+    }
+
+    /**
+     * Gets the index of the next field on the cheapest path from the field with
+     * the given index to the target.
+     *
+     * @param index the index
+     * @return the index of the next field or {@link AbstractMap#NO_INDEX}
+     */
+    public int getNextIndex(int index) {
+        return this.next[index];
+    }
+
+    /**
+     * Gets the path from the start to the target.
+     *
+     * @param start the start
+     * @return the path or {@link Path#EMPTY} if the target can't be reached
+     */
+    public Path getPath(AbstractField start) {
+        Path path = Path.EMPTY;
+        NeighborTable neighborTable;
+        int length = 1, index;
+        int[] indices;
+        double[] pathCosts;
+
+        if (start != null && start.getMap() == this.graph.getMap()
+                && this.costs[start.getIndex()] != Double.POSITIVE_INFINITY) {
+            neighborTable = start.getNeighborTable();
+
+            for (index = start.getIndex(); index != this.target; index = this.next[index]) {
+                length++;
+            }
+
+            indices = new int[length];
+            pathCosts = new double[length];
+            indices[0] = start.getIndex();
+
+            for (int step = 1; step < length; step++) {
+                index = this.next[indices[step - 1]];
+                indices[step] = index;
+                pathCosts[step] = pathCosts[step - 1]
+                        + this.weights[index] * neighborTable.getDistance(indices[step - 1], index);
+            }
+
+            path = new Path(this.graph.getMap(), indices, pathCosts);
+        }
+
+        return path;
+    }
+
+    /**
+     * Gets the pass group.
+     *
+     * @return the pass group
+     */
+    public Object getPassGroup() {
+        return this.passGroup;
+    }
+
+    /**
+     * Gets the index of the target.
+     *
+     * @return the target
+     */
+    public int getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Stops listening to the graph. The flow field must not be used anymore.
+     */
+    public void release() {
+        this.graph.removeChangedListener(this);
+    }
+
+    /**
+     * Brings the flow field up to date. Changed fields whose weight is still
+     * the one the flow field is based on (e.g. a unit of the same pass group
+     * entered the field) are ignored, every other change computes the whole
+     * flow field again.
+     *
+     * @param unit the unit the weights are evaluated for
+     * @return true, if the flow field has been computed again
+     */
+    public boolean update(AbstractUnit unit) {
+        boolean computed = false;
+
+        for (int index = this.changedFields.nextSetBit(0); index >= 0 && !this.stale;
+                index = this.changedFields.nextSetBit(index + 1)) {
+            if (!Double.isNaN(this.weights[index]) && this.weights[index] != this.graph.getWeight(unit, index)) {
+                this.stale = true;
+            }
+        }
+
+        this.changedFields.clear();
+
+        if (this.stale) {
+            this.compute(unit);
+            computed = true;
+        }
+
+        return computed;
+    }
+}
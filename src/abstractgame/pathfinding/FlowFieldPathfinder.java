@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import abstractgame.map.AbstractField;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class FlowFieldPathfinder finds paths by following {@link FlowField}s.
+ * It is meant to be shared by many units converging on the same targets: the
+ * first search for a target computes the flow field for the unit's movement
+ * class and pass group ({@link AbstractUnit#getPassGroup()}), every further
+ * search of such a unit only follows the next fields. <br>
+ * The most recently used flow fields are cached, the least recently used one
+ * is dropped when the cache is full. A cached flow field is computed again
+ * when a field it used changes its weight.
+ *
+ * @author Nils Kuttkat
+ */
+public class FlowFieldPathfinder extends AbstractPathfinder {
+
+    /**
+     * The default number of cached flow fields.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = -1287006624853617353L;
+
+    /**
+     * The number of cached flow fields.
+     */
+    private final int capacity;
+
+    /**
+     * The cached flow fields by graph, pass group and target, in access
+     * order.
+     */
+    private transient LinkedHashMap<List<Object>, FlowField> flowFields;
+
+    /**
+     * Instantiates a new flow field pathfinder with the default capacity.
+     */
+    public FlowFieldPathfinder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Instantiates a new flow field pathfinder.
+     *
+     * @param capacity the number of cached flow fields
+     */
+    public FlowFieldPathfinder(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Illegal capacity " + capacity);
+        }
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * Drops all cached flow fields.
+     */
+    public void clear() {
+        if (this.flowFields != null) {
+            for (FlowField flowField : this.flowFields.values()) {
+                flowField.release();
+            }
+
+            this.flowFields.clear();
+        }
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.AbstractPathfinder#findPath(abstractgame.pathfinding.CostGraph,
+	 * abstractgame.unit.AbstractUnit, abstractgame.map.AbstractField,
+	 * abstractgame.map.AbstractField, double)
+     */
+    @Override
+    public Path findPath(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target, double maxCost) {
+        Path path = Path.EMPTY;
+        FlowField flowField;
+        int expandedNodes = 0;
+
+        if (isSearchable(graph, start, target)) {
+            flowField = this.getCachedFlowField(graph, unit, target);
+
+            // following the flow field touches only the fields of the path
+            if (flowField.update(unit)) {
+                expandedNodes = flowField.getExpandedNodes();
+            }
+
+            if (flowField.getCost(start.getIndex()) <= maxCost) {
+                path = flowField.getPath(start);
+            }
+
+            expandedNodes += path.size();
+        }
+
+        this.setExpandedNodes(expandedNodes);
+        return path;
+    }
+
+    /**
+     * Gets the cached flow field to the target on the graph for the unit's
+     * pass group, or a new one which hasn't been computed yet.
+     *
+     * @param graph the graph
+     * @param unit the unit
+     * @param target the target
+     * @return the flow field
+     */
+    private FlowField getCachedFlowField(CostGraph graph, AbstractUnit unit, AbstractField target) {
+        List<Object> key = Arrays.<Object>asList(graph, unit.getPassGroup(), target.getIndex());
+        FlowField flowField;
+
+        if (this.flowFields == null) {
+            this.flowFields = new LinkedHashMap<List<Object>, FlowField>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, FlowField> eldest) {
+                    boolean remove = this.size() > FlowFieldPathfinder.this.capacity;
+
+                    if (remove) {
+                        eldest.getValue().release();
+                    }
+
+                    return remove;
+                }
+            };
+        }
+
+        flowField = this.flowFields.get(key);
+
+        if (flowField == null) {
+            flowField = new FlowField(graph, unit.getPassGroup(), target);
+            this.flowFields.put(key, flowField);
+        }
+
+        return flowField;
+    }
+
+    /**
+     * Gets the number of cached flow fields.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Gets the flow field to the target for the unit's movement class and
+     * pass group, up to date with all changes of the map.
+     *
+     * @param unit the unit
+     * @param target the target
+     * @return the flow field
+     */
+    public FlowField getFlowField(AbstractUnit unit, AbstractField target) {
+        if (!unit.hasGraph()) {
+            unit.getGame().getMap().buildGraph(unit);
+        }
+
+        return this.getFlowField(unit.getCostGraph(), unit, target);
+    }
+
+    /**
+     * Gets the flow field to the target on the graph for the unit's pass
+     * group, up to date with all changes of the map.
+     *
+     * @param graph the graph
+     * @param unit the unit
+     * @param target the target
+     * @return the flow field
+     */
+    public FlowField getFlowField(CostGraph graph, AbstractUnit unit, AbstractField target) {
+        FlowField flowField = this.getCachedFlowField(graph, unit, target);
+
+        flowField.update(unit);
+        return flowField;
+    }
+}
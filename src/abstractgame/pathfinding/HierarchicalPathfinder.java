@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.map.NeighborTable;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class HierarchicalPathfinder finds paths using hierarchical pathfinding
+ * (HPA*). Long searches run on the {@link ClusterGraph} of the movement class
+ * first and then refine only the segments of the abstract path inside the
+ * clusters it passes. <br>
+ * The cluster graph only knows the terrain costs. The unit's own weights
+ * (e.g. enemy units it can't pass) are applied when the start and the target
+ * are connected to the graph and when the segments are refined. If a segment
+ * turns out to be blocked, or the path would cost more than allowed, the
+ * search falls back to A*. Short searches (less than two clusters apart) use
+ * A* right away. <br>
+ * The paths are not always the cheapest ones, but usually close to them.
+ *
+ * @author Nils Kuttkat
+ */
+public class HierarchicalPathfinder extends AStarPathfinder {
+
+    /**
+     * The default cluster size.
+     */
+    public static final int DEFAULT_CLUSTER_SIZE = 16;
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 2917164938862624585L;
+
+    /**
+     * The size of the clusters.
+     */
+    private final int clusterSize;
+
+    /**
+     * Instantiates a new hierarchical pathfinder with the default cluster
+     * size.
+     */
+    public HierarchicalPathfinder() {
+        this(DEFAULT_CLUSTER_SIZE);
+    }
+
+    /**
+     * Instantiates a new hierarchical pathfinder.
+     *
+     * @param clusterSize the size of the clusters
+     */
+    public HierarchicalPathfinder(int clusterSize) {
+        super();
+        this.clusterSize = clusterSize;
+    }
+
+    /**
+     * Adds the fields of the path from a field to one of its ancestors in a
+     * search tree of
+     * {@link ClusterGraph#search(int, int, SearchWorkspace, boolean, int, double[], int[])},
+     * without the ancestor.
+     *
+     * @param clusters the clusters
+     * @param parents the parents of the search
+     * @param field the field
+     * @param ancestor the ancestor
+     * @param indices the indices to add the fields to
+     * @param length the number of indices
+     * @param reverse true to add them from the field to the ancestor
+     * @return the new number of indices
+     */
+    private static int addFields(ClusterGraph clusters, int[] parents, int field, int ancestor,
+            int[] indices, int length, boolean reverse) {
+        int count = 0;
+
+        for (int index = field; index != ancestor; index = parents[clusters.getLocalIndex(index)]) {
+            count++;
+        }
+
+        for (int index = field, step = 0; index != ancestor; index = parents[clusters.getLocalIndex(index)], step++) {
+            indices[reverse ? length + step : length + count - 1 - step] = index;
+        }
+
+        return length + count;
+    }
+
+    /**
+     * Searches the abstract graph and refines the abstract path. The nodes
+     * are field indices, so the abstract search keeps its costs, parents and
+     * open list in a {@link SearchWorkspace} like the searches on the fields.
+     *
+     * @param clusters the clusters
+     * @param neighborTable the neighbor table
+     * @param start the start
+     * @param target the target
+     * @param maxCost the max cost
+     * @param workspace the workspace, holding the unit's weights
+     * @return the path or null if the search has to fall back to A*
+     */
+    private Path findAbstractPath(ClusterGraph clusters, NeighborTable neighborTable, int start, int target,
+            double maxCost, SearchWorkspace workspace) {
+        int capacity = clusters.getClusterCapacity(), startCluster = clusters.getCluster(start);
+        int targetCluster = clusters.getCluster(target), expandedNodes = 0, node, cluster, position;
+        double[] startCosts = new double[capacity], targetCosts = new double[capacity];
+        int[] startParents = new int[capacity], targetParents = new int[capacity], nodes, exitNodes;
+        FieldHeap open = workspace.getOpen();
+        Path path = null;
+        double cost;
+
+        // connect start and target to the nodes of their clusters
+        expandedNodes += clusters.search(startCluster, start, workspace, false, AbstractMap.NO_INDEX, startCosts, startParents);
+        expandedNodes += clusters.search(targetCluster, target, workspace, true, AbstractMap.NO_INDEX, targetCosts, targetParents);
+        workspace.reach(start, 0, AbstractMap.NO_INDEX);
+        open.offer(start, this.estimate(workspace, start, target));
+
+        while (!open.isEmpty()) {
+            node = open.poll();
+            workspace.close(node);
+            expandedNodes++;
+
+            if (node == target) {
+                path = this.refine(clusters, neighborTable, workspace, start, target,
+                        startParents, targetParents);
+                break;
+            }
+
+            cost = workspace.getCost(node);
+            cluster = clusters.getCluster(node);
+            nodes = clusters.getNodes(cluster);
+            position = Arrays.binarySearch(nodes, node);
+
+            if (node == start) {
+                for (int other : nodes) {
+                    this.relax(workspace, node, other,
+                            startCosts[clusters.getLocalIndex(other)], target, maxCost);
+                }
+            } else if (position >= 0) {
+                for (int other = 0; other < nodes.length; other++) {
+                    this.relax(workspace, node, nodes[other],
+                            cost + clusters.getCost(cluster, position, other), target, maxCost);
+                }
+            }
+
+            if (cluster == targetCluster) {
+                this.relax(workspace, node, target,
+                        cost + targetCosts[clusters.getLocalIndex(node)], target, maxCost);
+            }
+
+            if (position >= 0) {
+                exitNodes = clusters.getExitNodes(cluster);
+
+                for (int exit = 0; exit < exitNodes.length; exit++) {
+                    if (exitNodes[exit] == position) {
+                        this.relax(workspace, node, clusters.getExitTargets(cluster)[exit],
+                                cost + clusters.getExitCosts(cluster)[exit], target, maxCost);
+                    }
+                }
+            }
+        }
+
+        this.setExpandedNodes(expandedNodes);
+        return path;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.DijkstraPathfinder#findPath(abstractgame.pathfinding.CostGraph,
+	 * abstractgame.unit.AbstractUnit, abstractgame.map.AbstractField,
+	 * abstractgame.map.AbstractField, double)
+     */
+    @Override
+    public Path findPath(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target, double maxCost) {
+        Path path = null;
+        int expandedNodes = 0;
+        NeighborTable neighborTable;
+        ClusterGraph clusters;
+        SearchWorkspace workspace;
+
+        if (isSearchable(graph, start, target)) {
+            neighborTable = start.getNeighborTable();
+
+            if (neighborTable.getDistance(start.getIndex(), target.getIndex()) >= 2 * this.clusterSize) {
+                clusters = graph.getClusterGraph(neighborTable, this.clusterSize);
+                workspace = SearchWorkspace.acquire(graph.getMap().getSize());
+
+                try {
+                    this.prepareSearch(graph, unit, target, workspace);
+                    workspace.setWeights(graph, unit);
+                    path = this.findAbstractPath(clusters, neighborTable, start.getIndex(), target.getIndex(),
+                            maxCost, workspace);
+                } finally {
+                    workspace.release();
+                }
+
+                expandedNodes = this.getExpandedNodes();
+            }
+        }
+
+        if (path == null || path.getTotalCost() > maxCost) {
+            path = super.findPath(graph, unit, start, target, maxCost);
+            this.setExpandedNodes(this.getExpandedNodes() + expandedNodes);
+        }
+
+        return path;
+    }
+
+    /**
+     * Gets the size of the clusters.
+     *
+     * @return the cluster size
+     */
+    public int getClusterSize() {
+        return this.clusterSize;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.AbstractPathfinder#isExact()
+     */
+    @Override
+    public boolean isExact() {
+        return false;
+    }
+
+    /**
+     * Turns the abstract path into a path of neighboring fields, using the
+     * unit's weights inside the clusters.
+     *
+     * @param clusters the clusters
+     * @param neighborTable the neighbor table
+     * @param workspace the workspace of the abstract search, holding the
+     * unit's weights
+     * @param start the start
+     * @param target the target
+     * @param startParents the parents of the search from the start
+     * @param targetParents the parents of the search to the target
+     * @return the path or null if a segment is blocked for the unit
+     */
+    private Path refine(ClusterGraph clusters, NeighborTable neighborTable, SearchWorkspace workspace, int start,
+            int target, int[] startParents, int[] targetParents) {
+        int capacity = clusters.getClusterCapacity(), count = 0, length = 1, from, to;
+        double[] segmentCosts = new double[capacity], costs;
+        int[] segmentParents = new int[capacity], nodes, indices = new int[16];
+        Path path = null;
+        boolean blocked = false;
+
+        for (int node = target; node != AbstractMap.NO_INDEX; node = workspace.getParent(node)) {
+            count++;
+        }
+
+        nodes = new int[count];
+
+        for (int node = target; node != AbstractMap.NO_INDEX; node = workspace.getParent(node)) {
+            nodes[--count] = node;
+        }
+
+        indices[0] = start;
+
+        for (int segment = 0; segment + 1 < nodes.length && !blocked; segment++) {
+            from = nodes[segment];
+            to = nodes[segment + 1];
+
+            // a segment is never longer than a cluster
+            if (indices.length < length + capacity) {
+                indices = Arrays.copyOf(indices, Math.max(indices.length * 2, length + capacity));
+            }
+
+            if (clusters.getCluster(from) != clusters.getCluster(to)) {
+                indices[length++] = to;
+            } else if (from == start) {
+                length = addFields(clusters, startParents, to, start, indices, length, false);
+            } else if (to == target) {
+                length = addFields(clusters, targetParents, targetParents[clusters.getLocalIndex(from)], AbstractMap.NO_INDEX,
+                        indices, length, true);
+            } else {
+                clusters.search(clusters.getCluster(from), from, workspace, false, to, segmentCosts, segmentParents);
+                blocked = segmentCosts[clusters.getLocalIndex(to)] == Double.POSITIVE_INFINITY;
+
+                if (!blocked) {
+                    length = addFields(clusters, segmentParents, to, from, indices, length, false);
+                }
+            }
+        }
+
+        costs = new double[length];
+
+        for (int step = 1; step < length && !blocked; step++) {
+            costs[step] = costs[step - 1]
+                    + workspace.getWeight(indices[step]) * neighborTable.getDistance(indices[step - 1], indices[step]);
+            blocked = costs[step] == Double.POSITIVE_INFINITY;
+        }
+
+        if (!blocked) {
+            path = new Path(clusters.getMap(), Arrays.copyOf(indices, length), costs);
+        }
+
+        return path;
+    }
+
+    /**
+     * Relaxes an edge of the abstract graph.
+     *
+     * @param workspace the workspace of the abstract search
+     * @param from the node the edge starts at
+     * @param to the node the edge ends at
+     * @param cost the cost of reaching to over the edge
+     * @param target the target
+     * @param maxCost the max cost
+     */
+    private void relax(SearchWorkspace workspace, int from, int to, double cost, int target, double maxCost) {
+        double estimate;
+
+        if (cost != Double.POSITIVE_INFINITY && !workspace.isClosed(to) && cost < workspace.getCost(to)) {
+            estimate = this.estimate(workspace, to, target);
+
+            if (cost + estimate <= maxCost) {
+                workspace.reach(to, cost, from);
+                workspace.getOpen().offer(to, cost + estimate);
+            }
+        }
+    }
+}
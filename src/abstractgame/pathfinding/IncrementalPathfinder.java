@@ -0,0 +1,541 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import abstractgame.events.graphevents.CostGraphChangedEvent;
+import abstractgame.interfaces.CostGraphChangedListener;
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.map.NeighborTable;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class IncrementalPathfinder finds the cheapest path with D* Lite. The
+ * search runs backwards from the target and keeps its search tree between
+ * calls, so asking again for the same target after the unit moved or a few
+ * fields changed only repairs the part of the tree the changes affect. <br>
+ * The pathfinder listens to its {@link CostGraph} for changed fields
+ * ({@link CostGraphChangedListener}) and collects them until the next search.
+ * Changes of a unit's weights which don't come from a changed field (e.g. a
+ * field becoming passable for other reasons) are only noticed on the path
+ * itself: every path is checked against the current weights before it is
+ * returned and repaired if necessary. <br>
+ * The search tree belongs to one unit and one target, so every unit needs an
+ * instance of its own. A new target, unit or graph starts a new tree. The
+ * tree is dropped when its unit gets another pathfinder or is removed from
+ * the map's graphs ({@link #release(AbstractUnit)}).
+ *
+ * @author Nils Kuttkat
+ */
+public class IncrementalPathfinder extends AbstractPathfinder implements CostGraphChangedListener {
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 3361742075628312186L;
+
+    /**
+     * The tolerance for comparing priorities with the start's. Distances like
+     * sqrt(2) leave rounding errors in the sums, which may order fields with
+     * equal priorities wrongly, so all of them are expanded.
+     */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * The marker for weights which haven't been evaluated yet.
+     */
+    private static final double UNKNOWN = Double.NaN;
+
+    /**
+     * The indices of the fields which changed since the last search.
+     */
+    private transient BitSet changedFields;
+
+    /**
+     * The cost from every field to the target.
+     */
+    private transient double[] costs;
+
+    /**
+     * The number of fields the current search expanded.
+     */
+    private transient int expandedNodes;
+
+    /**
+     * The graph of the search tree.
+     */
+    private transient CostGraph graph;
+
+    /**
+     * The sum of the heuristic distances the start moved, added to every new
+     * key instead of updating the queued ones.
+     */
+    private transient double keyModifier;
+
+    /**
+     * The start of the previous search.
+     */
+    private transient int lastStart;
+
+    /**
+     * The lowest cost of a step of distance 1 when the search tree was
+     * started.
+     */
+    private transient double minimumCost;
+
+    /**
+     * The neighbor table.
+     */
+    private transient NeighborTable neighborTable;
+
+    /**
+     * The inconsistent fields.
+     */
+    private transient FieldHeap open;
+
+    /**
+     * The one step lookahead of every field's cost: the cheapest step to a
+     * neighbor plus the neighbor's cost.
+     */
+    private transient double[] rhs;
+
+    /**
+     * The target of the search tree.
+     */
+    private transient int target = AbstractMap.NO_INDEX;
+
+    /**
+     * The unit of the search tree.
+     */
+    private transient AbstractUnit unit;
+
+    /**
+     * The weights the search tree is based on, UNKNOWN until the search
+     * reaches the field.
+     */
+    private transient double[] weights;
+
+    /**
+     * Applies the fields which changed since the last search to the search
+     * tree.
+     */
+    private void applyChanges() {
+        double oldWeight, newWeight, distance;
+        int neighbor;
+
+        for (int index = this.changedFields.nextSetBit(0); index >= 0; index = this.changedFields.nextSetBit(index + 1)) {
+            oldWeight = this.weights[index];
+
+            // a weight the search never asked for can't be part of the tree
+            if (Double.isNaN(oldWeight)) {
+                continue;
+            }
+
+            newWeight = this.graph.getWeight(this.unit, index);
+
+            if (newWeight == oldWeight) {
+                continue;
+            }
+
+            this.weights[index] = newWeight;
+
+            // the field's weight is the cost of every step into it
+            for (int direction = 0; direction < this.neighborTable.getDirections(); direction++) {
+                neighbor = this.neighborTable.getNeighbor(index, direction);
+
+                if (neighbor != NeighborTable.EDGE && neighbor != this.target) {
+                    distance = this.neighborTable.getDistance(neighbor, index);
+
+                    if (newWeight < oldWeight) {
+                        this.rhs[neighbor] = Math.min(this.rhs[neighbor], newWeight * distance + this.costs[index]);
+                    } else if (this.rhs[neighbor] == oldWeight * distance + this.costs[index]) {
+                        this.rhs[neighbor] = this.lookahead(neighbor);
+                    }
+
+                    this.updateField(neighbor);
+                }
+            }
+        }
+
+        this.changedFields.clear();
+    }
+
+    /**
+     * Builds the path from the start to the target by following the cheapest
+     * steps of the search tree.
+     *
+     * @param map the map
+     * @param start the index of the start
+     * @return the path or {@link Path#EMPTY} if the tree has no complete path
+     */
+    private Path buildPath(AbstractMap map, int start) {
+        int[] indices = new int[16];
+        double[] pathCosts = new double[16];
+        int length = 1, index = start, best, neighbor;
+        double bestCost, step, cost;
+
+        indices[0] = start;
+
+        while (index != this.target) {
+            best = AbstractMap.NO_INDEX;
+            bestCost = Double.POSITIVE_INFINITY;
+            step = 0;
+
+            for (int direction = 0; direction < this.neighborTable.getDirections(); direction++) {
+                neighbor = this.neighborTable.getNeighbor(index, direction);
+
+                if (neighbor != NeighborTable.EDGE) {
+                    cost = this.getWeight(neighbor) * this.neighborTable.getDistance(index, neighbor);
+
+                    if (cost + this.costs[neighbor] < bestCost) {
+                        best = neighbor;
+                        bestCost = cost + this.costs[neighbor];
+                        step = cost;
+                    }
+                }
+            }
+
+            // a broken tree would lead in circles, the path can't be longer
+            // than the map
+            if (best == AbstractMap.NO_INDEX || length == map.getSize()) {
+                return Path.EMPTY;
+            }
+
+            if (length == indices.length) {
+                indices = Arrays.copyOf(indices, length * 2);
+                pathCosts = Arrays.copyOf(pathCosts, length * 2);
+            }
+
+            indices[length] = best;
+            pathCosts[length] = pathCosts[length - 1] + step;
+            length++;
+            index = best;
+        }
+
+        return new Path(map, Arrays.copyOf(indices, length), Arrays.copyOf(pathCosts, length));
+    }
+
+    /**
+     * Repairs the search tree until the cost of the start is known or exceeds
+     * maxCost.
+     *
+     * @param start the index of the start
+     * @param maxCost the max cost
+     */
+    private void computeCosts(int start, double maxCost) {
+        double oldCost, distance;
+        int index, neighbor;
+
+        while (!this.open.isEmpty()
+                && (this.open.peekPriority() <= this.getPriority(start) + EPSILON || this.rhs[start] != this.costs[start])
+                && this.open.peekPriority() <= maxCost + this.keyModifier) {
+            index = this.open.peek();
+
+            // the key was computed for an earlier start, it has to be raised
+            // before the field can be expanded
+            if (this.isLess(this.open.peekPriority(), this.open.peekSecondary(), index)) {
+                this.open.update(index, this.getPriority(index), this.getSecondary(index));
+                continue;
+            }
+
+            this.open.remove(index);
+            this.expandedNodes++;
+            oldCost = this.costs[index];
+
+            if (this.rhs[index] < oldCost) {
+                this.costs[index] = this.rhs[index];
+            } else {
+                this.costs[index] = Double.POSITIVE_INFINITY;
+                this.updateField(index);
+            }
+
+            // every neighbor may step into the field
+            for (int direction = 0; direction < this.neighborTable.getDirections(); direction++) {
+                neighbor = this.neighborTable.getNeighbor(index, direction);
+
+                if (neighbor != NeighborTable.EDGE && neighbor != this.target) {
+                    distance = this.neighborTable.getDistance(neighbor, index);
+
+                    if (this.costs[index] < oldCost) {
+                        this.rhs[neighbor] = Math.min(this.rhs[neighbor], this.getWeight(index) * distance + this.costs[index]);
+                    } else if (this.rhs[neighbor] == this.getWeight(index) * distance + oldCost) {
+                        this.rhs[neighbor] = this.lookahead(neighbor);
+                    }
+
+                    this.updateField(neighbor);
+                }
+            }
+        }
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.CostGraphChangedListener#costGraphChanged(abstractgame.events.graphevents.CostGraphChangedEvent)
+     */
+    @Override
+    public void costGraphChanged(CostGraphChangedEvent event) {
+        if (event.getSource() == this.graph) {
+            this.changedFields.set(event.getIndex());
+        }
+    }
+
+    /**
+     * Estimates the cost from the current start to the field with the given
+     * index.
+     *
+     * @param index the index
+     * @return the estimate
+     */
+    private double estimate(int index) {
+        return this.neighborTable.getDistance(this.lastStart, index) * this.minimumCost;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.AbstractPathfinder#findPath(abstractgame.pathfinding.CostGraph,
+	 * abstractgame.unit.AbstractUnit, abstractgame.map.AbstractField,
+	 * abstractgame.map.AbstractField, double)
+     */
+    @Override
+    public Path findPath(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target, double maxCost) {
+        Path path = Path.EMPTY;
+        int startIndex;
+
+        this.expandedNodes = 0;
+
+        if (isSearchable(graph, start, target)) {
+            startIndex = start.getIndex();
+
+            if (graph != this.graph || unit != this.unit || target.getIndex() != this.target
+                    || graph.getMinimumCost() != this.minimumCost && graph.getMinimumCost() != Double.POSITIVE_INFINITY) {
+                this.startTree(graph, unit, start, target);
+            } else {
+                this.keyModifier += this.estimate(startIndex);
+                this.lastStart = startIndex;
+            }
+
+            // repeat until the path agrees with the current weights
+            do {
+                this.applyChanges();
+                this.computeCosts(startIndex, maxCost);
+
+                if (this.costs[startIndex] == this.rhs[startIndex] && this.costs[startIndex] <= maxCost) {
+                    path = this.buildPath(graph.getMap(), startIndex);
+                } else {
+                    path = Path.EMPTY;
+                }
+            } while (!this.isValid(path));
+        }
+
+        this.setExpandedNodes(this.expandedNodes);
+        return path;
+    }
+
+    /**
+     * Gets the priority (the first part of the key) of the field.
+     *
+     * @param index the index
+     * @return the priority
+     */
+    private double getPriority(int index) {
+        return this.getSecondary(index) + this.estimate(index) + this.keyModifier;
+    }
+
+    /**
+     * Gets the secondary priority (the second part of the key) of the field.
+     *
+     * @param index the index
+     * @return the secondary priority
+     */
+    private double getSecondary(int index) {
+        return Math.min(this.costs[index], this.rhs[index]);
+    }
+
+    /**
+     * Gets the weight the search tree uses for the field with the given
+     * index, evaluating it the first time.
+     *
+     * @param index the index
+     * @return the weight
+     */
+    private double getWeight(int index) {
+        double weight = this.weights[index];
+
+        if (Double.isNaN(weight)) {
+            weight = this.graph.getWeight(this.unit, index);
+            this.weights[index] = weight;
+        }
+
+        return weight;
+    }
+
+    /**
+     * Checks if the key is lower than the current key of the field.
+     *
+     * @param priority the priority
+     * @param secondary the secondary priority
+     * @param index the index of the field
+     * @return true, if successful
+     */
+    private boolean isLess(double priority, double secondary, int index) {
+        double fieldPriority = this.getPriority(index);
+
+        return priority < fieldPriority || (priority == fieldPriority && secondary < this.getSecondary(index));
+    }
+
+    /**
+     * Checks if every field of the path still has the weight the search tree
+     * used. The fields which don't are treated as changed fields.
+     *
+     * @param path the path
+     * @return true, if is valid
+     */
+    private boolean isValid(Path path) {
+        boolean valid = true;
+        int index;
+
+        for (int step = 1; step < path.size(); step++) {
+            index = path.getField(step).getIndex();
+
+            if (this.weights[index] != this.graph.getWeight(this.unit, index)) {
+                this.changedFields.set(index);
+                valid = false;
+            }
+        }
+
+        return valid;
+    }
+
+    /**
+     * Computes the cheapest step to a neighbor plus the neighbor's cost.
+     *
+     * @param index the index
+     * @return the lookahead
+     */
+    private double lookahead(int index) {
+        double lookahead = Double.POSITIVE_INFINITY;
+        int neighbor;
+
+        for (int direction = 0; direction < this.neighborTable.getDirections(); direction++) {
+            neighbor = this.neighborTable.getNeighbor(index, direction);
+
+            if (neighbor != NeighborTable.EDGE && this.costs[neighbor] != Double.POSITIVE_INFINITY) {
+                lookahead = Math.min(lookahead,
+                        this.getWeight(neighbor) * this.neighborTable.getDistance(index, neighbor) + this.costs[neighbor]);
+            }
+        }
+
+        return lookahead;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.AbstractPathfinder#release(abstractgame.unit.AbstractUnit)
+     */
+    @Override
+    public void release(AbstractUnit unit) {
+        if (unit == this.unit) {
+            this.reset();
+        }
+    }
+
+    /**
+     * Drops the search tree and stops listening to its graph. The next search
+     * starts from scratch.
+     */
+    public void reset() {
+        if (this.graph != null) {
+            this.graph.removeChangedListener(this);
+        }
+
+        this.graph = null;
+        this.unit = null;
+        this.target = AbstractMap.NO_INDEX;
+        this.costs = null;
+        this.rhs = null;
+        this.weights = null;
+        this.open = null;
+        this.changedFields = null;
+    }
+
+    /**
+     * Starts a new search tree.
+     *
+     * @param graph the graph
+     * @param unit the unit
+     * @param start the start
+     * @param target the target
+     */
+    private void startTree(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target) {
+        int size = graph.getMap().getSize();
+
+        if (graph != this.graph) {
+            this.reset();
+            graph.addChangedListener(this);
+        }
+
+        if (this.costs == null || this.costs.length != size) {
+            this.costs = new double[size];
+            this.rhs = new double[size];
+            this.weights = new double[size];
+            this.open = new FieldHeap(size);
+            this.changedFields = new BitSet(size);
+        } else {
+            this.open.clear();
+            this.changedFields.clear();
+        }
+
+        Arrays.fill(this.costs, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.rhs, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.weights, UNKNOWN);
+        this.graph = graph;
+        this.unit = unit;
+        this.target = target.getIndex();
+        this.neighborTable = target.getNeighborTable();
+        this.lastStart = start.getIndex();
+        this.keyModifier = 0;
+        this.minimumCost = graph.getMinimumCost();
+
+        // nothing is accessible, every estimate would be infinite (or NaN)
+        if (this.minimumCost == Double.POSITIVE_INFINITY) {
+            this.minimumCost = 0;
+        }
+
+        this.rhs[this.target] = 0;
+        this.open.update(this.target, this.getPriority(this.target), 0);
+    }
+
+    /**
+     * Queues the field if it is inconsistent (its cost and lookahead differ)
+     * or removes it otherwise.
+     *
+     * @param index the index
+     */
+    private void updateField(int index) {
+        if (this.costs[index] != this.rhs[index]) {
+            this.open.update(index, this.getPriority(index), this.getSecondary(index));
+        } else {
+            this.open.remove(index);
+        }
+    }
+}
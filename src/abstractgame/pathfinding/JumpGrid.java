@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+/**
+ * The Class JumpGrid is the view of a square or octagon map a
+ * {@link JumpPointPathfinder} searches on. It tells which positions are
+ * blocked, which are surrounded by fields of the same cost (uniform) and
+ * whether a position has a forced neighbor. <br>
+ * Square maps are 4-connected, octagon maps are 8-connected and allow
+ * cutting corners, both as defined by their fields' neighbor tables.
+ *
+ * @author Nils Kuttkat
+ */
+public abstract class JumpGrid {
+
+    /**
+     * True for 8-connected (octagon) maps.
+     */
+    private final boolean diagonal;
+
+    /**
+     * The height.
+     */
+    private final int height;
+
+    /**
+     * The width.
+     */
+    private final int width;
+
+    /**
+     * Instantiates a new jump grid.
+     *
+     * @param width the width
+     * @param height the height
+     * @param diagonal true for 8-connected maps
+     */
+    protected JumpGrid(int width, int height, boolean diagonal) {
+        this.width = width;
+        this.height = height;
+        this.diagonal = diagonal;
+    }
+
+    /**
+     * Gets the height.
+     *
+     * @return the height
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Gets the width.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Checks if the field with the given index can't be entered.
+     *
+     * @param index the index
+     * @return true, if is blocked
+     */
+    public abstract boolean isBlocked(int index);
+
+    /**
+     * Checks if the position can't be entered. Positions outside of the map
+     * are blocked.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return true, if is blocked
+     */
+    public boolean isBlocked(int x, int y) {
+        return x < 0 || x >= this.width || y < 0 || y >= this.height
+                || this.isBlocked(y * this.width + x);
+    }
+
+    /**
+     * Checks if the map is 8-connected.
+     *
+     * @return true, if is diagonal
+     */
+    public boolean isDiagonal() {
+        return this.diagonal;
+    }
+
+    /**
+     * Checks if the position, reached by moving into direction (dx, dy), has
+     * a forced neighbor: a neighbor which can't be reached as cheap without
+     * passing the position because a blocked field is in the way.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param dx the x direction
+     * @param dy the y direction
+     * @return true, if is forced
+     */
+    public boolean isForced(int x, int y, int dx, int dy) {
+        boolean forced;
+
+        if (dx != 0 && dy != 0) {
+            forced = (this.isBlocked(x - dx, y) && !this.isBlocked(x - dx, y + dy))
+                    || (this.isBlocked(x, y - dy) && !this.isBlocked(x + dx, y - dy));
+        } else if (this.diagonal && dx != 0) {
+            forced = (this.isBlocked(x, y + 1) && !this.isBlocked(x + dx, y + 1))
+                    || (this.isBlocked(x, y - 1) && !this.isBlocked(x + dx, y - 1));
+        } else if (this.diagonal) {
+            forced = (this.isBlocked(x + 1, y) && !this.isBlocked(x + 1, y + dy))
+                    || (this.isBlocked(x - 1, y) && !this.isBlocked(x - 1, y + dy));
+        } else if (dx != 0) {
+            forced = (!this.isBlocked(x, y - 1) && this.isBlocked(x - dx, y - 1))
+                    || (!this.isBlocked(x, y + 1) && this.isBlocked(x - dx, y + 1));
+        } else {
+            forced = (!this.isBlocked(x - 1, y) && this.isBlocked(x - 1, y - dy))
+                    || (!this.isBlocked(x + 1, y) && this.isBlocked(x + 1, y - dy));
+        }
+
+        return forced;
+    }
+
+    /**
+     * Checks if the field with the given index and all its neighbors which
+     * aren't blocked have the same cost. Jump point search only skips uniform
+     * fields, it stops at all others and expands them like A* does.
+     *
+     * @param index the index
+     * @return true, if is uniform
+     */
+    public abstract boolean isUniform(int index);
+}
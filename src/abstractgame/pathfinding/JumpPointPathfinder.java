@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.map.NeighborTable;
+import abstractgame.map.OctagonField;
+import abstractgame.map.SquareField;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class JumpPointPathfinder finds the cheapest path on maps of
+ * {@link SquareField}'s (4-connected) and {@link OctagonField}'s
+ * (8-connected, corner cutting allowed) using jump point search. <br>
+ * Inside regions of equal terrain cost the search jumps along straight and
+ * diagonal lines instead of expanding every field. It only stops at jump
+ * points: fields with forced neighbors because of blocked fields, the target
+ * and fields which are not uniform ({@link JumpGrid#isUniform(int)}). Fields
+ * next to a change of the terrain cost are expanded into every direction like
+ * A* does, so the paths cost as much as the ones of the
+ * {@link DijkstraPathfinder}. <br>
+ * The returned path contains every field between the jump points. Maps of
+ * other fields are searched with plain A*.
+ *
+ * @author Nils Kuttkat
+ */
+public class JumpPointPathfinder extends AStarPathfinder {
+
+    /**
+     * The x directions, in the order of the octagon field's neighbors.
+     */
+    private static final int[] DELTA_X = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    /**
+     * The y directions, in the order of the octagon field's neighbors.
+     */
+    private static final int[] DELTA_Y = {1, 1, 0, -1, -1, -1, 0, 1};
+
+    /**
+     * The marker for jumps which don't find a jump point.
+     */
+    protected static final int NONE = AbstractMap.NO_INDEX;
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = -1740861337150307224L;
+
+    /**
+     * The grid of the current search.
+     */
+    private transient JumpGrid grid;
+
+    /**
+     * The index of the target of the current search.
+     */
+    private transient int target;
+
+    /**
+     * The grid reused by searches on maps of the same size.
+     */
+    private transient WeightedJumpGrid weightedGrid;
+
+    /**
+     * Builds the path to the target and adds the fields between the jump
+     * points.
+     *
+     * @param map the map
+     * @param workspace the workspace holding the parent of every jump point
+     * @param neighborTable the neighbor table
+     * @return the path
+     */
+    private Path buildPath(AbstractMap map, SearchWorkspace workspace, NeighborTable neighborTable) {
+        int length = 1, step, start, parent;
+        int[] indices;
+        double[] costs;
+
+        for (start = this.target; workspace.getParent(start) != AbstractMap.NO_INDEX; start = parent) {
+            parent = workspace.getParent(start);
+            length += Math.max(Math.abs(map.getX(start) - map.getX(parent)), Math.abs(map.getY(start) - map.getY(parent)));
+        }
+
+        indices = new int[length];
+        costs = new double[length];
+        step = length - 1;
+
+        // walk back from the target one field at a time
+        for (int index = this.target; index != start; index = parent) {
+            parent = workspace.getParent(index);
+            int offset = Integer.signum(map.getY(parent) - map.getY(index)) * map.getWidth()
+                    + Integer.signum(map.getX(parent) - map.getX(index));
+
+            for (int field = index; field != parent; field += offset) {
+                indices[step--] = field;
+            }
+        }
+
+        indices[0] = start;
+
+        for (step = 1; step < length; step++) {
+            costs[step] = costs[step - 1]
+                    + workspace.getWeight(indices[step]) * neighborTable.getDistance(indices[step - 1], indices[step]);
+        }
+
+        return new Path(map, indices, costs);
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.DijkstraPathfinder#findPath(abstractgame.pathfinding.CostGraph,
+	 * abstractgame.unit.AbstractUnit, abstractgame.map.AbstractField,
+	 * abstractgame.map.AbstractField, double)
+     */
+    @Override
+    public Path findPath(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target, double maxCost) {
+        Path path = Path.EMPTY;
+        int expandedNodes = 0;
+
+        if (!isSearchable(graph, start, target)) {
+            this.setExpandedNodes(expandedNodes);
+        } else if (!(start instanceof SquareField) && !(start instanceof OctagonField)) {
+            path = super.findPath(graph, unit, start, target, maxCost);
+        } else {
+            AbstractMap map = graph.getMap();
+            NeighborTable neighborTable = start.getNeighborTable();
+            SearchWorkspace workspace = SearchWorkspace.acquire(map.getSize());
+            int[] directionsX = new int[DELTA_X.length];
+            int[] directionsY = new int[DELTA_Y.length];
+            FieldHeap open = workspace.getOpen();
+            int index, jumpPoint, directions;
+            double cost, estimate;
+
+            try {
+                workspace.setWeights(graph, unit);
+                this.grid = this.getJumpGrid(graph, workspace, start instanceof OctagonField);
+                this.target = target.getIndex();
+                this.prepareSearch(graph, unit, target, workspace);
+                workspace.reach(start.getIndex(), 0, AbstractMap.NO_INDEX);
+                open.offer(start.getIndex(), this.estimate(workspace, start.getIndex(), this.target));
+
+                while (!open.isEmpty()) {
+                    index = open.poll();
+                    workspace.close(index);
+                    expandedNodes++;
+
+                    if (index == this.target) {
+                        path = this.buildPath(map, workspace, neighborTable);
+                        break;
+                    }
+
+                    directions = this.getDirections(map, index, workspace.getParent(index), directionsX, directionsY);
+
+                    for (int direction = 0; direction < directions; direction++) {
+                        jumpPoint = this.jump(map.getX(index), map.getY(index),
+                                directionsX[direction], directionsY[direction]);
+
+                        if (jumpPoint != NONE && !workspace.isClosed(jumpPoint)) {
+                            // all fields of a jump have the same weight
+                            cost = workspace.getCost(index)
+                                    + workspace.getWeight(jumpPoint) * neighborTable.getDistance(index, jumpPoint);
+
+                            if (cost < workspace.getCost(jumpPoint)) {
+                                estimate = this.estimate(workspace, jumpPoint, this.target);
+
+                                if (cost + estimate <= maxCost) {
+                                    workspace.reach(jumpPoint, cost, index);
+                                    open.offer(jumpPoint, cost + estimate);
+                                }
+                            }
+                        }
+                    }
+                }
+            } finally {
+                workspace.release();
+            }
+
+            this.setExpandedNodes(expandedNodes);
+        }
+
+        return path;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.DijkstraPathfinder#findPath(abstractgame.pathfinding.CostGraph,
+	 * abstractgame.unit.AbstractUnit, abstractgame.map.AbstractField,
+	 * abstractgame.map.AbstractField, double, abstractgame.pathfinding.PathCursor)
+     */
+    @Override
+    public boolean findPath(CostGraph graph, AbstractUnit unit, AbstractField start, AbstractField target,
+            double maxCost, PathCursor cursor) {
+        // the fields between the jump points are only known when the path is
+        // built, so the path is copied
+        cursor.load(this.findPath(graph, unit, start, target, maxCost));
+        return !cursor.isEmpty();
+    }
+
+    /**
+     * Gets the directions to jump into from the field with the given index.
+     * Uniform fields only need the natural and forced directions of the
+     * direction they have been reached from, the start and fields which are
+     * not uniform need all of them.
+     *
+     * @param map the map
+     * @param index the index
+     * @param parent the parent
+     * @param directionsX the x directions
+     * @param directionsY the y directions
+     * @return the number of directions
+     */
+    private int getDirections(AbstractMap map, int index, int parent, int[] directionsX, int[] directionsY) {
+        int directions = 0, x = map.getX(index), y = map.getY(index), dx, dy;
+
+        if (parent == AbstractMap.NO_INDEX || !this.grid.isUniform(index)) {
+            for (int direction = 0; direction < DELTA_X.length; direction += this.grid.isDiagonal() ? 1 : 2) {
+                directionsX[directions] = DELTA_X[direction];
+                directionsY[directions++] = DELTA_Y[direction];
+            }
+        } else {
+            dx = Integer.signum(x - map.getX(parent));
+            dy = Integer.signum(y - map.getY(parent));
+            directionsX[directions] = dx;
+            directionsY[directions++] = dy;
+
+            if (dx != 0 && dy != 0) {
+                directionsX[directions] = dx;
+                directionsY[directions++] = 0;
+                directionsX[directions] = 0;
+                directionsY[directions++] = dy;
+
+                if (this.grid.isBlocked(x - dx, y)) {
+                    directionsX[directions] = -dx;
+                    directionsY[directions++] = dy;
+                }
+
+                if (this.grid.isBlocked(x, y - dy)) {
+                    directionsX[directions] = dx;
+                    directionsY[directions++] = -dy;
+                }
+            } else if (!this.grid.isDiagonal()) {
+                // 4-connected: turn left and right
+                directionsX[directions] = dy;
+                directionsY[directions++] = dx;
+                directionsX[directions] = -dy;
+                directionsY[directions++] = -dx;
+            } else if (dx != 0) {
+                for (int side = -1; side <= 1; side += 2) {
+                    if (this.grid.isBlocked(x, y + side)) {
+                        directionsX[directions] = dx;
+                        directionsY[directions++] = side;
+                    }
+                }
+            } else {
+                for (int side = -1; side <= 1; side += 2) {
+                    if (this.grid.isBlocked(x + side, y)) {
+                        directionsX[directions] = side;
+                        directionsY[directions++] = dy;
+                    }
+                }
+            }
+        }
+
+        return directions;
+    }
+
+    /**
+     * Gets the grid of the current search.
+     *
+     * @return the grid
+     */
+    protected JumpGrid getGrid() {
+        return this.grid;
+    }
+
+    /**
+     * Gets the grid of a new search.
+     *
+     * @param graph the graph
+     * @param workspace the workspace of the search, holding the unit's
+     * weights
+     * @param diagonal true for 8-connected maps
+     * @return the grid
+     */
+    protected JumpGrid getJumpGrid(CostGraph graph, SearchWorkspace workspace, boolean diagonal) {
+        AbstractMap map = graph.getMap();
+
+        if (this.weightedGrid == null || this.weightedGrid.isDiagonal() != diagonal
+                || this.weightedGrid.getWidth() != map.getWidth() || this.weightedGrid.getHeight() != map.getHeight()) {
+            this.weightedGrid = new WeightedJumpGrid(map.getWidth(), map.getHeight(), diagonal);
+        }
+
+        this.weightedGrid.reset(graph, workspace);
+        return this.weightedGrid;
+    }
+
+    /**
+     * Gets the index of the target of the current search.
+     *
+     * @return the target
+     */
+    protected int getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Jumps from the given position into direction (dx, dy).
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param dx the x direction
+     * @param dy the y direction
+     * @return the index of the jump point or {@link #NONE}
+     */
+    private int jump(int x, int y, int dx, int dy) {
+        int jumpPoint = NONE, index;
+        boolean blocked = false;
+
+        if (dx == 0 || dy == 0) {
+            jumpPoint = this.jumpStraight(x, y, dx, dy);
+        } else {
+            while (jumpPoint == NONE && !blocked) {
+                x += dx;
+                y += dy;
+                blocked = this.grid.isBlocked(x, y);
+
+                if (!blocked) {
+                    index = y * this.grid.getWidth() + x;
+
+                    if (index == this.target || !this.grid.isUniform(index) || this.grid.isForced(x, y, dx, dy)
+                            || this.jumpStraight(x, y, dx, 0) != NONE || this.jumpStraight(x, y, 0, dy) != NONE) {
+                        jumpPoint = index;
+                    }
+                }
+            }
+        }
+
+        return jumpPoint;
+    }
+
+    /**
+     * Jumps from the given position into the straight direction (dx, dy). On
+     * 4-connected maps a vertical jump also stops at fields from which a
+     * horizontal jump finds a jump point.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param dx the x direction
+     * @param dy the y direction
+     * @return the index of the jump point or {@link #NONE}
+     */
+    protected int jumpStraight(int x, int y, int dx, int dy) {
+        int jumpPoint = NONE, index;
+        boolean blocked = false;
+
+        while (jumpPoint == NONE && !blocked) {
+            x += dx;
+            y += dy;
+            blocked = this.grid.isBlocked(x, y);
+
+            if (!blocked) {
+                index = y * this.grid.getWidth() + x;
+
+                if (index == this.target || !this.grid.isUniform(index) || this.grid.isForced(x, y, dx, dy)
+                        || (!this.grid.isDiagonal() && dx == 0
+                        && (this.jumpStraight(x, y, 1, 0) != NONE || this.jumpStraight(x, y, -1, 0) != NONE))) {
+                    jumpPoint = index;
+                }
+            }
+        }
+
+        return jumpPoint;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+/**
+ * The Class JumpPointPlusPathfinder is a {@link JumpPointPathfinder} which
+ * takes its straight jumps from the precomputed {@link JumpTable} of the cost
+ * graph (JPS+) instead of scanning the map field by field. Diagonal jumps
+ * still step diagonally, but each of their straight sub-jumps is a table
+ * lookup. <br>
+ * The table is shared by all units of a movement class and doesn't know
+ * which units a unit may pass, so it assumes that
+ * {@link abstractgame.unit.AbstractUnit#canPass(abstractgame.map.AbstractField)}
+ * only depends on the units placed on a field.
+ *
+ * @author Nils Kuttkat
+ */
+public class JumpPointPlusPathfinder extends JumpPointPathfinder {
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 5581407740417309371L;
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.JumpPointPathfinder#getJumpGrid(abstractgame.pathfinding.CostGraph,
+	 * abstractgame.pathfinding.SearchWorkspace, boolean)
+     */
+    @Override
+    protected JumpGrid getJumpGrid(CostGraph graph, SearchWorkspace workspace, boolean diagonal) {
+        return graph.getJumpTable(diagonal);
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.JumpPointPathfinder#jumpStraight(int, int, int, int)
+     */
+    @Override
+    protected int jumpStraight(int x, int y, int dx, int dy) {
+        JumpTable table = (JumpTable) this.getGrid();
+        int width = table.getWidth(), index = y * width + x, jump = table.getJump(index, dx, dy);
+        int reach = Math.abs(jump), targetX = this.getTarget() % width, targetY = this.getTarget() / width;
+        int jumpPoint = jump > 0 ? index + jump * (dy * width + dx) : NONE, distance;
+
+        if (dy == 0 && targetY == y) {
+            // the target lies on the jump
+            distance = (targetX - x) * dx;
+
+            if (distance > 0 && distance <= reach) {
+                jumpPoint = this.getTarget();
+            }
+        } else if (dx == 0) {
+            distance = (targetY - y) * dy;
+
+            if (distance > 0 && distance <= reach) {
+                if (targetX == x) {
+                    jumpPoint = this.getTarget();
+                } else if (!table.isDiagonal()
+                        && Math.abs(targetX - x) <= Math.abs(table.getJump(index + distance * dy * width, Integer.signum(targetX - x), 0))) {
+                    // 4-connected: a horizontal jump from the target's row
+                    // reaches the target
+                    jumpPoint = index + distance * dy * width;
+                }
+            }
+        }
+
+        return jumpPoint;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.BitSet;
+
+import abstractgame.map.AbstractField;
+
+/**
+ * The Class JumpTable is the precomputed {@link JumpGrid} of a
+ * {@link CostGraph} used by the {@link JumpPointPlusPathfinder}. For every
+ * field and each of the four straight directions it stores how far a straight
+ * jump goes: a positive distance to the next field the jump stops at, or the
+ * negated number of fields which can be entered before the jump runs into a
+ * blocked field or the edge of the map. <br>
+ * The table belongs to a movement class, not to a unit, so it can't know
+ * which units a unit may pass. Fields occupied by any unit are therefore
+ * treated like a change of the terrain cost: the jumps stop next to them and
+ * the search expands the occupied field with the unit's real weight. <br>
+ * Changed fields are collected and repaired row by row and column by column
+ * before the next search.
+ *
+ * @author Nils Kuttkat
+ */
+public class JumpTable extends JumpGrid {
+
+    /**
+     * The kind of blocked fields.
+     */
+    private static final byte BLOCKED = 0;
+
+    /**
+     * The kind of fields which are not uniform.
+     */
+    private static final byte BOUNDARY = 2;
+
+    /**
+     * The kind of uniform fields.
+     */
+    private static final byte UNIFORM = 1;
+
+    /**
+     * The fields changed since the last update.
+     */
+    private final BitSet changedFields;
+
+    /**
+     * The graph.
+     */
+    private final CostGraph graph;
+
+    /**
+     * The jump distances, four per field.
+     */
+    private final int[] jumps;
+
+    /**
+     * The kind of every field.
+     */
+    private final byte[] kinds;
+
+    /**
+     * Instantiates a new jump table and computes it for the whole map.
+     *
+     * @param graph the graph
+     * @param diagonal true for 8-connected maps
+     */
+    public JumpTable(CostGraph graph, boolean diagonal) {
+        super(graph.getMap().getWidth(), graph.getMap().getHeight(), diagonal);
+        this.graph = graph;
+        this.kinds = new byte[graph.getMap().getSize()];
+        this.jumps = new int[graph.getMap().getSize() * 4];
+        this.changedFields = new BitSet();
+
+        for (int index = 0; index < this.kinds.length; index++) {
+            this.kinds[index] = this.computeKind(index);
+        }
+
+        for (int y = 0; y < this.getHeight(); y++) {
+            this.updateRow(y, null);
+        }
+
+        for (int x = 0; x < this.getWidth(); x++) {
+            this.updateColumn(x);
+        }
+    }
+
+    /**
+     * Computes the kind of the field with the given index.
+     *
+     * @param index the index
+     * @return the kind
+     */
+    private byte computeKind(int index) {
+        int x = index % this.getWidth(), y = index / this.getWidth(), neighbor;
+        double cost = this.graph.getCost(index), neighborCost;
+        byte kind = BLOCKED;
+
+        if (cost != Double.POSITIVE_INFINITY) {
+            kind = this.isOccupied(index) ? BOUNDARY : UNIFORM;
+
+            for (int neighborY = Math.max(0, y - 1); neighborY <= Math.min(this.getHeight() - 1, y + 1); neighborY++) {
+                for (int neighborX = Math.max(0, x - 1); neighborX <= Math.min(this.getWidth() - 1, x + 1); neighborX++) {
+                    neighbor = neighborY * this.getWidth() + neighborX;
+                    neighborCost = this.graph.getCost(neighbor);
+
+                    if (neighborCost != Double.POSITIVE_INFINITY
+                            && (neighborCost != cost || this.isOccupied(neighbor))) {
+                        kind = BOUNDARY;
+                    }
+                }
+            }
+        }
+
+        return kind;
+    }
+
+    /**
+     * Tells the table that the terrain or the units of the field with the
+     * given index changed.
+     *
+     * @param index the index
+     */
+    public void fieldChanged(int index) {
+        this.changedFields.set(index);
+    }
+
+    /**
+     * Gets the slot of a straight direction in {@link #jumps}.
+     *
+     * @param dx the x direction
+     * @param dy the y direction
+     * @return the slot
+     */
+    private static int getDirection(int dx, int dy) {
+        int direction;
+
+        if (dy > 0) {
+            direction = 0;
+        } else if (dx > 0) {
+            direction = 1;
+        } else if (dy < 0) {
+            direction = 2;
+        } else {
+            direction = 3;
+        }
+
+        return direction;
+    }
+
+    /**
+     * Gets the jump distance from the field with the given index into a
+     * straight direction.
+     *
+     * @param index the index
+     * @param dx the x direction
+     * @param dy the y direction
+     * @return the distance to the field the jump stops at (positive) or the
+     * negated number of fields which can be entered before a blocked one
+     */
+    public int getJump(int index, int dx, int dy) {
+        return this.jumps[index * 4 + getDirection(dx, dy)];
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.JumpGrid#isBlocked(int)
+     */
+    @Override
+    public boolean isBlocked(int index) {
+        return this.kinds[index] == BLOCKED;
+    }
+
+    /**
+     * Checks if a horizontal jump from the field with the given index stops
+     * anywhere. On 4-connected maps vertical jumps stop at such fields.
+     *
+     * @param index the index
+     * @return true, if successful
+     */
+    private boolean isHorizontalStop(int index) {
+        return this.jumps[index * 4 + 1] > 0 || this.jumps[index * 4 + 3] > 0;
+    }
+
+    /**
+     * Checks if the field with the given index carries units.
+     *
+     * @param index the index
+     * @return true, if is occupied
+     */
+    private boolean isOccupied(int index) {
+        AbstractField field = this.graph.getMap().getPlacedField(index);
+
+        return field != null && !field.getUnits().isEmpty();
+    }
+
+    /**
+     * Checks if a straight jump into direction (dx, dy) stops at the given
+     * position, which can be entered.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param dx the x direction
+     * @param dy the y direction
+     * @return true, if is stop
+     */
+    private boolean isStop(int x, int y, int dx, int dy) {
+        int index = y * this.getWidth() + x;
+
+        return this.kinds[index] == BOUNDARY || this.isForced(x, y, dx, dy)
+                || (!this.isDiagonal() && dx == 0 && this.isHorizontalStop(index));
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.JumpGrid#isUniform(int)
+     */
+    @Override
+    public boolean isUniform(int index) {
+        return this.kinds[index] == UNIFORM;
+    }
+
+    /**
+     * Repairs the table for all fields changed since the last update. A
+     * changed field changes the kinds of its neighbors and the jumps of the
+     * rows and columns around it.
+     */
+    public void update() {
+        BitSet rows, columns;
+        int x, y;
+
+        if (!this.changedFields.isEmpty()) {
+            rows = new BitSet(this.getHeight());
+            columns = new BitSet(this.getWidth());
+
+            for (int index = this.changedFields.nextSetBit(0); index >= 0; index = this.changedFields.nextSetBit(index + 1)) {
+                x = index % this.getWidth();
+                y = index / this.getWidth();
+                rows.set(Math.max(0, y - 1), Math.min(this.getHeight(), y + 2));
+                columns.set(Math.max(0, x - 1), Math.min(this.getWidth(), x + 2));
+
+                for (int neighborY = Math.max(0, y - 1); neighborY <= Math.min(this.getHeight() - 1, y + 1); neighborY++) {
+                    for (int neighborX = Math.max(0, x - 1); neighborX <= Math.min(this.getWidth() - 1, x + 1); neighborX++) {
+                        this.kinds[neighborY * this.getWidth() + neighborX] = this.computeKind(neighborY * this.getWidth() + neighborX);
+                    }
+                }
+            }
+
+            this.changedFields.clear();
+
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                this.updateRow(row, columns);
+            }
+
+            for (int column = columns.nextSetBit(0); column >= 0; column = columns.nextSetBit(column + 1)) {
+                this.updateColumn(column);
+            }
+        }
+    }
+
+    /**
+     * Updates the vertical jumps of a column.
+     *
+     * @param x the x coordinate
+     */
+    private void updateColumn(int x) {
+        for (int y = this.getHeight() - 1; y >= 0; y--) {
+            this.updateJump(x, y, 0, 1);
+        }
+
+        for (int y = 0; y < this.getHeight(); y++) {
+            this.updateJump(x, y, 0, -1);
+        }
+    }
+
+    /**
+     * Updates the jump from the given position into direction (dx, dy) from
+     * the jump of the next position.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param dx the x direction
+     * @param dy the y direction
+     */
+    private void updateJump(int x, int y, int dx, int dy) {
+        int next, jump;
+
+        if (this.isBlocked(x + dx, y + dy)) {
+            jump = 0;
+        } else if (this.isStop(x + dx, y + dy, dx, dy)) {
+            jump = 1;
+        } else {
+            next = this.jumps[((y + dy) * this.getWidth() + x + dx) * 4 + getDirection(dx, dy)];
+            jump = next > 0 ? next + 1 : next - 1;
+        }
+
+        this.jumps[(y * this.getWidth() + x) * 4 + getDirection(dx, dy)] = jump;
+    }
+
+    /**
+     * Updates the horizontal jumps of a row. On 4-connected maps the columns
+     * whose vertical jumps depend on a changed horizontal jump are added to
+     * changedColumns.
+     *
+     * @param y the y coordinate
+     * @param changedColumns the changed columns or null
+     */
+    private void updateRow(int y, BitSet changedColumns) {
+        boolean[] stops = null;
+
+        if (changedColumns != null && !this.isDiagonal()) {
+            stops = new boolean[this.getWidth()];
+
+            for (int x = 0; x < this.getWidth(); x++) {
+                stops[x] = this.isHorizontalStop(y * this.getWidth() + x);
+            }
+        }
+
+        for (int x = this.getWidth() - 1; x >= 0; x--) {
+            this.updateJump(x, y, 1, 0);
+        }
+
+        for (int x = 0; x < this.getWidth(); x++) {
+            this.updateJump(x, y, -1, 0);
+        }
+
+        if (stops != null) {
+            for (int x = 0; x < this.getWidth(); x++) {
+                if (stops[x] != this.isHorizontalStop(y * this.getWidth() + x)) {
+                    changedColumns.set(x);
+                }
+            }
+        }
+    }
+}
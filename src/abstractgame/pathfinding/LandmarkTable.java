@@ -0,0 +1,385 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import abstractgame.map.NeighborTable;
+
+/**
+ * The Class LandmarkTable is a distance oracle for a {@link CostGraph} (ALT:
+ * A*, landmarks and the triangle inequality). It stores the cost from a few
+ * landmark fields to every field and back, which gives a lower bound of the
+ * cost between any two fields in O(landmarks): for every landmark L the cost
+ * from u to t is at least cost(L, t) - cost(L, u) and cost(u, L) - cost(t, L).
+ * The landmarks are spread over the map by choosing the field farthest away
+ * from the landmarks chosen so far. <br>
+ * The table knows the terrain costs only, the weights of a single unit are
+ * never lower, so the bounds hold for every unit of the movement class. <br>
+ * Changed fields are repaired before the next use. A field which became
+ * cheaper is propagated from the field on, since the old costs would be too
+ * high. A field which became more expensive only leaves the costs of the
+ * table too low, which keeps the bounds valid, just less tight, so these
+ * changes are collected and the table is computed again once there are many
+ * of them.
+ *
+ * @author Nils Kuttkat
+ */
+public class LandmarkTable {
+
+    /**
+     * The share of the fields which may have become more expensive before
+     * the table is computed again.
+     */
+    private static final int REBUILD_RATIO = 100;
+
+    /**
+     * The fields changed since the last update.
+     */
+    private final BitSet changedFields;
+
+    /**
+     * The terrain costs the table is based on.
+     */
+    private final double[] costs;
+
+    /**
+     * The cost from every landmark to every field.
+     */
+    private final double[][] fromLandmarks;
+
+    /**
+     * The graph.
+     */
+    private final CostGraph graph;
+
+    /**
+     * The number of fields which became more expensive since the table was
+     * computed.
+     */
+    private int increases;
+
+    /**
+     * The indices of the landmarks.
+     */
+    private final int[] landmarks;
+
+    /**
+     * The neighbor table.
+     */
+    private final NeighborTable neighborTable;
+
+    /**
+     * The open list of the searches.
+     */
+    private final FieldHeap open;
+
+    /**
+     * The cost from every field to every landmark.
+     */
+    private final double[][] toLandmarks;
+
+    /**
+     * Instantiates a new landmark table and computes it.
+     *
+     * @param graph the graph
+     * @param neighborTable the neighbor table of the map's fields
+     * @param landmarks the number of landmarks
+     */
+    public LandmarkTable(CostGraph graph, NeighborTable neighborTable, int landmarks) {
+        int size = graph.getMap().getSize();
+
+        if (landmarks < 1) {
+            throw new IllegalArgumentException("Illegal number of landmarks " + landmarks);
+        }
+
+        this.graph = graph;
+        this.neighborTable = neighborTable;
+        this.landmarks = new int[landmarks];
+        this.fromLandmarks = new double[landmarks][size];
+        this.toLandmarks = new double[landmarks][size];
+        this.costs = new double[size];
+        this.changedFields = new BitSet(size);
+        this.open = new FieldHeap(size);
+        this.build();
+    }
+
+    /**
+     * Chooses the landmarks and computes all costs.
+     */
+    private void build() {
+        double[] nearest = new double[this.costs.length];
+        int landmark;
+
+        for (int index = 0; index < this.costs.length; index++) {
+            this.costs[index] = this.graph.getCost(index);
+        }
+
+        landmark = this.getCenter();
+
+        // the first landmark is the field farthest from the center, every
+        // further one the field farthest from all landmarks so far
+        this.search(landmark, this.fromLandmarks[0], false);
+        Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+
+        for (int i = 0; i < this.landmarks.length; i++) {
+            landmark = farthest(i == 0 ? this.fromLandmarks[0] : nearest, landmark);
+            this.landmarks[i] = landmark;
+            this.search(landmark, this.fromLandmarks[i], false);
+            this.search(landmark, this.toLandmarks[i], true);
+
+            for (int index = 0; index < nearest.length; index++) {
+                nearest[index] = Math.min(nearest[index], this.fromLandmarks[i][index]);
+            }
+        }
+
+        this.changedFields.clear();
+        this.increases = 0;
+    }
+
+    /**
+     * Finds the field with the highest finite cost.
+     *
+     * @param costs the costs
+     * @param fallback the field returned if no cost is finite and positive
+     * @return the index of the field
+     */
+    private static int farthest(double[] costs, int fallback) {
+        int farthest = fallback;
+        double highest = 0;
+
+        for (int index = 0; index < costs.length; index++) {
+            if (costs[index] != Double.POSITIVE_INFINITY && costs[index] > highest) {
+                highest = costs[index];
+                farthest = index;
+            }
+        }
+
+        return farthest;
+    }
+
+    /**
+     * Tells the table that the field with the given index changed.
+     *
+     * @param index the index
+     */
+    public void fieldChanged(int index) {
+        this.changedFields.set(index);
+    }
+
+    /**
+     * Finds an accessible field close to the center of the map.
+     *
+     * @return the index of the field
+     */
+    private int getCenter() {
+        int width = this.graph.getMap().getWidth(), height = this.graph.getMap().getHeight();
+        int center = (height / 2) * width + width / 2, best = center;
+        long distance, bestDistance = Long.MAX_VALUE;
+
+        for (int index = 0; index < this.costs.length; index++) {
+            distance = (long) Math.abs(index % width - center % width) + Math.abs(index / width - center / width);
+
+            if (this.costs[index] != Double.POSITIVE_INFINITY && distance < bestDistance) {
+                bestDistance = distance;
+                best = index;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Estimates the cost from one field to another by the cheapest detour via
+     * a landmark. The estimate is never lower than the real terrain cost as
+     * long as no field became more expensive since the table was computed,
+     * otherwise it may be a little lower.
+     *
+     * @param from the index of the field to start from
+     * @param to the index of the target
+     * @return the estimate or Double.POSITIVE_INFINITY if the target can't be
+     * reached via a landmark
+     */
+    public double getEstimate(int from, int to) {
+        double estimate = Double.POSITIVE_INFINITY;
+
+        for (int i = 0; i < this.landmarks.length; i++) {
+            estimate = Math.min(estimate, this.toLandmarks[i][from] + this.fromLandmarks[i][to]);
+        }
+
+        return estimate;
+    }
+
+    /**
+     * Gets the indices of the landmarks.
+     *
+     * @return the landmarks
+     */
+    public int[] getLandmarks() {
+        return this.landmarks.clone();
+    }
+
+    /**
+     * Gets a lower bound of the cost from one field to another.
+     *
+     * @param from the index of the field to start from
+     * @param to the index of the target
+     * @return the lower bound or Double.POSITIVE_INFINITY if the target can't
+     * be reached at all
+     */
+    public double getLowerBound(int from, int to) {
+        double bound = 0;
+
+        for (int i = 0; i < this.landmarks.length; i++) {
+            // cost(L, to) <= cost(L, from) + cost(from, to)
+            if (this.fromLandmarks[i][from] != Double.POSITIVE_INFINITY) {
+                bound = Math.max(bound, this.fromLandmarks[i][to] - this.fromLandmarks[i][from]);
+            }
+
+            // cost(from, L) <= cost(from, to) + cost(to, L)
+            if (this.toLandmarks[i][to] != Double.POSITIVE_INFINITY) {
+                bound = Math.max(bound, this.toLandmarks[i][from] - this.toLandmarks[i][to]);
+            }
+        }
+
+        return bound;
+    }
+
+    /**
+     * Gets the number of landmarks.
+     *
+     * @return the number of landmarks
+     */
+    public int getSize() {
+        return this.landmarks.length;
+    }
+
+    /**
+     * Lowers the costs of the table after fields became cheaper: the seeded
+     * fields are searched on with the current terrain costs until no cost
+     * improves anymore.
+     *
+     * @param distances the costs from or to one landmark
+     * @param reverse true for the costs to the landmark
+     */
+    private void propagate(double[] distances, boolean reverse) {
+        int index, neighbor;
+        double cost;
+
+        while (!this.open.isEmpty()) {
+            index = this.open.poll();
+
+            for (int direction = 0; direction < this.neighborTable.getDirections(); direction++) {
+                neighbor = this.neighborTable.getNeighbor(index, direction);
+
+                if (neighbor != NeighborTable.EDGE) {
+                    // forwards the step enters the neighbor, backwards the
+                    // neighbor steps into the field
+                    cost = distances[index] + this.neighborTable.getDistance(index, neighbor)
+                            * (reverse ? this.costs[index] : this.costs[neighbor]);
+
+                    if (cost < distances[neighbor]) {
+                        distances[neighbor] = cost;
+                        this.open.offer(neighbor, cost);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the costs from or to a landmark.
+     *
+     * @param landmark the index of the landmark
+     * @param distances the costs to fill
+     * @param reverse true for the costs to the landmark
+     */
+    private void search(int landmark, double[] distances, boolean reverse) {
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        distances[landmark] = 0;
+        this.open.offer(landmark, 0);
+        this.propagate(distances, reverse);
+    }
+
+    /**
+     * Repairs the table after fields changed.
+     */
+    public void update() {
+        BitSet cheaperFields = new BitSet(this.costs.length);
+        double cost;
+        int neighbor;
+
+        for (int index = this.changedFields.nextSetBit(0); index >= 0; index = this.changedFields.nextSetBit(index + 1)) {
+            cost = this.graph.getCost(index);
+
+            if (cost < this.costs[index]) {
+                cheaperFields.set(index);
+            } else if (cost > this.costs[index]) {
+                this.increases++;
+            }
+
+            this.costs[index] = cost;
+        }
+
+        this.changedFields.clear();
+
+        if (this.increases * REBUILD_RATIO > this.costs.length) {
+            this.build();
+        } else if (!cheaperFields.isEmpty()) {
+            for (int i = 0; i < this.landmarks.length; i++) {
+                // forwards: the steps into a cheaper field got cheaper
+                for (int index = cheaperFields.nextSetBit(0); index >= 0; index = cheaperFields.nextSetBit(index + 1)) {
+                    for (int direction = 0; direction < this.neighborTable.getDirections(); direction++) {
+                        neighbor = this.neighborTable.getNeighbor(index, direction);
+
+                        if (neighbor != NeighborTable.EDGE) {
+                            cost = this.fromLandmarks[i][neighbor]
+                                    + this.neighborTable.getDistance(neighbor, index) * this.costs[index];
+
+                            if (cost < this.fromLandmarks[i][index]) {
+                                this.fromLandmarks[i][index] = cost;
+                                this.open.offer(index, cost);
+                            }
+                        }
+                    }
+                }
+
+                this.propagate(this.fromLandmarks[i], false);
+
+                // backwards: the neighbors step into the cheaper field
+                for (int index = cheaperFields.nextSetBit(0); index >= 0; index = cheaperFields.nextSetBit(index + 1)) {
+                    for (int direction = 0; direction < this.neighborTable.getDirections(); direction++) {
+                        neighbor = this.neighborTable.getNeighbor(index, direction);
+
+                        if (neighbor != NeighborTable.EDGE) {
+                            cost = this.toLandmarks[i][index]
+                                    + this.neighborTable.getDistance(neighbor, index) * this.costs[index];
+
+                            if (cost < this.toLandmarks[i][neighbor]) {
+                                this.toLandmarks[i][neighbor] = cost;
+                                this.open.offer(neighbor, cost);
+                            }
+                        }
+                    }
+                }
+
+                this.propagate(this.toLandmarks[i], true);
+            }
+        }
+    }
+}
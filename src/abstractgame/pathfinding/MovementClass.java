@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import abstractgame.map.AbstractMap;
+import abstractgame.map.TerrainRegistry;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * A MovementClass groups all units which move across the map the same way:
+ * units of the same class with equal accessible terrains and terrain
+ * modifiers. All units of a movement class share one {@link CostGraph}. <br>
+ * A MovementClass is an immutable snapshot, so it can be used as a key. <br>
+ * Besides the map of terrain modifiers it keeps a table of the modifiers by
+ * {@link TerrainRegistry} ordinal, so a modifier is a single array read
+ * ({@link #getTerrainModifier(int)}). <br>
+ * The cost graph asks {@link #getCost(AbstractMap, int)} for the cost of
+ * entering a field. Units whose costs depend on more than the terrain
+ * override {@link AbstractUnit#createMovementClass()} and return a subclass
+ * which overrides that method. As equal movement classes share a graph, a
+ * subclass is only equal to instances of the same subclass.
+ *
+ * @author Nils Kuttkat
+ */
+public class MovementClass {
+
+    /**
+     * The terrain modifiers by {@link TerrainRegistry} ordinal,
+     * Double.POSITIVE_INFINITY for inaccessible terrains. The table ends
+     * after the highest ordinal of the terrains in the modifiers, terrains
+     * registered later aren't accessible.
+     */
+    private final double[] modifierTable;
+
+    /**
+     * The terrain modifiers.
+     */
+    private final HashMap<Enum<?>, Double> terrainModifiers;
+
+    /**
+     * The unit class.
+     */
+    private final Class<? extends AbstractUnit> unitClass;
+
+    /**
+     * Instantiates a new movement class.
+     *
+     * @param unitClass the unit class
+     * @param terrainModifiers the terrain modifiers
+     */
+    public MovementClass(Class<? extends AbstractUnit> unitClass, Map<Enum<?>, Double> terrainModifiers) {
+        int length = TerrainRegistry.NO_TERRAIN + 1;
+
+        this.unitClass = unitClass;
+        this.terrainModifiers = new HashMap<Enum<?>, Double>(terrainModifiers);
+
+        for (Enum<?> terrain : this.terrainModifiers.keySet()) {
+            length = Math.max(length, TerrainRegistry.getOrdinal(terrain) + 1);
+        }
+
+        this.modifierTable = new double[length];
+        Arrays.fill(this.modifierTable, Double.POSITIVE_INFINITY);
+
+        for (Map.Entry<Enum<?>, Double> entry : this.terrainModifiers.entrySet()) {
+            if (entry.getKey() != null) {
+                this.modifierTable[TerrainRegistry.getOrdinal(entry.getKey())] = entry.getValue();
+            }
+        }
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object object) {
+        boolean equals = false;
+
+        if (object == this) {
+            equals = true;
+        } else if (object instanceof MovementClass) {
+            MovementClass other = (MovementClass) object;
+            equals = this.getClass() == other.getClass() && this.unitClass == other.unitClass
+                    && this.terrainModifiers.equals(other.terrainModifiers);
+        }
+
+        return equals;
+    }
+
+    /**
+     * Gets the cost of entering the field with the given index of the map.
+     * This is the modifier of the field's terrain, which the map answers
+     * without touching or creating the field. Subclasses may take more than
+     * the terrain into account, but must return the same cost for the same
+     * field as long as it doesn't change, and must tell the map's cost graphs
+     * about other changes ({@link CostGraph#fieldChanged(int)}).
+     *
+     * @param map the map
+     * @param index the index
+     * @return the cost or Double.POSITIVE_INFINITY if the field isn't
+     * accessible
+     */
+    public double getCost(AbstractMap map, int index) {
+        return this.getTerrainModifier(map.getTerrainOrdinal(index));
+    }
+
+    /**
+     * Gets the terrain modifier.
+     *
+     * @param terrain the terrain
+     * @return the terrain modifier or Double.POSITIVE_INFINITY if the terrain
+     * isn't accessible
+     */
+    public double getTerrainModifier(Enum<?> terrain) {
+        Double modifier = this.terrainModifiers.get(terrain);
+
+        return modifier == null ? Double.POSITIVE_INFINITY : modifier;
+    }
+
+    /**
+     * Gets the terrain modifier of the terrain with the given
+     * {@link TerrainRegistry} ordinal.
+     *
+     * @param ordinal the ordinal
+     * @return the terrain modifier or Double.POSITIVE_INFINITY if the terrain
+     * isn't accessible
+     */
+    public double getTerrainModifier(int ordinal) {
+        return ordinal < this.modifierTable.length ? this.modifierTable[ordinal] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Gets the unit class.
+     *
+     * @return the unit class
+     */
+    public Class<? extends AbstractUnit> getUnitClass() {
+        return this.unitClass;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return 31 * this.unitClass.hashCode() + this.terrainModifiers.hashCode();
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return this.getClass().getName() + "(" + this.unitClass.getName() + this.terrainModifiers + ")";
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+
+/**
+ * The Class Path is the result of a pathfinding operation. It holds the index
+ * of every field on the path, starting with the start field, together with the
+ * accumulated cost of reaching it.
+ *
+ * @author Nils Kuttkat
+ */
+public class Path {
+
+    /**
+     * The empty path.
+     */
+    public static final Path EMPTY = new Path(null, new int[0], new double[0]);
+
+    /**
+     * The accumulated costs.
+     */
+    private final double[] costs;
+
+    /**
+     * The field indices.
+     */
+    private final int[] indices;
+
+    /**
+     * The map.
+     */
+    private final AbstractMap map;
+
+    /**
+     * Instantiates a new path.
+     *
+     * @param map the map
+     * @param indices the field indices
+     * @param costs the accumulated costs
+     */
+    public Path(AbstractMap map, int[] indices, double[] costs) {
+        this.map = map;
+        this.indices = indices;
+        this.costs = costs;
+    }
+
+    /**
+     * Gets the accumulated cost of reaching the given step.
+     *
+     * @param step the step
+     * @return the cost
+     */
+    public double getCost(int step) {
+        return this.costs[step];
+    }
+
+    /**
+     * Gets the field of the given step.
+     *
+     * @param step the step
+     * @return the field
+     */
+    public AbstractField getField(int step) {
+        return this.map.getField(this.indices[step]);
+    }
+
+    /**
+     * Gets the field index of the given step.
+     *
+     * @param step the step
+     * @return the index
+     */
+    public int getIndex(int step) {
+        return this.indices[step];
+    }
+
+    /**
+     * Gets the map.
+     *
+     * @return the map
+     */
+    public AbstractMap getMap() {
+        return this.map;
+    }
+
+    /**
+     * Gets the cost of the whole path.
+     *
+     * @return the total cost
+     */
+    public double getTotalCost() {
+        return this.isEmpty() ? Double.POSITIVE_INFINITY : this.costs[this.costs.length - 1];
+    }
+
+    /**
+     * Checks if the path is empty.
+     *
+     * @return true, if is empty
+     */
+    public boolean isEmpty() {
+        return this.indices.length == 0;
+    }
+
+    /**
+     * Gets the number of steps including the start.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.indices.length;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(this.getClass().getName()).append('[');
+
+        for (int step = 0; step < this.size(); step++) {
+            if (step > 0) {
+                builder.append(", ");
+            }
+
+            builder.append(this.getField(step).getPosition());
+        }
+
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+
+/**
+ * The Class PathCursor is a reusable {@link Path}. A search loads its result
+ * into the cursor instead of creating a new path, the arrays only grow when a
+ * longer path is loaded, so a unit searching every turn doesn't allocate
+ * anything, see
+ * {@link AbstractPathfinder#findPath(CostGraph, AbstractUnit, AbstractField, AbstractField, double, PathCursor)}.
+ *
+ * @author Nils Kuttkat
+ */
+public class PathCursor {
+
+    /**
+     * The accumulated costs.
+     */
+    private double[] costs = new double[16];
+
+    /**
+     * The field indices.
+     */
+    private int[] indices = new int[16];
+
+    /**
+     * The map.
+     */
+    private AbstractMap map;
+
+    /**
+     * The number of fields.
+     */
+    private int size;
+
+    /**
+     * Empties the cursor.
+     */
+    public void clear() {
+        this.map = null;
+        this.size = 0;
+    }
+
+    /**
+     * Gets the accumulated cost of the given step.
+     *
+     * @param step the step
+     * @return the cost
+     */
+    public double getCost(int step) {
+        return this.costs[step];
+    }
+
+    /**
+     * Gets the field of the given step.
+     *
+     * @param step the step
+     * @return the field
+     */
+    public AbstractField getField(int step) {
+        return this.map.getField(this.indices[step]);
+    }
+
+    /**
+     * Gets the field index of the given step.
+     *
+     * @param step the step
+     * @return the index
+     */
+    public int getIndex(int step) {
+        return this.indices[step];
+    }
+
+    /**
+     * Gets the map.
+     *
+     * @return the map
+     */
+    public AbstractMap getMap() {
+        return this.map;
+    }
+
+    /**
+     * Gets the cost of the whole path.
+     *
+     * @return the total cost or Double.POSITIVE_INFINITY if the cursor is
+     * empty
+     */
+    public double getTotalCost() {
+        return this.size == 0 ? Double.POSITIVE_INFINITY : this.costs[this.size - 1];
+    }
+
+    /**
+     * Checks if the cursor is empty.
+     *
+     * @return true, if is empty
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Loads the path.
+     *
+     * @param path the path
+     */
+    public void load(Path path) {
+        this.reset(path.getMap(), path.size());
+
+        for (int step = 0; step < path.size(); step++) {
+            this.set(step, path.getIndex(step), path.getCost(step));
+        }
+    }
+
+    /**
+     * Prepares the cursor for a path of the given length.
+     *
+     * @param map the map
+     * @param length the length
+     */
+    void reset(AbstractMap map, int length) {
+        if (this.indices.length < length) {
+            this.indices = Arrays.copyOf(this.indices, Math.max(length, this.indices.length * 2));
+            this.costs = Arrays.copyOf(this.costs, this.indices.length);
+        }
+
+        this.map = map;
+        this.size = length;
+    }
+
+    /**
+     * Sets the field index and accumulated cost of the given step.
+     *
+     * @param step the step
+     * @param index the index
+     * @param cost the cost
+     */
+    void set(int step, int index, double cost) {
+        this.indices[step] = index;
+        this.costs[step] = cost;
+    }
+
+    /**
+     * Gets the number of fields including the start.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Copies the cursor into a new path.
+     *
+     * @return the path
+     */
+    public Path toPath() {
+        return this.size == 0 ? Path.EMPTY
+                : new Path(this.map, Arrays.copyOf(this.indices, this.size), Arrays.copyOf(this.costs, this.size));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import abstractgame.map.AbstractField;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class PathRequest is a single search of a {@link BatchPathfinder}: the
+ * unit, the fields to search between and the max cost.
+ *
+ * @author Nils Kuttkat
+ */
+public class PathRequest {
+
+    /**
+     * The max cost.
+     */
+    private final double maxCost;
+
+    /**
+     * The start.
+     */
+    private final AbstractField start;
+
+    /**
+     * The target.
+     */
+    private final AbstractField target;
+
+    /**
+     * The unit.
+     */
+    private final AbstractUnit unit;
+
+    /**
+     * Instantiates a new path request from the unit's position to the target,
+     * limited by the unit's current movement points.
+     *
+     * @param unit the unit
+     * @param target the target
+     */
+    public PathRequest(AbstractUnit unit, AbstractField target) {
+        this(unit, unit.getPosition(), target, unit.getCurrentMovementPoints());
+    }
+
+    /**
+     * Instantiates a new path request.
+     *
+     * @param unit the unit
+     * @param start the start
+     * @param target the target
+     * @param maxCost the max cost
+     */
+    public PathRequest(AbstractUnit unit, AbstractField start, AbstractField target, double maxCost) {
+        if (unit == null) {
+            throw new IllegalArgumentException("Illegal unit null");
+        }
+
+        this.unit = unit;
+        this.start = start;
+        this.target = target;
+        this.maxCost = maxCost;
+    }
+
+    /**
+     * Gets the max cost.
+     *
+     * @return the max cost
+     */
+    public double getMaxCost() {
+        return this.maxCost;
+    }
+
+    /**
+     * Gets the start.
+     *
+     * @return the start
+     */
+    public AbstractField getStart() {
+        return this.start;
+    }
+
+    /**
+     * Gets the target.
+     *
+     * @return the target
+     */
+    public AbstractField getTarget() {
+        return this.target;
+    }
+
+    /**
+     * Gets the unit.
+     *
+     * @return the unit
+     */
+    public AbstractUnit getUnit() {
+        return this.unit;
+    }
+}
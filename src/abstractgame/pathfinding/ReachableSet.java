@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+
+/**
+ * The Class ReachableSet is the result of a movement range search. It holds
+ * every field a unit can reach from a start with at most a given cost,
+ * together with the cost of the cheapest path and the field it is entered
+ * from. <br>
+ * The fields are stored in three arrays sorted by field index, so a lookup is
+ * a binary search. A set stays valid until the map changes
+ * ({@link AbstractMap#getVersion()}), see
+ * {@link #isValid(CostGraph, AbstractField, double)}.
+ *
+ * @author Nils Kuttkat
+ */
+public class ReachableSet {
+
+    /**
+     * The empty set.
+     */
+    public static final ReachableSet EMPTY = new ReachableSet(null, AbstractMap.NO_INDEX, 0, 0,
+            new int[0], new double[0], new int[0]);
+
+    /**
+     * The costs of the cheapest paths.
+     */
+    private final double[] costs;
+
+    /**
+     * The graph.
+     */
+    private final CostGraph graph;
+
+    /**
+     * The field indices in ascending order.
+     */
+    private final int[] indices;
+
+    /**
+     * The max cost.
+     */
+    private final double maxCost;
+
+    /**
+     * The index of the field every field is entered from,
+     * {@link AbstractMap#NO_INDEX} for the start.
+     */
+    private final int[] parents;
+
+    /**
+     * The index of the start.
+     */
+    private final int start;
+
+    /**
+     * The version of the map the set was computed for.
+     */
+    private final long version;
+
+    /**
+     * Instantiates a new reachable set.
+     *
+     * @param graph the graph
+     * @param start the index of the start
+     * @param maxCost the max cost
+     * @param version the version of the map
+     * @param indices the field indices in ascending order
+     * @param costs the costs of the cheapest paths
+     * @param parents the indices of the fields every field is entered from
+     */
+    public ReachableSet(CostGraph graph, int start, double maxCost, long version,
+            int[] indices, double[] costs, int[] parents) {
+        this.graph = graph;
+        this.start = start;
+        this.maxCost = maxCost;
+        this.version = version;
+        this.indices = indices;
+        this.costs = costs;
+        this.parents = parents;
+    }
+
+    /**
+     * Checks if the field can be reached.
+     *
+     * @param abstractField the abstract field
+     * @return true, if successful
+     */
+    public boolean contains(AbstractField abstractField) {
+        return abstractField != null && abstractField.getMap() == this.getMap()
+                && this.find(abstractField.getIndex()) >= 0;
+    }
+
+    /**
+     * Checks if the field with the given index can be reached.
+     *
+     * @param index the index
+     * @return true, if successful
+     */
+    public boolean contains(int index) {
+        return this.find(index) >= 0;
+    }
+
+    /**
+     * Finds the position of the field with the given index in the arrays.
+     *
+     * @param index the index
+     * @return the position or a negative value if the field can't be reached
+     */
+    private int find(int index) {
+        return Arrays.binarySearch(this.indices, index);
+    }
+
+    /**
+     * Gets the cost of the cheapest path to the field with the given index.
+     *
+     * @param index the index
+     * @return the cost or Double.POSITIVE_INFINITY if the field can't be
+     * reached
+     */
+    public double getCost(int index) {
+        int position = this.find(index);
+
+        return position < 0 ? Double.POSITIVE_INFINITY : this.costs[position];
+    }
+
+    /**
+     * Gets the cost of the field at the given position (0 to
+     * {@link #size()} - 1).
+     *
+     * @param position the position
+     * @return the cost
+     */
+    public double getCostAt(int position) {
+        return this.costs[position];
+    }
+
+    /**
+     * Gets the field at the given position (0 to {@link #size()} - 1).
+     *
+     * @param position the position
+     * @return the field
+     */
+    public AbstractField getFieldAt(int position) {
+        return this.getMap().getField(this.indices[position]);
+    }
+
+    /**
+     * Gets the graph.
+     *
+     * @return the graph
+     */
+    public CostGraph getGraph() {
+        return this.graph;
+    }
+
+    /**
+     * Gets the field index at the given position (0 to {@link #size()} - 1).
+     *
+     * @param position the position
+     * @return the index
+     */
+    public int getIndexAt(int position) {
+        return this.indices[position];
+    }
+
+    /**
+     * Gets the map.
+     *
+     * @return the map
+     */
+    public AbstractMap getMap() {
+        return this.graph == null ? null : this.graph.getMap();
+    }
+
+    /**
+     * Gets the max cost.
+     *
+     * @return the max cost
+     */
+    public double getMaxCost() {
+        return this.maxCost;
+    }
+
+    /**
+     * Gets the index of the field the cheapest path enters the field with
+     * the given index from.
+     *
+     * @param index the index
+     * @return the index of the parent or {@link AbstractMap#NO_INDEX} for the
+     * start and fields which can't be reached
+     */
+    public int getParent(int index) {
+        int position = this.find(index);
+
+        return position < 0 ? AbstractMap.NO_INDEX : this.parents[position];
+    }
+
+    /**
+     * Gets the cheapest path from the start to the field.
+     *
+     * @param target the target
+     * @return the path or {@link Path#EMPTY} if the field can't be reached
+     */
+    public Path getPath(AbstractField target) {
+        int length = 0, step;
+        int[] pathIndices;
+        double[] pathCosts;
+
+        if (!this.contains(target)) {
+            return Path.EMPTY;
+        }
+
+        for (int index = target.getIndex(); index != AbstractMap.NO_INDEX; index = this.getParent(index)) {
+            length++;
+        }
+
+        pathIndices = new int[length];
+        pathCosts = new double[length];
+        step = length - 1;
+
+        for (int index = target.getIndex(); index != AbstractMap.NO_INDEX; index = this.getParent(index)) {
+            pathIndices[step] = index;
+            pathCosts[step] = this.getCost(index);
+            step--;
+        }
+
+        return new Path(this.getMap(), pathIndices, pathCosts);
+    }
+
+    /**
+     * Gets the index of the start.
+     *
+     * @return the start
+     */
+    public int getStart() {
+        return this.start;
+    }
+
+    /**
+     * Gets the version of the map the set was computed for.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return true, if is empty
+     */
+    public boolean isEmpty() {
+        return this.indices.length == 0;
+    }
+
+    /**
+     * Checks if the set is still the result of a search on the graph from the
+     * start with the max cost, i.e. the map hasn't changed since.
+     *
+     * @param graph the graph
+     * @param start the start
+     * @param maxCost the max cost
+     * @return true, if is valid
+     */
+    public boolean isValid(CostGraph graph, AbstractField start, double maxCost) {
+        return graph != null && graph == this.graph && start != null && start.getMap() == graph.getMap()
+                && start.getIndex() == this.start && maxCost == this.maxCost
+                && graph.getMap().getVersion() == this.version;
+    }
+
+    /**
+     * Gets the number of reachable fields including the start.
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.indices.length;
+    }
+}
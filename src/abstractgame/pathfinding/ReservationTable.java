@@ -0,0 +1,476 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class ReservationTable holds the space-time reservations of a group of
+ * units planned by a {@link CooperativePathfinder}. A unit following a path
+ * reserves the field it stands on at every step (slot). A field the unit
+ * moves to is reserved one step early as well, so the units of a step can
+ * move one after another in any order without ever exceeding the capacity of
+ * a field. Where its path ends the unit stays, the field is reserved from that
+ * step on (rest). <br>
+ * A field is free at a step if its reservations together with the units
+ * standing on it which don't belong to the group stay below
+ * {@link AbstractField#getMaxUnits()}. Every unit of the group rests on its
+ * start until its path is reserved. <br>
+ * The searches probe the table for every node, so it is indexed by primitive
+ * arrays: the rests and the room left by the other units per field, the slots
+ * in an open addressing hash table by step and field. A rest counts for every
+ * step of its field and is taken back by a negative slot for every step before
+ * it begins, so a field is free from a step on if it is free up to the last
+ * step any slot of the field is reserved for.
+ *
+ * @author Nils Kuttkat
+ */
+public class ReservationTable {
+
+    /**
+     * The marker for fields whose room hasn't been counted yet.
+     */
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    /**
+     * The last step any slot is reserved for.
+     */
+    private int horizon;
+
+    /**
+     * The last step any slot is reserved for by field index, -1 if none.
+     */
+    private final int[] lastSteps;
+
+    /**
+     * The map.
+     */
+    private final AbstractMap map;
+
+    /**
+     * The units of the group.
+     */
+    private final HashSet<AbstractUnit> members = new HashSet<AbstractUnit>();
+
+    /**
+     * The number of rests by field index.
+     */
+    private final int[] restCounts;
+
+    /**
+     * The field index and first step of every unit's rest.
+     */
+    private final HashMap<AbstractUnit, int[]> rests = new HashMap<AbstractUnit, int[]>();
+
+    /**
+     * The room the units which don't belong to the group leave by field index,
+     * {@link #UNKNOWN} until the field is probed.
+     */
+    private final int[] rooms;
+
+    /**
+     * The number of reservations by step and field index.
+     */
+    private final SlotTable slots = new SlotTable();
+
+    /**
+     * Instantiates a new reservation table.
+     *
+     * @param map the map
+     */
+    public ReservationTable(AbstractMap map) {
+        this.map = map;
+        this.lastSteps = new int[map == null ? 0 : map.getSize()];
+        this.restCounts = new int[this.lastSteps.length];
+        this.rooms = new int[this.lastSteps.length];
+        Arrays.fill(this.lastSteps, -1);
+        Arrays.fill(this.rooms, UNKNOWN);
+    }
+
+    /**
+     * Adds the unit to the group. It rests on the start until its path is
+     * reserved.
+     *
+     * @param unit the unit
+     * @param start the start
+     */
+    public void addUnit(AbstractUnit unit, AbstractField start) {
+        this.members.add(unit);
+
+        // the unit doesn't take room from the group any more
+        if (unit.hasPosition() && unit.getPosition().getMap() == this.map) {
+            this.rooms[unit.getPosition().getIndex()] = UNKNOWN;
+        }
+
+        if (start != null && start.getMap() == this.map) {
+            this.rest(unit, start.getIndex(), 0);
+        }
+    }
+
+    /**
+     * Removes all units and reservations.
+     */
+    public void clear() {
+        this.members.clear();
+        this.rests.clear();
+        this.slots.clear();
+        Arrays.fill(this.lastSteps, -1);
+        Arrays.fill(this.restCounts, 0);
+        Arrays.fill(this.rooms, UNKNOWN);
+        this.horizon = 0;
+    }
+
+    /**
+     * Gets the last step any slot is reserved for.
+     *
+     * @return the horizon
+     */
+    public int getHorizon() {
+        return this.horizon;
+    }
+
+    /**
+     * Gets the map.
+     *
+     * @return the map
+     */
+    public AbstractMap getMap() {
+        return this.map;
+    }
+
+    /**
+     * Gets the number of units on the field with the given index at the step:
+     * the reservations and the units which don't belong to the group.
+     *
+     * @param index the index
+     * @param step the step
+     * @return the occupancy
+     */
+    public int getOccupancy(int index, int step) {
+        return this.map.getField(index).getMaxUnits() - this.getRoom(index) + this.getReserved(index, step);
+    }
+
+    /**
+     * Gets the number of reservations of the field with the given index at
+     * the step, slots and rests.
+     *
+     * @param index the index
+     * @param step the step
+     * @return the reserved
+     */
+    private int getReserved(int index, int step) {
+        int reserved = this.restCounts[index];
+
+        if (step <= this.lastSteps[index]) {
+            reserved += this.slots.get(index, step);
+        }
+
+        return reserved;
+    }
+
+    /**
+     * Gets the room the units which don't belong to the group leave on the
+     * field with the given index, counting them on the first probe.
+     *
+     * @param index the index
+     * @return the room
+     */
+    private int getRoom(int index) {
+        AbstractField field;
+        int room = this.rooms[index];
+
+        if (room == UNKNOWN) {
+            field = this.map.getField(index);
+            room = field.getMaxUnits();
+
+            for (AbstractUnit unit : field.getUnits()) {
+                if (!this.members.contains(unit)) {
+                    room--;
+                }
+            }
+
+            this.rooms[index] = room;
+        }
+
+        return room;
+    }
+
+    /**
+     * Checks if another unit can stand on the field with the given index at
+     * the step.
+     *
+     * @param index the index
+     * @param step the step
+     * @return true, if is free
+     */
+    public boolean isFree(int index, int step) {
+        return this.getReserved(index, step) < this.getRoom(index);
+    }
+
+    /**
+     * Checks if another unit can stay on the field with the given index from
+     * the step on.
+     *
+     * @param index the index
+     * @param step the first step
+     * @return true, if is free
+     */
+    public boolean isFreeFrom(int index, int step) {
+        boolean free = this.isFree(index, step);
+
+        // no slot of the field is reserved after its last step, so the
+        // occupancy stays the same from there on
+        for (int current = step + 1; current <= this.lastSteps[index] && free; current++) {
+            free = this.isFree(index, current);
+        }
+
+        return free;
+    }
+
+    /**
+     * Releases the rest of the unit, e.g. before its path is planned.
+     *
+     * @param unit the unit
+     */
+    public void release(AbstractUnit unit) {
+        int[] rest = this.rests.remove(unit);
+
+        if (rest != null) {
+            this.restCounts[rest[0]]--;
+
+            for (int step = 0; step < rest[1]; step++) {
+                this.reserve(rest[0], step, 1);
+            }
+        }
+    }
+
+    /**
+     * Reserves the path of the unit. The path holds the field of every step,
+     * the same field twice in a row for waiting. The unit stays on the last
+     * field.
+     *
+     * @param unit the unit
+     * @param path the path
+     */
+    public void reserve(AbstractUnit unit, Path path) {
+        if (!path.isEmpty()) {
+            for (int step = 0; step < path.size() - 1; step++) {
+                this.reserve(path.getIndex(step), step, 1);
+
+                // claim the next field while still standing on this one
+                if (path.getIndex(step + 1) != path.getIndex(step)) {
+                    this.reserve(path.getIndex(step + 1), step, 1);
+                }
+            }
+
+            this.horizon = Math.max(this.horizon, path.size() - 1);
+            this.rest(unit, path.getIndex(path.size() - 1), path.size() - 1);
+        }
+    }
+
+    /**
+     * Changes the number of reservations of the field with the given index at
+     * the step.
+     *
+     * @param index the index
+     * @param step the step
+     * @param change the change
+     */
+    private void reserve(int index, int step, int change) {
+        this.slots.add(index, step, change);
+        this.lastSteps[index] = Math.max(this.lastSteps[index], step);
+    }
+
+    /**
+     * Lets the unit rest on the field with the given index from the step on,
+     * replacing its previous rest.
+     *
+     * @param unit the unit
+     * @param index the index
+     * @param step the first step
+     */
+    private void rest(AbstractUnit unit, int index, int step) {
+        this.release(unit);
+        this.restCounts[index]++;
+
+        // the rest doesn't count before its first step
+        for (int current = 0; current < step; current++) {
+            this.reserve(index, current, -1);
+        }
+
+        this.rests.put(unit, new int[]{index, step});
+    }
+
+    /**
+     * The Class SlotTable is an open addressing hash table of the number of
+     * reservations by step and field index.
+     */
+    private static final class SlotTable {
+
+        /**
+         * The marker for empty slots.
+         */
+        private static final long EMPTY = -1;
+
+        /**
+         * The initial capacity (a power of two).
+         */
+        private static final int INITIAL_CAPACITY = 256;
+
+        /**
+         * The numbers of reservations.
+         */
+        private int[] counts = new int[INITIAL_CAPACITY];
+
+        /**
+         * The keys (step and field index).
+         */
+        private long[] keys = new long[INITIAL_CAPACITY];
+
+        /**
+         * The number of used slots.
+         */
+        private int size;
+
+        /**
+         * Instantiates a new slot table.
+         */
+        SlotTable() {
+            Arrays.fill(this.keys, EMPTY);
+        }
+
+        /**
+         * Changes the number of reservations of the field with the given index
+         * at the step.
+         *
+         * @param index the index
+         * @param step the step
+         * @param change the change
+         */
+        void add(int index, int step, int change) {
+            long key = key(index, step);
+            int mask = this.keys.length - 1;
+            int slot = mix(key) & mask;
+
+            while (this.keys[slot] != EMPTY && this.keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+
+            if (this.keys[slot] == key) {
+                this.counts[slot] += change;
+            } else {
+                this.keys[slot] = key;
+                this.counts[slot] = change;
+
+                // keep the load factor below 0.5
+                if (++this.size * 2 > this.keys.length) {
+                    this.grow();
+                }
+            }
+        }
+
+        /**
+         * Removes all reservations.
+         */
+        void clear() {
+            Arrays.fill(this.keys, EMPTY);
+            this.size = 0;
+        }
+
+        /**
+         * Gets the number of reservations of the field with the given index
+         * at the step.
+         *
+         * @param index the index
+         * @param step the step
+         * @return the number of reservations
+         */
+        int get(int index, int step) {
+            long key = key(index, step);
+            int mask = this.keys.length - 1;
+            int slot = mix(key) & mask;
+            int count = 0;
+
+            while (this.keys[slot] != EMPTY) {
+                if (this.keys[slot] == key) {
+                    count = this.counts[slot];
+                    break;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            return count;
+        }
+
+        /**
+         * Doubles the capacity.
+         */
+        private void grow() {
+            long[] oldKeys = this.keys;
+            int[] oldCounts = this.counts;
+            int mask, slot;
+
+            this.keys = new long[oldKeys.length * 2];
+            this.counts = new int[oldKeys.length * 2];
+            Arrays.fill(this.keys, EMPTY);
+            mask = this.keys.length - 1;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    slot = mix(oldKeys[i]) & mask;
+
+                    while (this.keys[slot] != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+
+                    this.keys[slot] = oldKeys[i];
+                    this.counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        /**
+         * Gets the key of a slot.
+         *
+         * @param index the index
+         * @param step the step
+         * @return the key
+         */
+        private static long key(int index, int step) {
+            return ((long) step << 32) | index;
+        }
+
+        /**
+         * Spreads the bits of a key, neighboring fields and steps would
+         * cluster otherwise.
+         *
+         * @param key the key
+         * @return the hash
+         */
+        private static int mix(long key) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
@@ -0,0 +1,470 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+import java.util.Arrays;
+
+import abstractgame.map.AbstractMap;
+import abstractgame.map.NeighborTable;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class SearchWorkspace holds the state of a single search in primitive
+ * arrays indexed by field index: the cost and the parent of every reached
+ * field, the closed flags, the open list and the weights of the searching
+ * unit. A field is reached from up to
+ * {@link abstractgame.map.NeighborTable#getDirections()} neighbors, but its
+ * weight (terrain cost and
+ * {@link AbstractUnit#canPass(abstractgame.map.AbstractField)}) is evaluated
+ * only once per search. <br>
+ * The arrays are split into pages of {@link CostGraph#PAGE_SIZE} fields,
+ * which are allocated when a search first touches one of their fields, so a
+ * search on a large, sparse {@link abstractgame.map.ChunkedMap} only spends
+ * memory on the part of the map it explores. <br>
+ * Every thread keeps one workspace which is reused by all its searches, see
+ * {@link #acquire(int)}. Instead of clearing the arrays a new search raises
+ * the generation, a field only counts as reached or closed if it has been
+ * stamped with the current generation, so starting a search costs nothing no
+ * matter how large the map is. The weights are stamped the same way whenever
+ * the search sets its unit ({@link #setWeights(CostGraph, AbstractUnit)}),
+ * so the pathfinders keep no weights of their own. A search on a
+ * {@link CostGraphSnapshot} reads the snapshot's weights instead
+ * ({@link #setWeights(CostGraphSnapshot)}). <br>
+ * The workspace holds the data of the A* estimate too
+ * ({@link #setEstimate(NeighborTable, double)}), so searches running on
+ * several threads may share one pathfinder.
+ *
+ * @author Nils Kuttkat
+ */
+public class SearchWorkspace {
+
+    /**
+     * The workspace of every thread.
+     */
+    private static final ThreadLocal<SearchWorkspace> WORKSPACES = new ThreadLocal<SearchWorkspace>();
+
+    /**
+     * The size of the largest map the workspace can be used for.
+     */
+    private final int capacity;
+
+    /**
+     * The generation of the current search.
+     */
+    private int generation;
+
+    /**
+     * The graph whose weights the search evaluates.
+     */
+    private CostGraph graph;
+
+    /**
+     * True while a search uses the workspace.
+     */
+    private boolean inUse;
+
+    /**
+     * The lowest cost of a step of distance 1 in the current search.
+     */
+    private double minimumCost;
+
+    /**
+     * The neighbor table of the current search's estimate.
+     */
+    private NeighborTable neighborTable;
+
+    /**
+     * The open list.
+     */
+    private FieldHeap open;
+
+    /**
+     * The pages of the arrays, null for pages no search has touched.
+     */
+    private final Page[] pages;
+
+    /**
+     * The snapshot whose weights the search reads or null.
+     */
+    private CostGraphSnapshot snapshot;
+
+    /**
+     * The unit whose weights the search evaluates.
+     */
+    private AbstractUnit unit;
+
+    /**
+     * The generation of the current unit's weights.
+     */
+    private int weightGeneration;
+
+    /**
+     * Instantiates a new search workspace.
+     *
+     * @param capacity the size of the largest map
+     */
+    public SearchWorkspace(int capacity) {
+        this.capacity = capacity;
+        this.pages = new Page[CostGraph.getPageCount(capacity)];
+        this.open = new FieldHeap(capacity);
+    }
+
+    /**
+     * Gets the workspace of the current thread for a new search on a map of
+     * the given size. A search which runs while another search of the thread
+     * is still using the thread's workspace gets a new one. Every search has
+     * to {@link #release()} its workspace.
+     *
+     * @param size the size of the map
+     * @return the workspace
+     */
+    public static SearchWorkspace acquire(int size) {
+        SearchWorkspace workspace = WORKSPACES.get();
+
+        if (workspace != null && workspace.inUse) {
+            // a nested search gets a workspace of its own
+            workspace = new SearchWorkspace(size);
+        } else if (workspace == null || workspace.capacity() < size) {
+            workspace = new SearchWorkspace(size);
+            WORKSPACES.set(workspace);
+        }
+
+        workspace.begin();
+        return workspace;
+    }
+
+    /**
+     * Starts a new search: nothing is reached, closed or open.
+     */
+    private void begin() {
+        this.inUse = true;
+        this.open.clear();
+        this.generation++;
+
+        // after an overflow old stamps could match again
+        if (this.generation == Integer.MAX_VALUE) {
+            for (Page page : this.pages) {
+                if (page != null) {
+                    Arrays.fill(page.reached, 0);
+                    Arrays.fill(page.closed, 0);
+                }
+            }
+
+            this.generation = 1;
+        }
+    }
+
+    /**
+     * Builds the path to target by following the parent links back to the
+     * start (the index whose parent is {@link AbstractMap#NO_INDEX}).
+     *
+     * @param map the map
+     * @param target the index of the target
+     * @return the path
+     */
+    public Path buildPath(AbstractMap map, int target) {
+        int length = 0, step;
+        int[] indices;
+        double[] pathCosts;
+
+        for (int index = target; index != AbstractMap.NO_INDEX; index = this.getParent(index)) {
+            length++;
+        }
+
+        indices = new int[length];
+        pathCosts = new double[length];
+        step = length - 1;
+
+        for (int index = target; index != AbstractMap.NO_INDEX; index = this.getParent(index)) {
+            indices[step] = index;
+            pathCosts[step] = this.getPage(index).costs[index & CostGraph.PAGE_MASK];
+            step--;
+        }
+
+        return new Path(map, indices, pathCosts);
+    }
+
+    /**
+     * Gets the size of the largest map the workspace can be used for.
+     *
+     * @return the capacity
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Closes the field with the given index.
+     *
+     * @param index the index
+     */
+    public void close(int index) {
+        this.getPage(index).closed[index & CostGraph.PAGE_MASK] = this.generation;
+    }
+
+    /**
+     * Gets the cost of the field with the given index.
+     *
+     * @param index the index
+     * @return the cost or Double.POSITIVE_INFINITY if the field hasn't been
+     * reached
+     */
+    public double getCost(int index) {
+        Page page = this.getPage(index);
+
+        return page.reached[index & CostGraph.PAGE_MASK] == this.generation ? page.costs[index & CostGraph.PAGE_MASK]
+                : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Gets the lowest cost of a step of distance 1 set for the estimate of
+     * the current search.
+     *
+     * @return the minimum cost
+     */
+    public double getMinimumCost() {
+        return this.minimumCost;
+    }
+
+    /**
+     * Gets the neighbor table set for the estimate of the current search.
+     *
+     * @return the neighbor table
+     */
+    public NeighborTable getNeighborTable() {
+        return this.neighborTable;
+    }
+
+    /**
+     * Gets the open list, which is empty when the search starts.
+     *
+     * @return the open list
+     */
+    public FieldHeap getOpen() {
+        return this.open;
+    }
+
+    /**
+     * Gets the page holding the field with the given index, allocated the
+     * first time.
+     *
+     * @param index the index
+     * @return the page
+     */
+    private Page getPage(int index) {
+        Page page = this.pages[index >>> CostGraph.PAGE_SHIFT];
+
+        if (page == null) {
+            page = new Page();
+            this.pages[index >>> CostGraph.PAGE_SHIFT] = page;
+        }
+
+        return page;
+    }
+
+    /**
+     * Gets the parent of a reached field.
+     *
+     * @param index the index
+     * @return the index of the parent or {@link AbstractMap#NO_INDEX} for the
+     * start
+     */
+    public int getParent(int index) {
+        return this.getPage(index).parents[index & CostGraph.PAGE_MASK];
+    }
+
+    /**
+     * Gets the weight of entering the field with the given index for the
+     * unit set by {@link #setWeights(CostGraph, AbstractUnit)}, evaluated on
+     * the first call, or the weight of the snapshot set by
+     * {@link #setWeights(CostGraphSnapshot)}.
+     *
+     * @param index the index
+     * @return the weight
+     * @see CostGraph#getWeight(AbstractUnit, int)
+     */
+    public double getWeight(int index) {
+        Page page;
+        int position;
+        double weight;
+
+        if (this.snapshot != null) {
+            weight = this.snapshot.getWeight(index);
+        } else {
+            page = this.getPage(index);
+            position = index & CostGraph.PAGE_MASK;
+
+            if (page.weighed[position] != this.weightGeneration) {
+                page.weights[position] = this.graph.getWeight(this.unit, index);
+                page.weighed[position] = this.weightGeneration;
+            }
+
+            weight = page.weights[position];
+        }
+
+        return weight;
+    }
+
+    /**
+     * Checks if the field with the given index is closed.
+     *
+     * @param index the index
+     * @return true, if is closed
+     */
+    public boolean isClosed(int index) {
+        return this.getPage(index).closed[index & CostGraph.PAGE_MASK] == this.generation;
+    }
+
+    /**
+     * Loads the path to target into the cursor by following the parent links
+     * back to the start.
+     *
+     * @param map the map
+     * @param target the index of the target
+     * @param cursor the cursor
+     */
+    public void load(AbstractMap map, int target, PathCursor cursor) {
+        int length = 0, step;
+
+        for (int index = target; index != AbstractMap.NO_INDEX; index = this.getParent(index)) {
+            length++;
+        }
+
+        cursor.reset(map, length);
+        step = length - 1;
+
+        for (int index = target; index != AbstractMap.NO_INDEX; index = this.getParent(index)) {
+            cursor.set(step, index, this.getPage(index).costs[index & CostGraph.PAGE_MASK]);
+            step--;
+        }
+    }
+
+    /**
+     * Ends the search, the workspace may be used by the next search.
+     */
+    public void release() {
+        this.open.clear();
+        this.graph = null;
+        this.unit = null;
+        this.snapshot = null;
+        this.neighborTable = null;
+        this.inUse = false;
+    }
+
+    /**
+     * Reaches the field with the given index.
+     *
+     * @param index the index
+     * @param cost the cost
+     * @param parent the index of the parent or {@link AbstractMap#NO_INDEX}
+     * for the start
+     */
+    public void reach(int index, double cost, int parent) {
+        Page page = this.getPage(index);
+        int position = index & CostGraph.PAGE_MASK;
+
+        page.reached[position] = this.generation;
+        page.costs[position] = cost;
+        page.parents[position] = parent;
+    }
+
+    /**
+     * Sets the data of the A* estimate of the current search: the distance
+     * between two fields times the lowest cost of a step of distance 1.
+     *
+     * @param neighborTable the neighbor table
+     * @param minimumCost the minimum cost
+     */
+    public void setEstimate(NeighborTable neighborTable, double minimumCost) {
+        this.neighborTable = neighborTable;
+        this.minimumCost = minimumCost;
+    }
+
+    /**
+     * Sets the graph and the unit whose weights {@link #getWeight(int)}
+     * evaluates. The weights evaluated before are forgotten.
+     *
+     * @param graph the graph
+     * @param unit the unit
+     */
+    public void setWeights(CostGraph graph, AbstractUnit unit) {
+        this.graph = graph;
+        this.unit = unit;
+        this.snapshot = null;
+        this.weightGeneration++;
+
+        // after an overflow old stamps could match again
+        if (this.weightGeneration == Integer.MAX_VALUE) {
+            for (Page page : this.pages) {
+                if (page != null) {
+                    Arrays.fill(page.weighed, 0);
+                }
+            }
+
+            this.weightGeneration = 1;
+        }
+    }
+
+    /**
+     * Sets the snapshot whose weights {@link #getWeight(int)} reads. The
+     * search then touches neither the graph nor the unit.
+     *
+     * @param snapshot the snapshot
+     */
+    public void setWeights(CostGraphSnapshot snapshot) {
+        this.graph = snapshot.getGraph();
+        this.unit = null;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * The Class Page holds the state of {@link CostGraph#PAGE_SIZE} fields
+     * with consecutive indices.
+     */
+    private static final class Page {
+
+        /**
+         * The generation every closed field is stamped with.
+         */
+        private final int[] closed = new int[CostGraph.PAGE_SIZE];
+
+        /**
+         * The costs of the reached fields.
+         */
+        private final double[] costs = new double[CostGraph.PAGE_SIZE];
+
+        /**
+         * The parents of the reached fields.
+         */
+        private final int[] parents = new int[CostGraph.PAGE_SIZE];
+
+        /**
+         * The generation every reached field is stamped with.
+         */
+        private final int[] reached = new int[CostGraph.PAGE_SIZE];
+
+        /**
+         * The weight generation every weighed field is stamped with.
+         */
+        private final int[] weighed = new int[CostGraph.PAGE_SIZE];
+
+        /**
+         * The weights of the weighed fields.
+         */
+        private final double[] weights = new double[CostGraph.PAGE_SIZE];
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.pathfinding;
+
+/**
+ * The Class WeightedJumpGrid is the {@link JumpGrid} of a single search. It
+ * reads the weights of the searching unit from the search's
+ * {@link SearchWorkspace}, so fields the unit can't pass are blocked. The
+ * uniformity of the fields is read from the {@link CostGraph}, which keeps it
+ * from search to search.
+ *
+ * @author Nils Kuttkat
+ */
+public class WeightedJumpGrid extends JumpGrid {
+
+    /**
+     * The graph of the search.
+     */
+    private CostGraph graph;
+
+    /**
+     * The workspace of the search.
+     */
+    private SearchWorkspace workspace;
+
+    /**
+     * Instantiates a new weighted jump grid.
+     *
+     * @param width the width
+     * @param height the height
+     * @param diagonal true for 8-connected maps
+     */
+    public WeightedJumpGrid(int width, int height, boolean diagonal) {
+        super(width, height, diagonal);
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.JumpGrid#isBlocked(int)
+     */
+    @Override
+    public boolean isBlocked(int index) {
+        return this.workspace.getWeight(index) == Double.POSITIVE_INFINITY;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.pathfinding.JumpGrid#isUniform(int)
+     */
+    @Override
+    public boolean isUniform(int index) {
+        // the unit's weights are the terrain costs or blocked, so a field it
+        // can enter keeps the uniformity of its terrain costs; fields which
+        // only become uniform by blocked neighbors are treated as not uniform,
+        // which only makes the search stop more often
+        return !this.isBlocked(index) && this.graph.isUniform(index);
+    }
+
+    /**
+     * Prepares the grid for a new search.
+     *
+     * @param graph the graph of the search
+     * @param workspace the workspace of the search
+     */
+    public void reset(CostGraph graph, SearchWorkspace workspace) {
+        this.graph = graph;
+        this.workspace = workspace;
+    }
+}
@@ -0,0 +1,45 @@
+/* 
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+/**
+ * The Class Checks holds the check the tests share: a failed check throws an
+ * IllegalStateException with its message, which ends the test.
+ *
+ * @author Nils Kuttkat
+ */
+public final class Checks {
+
+    /**
+     * Checks a condition.
+     *
+     * @param condition the condition
+     * @param message the message if the condition doesn't hold
+     */
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    /**
+     * Instantiates a new checks.
+     */
+    private Checks() {
+        super();
+    }
+}
@@ -40,8 +40,8 @@ public class HexGameMap extends AbstractMap {
      */
     public HexGameMap(int width, int height) {
         super(width, height);
-        for (int i = 0; i < this.getFields().length; i++) {
-            for (int j = 0; j < this.getFields()[i].length; j++) {
+        for (int i = 0; i < this.getWidth(); i++) {
+            for (int j = 0; j < this.getHeight(); j++) {
                 this.setField(new Coordinate(i, j), new HexField());
             }
         }
@@ -0,0 +1,79 @@
+/* 
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import abstractgame.game.AbstractGame;
+import abstractgame.game.AbstractPlayer;
+import abstractgame.map.AbstractField;
+import abstractgame.unit.AbstractUnit;
+import abstractgame.unit.MobileUnitRole;
+
+/**
+ * The Class SimpleUnit is a mobile unit which moves across plains, hills and
+ * forests and can't pass fields occupied by units of other players, so the
+ * units of a player form a pass group.
+ *
+ * @author Nils Kuttkat
+ */
+public class SimpleUnit extends AbstractUnit {
+
+    /**
+     * The Constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 6140950218815383914L;
+
+    /**
+     * Instantiates a new simple unit.
+     *
+     * @param game the game
+     * @param player the player
+     */
+    public SimpleUnit(AbstractGame game, AbstractPlayer player) {
+        super(game, MobileUnitRole.GetRole(), player);
+        this.addTerrain(SimpleTerrain.PLAIN, 1);
+        this.addTerrain(SimpleTerrain.HILL, 2);
+        this.addTerrain(SimpleTerrain.FOREST, 3);
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.unit.AbstractUnit#canPass(abstractgame.map.AbstractField)
+     */
+    @Override
+    public boolean canPass(AbstractField abstractField) {
+        boolean canPass = true;
+
+        for (AbstractUnit unit : abstractField.getUnits()) {
+            if (unit.getPlayer() != this.getPlayer()) {
+                canPass = false;
+            }
+        }
+
+        return canPass;
+    }
+
+    /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.unit.AbstractUnit#getPassGroup()
+     */
+    @Override
+    public Object getPassGroup() {
+        return this.getPlayer();
+    }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import abstractgame.events.AsyncEventDispatcher;
+import abstractgame.events.EventBus;
+import abstractgame.events.EventType;
+import abstractgame.events.fieldevents.FieldTerrainChangedEvent;
+import abstractgame.interfaces.FieldTerrainChangedListener;
+import abstractgame.map.AbstractField;
+import abstractgame.map.SquareField;
+
+/**
+ * The Class TestAsyncEventDispatcher checks the delivery of an
+ * {@link AsyncEventDispatcher}: a listener publishing more events than fit
+ * into its own lane doesn't reorder them, two lanes publishing into each
+ * other's full lanes don't wait for each other, an outside thread publishing
+ * into a full lane waits until there is room, and a listener throwing an
+ * error doesn't stop its lane.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestAsyncEventDispatcher {
+
+    /**
+     * The number of events a listener publishes.
+     */
+    private static final int FORWARDED = 50;
+
+    /**
+     * The time to wait for a delivery in milliseconds.
+     */
+    private static final long TIMEOUT = 10000;
+
+    /**
+     * Publishes events from an outside thread into a full lane.
+     *
+     * @throws InterruptedException if the thread has been interrupted
+     */
+    private static void backpressure() throws InterruptedException {
+        final AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(1, 4);
+        final EventBus eventBus = new EventBus();
+        final AtomicInteger published = new AtomicInteger();
+        final FieldTerrainChangedEvent[] events = events(new SquareField(), 6);
+        Listener listener = new Listener(eventBus);
+        Thread publisher;
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        eventBus.setDispatcher(dispatcher);
+        eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, listener, events[0].getSource());
+        listener.gate = new CountDownLatch(1);
+        publisher = new Thread("Publisher") {
+
+            @Override
+            public void run() {
+                for (FieldTerrainChangedEvent event : events) {
+                    eventBus.publish(EventType.FIELD_TERRAIN_CHANGED, event);
+                    published.incrementAndGet();
+                }
+            }
+        };
+        publisher.start();
+
+        // the listener holds the first event, the next four fill the lane
+        while (published.get() < 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        Thread.sleep(200);
+        Checks.check(published.get() == 5 && dispatcher.getPendingEvents() == 4, "Published " + published.get()
+                + " events with " + dispatcher.getPendingEvents() + " pending into a full lane");
+        listener.gate.countDown();
+        publisher.join(TIMEOUT);
+        Checks.check(!publisher.isAlive() && published.get() == events.length, "Publisher still waiting");
+        dispatcher.awaitIdle();
+        checkEvents(listener, Arrays.asList(events), "Events published into a full lane");
+        Checks.check(dispatcher.close(1, TimeUnit.SECONDS), "Dispatcher not closed");
+    }
+
+    /**
+     * Checks the events the listener received.
+     *
+     * @param listener the listener
+     * @param expected the expected events in their order
+     * @param message the message if the events differ
+     */
+    private static void checkEvents(Listener listener, List<FieldTerrainChangedEvent> expected, String message) {
+        List<FieldTerrainChangedEvent> received = listener.getReceived();
+
+        Checks.check(received.equals(expected), message + ": received " + received.size() + " of " + expected.size()
+                + " events, first difference at " + firstDifference(received, expected));
+    }
+
+    /**
+     * Lets two listeners on different lanes publish into each other's full
+     * lanes at the same time.
+     *
+     * @throws InterruptedException if the thread has been interrupted
+     */
+    private static void crossLanes() throws InterruptedException {
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(2, 2);
+        EventBus eventBus = new EventBus();
+        AbstractField first = new SquareField(), second = new SquareField();
+        Listener firstListener = new Listener(eventBus), secondListener = new Listener(eventBus);
+        CountDownLatch start = new CountDownLatch(2);
+        List<FieldTerrainChangedEvent> firstExpected = new ArrayList<FieldTerrainChangedEvent>();
+        List<FieldTerrainChangedEvent> secondExpected = new ArrayList<FieldTerrainChangedEvent>();
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+
+        // the lanes are chosen by the identity hash codes of the listeners
+        while (lane(firstListener, 2) == lane(secondListener, 2)) {
+            secondListener = new Listener(eventBus);
+        }
+
+        eventBus.setDispatcher(dispatcher);
+        eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, firstListener, first);
+        eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, secondListener, second);
+        firstListener.trigger = new FieldTerrainChangedEvent(first);
+        firstListener.forwarded = events(second, FORWARDED);
+        firstListener.start = start;
+        secondListener.trigger = new FieldTerrainChangedEvent(second);
+        secondListener.forwarded = events(first, FORWARDED);
+        secondListener.start = start;
+        firstExpected.add(firstListener.trigger);
+        firstExpected.addAll(Arrays.asList(secondListener.forwarded));
+        secondExpected.add(secondListener.trigger);
+        secondExpected.addAll(Arrays.asList(firstListener.forwarded));
+
+        eventBus.publish(EventType.FIELD_TERRAIN_CHANGED, firstListener.trigger);
+        eventBus.publish(EventType.FIELD_TERRAIN_CHANGED, secondListener.trigger);
+
+        // waiting for idle lanes would never end if they wait for each other
+        while ((firstListener.getReceived().size() < firstExpected.size()
+                || secondListener.getReceived().size() < secondExpected.size())
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        checkEvents(firstListener, firstExpected, "Events of the first lane");
+        checkEvents(secondListener, secondExpected, "Events of the second lane");
+        Checks.check(dispatcher.close(1, TimeUnit.SECONDS), "Dispatcher not closed");
+    }
+
+    /**
+     * Lets a listener throw an error.
+     *
+     * @throws InterruptedException if the thread has been interrupted
+     */
+    private static void errors() throws InterruptedException {
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(1, 4);
+        EventBus eventBus = new EventBus();
+        FieldTerrainChangedEvent[] events = events(new SquareField(), 4);
+        Listener listener = new Listener(eventBus);
+        final List<Throwable> reported = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+
+            @Override
+            public void uncaughtException(Thread thread, Throwable throwable) {
+                reported.add(throwable);
+            }
+        });
+
+        try {
+            eventBus.setDispatcher(dispatcher);
+            eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, listener, events[0].getSource());
+            listener.failure = events[1];
+
+            for (FieldTerrainChangedEvent event : events) {
+                eventBus.publish(EventType.FIELD_TERRAIN_CHANGED, event);
+            }
+
+            dispatcher.awaitIdle();
+            checkEvents(listener, Arrays.asList(events[0], events[2], events[3]), "Events after an error");
+            Checks.check(reported.size() == 1 && reported.get(0) instanceof AssertionError, "Reported " + reported);
+            Checks.check(dispatcher.close(1, TimeUnit.SECONDS), "Dispatcher not closed");
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+
+    /**
+     * Creates events of the field.
+     *
+     * @param field the field
+     * @param count the number of events
+     * @return the events
+     */
+    private static FieldTerrainChangedEvent[] events(AbstractField field, int count) {
+        FieldTerrainChangedEvent[] events = new FieldTerrainChangedEvent[count];
+
+        for (int event = 0; event < count; event++) {
+            events[event] = new FieldTerrainChangedEvent(field);
+        }
+
+        return events;
+    }
+
+    /**
+     * Gets the position of the first event which differs.
+     *
+     * @param received the received events
+     * @param expected the expected events
+     * @return the position
+     */
+    private static int firstDifference(List<FieldTerrainChangedEvent> received,
+            List<FieldTerrainChangedEvent> expected) {
+        int position = 0;
+
+        while (position < received.size() && position < expected.size()
+                && received.get(position) == expected.get(position)) {
+            position++;
+        }
+
+        return position;
+    }
+
+    /**
+     * Gets the lane the dispatcher chooses for the listener.
+     *
+     * @param listener the listener
+     * @param lanes the number of lanes
+     * @return the lane
+     */
+    private static int lane(Object listener, int lanes) {
+        return (System.identityHashCode(listener) & Integer.MAX_VALUE) % lanes;
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     * @throws InterruptedException if the thread has been interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        order();
+        crossLanes();
+        backpressure();
+        errors();
+        System.out.println("Events delivered in order and with backpressure");
+    }
+
+    /**
+     * Lets a listener publish more events than its lane holds to another
+     * listener on the same lane.
+     *
+     * @throws InterruptedException if the thread has been interrupted
+     */
+    private static void order() throws InterruptedException {
+        AsyncEventDispatcher dispatcher = new AsyncEventDispatcher(1, 4);
+        EventBus eventBus = new EventBus();
+        AbstractField first = new SquareField(), second = new SquareField();
+        Listener publisher = new Listener(eventBus), receiver = new Listener(eventBus);
+
+        eventBus.setDispatcher(dispatcher);
+        eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, publisher, first);
+        eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, receiver, second);
+        publisher.trigger = new FieldTerrainChangedEvent(first);
+        publisher.forwarded = events(second, FORWARDED);
+        eventBus.publish(EventType.FIELD_TERRAIN_CHANGED, publisher.trigger);
+        dispatcher.awaitIdle();
+        checkEvents(receiver, Arrays.asList(publisher.forwarded), "Events published into the own lane");
+        Checks.check(dispatcher.close(1, TimeUnit.SECONDS), "Dispatcher not closed");
+    }
+
+    /**
+     * Instantiates a new test async event dispatcher.
+     */
+    public TestAsyncEventDispatcher() {
+        super();
+    }
+
+    /**
+     * The Class Listener records the events it receives and publishes events
+     * itself when it receives its trigger.
+     */
+    private static final class Listener implements FieldTerrainChangedListener {
+
+        /**
+         * The bus to publish on.
+         */
+        private final EventBus eventBus;
+
+        /**
+         * The event the listener throws an error for, or null.
+         */
+        private volatile FieldTerrainChangedEvent failure;
+
+        /**
+         * The events published when the trigger is received.
+         */
+        private volatile FieldTerrainChangedEvent[] forwarded;
+
+        /**
+         * The latch every event waits for, or null.
+         */
+        private volatile CountDownLatch gate;
+
+        /**
+         * The received events.
+         */
+        private final List<FieldTerrainChangedEvent> received = new ArrayList<FieldTerrainChangedEvent>();
+
+        /**
+         * The latch all triggered listeners wait for before they publish, or
+         * null.
+         */
+        private volatile CountDownLatch start;
+
+        /**
+         * The event which makes the listener publish, or null.
+         */
+        private volatile FieldTerrainChangedEvent trigger;
+
+        /**
+         * Instantiates a new listener.
+         *
+         * @param eventBus the bus to publish on
+         */
+        private Listener(EventBus eventBus) {
+            this.eventBus = eventBus;
+        }
+
+        /**
+         * Waits for the latch.
+         *
+         * @param latch the latch
+         */
+        private static void await(CountDownLatch latch) {
+            try {
+                Checks.check(latch.await(TIMEOUT, TimeUnit.MILLISECONDS), "Latch not released");
+            } catch (InterruptedException exception) {
+                throw new IllegalStateException(exception);
+            }
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.FieldTerrainChangedListener#fieldTerrainChanged(
+	 * abstractgame.events.fieldevents.FieldTerrainChangedEvent)
+         */
+        @Override
+        public void fieldTerrainChanged(FieldTerrainChangedEvent event) {
+            if (this.gate != null) {
+                await(this.gate);
+            }
+
+            if (event == this.failure) {
+                throw new AssertionError("Failing listener");
+            }
+
+            synchronized (this.received) {
+                this.received.add(event);
+            }
+
+            if (event == this.trigger) {
+                if (this.start != null) {
+                    this.start.countDown();
+                    await(this.start);
+                }
+
+                for (FieldTerrainChangedEvent forwardedEvent : this.forwarded) {
+                    this.eventBus.publish(EventType.FIELD_TERRAIN_CHANGED, forwardedEvent);
+                }
+            }
+        }
+
+        /**
+         * Gets a copy of the received events.
+         *
+         * @return the received events
+         */
+        private List<FieldTerrainChangedEvent> getReceived() {
+            synchronized (this.received) {
+                return new ArrayList<FieldTerrainChangedEvent>(this.received);
+            }
+        }
+    }
+}
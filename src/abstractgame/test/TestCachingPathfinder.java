@@ -0,0 +1,338 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.util.Random;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.pathfinding.AStarPathfinder;
+import abstractgame.pathfinding.CachingPathfinder;
+import abstractgame.pathfinding.HierarchicalPathfinder;
+import abstractgame.pathfinding.MovementClass;
+import abstractgame.pathfinding.Path;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class TestCachingPathfinder checks when the {@link CachingPathfinder}
+ * answers a search from its cache and when it searches again: searches with
+ * other max costs, other players, units with rules of their own, an inexact
+ * pathfinder and changes of the map's version. Random searches with random max costs must cost the same as
+ * the ones of an uncached {@link AStarPathfinder}.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestCachingPathfinder {
+
+    /**
+     * The number of random searches per map.
+     */
+    private static final int SEARCHES = 2000;
+
+    /**
+     * The size of the maps.
+     */
+    private static final int SIZE = 60;
+
+    /**
+     * Checks the hits and misses of the pathfinder.
+     *
+     * @param pathfinder the pathfinder
+     * @param hits the expected hits
+     * @param misses the expected misses
+     * @param message the message if they differ
+     */
+    private static void checkStatistics(CachingPathfinder pathfinder, long hits, long misses, String message) {
+        Checks.check(pathfinder.getHits() == hits && pathfinder.getMisses() == misses, message + ": "
+                + pathfinder.getHits() + " hits and " + pathfinder.getMisses() + " misses instead of " + hits + " and "
+                + misses);
+    }
+
+    /**
+     * Checks if the path passes the field.
+     *
+     * @param path the path
+     * @param field the field
+     * @return true, if successful
+     */
+    private static boolean contains(Path path, AbstractField field) {
+        boolean contains = false;
+
+        for (int step = 0; step < path.size() && !contains; step++) {
+            contains = path.getField(step) == field;
+        }
+
+        return contains;
+    }
+
+    /**
+     * Searches the same path with an exact pathfinder.
+     *
+     * @param map the map
+     * @param random the random
+     */
+    private static void exact(AbstractMap map, Random random) {
+        SimpleGame game = new SimpleGame(map);
+        SimplePlayer player = new SimplePlayer("Player", game), other = new SimplePlayer("Other", game);
+        AbstractUnit unit = new SimpleUnit(game, player), sibling = new SimpleUnit(game, player);
+        AbstractUnit stranger = new SimpleUnit(game, other);
+        CachingPathfinder pathfinder = new CachingPathfinder();
+        AvoidingUnit avoider;
+        AbstractField start = randomField(map, unit, random), target;
+        Path path, cachedPath;
+        double cost;
+
+        Checks.check(pathfinder.isExact(), "A* is exact");
+
+        do {
+            target = randomField(map, unit, random);
+            path = pathfinder.findPath(unit, start, target, Double.POSITIVE_INFINITY);
+        } while (path.size() < 10);
+
+        cost = path.getTotalCost();
+        checkStatistics(pathfinder, 0, pathfinder.getMisses(), "First search");
+        pathfinder.resetStatistics();
+
+        // other max costs are answered by the cheapest path
+        Checks.check(pathfinder.findPath(unit, start, target, Double.POSITIVE_INFINITY) == path, "Cached path");
+        Checks.check(pathfinder.findPath(unit, start, target, cost) == path, "Path within a lower max cost");
+        Checks.check(pathfinder.findPath(unit, start, target, cost - 0.5).isEmpty(), "Path exceeding the max cost");
+        Checks.check(pathfinder.findPath(sibling, start, target, cost) == path, "Path of a unit of the same player");
+        checkStatistics(pathfinder, 4, 0, "Searches answered by the cache");
+
+        // a unit of the same player with rules of its own is a pass group of
+        // its own
+        avoider = new AvoidingUnit(game, player, path.getField(path.size() / 2));
+        Checks.check(avoider.getMovementClass().equals(unit.getMovementClass()), "Movement class of the avoiding unit");
+        Checks.check(!contains(pathfinder.findPath(avoider, start, target, Double.POSITIVE_INFINITY), avoider.avoided),
+                "Path through a field the unit can't pass");
+        checkStatistics(pathfinder, 4, 1, "Search of a unit with rules of its own");
+
+        // another player may be blocked by other units
+        Checks.check(pathfinder.findPath(stranger, start, target, cost).getTotalCost() == cost,
+                "Path of another player");
+        checkStatistics(pathfinder, 4, 2, "Search of another player");
+
+        // no path within a max cost answers lower max costs only
+        pathfinder.clear();
+        pathfinder.resetStatistics();
+        Checks.check(pathfinder.findPath(unit, start, target, cost - 0.5).isEmpty(), "Path exceeding the max cost");
+        Checks.check(pathfinder.findPath(unit, start, target, cost - 1).isEmpty(), "Path exceeding a lower max cost");
+        checkStatistics(pathfinder, 1, 1, "Search with a lower max cost");
+        Checks.check(pathfinder.findPath(unit, start, target, cost).getTotalCost() == cost,
+                "Path within a higher max cost");
+        checkStatistics(pathfinder, 1, 2, "Search with a higher max cost");
+
+        // every change of the map raises its version
+        path.getField(path.size() / 2).setTerrain(SimpleTerrain.WATER);
+        cachedPath = pathfinder.findPath(unit, start, target, Double.POSITIVE_INFINITY);
+        checkStatistics(pathfinder, 1, 3, "Search after a terrain change");
+        Checks.check(!contains(cachedPath, path.getField(path.size() / 2)), "Path through a changed field");
+        Checks.check(cachedPath.getTotalCost() == new AStarPathfinder().findPath(unit, start, target,
+                Double.POSITIVE_INFINITY).getTotalCost(), "Path after a terrain change");
+        stranger.setPosition(cachedPath.getField(cachedPath.size() / 2));
+        Checks.check(!contains(pathfinder.findPath(unit, start, target, Double.POSITIVE_INFINITY),
+                stranger.getPosition()),
+                "Path through a blocking unit");
+        checkStatistics(pathfinder, 1, 4, "Search after a unit has been placed");
+        stranger.setPosition(null);
+    }
+
+    /**
+     * Searches the same path with an inexact pathfinder.
+     *
+     * @param map the map
+     * @param random the random
+     */
+    private static void inexact(AbstractMap map, Random random) {
+        SimpleGame game = new SimpleGame(map);
+        AbstractUnit unit = new SimpleUnit(game, new SimplePlayer("Player", game));
+        CachingPathfinder pathfinder = new CachingPathfinder(new HierarchicalPathfinder(8),
+                CachingPathfinder.DEFAULT_CAPACITY);
+        AbstractField start = randomField(map, unit, random), target;
+        Path path;
+
+        Checks.check(!pathfinder.isExact(), "HPA* is not exact");
+
+        do {
+            target = randomField(map, unit, random);
+            path = pathfinder.findPath(unit, start, target, Double.POSITIVE_INFINITY);
+        } while (path.size() < 10);
+
+        pathfinder.resetStatistics();
+        Checks.check(pathfinder.findPath(unit, start, target, Double.POSITIVE_INFINITY) == path, "Cached path");
+        checkStatistics(pathfinder, 1, 0, "Search with the same max cost");
+
+        // the path may be more expensive than the cheapest one
+        pathfinder.findPath(unit, start, target, path.getTotalCost());
+        checkStatistics(pathfinder, 1, 1, "Search with a lower max cost");
+        pathfinder.findPath(unit, start, target, path.getTotalCost());
+        checkStatistics(pathfinder, 2, 1, "Search with the same lower max cost");
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        test("HexGameMap", TestPathfinders.randomTerrain(new HexGameMap(SIZE, SIZE)));
+        test("SquareGameMap", TestPathfinders.randomTerrain(new SquareGameMap(SIZE, SIZE)));
+        test("OctagonGameMap", TestPathfinders.randomTerrain(new OctagonGameMap(SIZE, SIZE)));
+    }
+
+    /**
+     * Gets a random field the unit can access.
+     *
+     * @param map the map
+     * @param unit the unit
+     * @param random the random
+     * @return the field
+     */
+    private static AbstractField randomField(AbstractMap map, AbstractUnit unit, Random random) {
+        AbstractField field;
+
+        do {
+            field = map.getField(random.nextInt(map.getSize()));
+        } while (!unit.canAccess(field));
+
+        return field;
+    }
+
+    /**
+     * Searches random paths between a few fields with random max costs and
+     * compares them with the paths of an uncached A*.
+     *
+     * @param map the map
+     * @param random the random
+     * @return the hit rate
+     */
+    private static double randomSearches(AbstractMap map, Random random) {
+        SimpleGame game = new SimpleGame(map);
+        AbstractUnit unit = new SimpleUnit(game, new SimplePlayer("Player", game));
+        CachingPathfinder pathfinder = new CachingPathfinder(new AStarPathfinder(), 64);
+        AStarPathfinder reference = new AStarPathfinder();
+        AbstractField[] fields = new AbstractField[10];
+        AbstractField start, target;
+        double maxCost;
+
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = randomField(map, unit, random);
+        }
+
+        for (int i = 0; i < SEARCHES; i++) {
+            start = fields[random.nextInt(fields.length)];
+            target = fields[random.nextInt(fields.length)];
+            maxCost = random.nextInt(4) == 0 ? Double.POSITIVE_INFINITY : random.nextInt(2 * SIZE);
+
+            if (i % 100 == 99) {
+                randomField(map, unit, random).setTerrain(SimpleTerrain.values()[random.nextInt(4)]);
+            }
+
+            Checks.check(pathfinder.findPath(unit, start, target, maxCost).getTotalCost()
+                    == reference.findPath(unit, start, target, maxCost).getTotalCost(),
+                    "Cached path from " + start + " to " + target + " with max cost " + maxCost);
+        }
+
+        Checks.check(pathfinder.size() <= pathfinder.getCapacity(), "Cache exceeds its capacity");
+        return pathfinder.getHitRate();
+    }
+
+    /**
+     * Tests the caching pathfinder on the map.
+     *
+     * @param name the name of the map
+     * @param map the map
+     */
+    private static void test(String name, AbstractMap map) {
+        Random random = new Random(42);
+        double hitRate;
+
+        exact(map, random);
+        inexact(map, random);
+        hitRate = randomSearches(map, random);
+        System.out.println(name + " " + map.getWidth() + "x" + map.getHeight() + ": ok, hit rate "
+                + Math.round(hitRate * 100) + "%");
+    }
+
+    /**
+     * Instantiates a new test caching pathfinder.
+     */
+    public TestCachingPathfinder() {
+        super();
+    }
+
+    /**
+     * The Class AvoidingUnit is a simple unit which can't pass a certain
+     * field. It moves like a simple unit and shares its graph, but it doesn't
+     * share the paths of its player.
+     */
+    private static final class AvoidingUnit extends SimpleUnit {
+
+        /**
+         * The Constant serialVersionUID.
+         */
+        private static final long serialVersionUID = 4803617219558301257L;
+
+        /**
+         * The field the unit can't pass.
+         */
+        private final AbstractField avoided;
+
+        /**
+         * Instantiates a new avoiding unit.
+         *
+         * @param game the game
+         * @param player the player
+         * @param avoided the field the unit can't pass
+         */
+        private AvoidingUnit(SimpleGame game, SimplePlayer player, AbstractField avoided) {
+            super(game, player);
+            this.avoided = avoided;
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.test.SimpleUnit#canPass(abstractgame.map.AbstractField)
+         */
+        @Override
+        public boolean canPass(AbstractField abstractField) {
+            return abstractField != this.avoided && super.canPass(abstractField);
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.unit.AbstractUnit#createMovementClass()
+         */
+        @Override
+        protected MovementClass createMovementClass() {
+            return new MovementClass(SimpleUnit.class, this.getAccessibleTerrains());
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.test.SimpleUnit#getPassGroup()
+         */
+        @Override
+        public Object getPassGroup() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import abstractgame.events.EventType;
+import abstractgame.events.Subscription;
+import abstractgame.events.fieldevents.FieldTerrainChangedEvent;
+import abstractgame.interfaces.FieldTerrainChangedListener;
+import abstractgame.map.AbstractField;
+import abstractgame.map.ChunkedMap;
+import abstractgame.map.SquareField;
+import abstractgame.pathfinding.AStarPathfinder;
+import abstractgame.pathfinding.AbstractPathfinder;
+import abstractgame.pathfinding.DijkstraPathfinder;
+import abstractgame.pathfinding.JumpPointPathfinder;
+import abstractgame.pathfinding.JumpPointPlusPathfinder;
+import abstractgame.pathfinding.Path;
+import abstractgame.pathfinding.ReachableSet;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class TestChunkedMap checks that searching a path on a
+ * {@link ChunkedMap} doesn't allocate chunks: the searches explore
+ * positions in chunks which have never been accessed, and only the fields
+ * carrying units block the unit. A search on a map far too large for arrays
+ * with a value per position only spends memory on the part it explores. <br>
+ * It also checks that a chunk whose fields have listeners or subscriptions
+ * isn't evicted, and that {@link ChunkedMap#getFields()} is only built again
+ * after fields have been replaced, also on an empty map.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestChunkedMap {
+
+    /**
+     * The width and height of a chunk.
+     */
+    private static final int CHUNK_SIZE = 16;
+
+    /**
+     * The size of the large map, whose cost graph alone would take 512 MB if
+     * it kept a cost for every position.
+     */
+    private static final int LARGE_SIZE = 8192;
+
+    /**
+     * The size of the map.
+     */
+    private static final int SIZE = 256;
+
+    /**
+     * Evicts the chunks of fields with and without listeners and
+     * subscriptions.
+     *
+     * @param map the map
+     */
+    private static void evict(ChunkedMap map) {
+        AbstractField listened = map.getField(0, 0), subscribed = map.getField(CHUNK_SIZE, 0);
+        FieldTerrainChangedListener listener = new FieldTerrainChangedListener() {
+
+            @Override
+            public void fieldTerrainChanged(FieldTerrainChangedEvent event) {
+                // only registered
+            }
+        };
+        Subscription<FieldTerrainChangedListener> listenerSubscription, busSubscription;
+
+        map.getField(2 * CHUNK_SIZE, 0);
+        listenerSubscription = listened.addTerrainChangedListener(listener);
+        busSubscription = map.getEventBus().subscribe(EventType.FIELD_TERRAIN_CHANGED, listener, subscribed);
+        Checks.check(map.getChunkCount() == 3, map.getChunkCount() + " chunks instead of 3");
+        Checks.check(map.evictChunks() == 1, "Chunks with listeners or subscriptions evicted");
+        Checks.check(map.getField(0, 0) == listened && map.getField(CHUNK_SIZE, 0) == subscribed,
+                "Fields with listeners or subscriptions replaced");
+
+        listenerSubscription.cancel();
+        busSubscription.cancel();
+        Checks.check(map.evictChunks() == 2, "Chunks without listeners or subscriptions kept");
+    }
+
+    /**
+     * Replaces and evicts fields while keeping the array of all fields.
+     *
+     * @param map the map
+     */
+    private static void fields(ChunkedMap map) {
+        AbstractField[][] fields = map.getFields();
+        AbstractField field = new SquareField();
+
+        Checks.check(map.getFields() == fields, "Fields built again without a change");
+        map.setField(0, 0, field);
+        Checks.check(map.getFields() != fields && map.getFields()[0][0] == field, "Fields not built again after a "
+                + "field has been replaced");
+        fields = map.getFields();
+        field.setTerrain(SimpleTerrain.PLAIN);
+        Checks.check(map.evictChunks() == 2 && map.getFields() != fields && map.getFields()[0][0] != field,
+                "Fields not built again after the chunks have been evicted");
+    }
+
+    /**
+     * Searches a short path on a large map.
+     */
+    private static void large() {
+        ChunkedSquareMap map = new ChunkedSquareMap(LARGE_SIZE, LARGE_SIZE);
+        SimpleGame game = new SimpleGame(map);
+        AbstractUnit unit = new SimpleUnit(game, new SimplePlayer("Player", game));
+        AbstractField start = map.getField(LARGE_SIZE / 2, LARGE_SIZE / 2);
+        AbstractField target = map.getField(LARGE_SIZE / 2 + 10, LARGE_SIZE / 2 + 10);
+        Path path = new DijkstraPathfinder().findPath(unit, start, target, Double.POSITIVE_INFINITY);
+
+        Checks.check(path.getTotalCost() == 20, "Path on the large map costs " + path.getTotalCost());
+        Checks.check(map.getChunkCount() == 1, map.getChunkCount() + " chunks allocated on the large map");
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        ChunkedSquareMap map = new ChunkedSquareMap(SIZE, SIZE);
+        SimpleGame game = new SimpleGame(map);
+        AbstractUnit unit = new SimpleUnit(game, new SimplePlayer("Player", game));
+        AbstractUnit stranger = new SimpleUnit(game, new SimplePlayer("Other", game));
+        AbstractPathfinder[] pathfinders = {new DijkstraPathfinder(), new AStarPathfinder(),
+            new JumpPointPathfinder(), new JumpPointPlusPathfinder()};
+        // start and target lie next to the border of the first chunk
+        AbstractField start = map.getField(CHUNK_SIZE - 3, 4), target = map.getField(CHUNK_SIZE - 3, 8);
+        AbstractField blocked = map.getField(CHUNK_SIZE - 3, 6);
+        double cost = new DijkstraPathfinder().findPath(unit, start, target, Double.POSITIVE_INFINITY).getTotalCost();
+        ReachableSet reachableSet;
+        int chunkCount;
+        Path path;
+
+        unit.setPosition(start);
+        stranger.setPosition(blocked);
+        chunkCount = map.getChunkCount();
+        Checks.check(chunkCount == 1, chunkCount + " chunks instead of 1");
+
+        for (AbstractPathfinder pathfinder : pathfinders) {
+            path = pathfinder.findPath(unit, start, target, Double.POSITIVE_INFINITY);
+            Checks.check(map.getChunkCount() == chunkCount, pathfinder.getClass().getSimpleName() + " allocated "
+                    + (map.getChunkCount() - chunkCount) + " chunks");
+
+            // the stranger blocks the straight path
+            Checks.check(!path.isEmpty() && path.getTotalCost() > cost, pathfinder.getClass().getSimpleName()
+                    + " passed the stranger with cost " + path.getTotalCost());
+
+            for (int step = 0; step < path.size(); step++) {
+                Checks.check(path.getField(step) != blocked, pathfinder.getClass().getSimpleName()
+                        + " passed the stranger");
+            }
+        }
+
+        unit.setCurrentMovementPoints(CHUNK_SIZE);
+        reachableSet = unit.getReachableFields();
+        Checks.check(map.getChunkCount() == chunkCount, "The movement range allocated "
+                + (map.getChunkCount() - chunkCount) + " chunks");
+        Checks.check(!reachableSet.contains(blocked.getIndex()), "The stranger's field is reachable");
+        Checks.check(reachableSet.contains(map.getIndex(CHUNK_SIZE + 3, 6)), "The next chunk isn't reachable");
+        Checks.check(map.getChunkCount() == chunkCount, "Probing the movement range allocated "
+                + (map.getChunkCount() - chunkCount) + " chunks");
+        evict(new ChunkedSquareMap(SIZE, SIZE));
+        fields(new ChunkedSquareMap(2 * CHUNK_SIZE, CHUNK_SIZE));
+        Checks.check(new ChunkedSquareMap(0, 0).getFields().length == 0, "Empty map has fields");
+        large();
+        System.out.println("Searches on a ChunkedMap allocated no chunks");
+    }
+
+    /**
+     * Instantiates a new test chunked map.
+     */
+    public TestChunkedMap() {
+        super();
+    }
+
+    /**
+     * The Class ChunkedSquareMap is a chunked map of square fields with
+     * plain terrain.
+     */
+    private static final class ChunkedSquareMap extends ChunkedMap {
+
+        /**
+         * The Constant serialVersionUID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Instantiates a new chunked square map.
+         *
+         * @param width the width
+         * @param height the height
+         */
+        private ChunkedSquareMap(int width, int height) {
+            super(width, height, SimpleTerrain.PLAIN, CHUNK_SIZE);
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.map.ChunkedMap#createField()
+         */
+        @Override
+        protected AbstractField createField() {
+            return new SquareField();
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import abstractgame.events.fieldevents.UnitAddedToFieldEvent;
+import abstractgame.game.StandardArbiter;
+import abstractgame.interfaces.UnitAddedToFieldListener;
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.pathfinding.CooperativePathfinder;
+import abstractgame.pathfinding.Path;
+import abstractgame.pathfinding.PathRequest;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class TestCooperativePathfinder moves groups of units converging on the
+ * same area of random maps of every topology and checks that no field ever
+ * holds more than {@link AbstractField#getMaxUnits()} units, neither in the
+ * planned paths nor at any step of
+ * {@link abstractgame.game.AbstractPlayer#moveGroup(Map)}. It also checks that
+ * {@link AbstractUnit#followPath(Path)} passes through full fields but doesn't
+ * remain on one at the end of the path.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestCooperativePathfinder {
+
+    /**
+     * The number of groups per map.
+     */
+    private static final int GROUPS = 8;
+
+    /**
+     * The size of the maps.
+     */
+    private static final int SIZE = 24;
+
+    /**
+     * The number of units per group, every sixth belongs to the other player.
+     */
+    private static final int UNITS = 30;
+
+    /**
+     * Moves a path through a full field and onto a full field.
+     */
+    private static void followPath() {
+        AbstractMap map = new SquareGameMap(3, 1);
+        SimpleGame game = new SimpleGame(map);
+        SimplePlayer player = new SimplePlayer("Player", game);
+        AbstractUnit unit = new SimpleUnit(game, player);
+        AbstractUnit first = new SimpleUnit(game, player), second = new SimpleUnit(game, player);
+        AbstractField start = map.getField(0, 0), middle = map.getField(1, 0), end = map.getField(2, 0);
+        Path path = new Path(map, new int[]{start.getIndex(), middle.getIndex(), end.getIndex()},
+                new double[]{0, 1, 2});
+
+        for (int index = 0; index < map.getSize(); index++) {
+            map.getField(index).setTerrain(SimpleTerrain.PLAIN);
+            map.getField(index).setMaxUnits(1);
+        }
+
+        unit.setMaxMovementPoints(10);
+        unit.setCurrentMovementPoints(10);
+        unit.setPosition(start);
+        first.setPosition(middle);
+
+        // the unit passes through the full field in the middle
+        Checks.check(unit.followPath(path) && unit.getPosition() == end && end.containsUnit(unit),
+                "The unit didn't pass through a full field");
+        Checks.check(middle.getUnits().size() == 1 && unit.getCurrentMovementPoints() == 8,
+                "The unit has been left on the passed field");
+
+        // the unit doesn't remain on a full field at the end of the path
+        unit.setPosition(start);
+        unit.setCurrentMovementPoints(10);
+        second.setPosition(end);
+        Checks.check(!unit.followPath(new Path(map, new int[]{start.getIndex(), middle.getIndex()},
+                new double[]{0, 1})), "The unit remained on a full field");
+        Checks.check(unit.getPosition() == start && middle.getUnits().size() == 1
+                && unit.getCurrentMovementPoints() == 10, "The unit entered a full field");
+        Checks.check(!unit.followPath(path) && end.getUnits().size() == 1 && !end.containsUnit(unit),
+                "The unit remained on a full field");
+    }
+
+    /**
+     * Moves groups of units on the map.
+     *
+     * @param name the name of the map
+     * @param map the map
+     */
+    private static void groupMoves(String name, AbstractMap map) {
+        Random random = new Random(42);
+        int arrived = 0;
+
+        for (int group = 0; group < GROUPS; group++) {
+            for (int index = 0; index < map.getSize(); index++) {
+                map.getField(index).setMaxUnits(1 + group % 2);
+            }
+
+            arrived += groupMove(map, random, new CooperativePathfinder(group < GROUPS / 2
+                    ? CooperativePathfinder.DEFAULT_WINDOW : 4 * CooperativePathfinder.DEFAULT_WINDOW));
+        }
+
+        System.out.println(name + " " + map.getWidth() + "x" + map.getHeight() + ": " + arrived + " units arrived");
+    }
+
+    /**
+     * Moves a group of units converging on the same area of the map, every
+     * unit to another target. Every field is watched and checked whenever a
+     * unit enters it.
+     *
+     * @param map the map
+     * @param random the random
+     * @param pathfinder the pathfinder
+     * @return the number of units which reached their targets
+     */
+    private static int groupMove(AbstractMap map, Random random, CooperativePathfinder pathfinder) {
+        SimpleGame game = new SimpleGame(map);
+        SimplePlayer player = new SimplePlayer("Player", game), other = new SimplePlayer("Other", game);
+        StandardArbiter arbiter = new StandardArbiter(game);
+        Map<AbstractUnit, AbstractField> moves = new LinkedHashMap<AbstractUnit, AbstractField>();
+        List<PathRequest> requests = new ArrayList<PathRequest>();
+        List<AbstractUnit> units = new ArrayList<AbstractUnit>();
+        AbstractField center, neighbor, target;
+        AbstractUnit unit;
+        List<Path> paths;
+        int arrived = 0;
+        UnitAddedToFieldListener listener = new UnitAddedToFieldListener() {
+
+            @Override
+            public void unitAddedToField(UnitAddedToFieldEvent event) {
+                Checks.check(event.getSource().getUnits().size() <= event.getSource().getMaxUnits(),
+                        "Field " + event.getSource() + " holds " + event.getSource().getUnits().size() + " units");
+            }
+        };
+
+        game.setArbiter(arbiter);
+        game.setCooperativePathfinder(pathfinder);
+        arbiter.addPlayer(player);
+        arbiter.addPlayer(other);
+        arbiter.setCurrentPlayer(player);
+
+        do {
+            center = map.getField(random.nextInt(map.getSize()));
+        } while (center.getTerrain() == SimpleTerrain.WATER);
+
+        for (int i = 0; i < UNITS; i++) {
+            unit = new SimpleUnit(game, i % 6 == 0 ? other : player);
+            unit.setMaxMovementPoints(random.nextInt(3) == 0 ? 6 : 1000);
+            unit.setCurrentMovementPoints(unit.getMaxMovementPoints());
+            unit.setPosition(randomField(map, unit, random));
+            units.add(unit);
+
+            if (unit.getPlayer() == player) {
+                target = center;
+
+                for (int step = random.nextInt(4); step > 0; step--) {
+                    neighbor = target.getNeighbor(random.nextInt(target.getDirections()));
+
+                    if (neighbor != null) {
+                        target = neighbor;
+                    }
+                }
+
+                // units sharing a target would block each other
+                if (!moves.containsValue(target)) {
+                    moves.put(unit, target);
+                    requests.add(new PathRequest(unit, target));
+                }
+            }
+        }
+
+        paths = pathfinder.findPaths(requests);
+        checkPlan(map, requests, paths, pathfinder.getWindow());
+
+        for (int index = 0; index < map.getSize(); index++) {
+            map.getField(index).addUnitAddedListener(listener);
+        }
+
+        player.moveGroup(moves);
+
+        for (int index = 0; index < map.getSize(); index++) {
+            map.getField(index).removeUnitAddedListener(listener);
+            Checks.check(map.getField(index).getUnits().size() <= map.getField(index).getMaxUnits(),
+                    "Field " + map.getField(index) + " is overfull");
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+            unit = requests.get(i).getUnit();
+            Checks.check(unit.getPosition().containsUnit(unit), "Unit is not on its field");
+
+            // a path within the window has been reserved completely
+            if (!paths.get(i).isEmpty() && paths.get(i).size() <= pathfinder.getWindow() + 1) {
+                Checks.check(unit.getPosition() == requests.get(i).getTarget(), "Unit didn't follow its reserved path");
+            }
+
+            if (unit.getPosition() == requests.get(i).getTarget()) {
+                arrived++;
+            }
+        }
+
+        for (AbstractUnit removed : units) {
+            removed.setPosition(null);
+        }
+
+        return arrived;
+    }
+
+    /**
+     * Checks that no field holds more units than it can carry at any step of
+     * the planned paths within the window, counting a unit on both fields of
+     * the step it moves.
+     *
+     * @param map the map
+     * @param requests the requests
+     * @param paths the paths
+     * @param window the window
+     */
+    private static void checkPlan(AbstractMap map, List<PathRequest> requests, List<Path> paths, int window) {
+        int[] occupancy = new int[map.getSize()];
+        Path path;
+
+        for (int step = 0; step < window; step++) {
+            for (int index = 0; index < map.getSize(); index++) {
+                occupancy[index] = 0;
+
+                for (AbstractUnit unit : map.getField(index).getUnits()) {
+                    if (unit.getPlayer() != requests.get(0).getUnit().getPlayer()) {
+                        occupancy[index]++;
+                    }
+                }
+            }
+
+            for (int i = 0; i < requests.size(); i++) {
+                path = paths.get(i);
+
+                if (path.isEmpty()) {
+                    occupancy[requests.get(i).getStart().getIndex()]++;
+                } else {
+                    occupancy[path.getIndex(Math.min(step, path.size() - 1))]++;
+
+                    if (step + 1 < path.size() && path.getIndex(step + 1) != path.getIndex(step)) {
+                        occupancy[path.getIndex(step + 1)]++;
+                    }
+                }
+            }
+
+            for (int index = 0; index < map.getSize(); index++) {
+                Checks.check(occupancy[index] <= map.getField(index).getMaxUnits(),
+                        "Field " + map.getField(index) + " holds " + occupancy[index] + " units at step " + step);
+            }
+        }
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        followPath();
+        groupMoves("HexGameMap", TestPathfinders.randomTerrain(new HexGameMap(SIZE, SIZE)));
+        groupMoves("SquareGameMap", TestPathfinders.randomTerrain(new SquareGameMap(SIZE, SIZE)));
+        groupMoves("OctagonGameMap", TestPathfinders.randomTerrain(new OctagonGameMap(SIZE, SIZE)));
+    }
+
+    /**
+     * Gets a random empty field the unit can access.
+     *
+     * @param map the map
+     * @param unit the unit
+     * @param random the random
+     * @return the field
+     */
+    private static AbstractField randomField(AbstractMap map, AbstractUnit unit, Random random) {
+        AbstractField field;
+
+        do {
+            field = map.getField(random.nextInt(map.getSize()));
+        } while (!unit.canAccess(field) || !field.getUnits().isEmpty());
+
+        return field;
+    }
+
+    /**
+     * Instantiates a new test cooperative pathfinder.
+     */
+    public TestCooperativePathfinder() {
+        super();
+    }
+}
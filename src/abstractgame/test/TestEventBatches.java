@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import abstractgame.events.EventBus;
+import abstractgame.events.EventType;
+import abstractgame.events.fieldevents.FieldTerrainChangedEvent;
+import abstractgame.events.fieldevents.UnitAddedToFieldEvent;
+import abstractgame.events.fieldevents.UnitRemovedFromFieldEvent;
+import abstractgame.events.unitevents.UnitDirectionChangedEvent;
+import abstractgame.events.unitevents.UnitMovedEvent;
+import abstractgame.interfaces.FieldTerrainChangedListener;
+import abstractgame.interfaces.UnitAddedToFieldListener;
+import abstractgame.interfaces.UnitDirectionChangedListener;
+import abstractgame.interfaces.UnitMovedListener;
+import abstractgame.interfaces.UnitRemovedFromFieldListener;
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.pathfinding.AStarPathfinder;
+import abstractgame.pathfinding.Path;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class TestEventBatches checks how the {@link EventBus} coalesces the
+ * events of a batch: an added and a removed event of the same unit and field
+ * cancel each other, a direction change keeps its first previous direction
+ * and is dropped if the unit turned back, a later event of the same source
+ * replaces the buffered one, and the remaining events are delivered in the
+ * order they first occurred once the outermost batch ends. A batch belongs to
+ * the thread which opened it, and the map's unit index is up to date within
+ * it.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestEventBatches {
+
+    /**
+     * Checks the events the recorder received since the last check.
+     *
+     * @param recorder the recorder
+     * @param message the message if the events differ
+     * @param expected the expected events
+     */
+    private static void checkEvents(Recorder recorder, String message, String... expected) {
+        Checks.check(recorder.events.equals(Arrays.asList(expected)), message + ": " + recorder.events + " instead of "
+                + Arrays.asList(expected));
+        recorder.events.clear();
+    }
+
+    /**
+     * Moves the unit between fields within a batch.
+     *
+     * @param map the map
+     * @param unit the unit
+     * @param recorder the recorder
+     */
+    private static void moves(AbstractMap map, AbstractUnit unit, Recorder recorder) {
+        AbstractField start = unit.getPosition();
+        int direction;
+        Path path;
+
+        // the fields in between are added and removed again, the target is
+        // added after the first move
+        unit.getGame().beginBatch();
+        unit.setPosition(map.getField(1, 0));
+        unit.setPosition(map.getField(2, 0));
+        unit.setPosition(map.getField(3, 0));
+        checkEvents(recorder, "Events within the batch");
+        unit.getGame().endBatch();
+        checkEvents(recorder, "Move across three fields", "removed (0,0)", "moved", "added (3,0)");
+
+        // a move back to the start leaves the fields as they were
+        unit.getGame().beginBatch();
+        unit.setPosition(map.getField(4, 0));
+        unit.setPosition(map.getField(3, 0));
+        unit.getGame().endBatch();
+        checkEvents(recorder, "Move back to the start", "moved");
+
+        // a path is followed in a batch, turning the unit once
+        unit.setPosition(start);
+        recorder.events.clear();
+        direction = unit.getDirection();
+        path = new AStarPathfinder().findPath(unit, start, map.getField(6, 0), Double.POSITIVE_INFINITY);
+        Checks.check(path.size() == 7, "Path of " + path.size() + " fields");
+        unit.setCurrentMovementPoints(path.getTotalCost());
+        Checks.check(unit.followPath(path), "Path not followed");
+        Checks.check(unit.getDirection() != direction, "Direction unchanged");
+        checkEvents(recorder, "Path across seven fields", "direction " + direction + " to " + unit.getDirection(),
+                "removed (0,0)", "moved", "added (6,0)");
+    }
+
+    /**
+     * Changes the direction of the unit within batches.
+     *
+     * @param unit the unit
+     * @param recorder the recorder
+     */
+    private static void directions(AbstractUnit unit, Recorder recorder) {
+        int direction = unit.getDirection();
+
+        // the net change starts at the first previous direction
+        unit.getGame().beginBatch();
+        unit.setDirection((direction + 1) % 4);
+        unit.setDirection((direction + 2) % 4);
+        unit.getGame().endBatch();
+        checkEvents(recorder, "Two direction changes", "direction " + direction + " to " + (direction + 2) % 4);
+
+        // turning back to the first direction is no change
+        unit.getGame().beginBatch();
+        unit.setDirection((direction + 3) % 4);
+        unit.setDirection((direction + 2) % 4);
+        unit.getGame().endBatch();
+        checkEvents(recorder, "Direction change turning back");
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        AbstractMap map = TestPathfinders.randomTerrain(new SquareGameMap(10, 10));
+        SimpleGame game = new SimpleGame(map);
+        AbstractUnit unit = new SimpleUnit(game, new SimplePlayer("Player", game));
+        Recorder recorder = new Recorder();
+        EventBus eventBus = map.getEventBus();
+
+        for (int x = 0; x < map.getWidth(); x++) {
+            for (int y = 0; y < 2; y++) {
+                map.getField(x, y).setTerrain(SimpleTerrain.PLAIN);
+            }
+        }
+
+        unit.setPosition(map.getField(0, 0));
+        eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, recorder);
+        eventBus.subscribe(EventType.UNIT_ADDED_TO_FIELD, recorder);
+        eventBus.subscribe(EventType.UNIT_DIRECTION_CHANGED, recorder);
+        eventBus.subscribe(EventType.UNIT_MOVED, recorder);
+        eventBus.subscribe(EventType.UNIT_REMOVED_FROM_FIELD, recorder);
+
+        moves(map, unit, recorder);
+        directions(unit, recorder);
+        order(map, unit, recorder);
+        unitIndex(map, unit, recorder);
+        threads(map, unit, recorder);
+        System.out.println("Batches coalesced as expected");
+    }
+
+    /**
+     * Publishes events of several sources within nested batches.
+     *
+     * @param map the map
+     * @param unit the unit
+     * @param recorder the recorder
+     */
+    private static void order(AbstractMap map, AbstractUnit unit, Recorder recorder) {
+        int direction = unit.getDirection();
+
+        unit.getGame().beginBatch();
+        map.getField(5, 5).setTerrain(SimpleTerrain.HILL);
+        unit.setDirection((direction + 1) % 4);
+        unit.getGame().beginBatch();
+        map.getField(7, 7).setTerrain(SimpleTerrain.HILL);
+        map.getField(5, 5).setTerrain(SimpleTerrain.FOREST);
+        unit.getGame().endBatch();
+        checkEvents(recorder, "Events after the inner batch");
+        unit.setPosition(map.getField(1, 1));
+        unit.getGame().endBatch();
+        checkEvents(recorder, "Events of several sources", "terrain (5,5) FOREST",
+                "direction " + direction + " to " + (direction + 1) % 4, "terrain (7,7) HILL",
+                "removed (6,0)", "added (1,1)", "moved");
+        Checks.check(!unit.getGame().isBatching(), "Batch still open");
+    }
+
+    /**
+     * Publishes an event on another thread while a batch is open.
+     *
+     * @param map the map
+     * @param unit the unit
+     * @param recorder the recorder
+     */
+    private static void threads(AbstractMap map, AbstractUnit unit, Recorder recorder) {
+        Publisher publisher = new Publisher(map);
+        Thread thread = new Thread(publisher);
+
+        unit.getGame().beginBatch();
+        map.getField(2, 2).setTerrain(SimpleTerrain.HILL);
+        thread.start();
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+
+        Checks.check(!publisher.batching, "Batch open on another thread");
+        Checks.check(publisher.endFailed, "Batch ended by another thread");
+        checkEvents(recorder, "Events of another thread within the batch", "terrain (9,9) HILL");
+        unit.getGame().endBatch();
+        checkEvents(recorder, "Events of the batch", "terrain (2,2) HILL");
+    }
+
+    /**
+     * Queries the unit index of the map while a batch is open.
+     *
+     * @param map the map
+     * @param unit the unit
+     * @param recorder the recorder
+     */
+    private static void unitIndex(AbstractMap map, AbstractUnit unit, Recorder recorder) {
+        AbstractField start = unit.getPosition(), target = map.getField(8, 1);
+        long version;
+
+        Checks.check(map.getUnitIndex().findUnits(start, 0, null).contains(unit), "Unit not indexed at the start");
+        unit.getGame().beginBatch();
+        version = map.getVersion();
+        unit.setPosition(map.getField(4, 1));
+        unit.setPosition(target);
+        Checks.check(map.getVersion() > version, "Version unchanged within the batch");
+        Checks.check(!map.getUnitIndex().findUnits(start, 0, null).contains(unit), "Unit indexed at the start within "
+                + "the batch");
+        Checks.check(map.getUnitIndex().findUnits(target, 0, null).contains(unit), "Unit not indexed at the target "
+                + "within the batch");
+        checkEvents(recorder, "Events within the batch");
+        unit.getGame().endBatch();
+        checkEvents(recorder, "Move within the batch", "removed " + start.getPosition(), "moved",
+                "added " + target.getPosition());
+        Checks.check(map.getUnitIndex().findUnits(target, 0, null).contains(unit), "Unit not indexed after the batch");
+    }
+
+    /**
+     * Instantiates a new test event batches.
+     */
+    public TestEventBatches() {
+        super();
+    }
+
+    /**
+     * The Class Publisher changes a terrain on another thread and tries to
+     * end the batch of the main thread.
+     */
+    private static final class Publisher implements Runnable {
+
+        /**
+         * True if the thread saw an open batch.
+         */
+        private boolean batching;
+
+        /**
+         * True if ending a batch failed.
+         */
+        private boolean endFailed;
+
+        /**
+         * The map.
+         */
+        private final AbstractMap map;
+
+        /**
+         * Instantiates a new publisher.
+         *
+         * @param map the map
+         */
+        private Publisher(AbstractMap map) {
+            this.map = map;
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            this.batching = this.map.getEventBus().isBatching();
+            this.map.getField(9, 9).setTerrain(SimpleTerrain.HILL);
+
+            try {
+                this.map.getEventBus().endBatch();
+            } catch (IllegalStateException e) {
+                this.endFailed = true;
+            }
+        }
+    }
+
+    /**
+     * The Class Recorder records the events it receives.
+     */
+    private static final class Recorder implements FieldTerrainChangedListener, UnitAddedToFieldListener,
+            UnitDirectionChangedListener, UnitMovedListener, UnitRemovedFromFieldListener {
+
+        /**
+         * The received events.
+         */
+        private final List<String> events = new ArrayList<String>();
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.FieldTerrainChangedListener#fieldTerrainChanged(
+	 * abstractgame.events.fieldevents.FieldTerrainChangedEvent)
+         */
+        @Override
+        public void fieldTerrainChanged(FieldTerrainChangedEvent event) {
+            this.events.add("terrain " + event.getSource().getPosition() + " " + event.getSource().getTerrain());
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.UnitAddedToFieldListener#unitAddedToField(
+	 * abstractgame.events.fieldevents.UnitAddedToFieldEvent)
+         */
+        @Override
+        public void unitAddedToField(UnitAddedToFieldEvent event) {
+            this.events.add("added " + event.getSource().getPosition());
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.UnitDirectionChangedListener#unitDirectionChanged(
+	 * abstractgame.events.unitevents.UnitDirectionChangedEvent)
+         */
+        @Override
+        public void unitDirectionChanged(UnitDirectionChangedEvent event) {
+            this.events.add("direction " + event.getPreviousDirection() + " to " + event.getSource().getDirection());
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.UnitMovedListener#unitMoved(abstractgame.events.unitevents.UnitMovedEvent)
+         */
+        @Override
+        public void unitMoved(UnitMovedEvent event) {
+            this.events.add("moved");
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.UnitRemovedFromFieldListener#unitRemovedFromField(
+	 * abstractgame.events.fieldevents.UnitRemovedFromFieldEvent)
+         */
+        @Override
+        public void unitRemovedFromField(UnitRemovedFromFieldEvent event) {
+            this.events.add("removed " + event.getSource().getPosition());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import abstractgame.events.EventBus;
+import abstractgame.events.EventType;
+import abstractgame.events.Subscription;
+import abstractgame.events.fieldevents.FieldTerrainChangedEvent;
+import abstractgame.interfaces.FieldTerrainChangedListener;
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+
+/**
+ * The Class TestEventSubscriptions checks the subscriptions of an
+ * {@link EventBus} keyed by source and by region: an event is delivered to
+ * the listeners of its field first, then to the subscriptions to all events,
+ * to its source and to the regions containing the field, each in the order
+ * they subscribed, and {@link EventBus#removeSource(Object)} cancels exactly
+ * the subscriptions to the removed source.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestEventSubscriptions {
+
+    /**
+     * Changes the terrain of the field and checks which listeners received
+     * the event.
+     *
+     * @param field the field
+     * @param calls the names of the listeners in the order they are called
+     * @param expected the expected names
+     */
+    private static void checkDelivery(AbstractField field, List<String> calls, String... expected) {
+        calls.clear();
+        field.setTerrain(field.getTerrain() == SimpleTerrain.HILL ? SimpleTerrain.PLAIN : SimpleTerrain.HILL);
+        Checks.check(calls.equals(Arrays.asList(expected)), "Event of " + field.getPosition() + ": " + calls
+                + " instead of " + Arrays.asList(expected));
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        AbstractMap map = new SquareGameMap(10, 10);
+        EventBus eventBus = map.getEventBus();
+        AbstractField center = map.getField(2, 2), corner = map.getField(0, 0), other = map.getField(5, 5);
+        List<String> calls = new ArrayList<String>();
+        List<Subscription<FieldTerrainChangedListener>> centerSubscriptions
+                = new ArrayList<Subscription<FieldTerrainChangedListener>>();
+        Subscription<FieldTerrainChangedListener> otherSubscription;
+
+        center.addTerrainChangedListener(new Recorder("field", calls));
+        eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, new Recorder("region", calls), 1, 1, 3, 3);
+        centerSubscriptions.add(eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, new Recorder("source", calls),
+                center));
+        eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, new Recorder("all", calls));
+        centerSubscriptions.add(eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED,
+                new Recorder("second source", calls), center));
+        eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, new Recorder("second region", calls), 2, 2, 6, 6);
+        otherSubscription = eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, new Recorder("other source",
+                calls), other);
+
+        // the kinds of subscriptions are delivered in a fixed order,
+        // regardless of the order they subscribed in
+        checkDelivery(center, calls, "field", "all", "source", "second source", "region", "second region");
+        checkDelivery(other, calls, "all", "other source", "second region");
+        checkDelivery(corner, calls, "all");
+
+        // removing a source cancels its subscriptions and no others
+        eventBus.removeSource(center);
+
+        for (Subscription<FieldTerrainChangedListener> subscription : centerSubscriptions) {
+            Checks.check(!subscription.isActive(), "Subscription to " + subscription.getSource() + " still active");
+        }
+
+        Checks.check(otherSubscription.isActive(), "Subscription to another source cancelled");
+        checkDelivery(center, calls, "field", "all", "region", "second region");
+        checkDelivery(other, calls, "all", "other source", "second region");
+        eventBus.removeSource(center);
+
+        // the source may be subscribed to again
+        eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, new Recorder("new source", calls), center);
+        checkDelivery(center, calls, "field", "all", "new source", "region", "second region");
+        System.out.println("Subscriptions by source and region delivered as expected");
+    }
+
+    /**
+     * Instantiates a new test event subscriptions.
+     */
+    public TestEventSubscriptions() {
+        super();
+    }
+
+    /**
+     * The Class Recorder records its name when it receives an event.
+     */
+    private static final class Recorder implements FieldTerrainChangedListener {
+
+        /**
+         * The names of the called listeners.
+         */
+        private final List<String> calls;
+
+        /**
+         * The name.
+         */
+        private final String name;
+
+        /**
+         * Instantiates a new recorder.
+         *
+         * @param name the name
+         * @param calls the names of the called listeners
+         */
+        private Recorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.FieldTerrainChangedListener#fieldTerrainChanged(
+	 * abstractgame.events.fieldevents.FieldTerrainChangedEvent)
+         */
+        @Override
+        public void fieldTerrainChanged(FieldTerrainChangedEvent event) {
+            this.calls.add(this.name);
+        }
+    }
+}
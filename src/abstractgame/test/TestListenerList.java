@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import abstractgame.events.ListenerList;
+
+/**
+ * The Class TestListenerList checks the copy on write array of a
+ * {@link ListenerList}: a listener is contained at most once, listeners added
+ * or removed while an event is delivered take effect with the next event, and
+ * removing the last listener returns to the shared empty array.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestListenerList {
+
+    /**
+     * Delivers an event to the current listeners and checks which of them
+     * received it.
+     *
+     * @param list the list
+     * @param calls the names of the listeners in the order they are called
+     * @param message the message if other listeners received the event
+     * @param expected the expected names
+     */
+    private static void checkDispatch(ListenerList<Runnable> list, List<String> calls, String message,
+            String... expected) {
+        calls.clear();
+
+        for (Runnable listener : list.getListeners()) {
+            listener.run();
+        }
+
+        Checks.check(calls.equals(Arrays.asList(expected)), message + ": " + calls + " instead of "
+                + Arrays.asList(expected));
+    }
+
+    /**
+     * Changes the list while an event is delivered.
+     *
+     * @param list the list
+     * @param calls the names of the called listeners
+     */
+    private static void dispatch(ListenerList<Runnable> list, List<String> calls) {
+        Recorder first = new Recorder("first", calls), second = new Recorder("second", calls);
+        Recorder third = new Recorder("third", calls);
+
+        list.add(first);
+        list.add(new Changer("changer", calls, list, second, third));
+        list.add(second);
+
+        // the removed listener is still called and the added one is not,
+        // because the event is delivered to the array of its start
+        checkDispatch(list, calls, "Event changing the list", "first", "changer", "second");
+        Checks.check(list.size() == 3 && !list.contains(second) && list.contains(third), "Listeners after the change: "
+                + Arrays.toString(list.getListeners()));
+        checkDispatch(list, calls, "Event after the change", "first", "changer", "third");
+        list.clear();
+    }
+
+    /**
+     * Adds a listener twice.
+     *
+     * @param list the list
+     * @param calls the names of the called listeners
+     */
+    private static void duplicates(ListenerList<Runnable> list, List<String> calls) {
+        Recorder listener = new Recorder("listener", calls);
+        Runnable[] listeners;
+
+        Checks.check(list.add(listener), "Listener not added");
+        listeners = list.getListeners();
+        Checks.check(!list.add(listener), "Listener added twice");
+        Checks.check(list.getListeners() == listeners, "Array copied by a duplicate");
+        Checks.check(!list.add(null), "Null added");
+        Checks.check(list.size() == 1, list.size() + " listeners instead of 1");
+        checkDispatch(list, calls, "Event to a listener added twice", "listener");
+        Checks.check(list.remove(listener), "Listener not removed");
+        Checks.check(!list.remove(listener), "Listener removed twice");
+        Checks.check(!list.contains(listener), "Removed listener still contained");
+    }
+
+    /**
+     * Removes the last listener and clears a list.
+     *
+     * @param list the list
+     * @param calls the names of the called listeners
+     * @param empty the array of the new list
+     */
+    private static void empty(ListenerList<Runnable> list, List<String> calls, Runnable[] empty) {
+        Recorder first = new Recorder("first", calls), second = new Recorder("second", calls);
+
+        Checks.check(list.isEmpty() && list.getListeners() == empty, "List not back to the empty array");
+        list.add(first);
+        list.add(second);
+        list.remove(second);
+        list.remove(first);
+        Checks.check(list.isEmpty() && list.getListeners() == empty, "Empty array not shared after removing the last "
+                + "listener");
+        list.add(first);
+        list.clear();
+        Checks.check(list.isEmpty() && list.getListeners() == empty, "Empty array not shared after clearing");
+        checkDispatch(list, calls, "Event to an empty list");
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        ListenerList<Runnable> list = new ListenerList<Runnable>(Runnable.class);
+        Runnable[] empty = list.getListeners();
+        List<String> calls = new ArrayList<String>();
+
+        Checks.check(empty.length == 0 && empty.getClass() == Runnable[].class, "New list not empty: "
+                + Arrays.toString(empty));
+        duplicates(list, calls);
+        dispatch(list, calls);
+        empty(list, calls, empty);
+        System.out.println("Listener lists changed as expected");
+    }
+
+    /**
+     * Instantiates a new test listener list.
+     */
+    public TestListenerList() {
+        super();
+    }
+
+    /**
+     * The Class Changer removes one listener and adds another when it is
+     * called.
+     */
+    private static final class Changer extends Recorder {
+
+        /**
+         * The added listener.
+         */
+        private final Runnable added;
+
+        /**
+         * The list.
+         */
+        private final ListenerList<Runnable> list;
+
+        /**
+         * The removed listener.
+         */
+        private final Runnable removed;
+
+        /**
+         * Instantiates a new changer.
+         *
+         * @param name the name
+         * @param calls the names of the called listeners
+         * @param list the list
+         * @param removed the removed listener
+         * @param added the added listener
+         */
+        private Changer(String name, List<String> calls, ListenerList<Runnable> list, Runnable removed,
+                Runnable added) {
+            super(name, calls);
+            this.list = list;
+            this.removed = removed;
+            this.added = added;
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.test.TestListenerList.Recorder#run()
+         */
+        @Override
+        public void run() {
+            super.run();
+            this.list.remove(this.removed);
+            this.list.add(this.added);
+        }
+    }
+
+    /**
+     * The Class Recorder records its name when it is called.
+     */
+    private static class Recorder implements Runnable {
+
+        /**
+         * The names of the called listeners.
+         */
+        private final List<String> calls;
+
+        /**
+         * The name.
+         */
+        private final String name;
+
+        /**
+         * Instantiates a new recorder.
+         *
+         * @param name the name
+         * @param calls the names of the called listeners
+         */
+        private Recorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            this.calls.add(this.name);
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import abstractgame.map.MappedTerrainLayer;
+
+/**
+ * The Class TestMappedTerrainLayer writes terrain layers for enums which fit
+ * into one byte per position and for enums which need two, checks the size
+ * of the files and reads the terrain back from a read-only mapping.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestMappedTerrainLayer {
+
+    /**
+     * The size of the file header in bytes.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * The height of the layers.
+     */
+    private static final int HEIGHT = 23;
+
+    /**
+     * The width of the layers.
+     */
+    private static final int WIDTH = 37;
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     * @throws IOException if a layer can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(18);
+
+        test(SimpleTerrain.class, 1, random);
+        test(ByteTerrain.class, 1, random);
+        test(ShortTerrain.class, 2, random);
+    }
+
+    /**
+     * Writes a layer with random terrains and reads it back.
+     *
+     * @param <E> the type of the terrain
+     * @param terrainClass the class of the terrain enum
+     * @param bytesPerPosition the expected bytes per position
+     * @param random the random
+     * @throws IOException if the layer can't be written
+     */
+    private static <E extends Enum<E>> void test(Class<E> terrainClass, int bytesPerPosition, Random random)
+            throws IOException {
+        E[] constants = terrainClass.getEnumConstants();
+        Enum<?>[] terrains = new Enum<?>[WIDTH * HEIGHT];
+        File file = File.createTempFile("terrain", ".agtl");
+        MappedTerrainLayer layer;
+        boolean rejected;
+
+        file.deleteOnExit();
+        layer = MappedTerrainLayer.create(file, WIDTH, HEIGHT, terrainClass);
+        Checks.check(file.length() == HEADER_SIZE + (long) WIDTH * HEIGHT * bytesPerPosition,
+                terrainClass.getSimpleName() + " with " + constants.length + " constants takes "
+                + (file.length() - HEADER_SIZE) + " bytes instead of " + bytesPerPosition + " per position");
+
+        // every position starts without terrain, the first and the last constant are stored
+        for (int index = 0; index < terrains.length; index++) {
+            Checks.check(layer.getTerrain(index) == null, "Terrain of a new layer at " + index);
+
+            if (index == 0) {
+                terrains[index] = constants[0];
+            } else if (index == 1) {
+                terrains[index] = constants[constants.length - 1];
+            } else if (random.nextInt(4) > 0) {
+                terrains[index] = constants[random.nextInt(constants.length)];
+            }
+
+            layer.setTerrain(index, terrains[index]);
+        }
+
+        layer.force();
+        layer = new MappedTerrainLayer(file, terrainClass, false);
+        Checks.check(layer.getWidth() == WIDTH && layer.getHeight() == HEIGHT && !layer.isWritable(),
+                "Header of the " + terrainClass.getSimpleName() + " layer");
+
+        for (int index = 0; index < terrains.length; index++) {
+            Checks.check(layer.getTerrain(index) == terrains[index], "Terrain " + layer.getTerrain(index) + " at "
+                    + index + " instead of " + terrains[index]);
+        }
+
+        try {
+            layer.setTerrain(0, null);
+            rejected = false;
+        } catch (IllegalStateException exception) {
+            rejected = true;
+        }
+
+        Checks.check(rejected, "Write to a read-only layer");
+
+        try {
+            if (terrainClass == SimpleTerrain.class) {
+                new MappedTerrainLayer(file, ByteTerrain.class, false);
+            } else {
+                new MappedTerrainLayer(file, SimpleTerrain.class, false);
+            }
+
+            rejected = false;
+        } catch (IOException exception) {
+            rejected = true;
+        }
+
+        Checks.check(rejected, "Layer opened for another terrain enum");
+        System.out.println(terrainClass.getSimpleName() + ": " + constants.length + " constants, "
+                + bytesPerPosition + " byte(s) per position");
+    }
+
+    /**
+     * Instantiates a new test mapped terrain layer.
+     */
+    public TestMappedTerrainLayer() {
+        super();
+    }
+
+    /**
+     * The largest terrain enum stored in one byte per position.
+     */
+    enum ByteTerrain {
+
+        T000, T001, T002, T003, T004, T005, T006, T007, T008, T009, T010, T011,
+        T012, T013, T014, T015, T016, T017, T018, T019, T020, T021, T022, T023,
+        T024, T025, T026, T027, T028, T029, T030, T031, T032, T033, T034, T035,
+        T036, T037, T038, T039, T040, T041, T042, T043, T044, T045, T046, T047,
+        T048, T049, T050, T051, T052, T053, T054, T055, T056, T057, T058, T059,
+        T060, T061, T062, T063, T064, T065, T066, T067, T068, T069, T070, T071,
+        T072, T073, T074, T075, T076, T077, T078, T079, T080, T081, T082, T083,
+        T084, T085, T086, T087, T088, T089, T090, T091, T092, T093, T094, T095,
+        T096, T097, T098, T099, T100, T101, T102, T103, T104, T105, T106, T107,
+        T108, T109, T110, T111, T112, T113, T114, T115, T116, T117, T118, T119,
+        T120, T121, T122, T123, T124, T125, T126, T127, T128, T129, T130, T131,
+        T132, T133, T134, T135, T136, T137, T138, T139, T140, T141, T142, T143,
+        T144, T145, T146, T147, T148, T149, T150, T151, T152, T153, T154, T155,
+        T156, T157, T158, T159, T160, T161, T162, T163, T164, T165, T166, T167,
+        T168, T169, T170, T171, T172, T173, T174, T175, T176, T177, T178, T179,
+        T180, T181, T182, T183, T184, T185, T186, T187, T188, T189, T190, T191,
+        T192, T193, T194, T195, T196, T197, T198, T199, T200, T201, T202, T203,
+        T204, T205, T206, T207, T208, T209, T210, T211, T212, T213, T214, T215,
+        T216, T217, T218, T219, T220, T221, T222, T223, T224, T225, T226, T227,
+        T228, T229, T230, T231, T232, T233, T234, T235, T236, T237, T238, T239,
+        T240, T241, T242, T243, T244, T245, T246, T247, T248, T249, T250, T251,
+        T252, T253, T254
+    }
+
+    /**
+     * The smallest terrain enum stored in two bytes per position.
+     */
+    enum ShortTerrain {
+
+        T000, T001, T002, T003, T004, T005, T006, T007, T008, T009, T010, T011,
+        T012, T013, T014, T015, T016, T017, T018, T019, T020, T021, T022, T023,
+        T024, T025, T026, T027, T028, T029, T030, T031, T032, T033, T034, T035,
+        T036, T037, T038, T039, T040, T041, T042, T043, T044, T045, T046, T047,
+        T048, T049, T050, T051, T052, T053, T054, T055, T056, T057, T058, T059,
+        T060, T061, T062, T063, T064, T065, T066, T067, T068, T069, T070, T071,
+        T072, T073, T074, T075, T076, T077, T078, T079, T080, T081, T082, T083,
+        T084, T085, T086, T087, T088, T089, T090, T091, T092, T093, T094, T095,
+        T096, T097, T098, T099, T100, T101, T102, T103, T104, T105, T106, T107,
+        T108, T109, T110, T111, T112, T113, T114, T115, T116, T117, T118, T119,
+        T120, T121, T122, T123, T124, T125, T126, T127, T128, T129, T130, T131,
+        T132, T133, T134, T135, T136, T137, T138, T139, T140, T141, T142, T143,
+        T144, T145, T146, T147, T148, T149, T150, T151, T152, T153, T154, T155,
+        T156, T157, T158, T159, T160, T161, T162, T163, T164, T165, T166, T167,
+        T168, T169, T170, T171, T172, T173, T174, T175, T176, T177, T178, T179,
+        T180, T181, T182, T183, T184, T185, T186, T187, T188, T189, T190, T191,
+        T192, T193, T194, T195, T196, T197, T198, T199, T200, T201, T202, T203,
+        T204, T205, T206, T207, T208, T209, T210, T211, T212, T213, T214, T215,
+        T216, T217, T218, T219, T220, T221, T222, T223, T224, T225, T226, T227,
+        T228, T229, T230, T231, T232, T233, T234, T235, T236, T237, T238, T239,
+        T240, T241, T242, T243, T244, T245, T246, T247, T248, T249, T250, T251,
+        T252, T253, T254, T255
+    }
+}
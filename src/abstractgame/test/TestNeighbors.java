@@ -0,0 +1,619 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.util.Arrays;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.map.HexField;
+import abstractgame.map.NeighborTable;
+import abstractgame.map.OctagonField;
+import abstractgame.map.SquareField;
+
+/**
+ * The Class TestNeighbors measures the neighbor lookups on maps where most
+ * fields lie on the border: the old lookup catching an
+ * ArrayIndexOutOfBoundsException for every neighbor off the map, the range
+ * checked {@link AbstractMap#getField(int, int)}, the neighbor table and the
+ * border-aware {@link AbstractField#getNeighbors(AbstractField[])} and
+ * {@link NeighborTable#getNeighbors(int, int[])}. <br>
+ * Once compiled, the JIT throws a preallocated exception without a stack
+ * trace for the implicit exceptions of a hot array access
+ * (-XX:+OmitStackTraceInFastThrow, the default), which hides their cost. The
+ * exceptions are therefore also thrown explicitly, each with its stack trace,
+ * as they are in the interpreter or with -XX:-OmitStackTraceInFastThrow. <br>
+ * The lookups by field call a method on the field for every probe and read
+ * its map and index. The range checks and the lookups by index only read the
+ * map's arrays, they don't touch the fields, whose objects are spread over
+ * the heap in the order they were created. <br>
+ * It then checks that the {@link NeighborTable} finds the same neighbors as
+ * the lookup every field did with its own coordinates before there were
+ * tables, on small square, hex and octagon maps whose fields mostly lie on the
+ * border, with both parities of the coordinates and with stored and computed
+ * edges, and for a hex field which still looks up its neighbors that way.
+ * These checks run last, since they leave the lookups compiled for several
+ * topologies, unlike a game with one. A field class whose neighbors come from
+ * the table without providing its steps has to fail.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestNeighbors {
+
+    /**
+     * The delta x of the square topology for every direction.
+     */
+    private static final int[] DELTA_X = {0, 1, 0, -1};
+
+    /**
+     * The delta y of the square topology for every direction.
+     */
+    private static final int[] DELTA_Y = {1, 0, -1, 0};
+
+    /**
+     * The sizes of the maps whose neighbors are checked, width and height.
+     */
+    private static final int[][] CHECKED_SIZES = {{1, 1}, {1, 5}, {5, 1}, {2, 2}, {2, 7}, {3, 4}, {7, 6}, {8, 9}};
+
+    /**
+     * The number of passes over all fields per measurement.
+     */
+    private static final int PASSES = 50;
+
+    /**
+     * The number of passes over all fields throwing explicit exceptions.
+     */
+    private static final int THROWING_PASSES = 2;
+
+    /**
+     * The number of fields of every map.
+     */
+    private static final int SIZE = 250000;
+
+    /**
+     * Visits the neighbors of all fields with every lookup and prints the
+     * time per neighbor probe.
+     *
+     * @param map the map
+     */
+    private static void benchmark(AbstractMap map) {
+        AbstractField[][] fields = map.getFields();
+        AbstractField[] buffer = new AbstractField[DELTA_X.length];
+        int[] indices = new int[DELTA_X.length];
+        long probes = (long) PASSES * map.getSize() * DELTA_X.length;
+        int borders = 0;
+
+        for (int index = 0; index < map.getSize(); index++) {
+            if (map.getField(index).isBorder()) {
+                borders++;
+            }
+        }
+
+        System.out.println("SquareGameMap " + map.getWidth() + "x" + map.getHeight() + ", "
+                + (100L * borders / map.getSize()) + "% border fields:");
+
+        print("exceptions (first pass)", exceptions(map, fields, 1, false), probes / PASSES);
+        print("range checks (first pass)", rangeChecks(map, 1), probes / PASSES);
+
+        // warm up
+        for (int round = 0; round < 3; round++) {
+            exceptions(map, fields, PASSES, false);
+            exceptions(map, fields, 1, true);
+            rangeChecks(map, PASSES);
+            neighborTable(map);
+            borderAware(map, buffer);
+            borderAware(map, indices);
+        }
+
+        print("exceptions (fast throw)", exceptions(map, fields, PASSES, false), probes);
+        print("exceptions (thrown)", exceptions(map, fields, THROWING_PASSES, true), probes / PASSES * THROWING_PASSES);
+        print("range checks", rangeChecks(map, PASSES), probes);
+        print("neighbor table", neighborTable(map), probes);
+        print("border-aware fields", borderAware(map, buffer), probes);
+        print("border-aware indices", borderAware(map, indices), probes);
+        System.out.println();
+    }
+
+    /**
+     * Counts the neighbors with the border-aware iteration.
+     *
+     * @param map the map
+     * @param buffer the array receiving the neighbors
+     * @return the time in nanoseconds
+     */
+    private static long borderAware(AbstractMap map, AbstractField[] buffer) {
+        long neighbors = 0, time = System.nanoTime();
+
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int index = 0; index < map.getSize(); index++) {
+                neighbors += map.getField(index).getNeighbors(buffer);
+            }
+        }
+
+        return check(neighbors, System.nanoTime() - time, map, PASSES);
+    }
+
+    /**
+     * Counts the neighbor indices with the border-aware iteration of the
+     * neighbor table.
+     *
+     * @param map the map
+     * @param buffer the array receiving the indices
+     * @return the time in nanoseconds
+     */
+    private static long borderAware(AbstractMap map, int[] buffer) {
+        NeighborTable neighborTable = map.getField(0).getNeighborTable();
+        long neighbors = 0, time = System.nanoTime();
+
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int index = 0; index < map.getSize(); index++) {
+                neighbors += neighborTable.getNeighbors(index, buffer);
+            }
+        }
+
+        return check(neighbors, System.nanoTime() - time, map, PASSES);
+    }
+
+    /**
+     * Checks the number of neighbors found, so the lookups can't be
+     * optimized away.
+     *
+     * @param neighbors the number of neighbors
+     * @param time the time
+     * @param map the map
+     * @param passes the number of passes
+     * @return the time
+     */
+    private static long check(long neighbors, long time, AbstractMap map, int passes) {
+        long expected = (long) passes * (4L * map.getSize() - 2L * map.getWidth() - 2L * map.getHeight());
+
+        if (neighbors != expected) {
+            throw new IllegalStateException("Illegal number of neighbors " + neighbors);
+        }
+
+        return time;
+    }
+
+    /**
+     * Throws a new exception if the position lies off the map.
+     *
+     * @param fields the fields as [width][height] array
+     * @param x the x coordinate
+     * @param y the y coordinate
+     */
+    private static void checkRange(AbstractField[][] fields, int x, int y) {
+        if (x < 0 || x >= fields.length || y < 0 || y >= fields[x].length) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Checks the neighbors of every field against the lookup by coordinates:
+     * the neighbor table in every direction, the border flags and counts, and
+     * the border-aware iterations over indices and fields.
+     *
+     * @param map the map
+     */
+    private static void compare(AbstractMap map) {
+        NeighborTable neighborTable = map.getField(0).getNeighborTable();
+        int directions = neighborTable.getDirections(), expected, count;
+        int[] neighbors = new int[directions], indices = new int[directions];
+        AbstractField[] fields = new AbstractField[directions];
+        AbstractField field;
+        String name;
+
+        Checks.check(neighborTable.isStored() == ((TopologyMap) map).stored, map + ": table not "
+                + (((TopologyMap) map).stored ? "stored" : "computed"));
+
+        for (int index = 0; index < map.getSize(); index++) {
+            field = map.getField(index);
+            name = map + " at " + field.getPosition();
+            count = 0;
+
+            for (int direction = 0; direction < directions; direction++) {
+                expected = getNeighborByCoordinates(map, field, direction);
+                Checks.check(neighborTable.getNeighbor(index, direction) == expected, name + ": neighbor "
+                        + neighborTable.getNeighbor(index, direction) + " instead of " + expected
+                        + " in direction " + direction);
+                Checks.check(field.getNeighbor(direction) == (expected == NeighborTable.EDGE ? null
+                        : map.getField(expected)), name + ": neighbor field in direction " + direction);
+
+                if (expected != NeighborTable.EDGE) {
+                    Checks.check(neighborTable.getDirection(index, expected) == direction, name + ": direction "
+                            + neighborTable.getDirection(index, expected) + " instead of " + direction);
+                    Checks.check(neighborTable.getDistance(index, expected)
+                            == field.getDistance(map.getField(expected)),
+                            name + ": distance " + neighborTable.getDistance(index, expected) + " to the neighbor in "
+                            + "direction " + direction);
+                    neighbors[count++] = expected;
+                }
+            }
+
+            Checks.check(neighborTable.isBorder(index) == (count < directions), name + ": border "
+                    + neighborTable.isBorder(index));
+            Checks.check(neighborTable.getNeighborCount(index) == count, name + ": "
+                    + neighborTable.getNeighborCount(index) + " neighbors instead of " + count);
+            Checks.check(neighborTable.getNeighbors(index, indices) == count
+                    && Arrays.equals(Arrays.copyOf(indices, count), Arrays.copyOf(neighbors, count)),
+                    name + ": neighbor indices " + Arrays.toString(Arrays.copyOf(indices, count)) + " instead of "
+                    + Arrays.toString(Arrays.copyOf(neighbors, count)));
+            Checks.check(field.getNeighbors(fields) == count, name + ": neighbor fields");
+
+            for (int neighbor = 0; neighbor < count; neighbor++) {
+                Checks.check(fields[neighbor] == map.getField(neighbors[neighbor]), name + ": neighbor field "
+                        + neighbor);
+            }
+        }
+    }
+
+    /**
+     * Checks that a field class which looks up its neighbors in the neighbor
+     * table without providing its steps fails with an exception instead of
+     * building the table from itself.
+     */
+    private static void cyclic() {
+        AbstractMap map = new TopologyMap(3, 3, CyclicField.class, true);
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                map.getField(1, 1).getNeighbor(0);
+                throw new IllegalStateException("Neighbor table built from itself");
+            } catch (IllegalStateException e) {
+                Checks.check(e.getMessage().contains("getDeltaX"), "Unexpected exception " + e);
+            }
+        }
+
+        System.out.println("A table built from itself fails as expected");
+    }
+
+    /**
+     * Counts the neighbors the way the map did before its bounds were checked
+     * explicitly: every neighbor off the map throws and catches an exception.
+     *
+     * @param map the map
+     * @param fields the fields as [width][height] array
+     * @param passes the number of passes
+     * @param thrown true to throw a new exception with its stack trace
+     * instead of the implicit one of the array access
+     * @return the time in nanoseconds
+     */
+    private static long exceptions(AbstractMap map, AbstractField[][] fields, int passes, boolean thrown) {
+        long neighbors = 0, time = System.nanoTime();
+        int x, y;
+
+        for (int pass = 0; pass < passes; pass++) {
+            for (int index = 0; index < map.getSize(); index++) {
+                x = map.getX(index);
+                y = map.getY(index);
+
+                for (int direction = 0; direction < DELTA_X.length; direction++) {
+                    try {
+                        if (thrown) {
+                            checkRange(fields, x + DELTA_X[direction], y + DELTA_Y[direction]);
+                        }
+
+                        if (fields[x + DELTA_X[direction]][y + DELTA_Y[direction]] != null) {
+                            neighbors++;
+                        }
+                    } catch (ArrayIndexOutOfBoundsException e) {
+                        // off the map
+                    }
+                }
+            }
+        }
+
+        return check(neighbors, System.nanoTime() - time, map, passes);
+    }
+
+    /**
+     * Gets the neighbor the way every field looked it up before there were
+     * neighbor tables: by the coordinates of the field and a switch over the
+     * directions of its topology, null off the map.
+     *
+     * @param map the map
+     * @param field the field
+     * @param direction the direction
+     * @return the index of the neighbor or {@link NeighborTable#EDGE}
+     */
+    private static int getNeighborByCoordinates(AbstractMap map, AbstractField field, int direction) {
+        int x = field.getPosition().getX(), y = field.getPosition().getY(), x2 = x, y2 = y;
+
+        if (field instanceof HexField || field instanceof LegacyHexField) {
+            switch (direction) {
+                case 0:
+                    y2 = y + 1;
+                    break;
+                case 1:
+                    y2 = x % 2 == 0 ? y : y + 1;
+                    x2 = x + 1;
+                    break;
+                case 2:
+                    y2 = x % 2 == 0 ? y - 1 : y;
+                    x2 = x + 1;
+                    break;
+                case 3:
+                    y2 = y - 1;
+                    break;
+                case 4:
+                    y2 = x % 2 == 0 ? y - 1 : y;
+                    x2 = x - 1;
+                    break;
+                case 5:
+                    y2 = x % 2 == 0 ? y : y + 1;
+                    x2 = x - 1;
+                    break;
+            }
+        } else if (field instanceof OctagonField) {
+            x2 = x + new int[]{0, 1, 1, 1, 0, -1, -1, -1}[direction];
+            y2 = y + new int[]{1, 1, 0, -1, -1, -1, 0, 1}[direction];
+        } else {
+            x2 = x + DELTA_X[direction];
+            y2 = y + DELTA_Y[direction];
+        }
+
+        return x2 < 0 || x2 >= map.getWidth() || y2 < 0 || y2 >= map.getHeight() ? NeighborTable.EDGE
+                : y2 * map.getWidth() + x2;
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        int side = (int) Math.sqrt(SIZE);
+        int maps = 0;
+
+        benchmark(new SquareGameMap(side, side));
+        benchmark(new SquareGameMap(50, SIZE / 50));
+        benchmark(new SquareGameMap(2, SIZE / 2));
+
+        for (Class<? extends AbstractField> fieldClass : Arrays.asList(SquareField.class, HexField.class,
+                OctagonField.class, LegacyHexField.class)) {
+            for (int[] size : CHECKED_SIZES) {
+                compare(new TopologyMap(size[0], size[1], fieldClass, true));
+                compare(new TopologyMap(size[0], size[1], fieldClass, false));
+                maps += 2;
+            }
+        }
+
+        System.out.println("The neighbors of " + maps + " maps match the lookup by coordinates");
+        cyclic();
+    }
+
+    /**
+     * Counts the neighbors with the neighbor table.
+     *
+     * @param map the map
+     * @return the time in nanoseconds
+     */
+    private static long neighborTable(AbstractMap map) {
+        long neighbors = 0, time = System.nanoTime();
+        AbstractField field;
+
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int index = 0; index < map.getSize(); index++) {
+                field = map.getField(index);
+
+                for (int direction = 0; direction < DELTA_X.length; direction++) {
+                    if (field.getNeighbor(direction) != null) {
+                        neighbors++;
+                    }
+                }
+            }
+        }
+
+        return check(neighbors, System.nanoTime() - time, map, PASSES);
+    }
+
+    /**
+     * Prints a measurement.
+     *
+     * @param name the name of the lookup
+     * @param time the time in nanoseconds
+     * @param probes the number of neighbor probes
+     */
+    private static void print(String name, long time, long probes) {
+        System.out.println(String.format("  %-28s %8d ms %8.2f ns/probe",
+                name, time / 1000000, (double) time / probes));
+    }
+
+    /**
+     * Counts the neighbors with the range checked lookup by coordinates.
+     *
+     * @param map the map
+     * @param passes the number of passes
+     * @return the time in nanoseconds
+     */
+    private static long rangeChecks(AbstractMap map, int passes) {
+        long neighbors = 0, time = System.nanoTime();
+        int x, y;
+
+        for (int pass = 0; pass < passes; pass++) {
+            for (int index = 0; index < map.getSize(); index++) {
+                x = map.getX(index);
+                y = map.getY(index);
+
+                for (int direction = 0; direction < DELTA_X.length; direction++) {
+                    if (map.getField(x + DELTA_X[direction], y + DELTA_Y[direction]) != null) {
+                        neighbors++;
+                    }
+                }
+            }
+        }
+
+        return check(neighbors, System.nanoTime() - time, map, passes);
+    }
+
+    /**
+     * The Class CyclicField looks up its neighbors in the neighbor table, but
+     * leaves the steps the table is built from to the default, which measures
+     * them with the neighbors.
+     */
+    public static class CyclicField extends AbstractField {
+
+        /**
+         * The Constant serialVersionUID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see abstractgame.map.AbstractField#getDirections()
+         */
+        @Override
+        public int getDirections() {
+            return 4;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see abstractgame.map.AbstractField#getDistance(abstractgame.map.AbstractField)
+         */
+        @Override
+        public double getDistance(AbstractField abstractField) {
+            return 0;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see abstractgame.map.AbstractField#getNeighbor(int)
+         */
+        @Override
+        public AbstractField getNeighbor(int direction) {
+            return this.getTableNeighbor(direction);
+        }
+    }
+
+    /**
+     * The Class LegacyHexField is a hex field written before there were
+     * neighbor tables: it looks up its neighbors by its coordinates and
+     * measures distances between fields only, the table takes its steps from
+     * these neighbors.
+     */
+    public static class LegacyHexField extends AbstractField {
+
+        /**
+         * The Constant serialVersionUID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see abstractgame.map.AbstractField#getDirections()
+         */
+        @Override
+        public int getDirections() {
+            return 6;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see abstractgame.map.AbstractField#getDistance(abstractgame.map.AbstractField)
+         */
+        @Override
+        public double getDistance(AbstractField abstractField) {
+            return Math.max(Math.abs(this.getPosition().getX() - abstractField.getPosition().getX()),
+                    Math.abs(this.getPosition().getY() - abstractField.getPosition().getY()));
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see abstractgame.map.AbstractField#getNeighbor(int)
+         */
+        @Override
+        public AbstractField getNeighbor(int direction) {
+            int neighbor = getNeighborByCoordinates(this.getMap(), this, direction);
+
+            return neighbor == NeighborTable.EDGE ? null : this.getMap().getField(neighbor);
+        }
+    }
+
+    /**
+     * The Class TopologyMap is a map filled with fields of one topology, whose
+     * neighbor tables store the edges of the border positions or compute
+     * them.
+     */
+    private static class TopologyMap extends AbstractMap {
+
+        /**
+         * The Constant serialVersionUID.
+         */
+        private static final long serialVersionUID = -3020764418125794522L;
+
+        /**
+         * The field class.
+         */
+        private final Class<? extends AbstractField> fieldClass;
+
+        /**
+         * True if the neighbor tables store the edges.
+         */
+        private final boolean stored;
+
+        /**
+         * Instantiates a new topology map.
+         *
+         * @param width the width
+         * @param height the height
+         * @param fieldClass the field class
+         * @param stored true if the neighbor tables store the edges
+         */
+        TopologyMap(int width, int height, Class<? extends AbstractField> fieldClass, boolean stored) {
+            super(width, height);
+            this.fieldClass = fieldClass;
+            this.stored = stored;
+
+            try {
+                for (int x = 0; x < width; x++) {
+                    for (int y = 0; y < height; y++) {
+                        this.setField(x, y, fieldClass.getConstructor().newInstance());
+                    }
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see abstractgame.map.AbstractMap#storesNeighbors()
+         */
+        @Override
+        protected boolean storesNeighbors() {
+            return this.stored;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return this.fieldClass.getSimpleName() + " map " + this.getWidth() + "x" + this.getHeight()
+                    + (this.stored ? " (stored edges)" : " (computed edges)");
+        }
+    }
+}
@@ -0,0 +1,456 @@
+/* 
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.pathfinding.ALTPathfinder;
+import abstractgame.pathfinding.AStarPathfinder;
+import abstractgame.pathfinding.AbstractPathfinder;
+import abstractgame.pathfinding.BatchPathfinder;
+import abstractgame.pathfinding.DijkstraPathfinder;
+import abstractgame.pathfinding.FlowFieldPathfinder;
+import abstractgame.pathfinding.HierarchicalPathfinder;
+import abstractgame.pathfinding.IncrementalPathfinder;
+import abstractgame.pathfinding.JumpPointPathfinder;
+import abstractgame.pathfinding.JumpPointPlusPathfinder;
+import abstractgame.pathfinding.Path;
+import abstractgame.pathfinding.PathRequest;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class TestPathfinders compares the pathfinders on large random maps of
+ * every topology: the number of expanded fields, the time and the cost of the
+ * paths they find.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestPathfinders {
+
+    /**
+     * The number of units searching their paths in one batch.
+     */
+    private static final int BATCH_UNITS = 200;
+
+    /**
+     * The number of units converging on the same target.
+     */
+    private static final int CONVERGING_UNITS = 20;
+
+    /**
+     * The size of the large maps.
+     */
+    private static final int LARGE_SIZE = 600;
+
+    /**
+     * The number of fields changing before every replanning.
+     */
+    private static final int REPLAN_CHANGES = 5;
+
+    /**
+     * The number of searches per map.
+     */
+    private static final int SEARCHES = 200;
+
+    /**
+     * The size of the maps.
+     */
+    private static final int SIZE = 300;
+
+    /**
+     * Searches the paths of many units of one player, one after another with
+     * A* and at once with a {@link BatchPathfinder}.
+     *
+     * @param name the name of the map
+     * @param map the map
+     */
+    private static void batch(String name, AbstractMap map) {
+        SimpleGame game = new SimpleGame(map);
+        SimplePlayer player = new SimplePlayer("Player", game);
+        List<PathRequest> requests = new ArrayList<PathRequest>(BATCH_UNITS);
+        AStarPathfinder pathfinder = new AStarPathfinder();
+        BatchPathfinder batchPathfinder = new BatchPathfinder();
+        Random random = new Random(42);
+        long expandedNodes = 0, time;
+        int mismatches = 0;
+        AbstractUnit unit;
+        List<Path> paths;
+        Path path;
+
+        for (int i = 0; i < BATCH_UNITS; i++) {
+            unit = new SimpleUnit(game, player);
+            unit.setPosition(randomField(map, unit, random));
+            requests.add(new PathRequest(unit, unit.getPosition(), randomField(map, unit, random),
+                    Double.POSITIVE_INFINITY));
+        }
+
+        System.out.println(name + " " + map.getWidth() + "x" + map.getHeight() + ", "
+                + BATCH_UNITS + " units searching at once on " + batchPathfinder.getPool().getParallelism()
+                + " threads:");
+
+        // warm up
+        batchPathfinder.findPaths(requests);
+
+        time = System.nanoTime();
+
+        for (PathRequest request : requests) {
+            pathfinder.findPath(request.getUnit(), request.getStart(), request.getTarget(), request.getMaxCost());
+            expandedNodes += pathfinder.getExpandedNodes();
+        }
+
+        time = System.nanoTime() - time;
+        System.out.println(String.format("  %-24s %12d expanded %8d ms",
+                pathfinder.getClass().getSimpleName(), expandedNodes, time / 1000000));
+
+        time = System.nanoTime();
+        paths = batchPathfinder.findPaths(requests);
+        time = System.nanoTime() - time;
+
+        for (int i = 0; i < requests.size(); i++) {
+            path = pathfinder.findPath(requests.get(i).getUnit(), requests.get(i).getStart(),
+                    requests.get(i).getTarget(), Double.POSITIVE_INFINITY);
+
+            if (Math.abs(path.getTotalCost() - paths.get(i).getTotalCost()) > 1e-9) {
+                mismatches++;
+            }
+        }
+
+        System.out.println(String.format("  %-24s %12d expanded %8d ms %4d cost mismatches",
+                batchPathfinder.getClass().getSimpleName(), batchPathfinder.getExpandedNodes(),
+                time / 1000000, mismatches));
+        System.out.println();
+    }
+
+    /**
+     * Runs the searches on the map with every pathfinder.
+     *
+     * @param name the name of the map
+     * @param map the map
+     * @param searches the number of searches
+     * @param pathfinders the pathfinders
+     */
+    private static void benchmark(String name, AbstractMap map, int searches, AbstractPathfinder... pathfinders) {
+        SimpleGame game = new SimpleGame(map);
+        AbstractUnit unit = new SimpleUnit(game, new SimplePlayer("Player", game));
+        AbstractField[] starts = new AbstractField[searches];
+        AbstractField[] targets = new AbstractField[searches];
+        double[] costs = new double[searches];
+        Random random = new Random(42);
+        long expandedNodes, time;
+        double excess;
+        int mismatches;
+        Path path;
+
+        for (int search = 0; search < searches; search++) {
+            starts[search] = randomField(map, unit, random);
+            targets[search] = randomField(map, unit, random);
+        }
+
+        System.out.println(name + " " + map.getWidth() + "x" + map.getHeight() + ", "
+                + searches + " searches:");
+
+        for (int i = 0; i < pathfinders.length; i++) {
+            // warm up
+            pathfinders[i].findPath(unit, starts[0], targets[0], Double.POSITIVE_INFINITY);
+
+            expandedNodes = 0;
+            excess = 0;
+            mismatches = 0;
+            time = System.nanoTime();
+
+            for (int search = 0; search < searches; search++) {
+                path = pathfinders[i].findPath(unit, starts[search], targets[search], Double.POSITIVE_INFINITY);
+                expandedNodes += pathfinders[i].getExpandedNodes();
+
+                if (i == 0) {
+                    costs[search] = path.getTotalCost();
+                } else if (Math.abs(costs[search] - path.getTotalCost()) > 1e-9
+                        && costs[search] != path.getTotalCost()) {
+                    mismatches++;
+
+                    if (costs[search] > 0 && path.getTotalCost() != Double.POSITIVE_INFINITY) {
+                        excess += path.getTotalCost() / costs[search] - 1;
+                    }
+                }
+            }
+
+            time = System.nanoTime() - time;
+            System.out.println(String.format("  %-24s %12d expanded %10.1f per search %8d ms %4d cost mismatches (%+.2f%% cost)",
+                    pathfinders[i].getClass().getSimpleName(), expandedNodes,
+                    expandedNodes / (double) searches, time / 1000000, mismatches, 100 * excess / searches));
+        }
+
+        System.out.println();
+    }
+
+    /**
+     * Lets many units of one player walk to the same target one field at a
+     * time with every pathfinder, every unit searches again before every
+     * step.
+     *
+     * @param name the name of the map
+     * @param map the map
+     * @param pathfinders the pathfinders, each shared by all units
+     */
+    private static void converge(String name, AbstractMap map, AbstractPathfinder... pathfinders) {
+        SimpleGame game = new SimpleGame(map);
+        SimplePlayer player = new SimplePlayer("Player", game);
+        AbstractUnit[] units = new AbstractUnit[CONVERGING_UNITS];
+        AbstractField[] starts = new AbstractField[CONVERGING_UNITS];
+        Random random = new Random(42);
+        AbstractField target;
+        long expandedNodes, time;
+        int searches;
+        boolean moving;
+        Path path;
+
+        for (int i = 0; i < units.length; i++) {
+            units[i] = new SimpleUnit(game, player);
+            starts[i] = randomField(map, units[i], random);
+        }
+
+        target = randomField(map, units[0], random);
+        System.out.println(name + " " + map.getWidth() + "x" + map.getHeight() + ", "
+                + CONVERGING_UNITS + " units walking to the same target:");
+
+        for (AbstractPathfinder pathfinder : pathfinders) {
+            for (int i = 0; i < units.length; i++) {
+                units[i].setPathfinder(pathfinder);
+                units[i].setPosition(starts[i]);
+            }
+
+            expandedNodes = 0;
+            searches = 0;
+            moving = true;
+            time = System.nanoTime();
+
+            while (moving) {
+                moving = false;
+
+                for (AbstractUnit unit : units) {
+                    if (unit.getPosition() != target) {
+                        path = pathfinder.findPath(unit, unit.getPosition(), target, Double.POSITIVE_INFINITY);
+                        expandedNodes += pathfinder.getExpandedNodes();
+                        searches++;
+
+                        if (path.size() > 1 && unit.setPosition(path.getField(1))) {
+                            moving = true;
+                        }
+                    }
+                }
+            }
+
+            time = System.nanoTime() - time;
+            System.out.println(String.format("  %-24s %12d expanded %10.1f per search %8d ms",
+                    pathfinder.getClass().getSimpleName(), expandedNodes,
+                    expandedNodes / (double) searches, time / 1000000));
+        }
+
+        System.out.println();
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        benchmark("HexGameMap", randomTerrain(new HexGameMap(SIZE, SIZE)), SEARCHES,
+                new DijkstraPathfinder(), new AStarPathfinder(), new ALTPathfinder());
+        benchmark("SquareGameMap", randomTerrain(new SquareGameMap(SIZE, SIZE)), SEARCHES,
+                new DijkstraPathfinder(), new AStarPathfinder(),
+                new JumpPointPathfinder(), new JumpPointPlusPathfinder());
+        benchmark("SquareGameMap (regions)", randomRegions(new SquareGameMap(SIZE, SIZE)), SEARCHES,
+                new DijkstraPathfinder(), new AStarPathfinder(), new ALTPathfinder(),
+                new JumpPointPathfinder(), new JumpPointPlusPathfinder());
+        benchmark("OctagonGameMap", randomTerrain(new OctagonGameMap(SIZE, SIZE)), SEARCHES,
+                new DijkstraPathfinder(), new AStarPathfinder(),
+                new JumpPointPathfinder(), new JumpPointPlusPathfinder());
+        benchmark("OctagonGameMap (regions)", randomRegions(new OctagonGameMap(SIZE, SIZE)), SEARCHES,
+                new DijkstraPathfinder(), new AStarPathfinder(), new ALTPathfinder(),
+                new JumpPointPathfinder(), new JumpPointPlusPathfinder());
+        benchmark("HexGameMap", randomTerrain(new HexGameMap(LARGE_SIZE, LARGE_SIZE)), SEARCHES / 10,
+                new AStarPathfinder(), new HierarchicalPathfinder());
+        replan("HexGameMap", randomTerrain(new HexGameMap(SIZE, SIZE)),
+                new DijkstraPathfinder(), new AStarPathfinder(), new IncrementalPathfinder());
+        replan("SquareGameMap", randomTerrain(new SquareGameMap(SIZE, SIZE)),
+                new DijkstraPathfinder(), new AStarPathfinder(), new IncrementalPathfinder());
+        converge("HexGameMap", randomTerrain(new HexGameMap(SIZE / 3, SIZE / 3)),
+                new DijkstraPathfinder(), new AStarPathfinder(), new FlowFieldPathfinder());
+        batch("HexGameMap", randomTerrain(new HexGameMap(SIZE, SIZE)));
+    }
+
+    /**
+     * Gets a random field the unit can access.
+     *
+     * @param map the map
+     * @param unit the unit
+     * @param random the random
+     * @return the field
+     */
+    private static AbstractField randomField(AbstractMap map, AbstractUnit unit, Random random) {
+        AbstractField field;
+
+        do {
+            field = map.getField(random.nextInt(map.getSize()));
+        } while (!unit.canAccess(field));
+
+        return field;
+    }
+
+    /**
+     * Lets a unit walk to a distant target one field at a time with every
+     * pathfinder. Before every step a few random fields change their terrain
+     * and the pathfinder has to find the path again.
+     *
+     * @param name the name of the map
+     * @param map the map
+     * @param pathfinders the pathfinders
+     */
+    private static void replan(String name, AbstractMap map, AbstractPathfinder... pathfinders) {
+        SimpleGame game = new SimpleGame(map);
+        AbstractUnit unit = new SimpleUnit(game, new SimplePlayer("Player", game));
+        SimpleTerrain[] terrains = SimpleTerrain.values();
+        Enum<?>[] initialTerrains = new Enum<?>[map.getSize()];
+        Random random = new Random(42);
+        AbstractField start = randomField(map, unit, random), target = randomField(map, unit, random);
+        double[] costs = new double[map.getSize()];
+        int[] walk = new int[map.getSize()];
+        long expandedNodes, time;
+        int mismatches, steps = 0;
+        Path path;
+
+        for (int index = 0; index < map.getSize(); index++) {
+            initialTerrains[index] = map.getField(index).getTerrain();
+        }
+
+        System.out.println(name + " " + map.getWidth() + "x" + map.getHeight() + ", replanning after "
+                + REPLAN_CHANGES + " changes per step:");
+
+        for (int i = 0; i < pathfinders.length; i++) {
+            for (int index = 0; index < map.getSize(); index++) {
+                map.getField(index).setTerrain(initialTerrains[index]);
+            }
+
+            unit.setPosition(start);
+            random = new Random(43);
+            expandedNodes = 0;
+            mismatches = 0;
+            time = System.nanoTime();
+
+            // every pathfinder sees the same changes, the unit follows the
+            // paths of the first one
+            for (int step = 0; step < (i == 0 ? map.getSize() : steps); step++) {
+                for (int change = 0; change < REPLAN_CHANGES; change++) {
+                    map.getField(random.nextInt(map.getSize())).setTerrain(terrains[random.nextInt(terrains.length)]);
+                }
+
+                path = pathfinders[i].findPath(unit, unit.getPosition(), target, Double.POSITIVE_INFINITY);
+                expandedNodes += pathfinders[i].getExpandedNodes();
+
+                if (i == 0) {
+                    costs[step] = path.getTotalCost();
+                    walk[step] = path.size() < 2 ? AbstractMap.NO_INDEX : path.getIndex(1);
+                    steps++;
+                } else if (Math.abs(costs[step] - path.getTotalCost()) > 1e-9
+                        && costs[step] != path.getTotalCost()) {
+                    mismatches++;
+                }
+
+                if (walk[step] == AbstractMap.NO_INDEX) {
+                    break;
+                }
+
+                unit.setPosition(map.getField(walk[step]));
+            }
+
+            time = System.nanoTime() - time;
+            System.out.println(String.format("  %-24s %12d expanded %10.1f per search %8d ms %4d cost mismatches",
+                    pathfinders[i].getClass().getSimpleName(), expandedNodes,
+                    expandedNodes / (double) steps, time / 1000000, mismatches));
+        }
+
+        System.out.println();
+    }
+
+    /**
+     * Covers the map with plains and places random rectangular regions of
+     * hills, forests and water on it, so most fields are surrounded by fields
+     * of the same terrain.
+     *
+     * @param map the map
+     * @return the map
+     */
+    static AbstractMap randomRegions(AbstractMap map) {
+        Random random = new Random(7);
+        SimpleTerrain[] terrains = {SimpleTerrain.HILL, SimpleTerrain.FOREST, SimpleTerrain.WATER};
+        SimpleTerrain terrain;
+        int left, bottom, width, height;
+
+        for (int index = 0; index < map.getSize(); index++) {
+            map.getField(index).setTerrain(SimpleTerrain.PLAIN);
+        }
+
+        for (int region = 0; region < map.getSize() / 500; region++) {
+            terrain = terrains[random.nextInt(terrains.length)];
+            left = random.nextInt(map.getWidth());
+            bottom = random.nextInt(map.getHeight());
+            width = 3 + random.nextInt(25);
+            height = 3 + random.nextInt(25);
+
+            for (int y = bottom; y < Math.min(map.getHeight(), bottom + height); y++) {
+                for (int x = left; x < Math.min(map.getWidth(), left + width); x++) {
+                    map.getField(x, y).setTerrain(terrain);
+                }
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * Sets a random terrain on every field: half plains, the rest hills,
+     * forests and water.
+     *
+     * @param map the map
+     * @return the map
+     */
+    static AbstractMap randomTerrain(AbstractMap map) {
+        Random random = new Random(7);
+        int value;
+
+        for (int index = 0; index < map.getSize(); index++) {
+            value = random.nextInt(10);
+            map.getField(index).setTerrain(value < 5 ? SimpleTerrain.PLAIN
+                    : value < 7 ? SimpleTerrain.HILL
+                    : value < 8 ? SimpleTerrain.FOREST : SimpleTerrain.WATER);
+        }
+
+        return map;
+    }
+
+    /**
+     * Instantiates a new test pathfinders.
+     */
+    public TestPathfinders() {
+        super();
+    }
+}
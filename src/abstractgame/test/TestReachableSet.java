@@ -0,0 +1,307 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.pathfinding.MovementClass;
+import abstractgame.pathfinding.Path;
+import abstractgame.pathfinding.ReachableSet;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class TestReachableSet checks the movement range query
+ * ({@link AbstractUnit#getReachableFields()}) against a plain Dijkstra search
+ * over all fields on random maps of every topology, with units of another
+ * player blocking fields, and checks that a cached range is computed again
+ * when the map, the unit's position or its movement points change. A unit
+ * with its own movement class checks that the cost graph honors its costs.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestReachableSet {
+
+    /**
+     * The number of blocking units of the other player.
+     */
+    private static final int BLOCKERS = 40;
+
+    /**
+     * The movement points of the unit.
+     */
+    private static final double MOVEMENT_POINTS = 12;
+
+    /**
+     * The size of the maps.
+     */
+    private static final int SIZE = 40;
+
+    /**
+     * Checks the reachable fields of the unit against a full Dijkstra search.
+     *
+     * @param map the map
+     * @param unit the unit
+     */
+    private static void compare(AbstractMap map, AbstractUnit unit) {
+        ReachableSet reachableSet = unit.getReachableFields();
+        double[] costs = dijkstra(map, unit, unit.getPosition());
+        double maxCost = unit.getCurrentMovementPoints();
+        int reachable = 0;
+        Path path;
+
+        for (int index = 0; index < map.getSize(); index++) {
+            Checks.check(reachableSet.contains(index) == (costs[index] <= maxCost),
+                    "Field " + map.getField(index) + " reachable " + reachableSet.contains(index)
+                    + ", cost " + costs[index]);
+
+            if (costs[index] <= maxCost) {
+                reachable++;
+                Checks.check(Math.abs(reachableSet.getCost(index) - costs[index]) < 1e-9,
+                        "Cost of " + map.getField(index) + " " + reachableSet.getCost(index) + " instead of " + costs[index]);
+                path = reachableSet.getPath(map.getField(index));
+                Checks.check(path.getField(0) == unit.getPosition()
+                        && path.getField(path.size() - 1) == map.getField(index)
+                        && Math.abs(path.getTotalCost() - costs[index]) < 1e-9, "Path to " + map.getField(index));
+
+                for (int step = 1; step < path.size(); step++) {
+                    Checks.check(path.getField(step - 1).getDirectionForNeighbor(path.getField(step))
+                            != Integer.MIN_VALUE, "Path to " + map.getField(index) + " isn't connected");
+                }
+            }
+        }
+
+        Checks.check(reachableSet.size() == reachable, "Size " + reachableSet.size() + " instead of " + reachable);
+    }
+
+    /**
+     * Computes the cost from the start to every field with a plain Dijkstra
+     * search which takes the field with the lowest cost from all fields.
+     *
+     * @param map the map
+     * @param unit the unit
+     * @param start the start
+     * @return the costs
+     */
+    private static double[] dijkstra(AbstractMap map, AbstractUnit unit, AbstractField start) {
+        double[] costs = new double[map.getSize()];
+        boolean[] done = new boolean[map.getSize()];
+        AbstractField field, neighbor;
+        int next;
+
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        costs[start.getIndex()] = 0;
+
+        while (true) {
+            next = AbstractMap.NO_INDEX;
+
+            for (int index = 0; index < map.getSize(); index++) {
+                if (!done[index] && costs[index] != Double.POSITIVE_INFINITY
+                        && (next == AbstractMap.NO_INDEX || costs[index] < costs[next])) {
+                    next = index;
+                }
+            }
+
+            if (next == AbstractMap.NO_INDEX) {
+                break;
+            }
+
+            done[next] = true;
+            field = map.getField(next);
+
+            for (int direction = 0; direction < field.getDirections(); direction++) {
+                neighbor = field.getNeighbor(direction);
+
+                if (neighbor != null) {
+                    costs[neighbor.getIndex()] = Math.min(costs[neighbor.getIndex()],
+                            costs[next] + unit.getEdgeWeight(neighbor) * field.getDistance(neighbor));
+                }
+            }
+        }
+
+        return costs;
+    }
+
+    /**
+     * Changes the map, the unit's position and its movement points and checks
+     * the reachable fields after every change.
+     *
+     * @param map the map
+     * @param unit the unit
+     * @param other a unit of another player
+     * @param random the random
+     */
+    private static void invalidate(AbstractMap map, AbstractUnit unit, AbstractUnit other, Random random) {
+        ReachableSet reachableSet = unit.getReachableFields();
+        AbstractField field = reachableSet.getFieldAt(reachableSet.size() - 1);
+
+        Checks.check(unit.getReachableFields() == reachableSet, "The unchanged range has been computed again");
+
+        field.setTerrain(field.getTerrain() == SimpleTerrain.WATER ? SimpleTerrain.PLAIN : SimpleTerrain.WATER);
+        Checks.check(unit.getReachableFields() != reachableSet, "The range ignores a changed terrain");
+        compare(map, unit);
+
+        reachableSet = unit.getReachableFields();
+        other.setPosition(reachableSet.getFieldAt(reachableSet.size() / 2) == unit.getPosition()
+                ? reachableSet.getFieldAt(0) : reachableSet.getFieldAt(reachableSet.size() / 2));
+        Checks.check(unit.getReachableFields() != reachableSet, "The range ignores a blocking unit");
+        compare(map, unit);
+
+        reachableSet = unit.getReachableFields();
+        unit.setPosition(randomField(map, unit, random));
+        Checks.check(unit.getReachableFields() != reachableSet, "The range ignores the unit's move");
+        compare(map, unit);
+
+        reachableSet = unit.getReachableFields();
+        unit.setCurrentMovementPoints(MOVEMENT_POINTS / 2);
+        Checks.check(unit.getReachableFields() != reachableSet, "The range ignores the movement points");
+        compare(map, unit);
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        test("HexGameMap", TestPathfinders.randomTerrain(new HexGameMap(SIZE, SIZE)));
+        test("SquareGameMap", TestPathfinders.randomTerrain(new SquareGameMap(SIZE, SIZE)));
+        test("OctagonGameMap", TestPathfinders.randomTerrain(new OctagonGameMap(SIZE, SIZE)));
+    }
+
+    /**
+     * Gets a random field the unit can enter.
+     *
+     * @param map the map
+     * @param unit the unit
+     * @param random the random
+     * @return the field
+     */
+    private static AbstractField randomField(AbstractMap map, AbstractUnit unit, Random random) {
+        AbstractField field;
+
+        do {
+            field = map.getField(random.nextInt(map.getSize()));
+        } while (!unit.canAccess(field) || !field.getUnits().isEmpty());
+
+        return field;
+    }
+
+    /**
+     * Tests the movement range of a unit on the map.
+     *
+     * @param name the name of the map
+     * @param map the map
+     */
+    private static void test(String name, AbstractMap map) {
+        SimpleGame game = new SimpleGame(map);
+        SimplePlayer player = new SimplePlayer("Player", game), enemy = new SimplePlayer("Enemy", game);
+        AbstractUnit unit = new SimpleUnit(game, player), blocker;
+        Random random = new Random(42);
+
+        for (int i = 0; i < BLOCKERS; i++) {
+            blocker = new SimpleUnit(game, enemy);
+            blocker.setPosition(randomField(map, blocker, random));
+        }
+
+        unit.setMaxMovementPoints(MOVEMENT_POINTS);
+        unit.setCurrentMovementPoints(MOVEMENT_POINTS);
+        unit.setPosition(randomField(map, unit, random));
+        compare(map, unit);
+        invalidate(map, unit, new SimpleUnit(game, enemy), random);
+
+        // the graph of a unit with its own movement class honors its costs
+        unit = new RoadUnit(game, player);
+        unit.setMaxMovementPoints(MOVEMENT_POINTS);
+        unit.setCurrentMovementPoints(MOVEMENT_POINTS);
+        unit.setPosition(randomField(map, unit, random));
+        compare(map, unit);
+        System.out.println(name + " " + map.getWidth() + "x" + map.getHeight() + ": ok");
+    }
+
+    /**
+     * The Class RoadMovement is the movement class of a {@link RoadUnit}:
+     * hills are as cheap as plains, and every fourth column is a road which
+     * halves the cost.
+     */
+    private static class RoadMovement extends MovementClass {
+
+        /**
+         * Instantiates a new road movement.
+         *
+         * @param unitClass the unit class
+         * @param terrainModifiers the terrain modifiers
+         */
+        RoadMovement(Class<? extends AbstractUnit> unitClass, Map<Enum<?>, Double> terrainModifiers) {
+            super(unitClass, terrainModifiers);
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see abstractgame.pathfinding.MovementClass#getCost(abstractgame.map.AbstractMap, int)
+         */
+        @Override
+        public double getCost(AbstractMap map, int index) {
+            double cost = map.getTerrain(index) == SimpleTerrain.HILL ? 1 : super.getCost(map, index);
+
+            return map.getX(index) % 4 == 0 ? cost / 2 : cost;
+        }
+    }
+
+    /**
+     * The Class RoadUnit is a simple unit which customizes its movement costs
+     * with its own movement class.
+     */
+    private static class RoadUnit extends SimpleUnit {
+
+        /**
+         * The Constant serialVersionUID.
+         */
+        private static final long serialVersionUID = 2816045279150283645L;
+
+        /**
+         * Instantiates a new road unit.
+         *
+         * @param game the game
+         * @param player the player
+         */
+        RoadUnit(SimpleGame game, SimplePlayer player) {
+            super(game, player);
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see abstractgame.unit.AbstractUnit#createMovementClass()
+         */
+        @Override
+        protected MovementClass createMovementClass() {
+            return new RoadMovement(this.getClass(), this.getAccessibleTerrains());
+        }
+    }
+
+    /**
+     * Instantiates a new test reachable set.
+     */
+    public TestReachableSet() {
+        super();
+    }
+}
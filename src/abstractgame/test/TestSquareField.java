@@ -38,8 +38,8 @@ public class TestSquareField {
         testField = map.getField(6, 4);
         testField1 = new SquareField();
 
-        width = map.getFields().length;
-        height = map.getFields()[0].length;
+        width = map.getWidth();
+        height = map.getHeight();
         System.out.println("Testkarte 9x10:");
         for (int y = height - 1; y >= 0; y--) {
             for (int x = 0; x < width; x++) {
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import abstractgame.events.EventBus;
+import abstractgame.events.EventType;
+import abstractgame.events.Subscription;
+import abstractgame.events.SubscriptionScope;
+import abstractgame.events.fieldevents.FieldTerrainChangedEvent;
+import abstractgame.interfaces.FieldTerrainChangedListener;
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.view.SquareView;
+
+/**
+ * The Class TestSubscriptionLifetime checks how subscriptions end: a weak
+ * subscription is cancelled once its listener has been garbage collected,
+ * closing a {@link SubscriptionScope} cancels every subscription added to it,
+ * including the registrations on a field, subscribing a listener to a field
+ * again yields an inactive subscription, and a field view gives up its
+ * registrations when the field gets another view.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestSubscriptionLifetime {
+
+    /**
+     * The max number of garbage collections waiting for a dropped listener.
+     */
+    private static final int COLLECTIONS = 100;
+
+    /**
+     * Changes the terrain of the field and checks which listeners received
+     * the event.
+     *
+     * @param field the field
+     * @param calls the names of the listeners in the order they are called
+     * @param message the message if other listeners received the event
+     * @param expected the expected names
+     */
+    private static void checkDelivery(AbstractField field, List<String> calls, String message, String... expected) {
+        calls.clear();
+        field.setTerrain(field.getTerrain() == SimpleTerrain.HILL ? SimpleTerrain.PLAIN : SimpleTerrain.HILL);
+        Checks.check(calls.equals(Arrays.asList(expected)), message + ": " + calls + " instead of "
+                + Arrays.asList(expected));
+    }
+
+    /**
+     * Adds a listener to a field twice.
+     *
+     * @param map the map
+     * @param calls the names of the called listeners
+     */
+    private static void duplicates(AbstractMap map, List<String> calls) {
+        AbstractField field = map.getField(3, 3);
+        Recorder listener = new Recorder("twice", calls);
+        Subscription<FieldTerrainChangedListener> first, second;
+
+        first = field.addTerrainChangedListener(listener);
+        second = field.addTerrainChangedListener(listener);
+        Checks.check(first.isActive() && !second.isActive(), "Subscription of a contained listener active");
+
+        // cancelling the duplicate keeps the registration of the first one
+        second.cancel();
+        checkDelivery(field, calls, "Event after cancelling the duplicate", "twice");
+        first.cancel();
+        checkDelivery(field, calls, "Event after cancelling the first subscription");
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        AbstractMap map = new SquareGameMap(5, 5);
+        List<String> calls = new ArrayList<String>();
+
+        weak(map, calls);
+        duplicates(map, calls);
+        scope(map, calls);
+        views(map, calls);
+        System.out.println("Subscriptions ended as expected");
+    }
+
+    /**
+     * Closes a scope holding every kind of subscription.
+     *
+     * @param map the map
+     * @param calls the names of the called listeners
+     */
+    private static void scope(AbstractMap map, List<String> calls) {
+        EventBus eventBus = map.getEventBus();
+        AbstractField field = map.getField(1, 1);
+        SubscriptionScope scope = new SubscriptionScope();
+        List<Subscription<FieldTerrainChangedListener>> subscriptions
+                = new ArrayList<Subscription<FieldTerrainChangedListener>>();
+        Recorder weakListener = new Recorder("weak", calls);
+        Subscription<FieldTerrainChangedListener> late;
+
+        subscriptions.add(scope.add(eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, new Recorder("all",
+                calls))));
+        subscriptions.add(scope.add(eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, new Recorder("source",
+                calls), field)));
+        subscriptions.add(scope.add(eventBus.subscribe(EventType.FIELD_TERRAIN_CHANGED, new Recorder("region",
+                calls), 0, 0, 2, 2)));
+        subscriptions.add(scope.add(eventBus.subscribeWeakly(EventType.FIELD_TERRAIN_CHANGED, weakListener)));
+        subscriptions.add(scope.add(field.addTerrainChangedListener(new Recorder("field", calls))));
+        checkDelivery(field, calls, "Event within the scope", "field", "all", "weak", "source", "region");
+        Checks.check(scope.size() == subscriptions.size(), scope.size() + " subscriptions in the scope");
+        Checks.check(subscriptions.get(3).getListener() == weakListener, "Weak listener not subscribed");
+
+        scope.close();
+
+        for (Subscription<FieldTerrainChangedListener> subscription : subscriptions) {
+            Checks.check(!subscription.isActive(), "Subscription of " + subscription.getListener() + " still active");
+        }
+
+        Checks.check(scope.isClosed() && scope.size() == 0, "Scope not closed");
+        checkDelivery(field, calls, "Event after closing the scope");
+
+        // a subscription added to a closed scope ends at once
+        late = scope.add(field.addTerrainChangedListener(new Recorder("late", calls)));
+        Checks.check(!late.isActive(), "Subscription added to a closed scope active");
+        checkDelivery(field, calls, "Event after adding to a closed scope");
+    }
+
+    /**
+     * Gives a field another view.
+     *
+     * @param map the map
+     * @param calls the names of the called listeners
+     */
+    private static void views(AbstractMap map, List<String> calls) {
+        AbstractField field = map.getField(2, 2);
+        RecordingView first = new RecordingView(field, "first view", calls), second;
+
+        checkDelivery(field, calls, "Event to the first view", "first view");
+
+        // the field detaches its first view, which has to give up its
+        // registrations although the field no longer refers to it
+        second = new RecordingView(field, "second view", calls);
+        Checks.check(first.getModel() == null && field.getView() == second, "First view still attached");
+        checkDelivery(field, calls, "Event after replacing the view", "second view");
+
+        second.setModel(null);
+        checkDelivery(field, calls, "Event after detaching the view");
+    }
+
+    /**
+     * Drops the listeners of weak subscriptions.
+     *
+     * @param map the map
+     * @param calls the names of the called listeners
+     */
+    private static void weak(AbstractMap map, List<String> calls) {
+        EventBus eventBus = map.getEventBus();
+        AbstractField field = map.getField(0, 0);
+        Recorder kept = new Recorder("kept", calls);
+        Subscription<FieldTerrainChangedListener> dropped, droppedSource, keptSubscription;
+        int collections = 0;
+
+        keptSubscription = eventBus.subscribeWeakly(EventType.FIELD_TERRAIN_CHANGED, kept);
+        dropped = eventBus.subscribeWeakly(EventType.FIELD_TERRAIN_CHANGED, new Recorder("dropped", calls));
+        droppedSource = eventBus.subscribeWeakly(EventType.FIELD_TERRAIN_CHANGED, new Recorder("dropped source",
+                calls), field);
+        Checks.check(dropped.isWeak() && droppedSource.isWeak(), "Subscriptions not weak");
+
+        // the collected listeners are only found when the bus is changed,
+        // removing another source is enough
+        while ((dropped.isActive() || droppedSource.isActive()) && collections < COLLECTIONS) {
+            System.gc();
+            collections++;
+
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+
+            eventBus.removeSource(map.getField(4, 4));
+        }
+
+        Checks.check(!dropped.isActive() && !droppedSource.isActive(),
+                "Subscriptions of dropped listeners still active after " + collections + " collections");
+        Checks.check(dropped.getListener() == null && droppedSource.getListener() == null,
+                "Dropped listeners reachable");
+        Checks.check(keptSubscription.isActive() && keptSubscription.getListener() == kept,
+                "Kept listener unsubscribed");
+        checkDelivery(field, calls, "Event after the collection", "kept");
+        keptSubscription.cancel();
+        checkDelivery(field, calls, "Event after cancelling");
+    }
+
+    /**
+     * Instantiates a new test subscription lifetime.
+     */
+    public TestSubscriptionLifetime() {
+        super();
+    }
+
+    /**
+     * The Class Recorder records its name when it receives an event.
+     */
+    private static final class Recorder implements FieldTerrainChangedListener {
+
+        /**
+         * The names of the called listeners.
+         */
+        private final List<String> calls;
+
+        /**
+         * The name.
+         */
+        private final String name;
+
+        /**
+         * Instantiates a new recorder.
+         *
+         * @param name the name
+         * @param calls the names of the called listeners
+         */
+        private Recorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.interfaces.FieldTerrainChangedListener#fieldTerrainChanged(
+	 * abstractgame.events.fieldevents.FieldTerrainChangedEvent)
+         */
+        @Override
+        public void fieldTerrainChanged(FieldTerrainChangedEvent event) {
+            this.calls.add(this.name);
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+    /**
+     * The Class RecordingView is a field view recording its name when the
+     * terrain of its model changes.
+     */
+    private static final class RecordingView extends SquareView {
+
+        /**
+         * The Constant serialVersionUID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The names of the called listeners.
+         */
+        private final transient List<String> calls;
+
+        /**
+         * The name.
+         */
+        private final String name;
+
+        /**
+         * Instantiates a new recording view.
+         *
+         * @param model the model
+         * @param name the name
+         * @param calls the names of the called listeners
+         */
+        private RecordingView(AbstractField model, String name, List<String> calls) {
+            super(model, 10);
+            this.name = name;
+            this.calls = calls;
+        }
+
+        /*
+	 * (non-Javadoc)
+	 *
+	 * @see abstractgame.view.AbstractFieldView#fieldTerrainChanged(
+	 * abstractgame.events.fieldevents.FieldTerrainChangedEvent)
+         */
+        @Override
+        public void fieldTerrainChanged(FieldTerrainChangedEvent event) {
+            this.calls.add(this.name);
+            super.fieldTerrainChanged(event);
+        }
+    }
+}
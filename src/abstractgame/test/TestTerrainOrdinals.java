@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import abstractgame.map.AbstractMap;
+import abstractgame.map.MappedTerrainLayer;
+import abstractgame.map.TerrainRegistry;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class TestTerrainOrdinals checks the {@link TerrainRegistry} ordinals
+ * the maps answer for the cost graphs with more than 255 terrains: the byte
+ * grid of a map without terrain layer is widened when a terrain with a larger
+ * ordinal is set, and a map with a two byte {@link MappedTerrainLayer}
+ * translates the layer's values, while the fields with a terrain of their
+ * own override the layer. The costs of a unit come from modifiers of such
+ * terrains.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestTerrainOrdinals {
+
+    /**
+     * The modifier of the accessible layer terrain.
+     */
+    private static final double MODIFIER = 4;
+
+    /**
+     * The size of the maps.
+     */
+    private static final int SIZE = 30;
+
+    /**
+     * Checks the costs of the unit against its modifiers.
+     *
+     * @param map the map
+     * @param unit the unit
+     * @param message the message if a cost differs
+     */
+    private static void checkCosts(AbstractMap map, AbstractUnit unit, String message) {
+        for (int index = 0; index < map.getSize(); index++) {
+            Checks.check(unit.getCostGraph().getCost(index) == unit.getTerrainModifier(map.getTerrain(index)),
+                    message + ": cost " + unit.getCostGraph().getCost(index) + " at " + index + " for "
+                    + map.getTerrain(index));
+        }
+    }
+
+    /**
+     * Checks the ordinals of all positions against the terrains of the map.
+     *
+     * @param map the map
+     * @param message the message if an ordinal differs
+     */
+    private static void checkOrdinals(AbstractMap map, String message) {
+        for (int index = 0; index < map.getSize(); index++) {
+            Checks.check(map.getTerrainOrdinal(index) == TerrainRegistry.getOrdinal(map.getTerrain(index)), message
+                    + ": ordinal " + map.getTerrainOrdinal(index) + " at " + index + " for " + map.getTerrain(index));
+        }
+    }
+
+    /**
+     * Attaches a two byte terrain layer to a map whose fields have no
+     * terrain of their own, except for some plain fields.
+     *
+     * @param random the random
+     * @throws IOException if the layer can't be written
+     */
+    private static void layer(Random random) throws IOException {
+        TestMappedTerrainLayer.ShortTerrain[] terrains = TestMappedTerrainLayer.ShortTerrain.values();
+        File file = File.createTempFile("terrain", ".agtl");
+        MappedTerrainLayer layer;
+        AbstractMap map = new SquareGameMap(SIZE, SIZE);
+        SimpleGame game = new SimpleGame(map);
+        AbstractUnit unit = new SimpleUnit(game, new SimplePlayer("Player", game));
+
+        file.deleteOnExit();
+        layer = MappedTerrainLayer.create(file, SIZE, SIZE, TestMappedTerrainLayer.ShortTerrain.class);
+
+        for (int index = 0; index < map.getSize(); index++) {
+            layer.setTerrain(index, random.nextBoolean() ? terrains[terrains.length - 1]
+                    : terrains[random.nextInt(terrains.length)]);
+            map.getField(index).setTerrain(random.nextInt(8) == 0 ? SimpleTerrain.PLAIN : null);
+        }
+
+        layer.force();
+        map.setTerrainLayer(new MappedTerrainLayer(file, TestMappedTerrainLayer.ShortTerrain.class, false));
+        unit.addTerrain(terrains[terrains.length - 1], MODIFIER);
+        unit.setPosition(map.getField(0));
+        checkOrdinals(map, "Layer");
+        checkCosts(map, unit, "Layer");
+
+        // a terrain of the field's own overrides the layer
+        map.getField(1).setTerrain(SimpleTerrain.PLAIN);
+        map.getField(2).setTerrain(null);
+        checkOrdinals(map, "Layer after terrain changes");
+        checkCosts(map, unit, "Layer after terrain changes");
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     * @throws IOException if a layer can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(19);
+
+        widen(random);
+        layer(random);
+        Checks.check(TerrainRegistry.size() > 0x100, TerrainRegistry.size() + " ordinals in use");
+        System.out.println(TerrainRegistry.size() + " terrain ordinals in use");
+    }
+
+    /**
+     * Sets terrains with ordinals larger than a byte on a map whose byte grid
+     * has been built already.
+     *
+     * @param random the random
+     */
+    private static void widen(Random random) {
+        TestMappedTerrainLayer.ShortTerrain[] terrains = TestMappedTerrainLayer.ShortTerrain.values();
+        AbstractMap map = TestPathfinders.randomTerrain(new SquareGameMap(SIZE, SIZE));
+        SimpleGame game = new SimpleGame(map);
+        AbstractUnit unit = new SimpleUnit(game, new SimplePlayer("Player", game));
+
+        unit.setPosition(map.getField(0));
+        checkOrdinals(map, "Byte grid");
+        checkCosts(map, unit, "Byte grid");
+
+        // the last terrain gets an ordinal larger than a byte
+        for (TestMappedTerrainLayer.ShortTerrain terrain : terrains) {
+            TerrainRegistry.getOrdinal(terrain);
+        }
+
+        Checks.check(TerrainRegistry.getOrdinal(terrains[terrains.length - 1]) > 0xFF, "Ordinal of the last terrain "
+                + TerrainRegistry.getOrdinal(terrains[terrains.length - 1]));
+        unit.addTerrain(terrains[terrains.length - 1], MODIFIER);
+        unit.setPosition(null);
+        unit.setPosition(map.getField(0));
+
+        for (int index = 1; index < map.getSize(); index++) {
+            if (random.nextInt(4) == 0) {
+                map.getField(index).setTerrain(terrains[terrains.length - 1 - random.nextInt(2)]);
+            }
+        }
+
+        checkOrdinals(map, "Widened grid");
+        checkCosts(map, unit, "Widened grid");
+    }
+
+    /**
+     * Instantiates a new test terrain ordinals.
+     */
+    public TestTerrainOrdinals() {
+        super();
+    }
+}
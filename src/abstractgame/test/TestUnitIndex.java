@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2018 Nils Kuttkat <nkuttkat@gmail.com>
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package abstractgame.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import abstractgame.game.AbstractPlayer;
+import abstractgame.map.AbstractField;
+import abstractgame.map.AbstractMap;
+import abstractgame.map.UnitIndex;
+import abstractgame.unit.AbstractUnit;
+
+/**
+ * The Class TestUnitIndex checks the radius, rectangle and nearest unit
+ * queries of the {@link UnitIndex} against a scan of all units on random
+ * maps of every topology, before and after units moved, left the map and
+ * changed their player.
+ *
+ * @author Nils Kuttkat
+ */
+public class TestUnitIndex {
+
+    /**
+     * The number of players.
+     */
+    private static final int PLAYERS = 3;
+
+    /**
+     * The number of random queries of every kind per round.
+     */
+    private static final int QUERIES = 300;
+
+    /**
+     * The number of units.
+     */
+    private static final int UNITS = 250;
+
+    /**
+     * Checks that the found units are exactly the expected ones.
+     *
+     * @param found the found units
+     * @param expected the expected units
+     * @param message the message if they differ
+     */
+    private static void checkUnits(List<AbstractUnit> found, List<AbstractUnit> expected, String message) {
+        Checks.check(found.size() == expected.size() && new HashSet<AbstractUnit>(found).equals(
+                new HashSet<AbstractUnit>(expected)), message + ": found " + found.size() + " units, "
+                + expected.size() + " expected, not the same units");
+    }
+
+    /**
+     * Runs random queries of every kind and compares them with a scan of
+     * all units.
+     *
+     * @param map the map
+     * @param units the units
+     * @param players the players
+     * @param random the random
+     * @param round the name of the round
+     */
+    private static void compare(AbstractMap map, List<AbstractUnit> units, AbstractPlayer[] players, Random random,
+            String round) {
+        UnitIndex unitIndex = map.getUnitIndex();
+        List<AbstractUnit> expected = new ArrayList<AbstractUnit>();
+        AbstractField center;
+        AbstractPlayer player;
+        double radius;
+        int minX, minY, maxX, maxY, x, y;
+
+        Checks.check(unitIndex.size() == scan(units, null).size(), round + ": " + unitIndex.size() + " indexed units");
+
+        for (int query = 0; query < QUERIES; query++) {
+            center = map.getField(random.nextInt(map.getSize()));
+            player = random.nextInt(PLAYERS + 1) == PLAYERS ? null : players[random.nextInt(PLAYERS)];
+            radius = random.nextInt(4) == 0 ? random.nextInt(12) : random.nextDouble() * 20;
+
+            // units of the player within the radius
+            expected.clear();
+
+            for (AbstractUnit unit : scan(units, player)) {
+                if (center.getDistance(unit.getPosition()) <= radius) {
+                    expected.add(unit);
+                }
+            }
+
+            checkUnits(unitIndex.findUnits(center, radius, player), expected, round + ", radius " + radius
+                    + " around " + center.getPosition());
+
+            // units of the other players within the radius
+            if (player != null) {
+                expected.clear();
+
+                for (AbstractUnit unit : scan(units, null)) {
+                    if (unit.getPlayer() != player && center.getDistance(unit.getPosition()) <= radius) {
+                        expected.add(unit);
+                    }
+                }
+
+                checkUnits(unitIndex.findEnemyUnits(center, radius, player), expected, round + ", enemies within "
+                        + radius + " around " + center.getPosition());
+            }
+
+            // units in a rectangle, which may reach over the border
+            minX = random.nextInt(map.getWidth() + 10) - 5;
+            minY = random.nextInt(map.getHeight() + 10) - 5;
+            maxX = minX + random.nextInt(25) - 2;
+            maxY = minY + random.nextInt(25) - 2;
+            expected.clear();
+
+            for (AbstractUnit unit : scan(units, player)) {
+                x = unit.getPosition().getPosition().getX();
+                y = unit.getPosition().getPosition().getY();
+
+                if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                    expected.add(unit);
+                }
+            }
+
+            checkUnits(unitIndex.findUnits(minX, minY, maxX, maxY, player), expected, round + ", rectangle ("
+                    + minX + ", " + minY + ") to (" + maxX + ", " + maxY + ")");
+
+            nearest(unitIndex, center, 1 + random.nextInt(20), player, scan(units, player), round);
+        }
+    }
+
+    /**
+     * The main method.
+     *
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        test("HexGameMap", new HexGameMap(57, 43), new Random(20));
+        test("HexGameMap", new HexGameMap(8, 120), new Random(21));
+        test("SquareGameMap", new SquareGameMap(57, 43), new Random(22));
+        test("OctagonGameMap", new OctagonGameMap(57, 43), new Random(23));
+    }
+
+    /**
+     * Checks the nearest units against the distances of all units of the
+     * player. Units at the same distance may be found in any order.
+     *
+     * @param unitIndex the unit index
+     * @param center the center
+     * @param count the max number of units
+     * @param player the player or null for all players
+     * @param candidates the units of the player
+     * @param round the name of the round
+     */
+    private static void nearest(UnitIndex unitIndex, AbstractField center, int count, AbstractPlayer player,
+            List<AbstractUnit> candidates, String round) {
+        List<AbstractUnit> found = unitIndex.findNearestUnits(center, count, player);
+        double[] distances = new double[candidates.size()];
+        String message = round + ", " + count + " nearest to " + center.getPosition();
+
+        for (int candidate = 0; candidate < candidates.size(); candidate++) {
+            distances[candidate] = center.getDistance(candidates.get(candidate).getPosition());
+        }
+
+        Arrays.sort(distances);
+        Checks.check(found.size() == Math.min(count, candidates.size()), message + ": " + found.size() + " units");
+        Checks.check(new HashSet<AbstractUnit>(found).size() == found.size(), message + ": duplicate units");
+
+        for (int unit = 0; unit < found.size(); unit++) {
+            Checks.check(candidates.contains(found.get(unit)), message + ": unit of another player");
+            Checks.check(center.getDistance(found.get(unit).getPosition()) == distances[unit], message + ": unit "
+                    + unit + " at " + center.getDistance(found.get(unit).getPosition()) + " instead of "
+                    + distances[unit]);
+        }
+    }
+
+    /**
+     * Scans all units for the placed units of the player.
+     *
+     * @param units the units
+     * @param player the player or null for all players
+     * @return the units
+     */
+    private static List<AbstractUnit> scan(List<AbstractUnit> units, AbstractPlayer player) {
+        List<AbstractUnit> placed = new ArrayList<AbstractUnit>();
+
+        for (AbstractUnit unit : units) {
+            if (unit.hasPosition() && (player == null || unit.getPlayer() == player)) {
+                placed.add(unit);
+            }
+        }
+
+        return placed;
+    }
+
+    /**
+     * Places units of several players on the map and compares the queries
+     * before and after they change.
+     *
+     * @param name the name of the map
+     * @param map the map
+     * @param random the random
+     */
+    private static void test(String name, AbstractMap map, Random random) {
+        SimpleGame game = new SimpleGame(TestPathfinders.randomTerrain(map));
+        AbstractPlayer[] players = new AbstractPlayer[PLAYERS];
+        List<AbstractUnit> units = new ArrayList<AbstractUnit>();
+        AbstractUnit unit;
+        int changes = 0;
+
+        for (int player = 0; player < PLAYERS; player++) {
+            players[player] = new SimplePlayer("Player " + player, game);
+        }
+
+        // the index is built from the units placed before
+        for (int count = 0; count < UNITS / 2; count++) {
+            unit = new SimpleUnit(game, players[random.nextInt(PLAYERS)]);
+            unit.setPosition(map.getField(random.nextInt(map.getSize())));
+            units.add(unit);
+        }
+
+        compare(map, units, players, random, name + " built");
+
+        for (int count = UNITS / 2; count < UNITS; count++) {
+            unit = new SimpleUnit(game, players[random.nextInt(PLAYERS)]);
+            unit.setPosition(map.getField(random.nextInt(map.getSize())));
+            units.add(unit);
+        }
+
+        compare(map, units, players, random, name + " placed");
+
+        // units of another player are indexed again
+        for (AbstractUnit changed : units) {
+            if (changed.hasPosition() && random.nextInt(3) == 0) {
+                changed.setPlayer(players[(Arrays.asList(players).indexOf(changed.getPlayer()) + 1) % PLAYERS]);
+                changes++;
+            }
+        }
+
+        Checks.check(changes > 0, name + ": no player changed");
+        compare(map, units, players, random, name + " after player changes");
+
+        // units move and leave the map
+        for (AbstractUnit moved : units) {
+            if (random.nextInt(4) == 0) {
+                moved.setPosition(null);
+            } else if (random.nextInt(3) == 0) {
+                moved.setPosition(map.getField(random.nextInt(map.getSize())));
+            }
+        }
+
+        compare(map, units, players, random, name + " after moves");
+        System.out.println(name + " " + map.getWidth() + "x" + map.getHeight() + ": "
+                + map.getUnitIndex().size() + " units indexed");
+    }
+
+    /**
+     * Instantiates a new test unit index.
+     */
+    public TestUnitIndex() {
+        super();
+    }
+}
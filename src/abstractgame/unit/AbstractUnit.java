@@ -17,34 +17,31 @@
 package abstractgame.unit;
 
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 
-import nkutilities.graph.DijkstraPathfinder;
-import nkutilities.graph.GraphNode;
-
-import abstractgame.events.fieldevents.FieldTerrainChangedEvent;
-import abstractgame.events.fieldevents.UnitAddedToFieldEvent;
-import abstractgame.events.fieldevents.UnitRemovedFromFieldEvent;
-import abstractgame.events.gameevents.UnitAddedToGameEvent;
-import abstractgame.events.gameevents.UnitRemovedFromGameEvent;
+import abstractgame.events.EventBus;
+import abstractgame.events.EventType;
+import abstractgame.events.ListenerList;
 import abstractgame.events.unitevents.UnitDirectionChangedEvent;
 import abstractgame.events.unitevents.UnitMovedEvent;
 import abstractgame.events.unitevents.UnitPlayerChangedEvent;
 import abstractgame.game.AbstractGame;
 import abstractgame.game.AbstractPlayer;
-import abstractgame.interfaces.FieldTerrainChangedListener;
-import abstractgame.interfaces.UnitAddedToFieldListener;
-import abstractgame.interfaces.UnitAddedToGameListener;
 import abstractgame.interfaces.UnitDirectionChangedListener;
 import abstractgame.interfaces.UnitMovedListener;
 import abstractgame.interfaces.UnitPlayerChangedListener;
-import abstractgame.interfaces.UnitRemovedFromFieldListener;
-import abstractgame.interfaces.UnitRemovedFromGameListener;
 import abstractgame.map.AbstractField;
 import abstractgame.map.AbstractMap;
 import abstractgame.map.AbstractTerrain;
+import abstractgame.pathfinding.AStarPathfinder;
+import abstractgame.pathfinding.AbstractPathfinder;
+import abstractgame.pathfinding.BatchPathfinder;
+import abstractgame.pathfinding.CooperativePathfinder;
+import abstractgame.pathfinding.CostGraph;
+import abstractgame.pathfinding.DijkstraPathfinder;
+import abstractgame.pathfinding.MovementClass;
+import abstractgame.pathfinding.Path;
+import abstractgame.pathfinding.ReachableSet;
 import abstractgame.view.AbstractUnitView;
 
 /**
@@ -52,16 +49,14 @@ import abstractgame.view.AbstractUnitView;
  * to an {@link AbstractGame} and optionally to an {@link AbstractPlayer}.
  * Either it can have a position on the {@link AbstractMap} or it's position is
  * null. The first time an AbstractUnit is placed on the map it's graph will be
- * built. The graph will be updated every time the state of the
- * {@link AbstractMap} changes (terrain changes, units placed etc.), so thats
- * why a unit listens to various events.
+ * built. All units of the same {@link MovementClass} share one
+ * {@link CostGraph}, which the {@link AbstractMap} keeps up to date. Rules
+ * which only apply to this unit ({@link #canPass(AbstractField)}) are checked
+ * while searching a path.
  *
  * @author Nils Kuttkat
  */
-public abstract class AbstractUnit implements Serializable,
-        UnitAddedToFieldListener, UnitRemovedFromFieldListener,
-        FieldTerrainChangedListener, UnitPlayerChangedListener,
-        UnitAddedToGameListener, UnitRemovedFromGameListener {
+public abstract class AbstractUnit implements Serializable {
 
     /**
      * The Constant serialVersionUID.
@@ -73,6 +68,11 @@ public abstract class AbstractUnit implements Serializable,
      */
     private HashMap<Enum<?>, Double> accessibleTerrains = new HashMap<Enum<?>, Double>();
 
+    /**
+     * The cost graph of this unit's movement class.
+     */
+    private transient CostGraph costGraph;
+
     /**
      * The current health.
      */
@@ -93,11 +93,6 @@ public abstract class AbstractUnit implements Serializable,
      */
     private AbstractGame game;
 
-    /**
-     * The has graph.
-     */
-    private boolean hasGraph = false;
-
     /**
      * The max health.
      */
@@ -113,10 +108,15 @@ public abstract class AbstractUnit implements Serializable,
      */
     private AbstractMobilityRole mobilityRole;
 
+    /**
+     * The movement class.
+     */
+    private transient MovementClass movementClass;
+
     /**
      * The pathfinder.
      */
-    private DijkstraPathfinder pathfinder;
+    private AbstractPathfinder pathfinder;
 
     /**
      * The player.
@@ -128,20 +128,26 @@ public abstract class AbstractUnit implements Serializable,
      */
     private AbstractField position;
 
+    /**
+     * The fields reachable with the current movement points, cached until the
+     * map changes.
+     */
+    private transient ReachableSet reachableFields;
+
     /**
      * The unit direction changed listener.
      */
-    private HashSet<UnitDirectionChangedListener> unitDirectionChangedListener = new HashSet<UnitDirectionChangedListener>();
+    private final ListenerList<UnitDirectionChangedListener> unitDirectionChangedListener = new ListenerList<UnitDirectionChangedListener>(UnitDirectionChangedListener.class);
 
     /**
      * The unit moved listener.
      */
-    private HashSet<UnitMovedListener> unitMovedListener = new HashSet<UnitMovedListener>();
+    private final ListenerList<UnitMovedListener> unitMovedListener = new ListenerList<UnitMovedListener>(UnitMovedListener.class);
 
     /**
      * The unit player changed listener.
      */
-    private HashSet<UnitPlayerChangedListener> unitPlayerChangedListener = new HashSet<UnitPlayerChangedListener>();
+    private final ListenerList<UnitPlayerChangedListener> unitPlayerChangedListener = new ListenerList<UnitPlayerChangedListener>(UnitPlayerChangedListener.class);
 
     /**
      * The view.
@@ -173,7 +179,7 @@ public abstract class AbstractUnit implements Serializable,
         this.mobilityRole = mobilityRole;
         this.currentMovementPoints = Double.POSITIVE_INFINITY;
         this.maxMovementPoints = Double.POSITIVE_INFINITY;
-        this.pathfinder = new DijkstraPathfinder();
+        this.pathfinder = new AStarPathfinder();
     }
 
     /**
@@ -184,6 +190,7 @@ public abstract class AbstractUnit implements Serializable,
      */
     public void addTerrain(Enum<?> terrain, double terrainModifier) {
         this.getAccessibleTerrains().put(terrain, terrainModifier);
+        this.movementClassChanged();
     }
 
     /**
@@ -242,6 +249,21 @@ public abstract class AbstractUnit implements Serializable,
      */
     public abstract boolean canPass(AbstractField abstractField);
 
+    /**
+     * Creates the movement class of the unit from its class and its
+     * accessible terrains. Subclasses whose costs depend on more than the
+     * terrain override this method and return their own subclass of
+     * {@link MovementClass} which overrides
+     * {@link MovementClass#getCost(AbstractMap, int)}. The movement class is a
+     * key shared by all units moving the same way, so it must not refer to
+     * the unit.
+     *
+     * @return the movement class
+     */
+    protected MovementClass createMovementClass() {
+        return new MovementClass(this.getClass(), this.getAccessibleTerrains());
+    }
+
     /**
      * Inflict damage on this unit.
      *
@@ -260,31 +282,31 @@ public abstract class AbstractUnit implements Serializable,
      * Destroy this unit (cut all references).
      */
     public void destroy() {
+        if (this.costGraph != null) {
+            this.costGraph.getMap().removeGraph(this);
+        }
+
         this.game = null;
         this.setPlayer(null);
         this.setPosition(null);
     }
 
-    /*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * util.game.interfaces.FieldTerrainChangedListener#terrainChanged(util.
-	 * game.events.fieldevents.FieldTerrainChangedEvent)
-     */
-    @Override
-    public void fieldTerrainChanged(FieldTerrainChangedEvent event) {
-        event.getSource().setNeighborEdges(this);
-    }
-
     /**
      * Fire unit direction changed event.
      *
      * @param previousDirection the previous direction
      */
     protected void fireUnitDirectionChangedEvent(int previousDirection) {
-        for (UnitDirectionChangedListener listener : this.unitDirectionChangedListener) {
-            listener.unitDirectionChanged(new UnitDirectionChangedEvent(this, previousDirection));
+        EventBus eventBus = this.getEventBus();
+
+        if (EventType.UNIT_DIRECTION_CHANGED.isObserved(this.unitDirectionChangedListener, eventBus)) {
+            UnitDirectionChangedEvent event = new UnitDirectionChangedEvent(this, previousDirection);
+
+            if (eventBus != null) {
+                eventBus.publish(EventType.UNIT_DIRECTION_CHANGED, event, this.unitDirectionChangedListener);
+            } else {
+                EventType.UNIT_DIRECTION_CHANGED.dispatch(this.unitDirectionChangedListener, event);
+            }
         }
     }
 
@@ -293,8 +315,16 @@ public abstract class AbstractUnit implements Serializable,
      *
      */
     protected void fireUnitMovedEvent() {
-        for (UnitMovedListener listener : this.unitMovedListener) {
-            listener.unitMoved(new UnitMovedEvent(this));
+        EventBus eventBus = this.getEventBus();
+
+        if (EventType.UNIT_MOVED.isObserved(this.unitMovedListener, eventBus)) {
+            UnitMovedEvent event = new UnitMovedEvent(this);
+
+            if (eventBus != null) {
+                eventBus.publish(EventType.UNIT_MOVED, event, this.unitMovedListener);
+            } else {
+                EventType.UNIT_MOVED.dispatch(this.unitMovedListener, event);
+            }
         }
     }
 
@@ -303,13 +333,113 @@ public abstract class AbstractUnit implements Serializable,
      *
      */
     protected void fireUnitPlayerChangedEvent() {
-        for (UnitPlayerChangedListener listener : this.unitPlayerChangedListener) {
-            listener.unitPlayerChanged(new UnitPlayerChangedEvent(this));
+        EventBus eventBus = this.getEventBus();
+
+        if (EventType.UNIT_PLAYER_CHANGED.isObserved(this.unitPlayerChangedListener, eventBus)) {
+            UnitPlayerChangedEvent event = new UnitPlayerChangedEvent(this);
+
+            if (eventBus != null) {
+                eventBus.publish(EventType.UNIT_PLAYER_CHANGED, event, this.unitPlayerChangedListener);
+            } else {
+                EventType.UNIT_PLAYER_CHANGED.dispatch(this.unitPlayerChangedListener, event);
+            }
         }
     }
 
     /**
-     * Gets the accessible terrains.
+     * Moves the unit along the path, which has to start at the unit's
+     * position, e.g. a path found by a {@link BatchPathfinder} before other
+     * units moved. Every step is set by {@link #setPosition(AbstractField)},
+     * the unit stops in front of a field it can't pass anymore. <br>
+     * The steps run in a batch of the map's {@link EventBus}, so the
+     * listeners see the move once, from the start to the last field
+     * reached.
+     *
+     * @param path the path
+     * @return true, if the unit reached the end of the path
+     */
+    public boolean followPath(Path path) {
+        boolean success = false;
+        EventBus eventBus;
+        int step = 1;
+
+        if (this.hasPosition() && path.size() > 1 && path.getField(0) == this.getPosition()) {
+            eventBus = this.getEventBus();
+
+            if (eventBus != null) {
+                eventBus.beginBatch();
+            }
+
+            try {
+                // for every field in path except the start, as long as the
+                // unit is still on the path, it passes through full fields
+                // but must not remain on one
+                while (step < path.size() && this.followStep(path, step, step < path.size() - 1)) {
+                    step++;
+                }
+            } finally {
+                if (eventBus != null) {
+                    eventBus.endBatch();
+                }
+            }
+
+            success = this.getPosition() == path.getField(path.size() - 1);
+        }
+
+        return success;
+    }
+
+    /**
+     * Makes a single step of the path, e.g. a path planned by a
+     * {@link CooperativePathfinder} together with the paths of other units.
+     * The unit has to stand on the field before the step, the step may be a
+     * wait on the same field. Unlike {@link #followPath(Path)} the unit
+     * doesn't pass through fields which can't carry it.
+     *
+     * @param path the path
+     * @param step the step (1 to path.size() - 1)
+     * @return true, if the unit stands on the field of the step
+     */
+    public boolean followStep(Path path, int step) {
+        return this.followStep(path, step, false);
+    }
+
+    /**
+     * Makes a single step of the path.
+     *
+     * @param path the path
+     * @param step the step (1 to path.size() - 1)
+     * @param passThrough true if the unit may enter a field which can't carry
+     * it because it will not remain
+     * @return true, if the unit stands on the field of the step
+     */
+    private boolean followStep(Path path, int step, boolean passThrough) {
+        boolean success = false;
+        AbstractField nextField = path.getField(step);
+
+        if (this.hasPosition() && this.isMobile() && this.getPosition() == path.getField(step - 1)) {
+            if (nextField == this.getPosition()) {
+                success = true;
+            } else if (this.canPass(nextField) && (passThrough || nextField.canCarry(this))) {
+                // set direction to the next field
+                this.setDirection(this.getPosition().getDirectionForNeighbor(nextField));
+
+                // set position to the next field
+                if (this.setPosition(nextField, passThrough)) {
+                    this.setCurrentMovementPoints(this.getCurrentMovementPoints()
+                            - (path.getCost(step) - path.getCost(step - 1)));
+                    success = true;
+                }
+            }
+        }
+
+        return success;
+    }
+
+    /**
+     * Gets the accessible terrains. Use {@link #addTerrain(Enum, double)} and
+     * {@link #setTerrainModifier(Enum, double)} to change them, so the unit's
+     * {@link MovementClass} is updated.
      *
      * @return the accessible terrains
      */
@@ -318,13 +448,35 @@ public abstract class AbstractUnit implements Serializable,
     }
 
     /**
-     * Gets the access modifier.
+     * Gets the access modifier, the cost the unit's {@link MovementClass}
+     * computes for the field ({@link MovementClass#getCost(AbstractMap, int)}),
+     * which is what the cost graphs use too. To change the costs, override
+     * {@link #createMovementClass()} instead of this method, so the unit and
+     * its graph agree.
      *
      * @param abstractField the abstract field
      * @return the access modifier
      */
     public double getAccessModifier(AbstractField abstractField) {
-        return this.getTerrainModifier(abstractField.getTerrain());
+        AbstractMap map = abstractField.getMap();
+        double modifier;
+
+        if (map != null) {
+            modifier = this.getMovementClass().getCost(map, abstractField.getIndex());
+        } else {
+            modifier = this.getTerrainModifier(abstractField.getTerrain());
+        }
+
+        return modifier;
+    }
+
+    /**
+     * Gets the cost graph of this unit's movement class.
+     *
+     * @return the cost graph or null if the unit has no graph
+     */
+    public CostGraph getCostGraph() {
+        return this.costGraph;
     }
 
     /**
@@ -374,6 +526,24 @@ public abstract class AbstractUnit implements Serializable,
         return weight;
     }
 
+    /**
+     * Gets the event bus of the map the unit is placed on, or of the game's
+     * map if the unit isn't placed.
+     *
+     * @return the event bus or null
+     */
+    private EventBus getEventBus() {
+        EventBus eventBus = null;
+
+        if (this.position != null && this.position.getMap() != null) {
+            eventBus = this.position.getMap().getEventBus();
+        } else if (this.game != null && this.game.getMap() != null) {
+            eventBus = this.game.getMap().getEventBus();
+        }
+
+        return eventBus;
+    }
+
     /**
      * Gets the game this unit belongs to.
      *
@@ -401,6 +571,46 @@ public abstract class AbstractUnit implements Serializable,
         return this.maxMovementPoints;
     }
 
+    /**
+     * Gets the movement class. Units of the same class with the same
+     * accessible terrains share a movement class and therefore a
+     * {@link CostGraph}. The movement class is created by
+     * {@link #createMovementClass()} and kept until the accessible terrains
+     * change.
+     *
+     * @return the movement class
+     */
+    public MovementClass getMovementClass() {
+        if (this.movementClass == null) {
+            this.movementClass = this.createMovementClass();
+        }
+
+        return this.movementClass;
+    }
+
+    /**
+     * Gets the pass group of the unit. Units of the same
+     * {@link MovementClass} and pass group must pass the same fields
+     * ({@link #canPass(AbstractField)}), so the results of the
+     * {@link BatchPathfinder} and the caching pathfinders are shared within a
+     * pass group. By default every unit is a group of its own, units whose
+     * rules only depend on their player return the player.
+     *
+     * @return the pass group
+     */
+    public Object getPassGroup() {
+        return this;
+    }
+
+    /**
+     * Gets the pathfinder.
+     *
+     * @return the pathfinder
+     */
+    public AbstractPathfinder getPathfinder() {
+        return this.pathfinder;
+    }
+
     /**
      * Gets the player this unit belongs to.
      *
@@ -420,20 +630,47 @@ public abstract class AbstractUnit implements Serializable,
     }
 
     /**
-     * Gets the terrain modifier. This modifier will be used for pathfinding
-     * operations.
+     * Gets every field the unit can reach from its position with its current
+     * movement points, together with the cost and the predecessor of every
+     * field. The fields are found in one bounded search and cached until the
+     * map changes ({@link AbstractMap#getVersion()}), the unit moves or its
+     * movement points change.
      *
-     * @param terrain the terrain
-     * @return the terrain modifier
+     * @return the reachable fields or {@link ReachableSet#EMPTY} if the unit
+     * has no position or isn't mobile
      */
-    public double getTerrainModifier(Enum<?> terrain) {
-        double requiredMovementPoints = Double.POSITIVE_INFINITY;
+    public ReachableSet getReachableFields() {
+        ReachableSet result = ReachableSet.EMPTY;
+        DijkstraPathfinder rangeFinder;
+
+        if (this.hasPosition() && this.isMobile()) {
+            if (!this.hasGraph()) {
+                this.game.getMap().buildGraph(this);
+            }
+
+            if (this.reachableFields == null
+                    || !this.reachableFields.isValid(this.costGraph, this.position, this.currentMovementPoints)) {
+                rangeFinder = this.pathfinder instanceof DijkstraPathfinder
+                        ? (DijkstraPathfinder) this.pathfinder : new DijkstraPathfinder();
+                this.reachableFields = rangeFinder.findReachableFields(this.costGraph, this,
+                        this.position, this.currentMovementPoints);
+            }
 
-        if (this.getAccessibleTerrains().containsKey(terrain)) {
-            requiredMovementPoints = this.getAccessibleTerrains().get(terrain);
+            result = this.reachableFields;
         }
 
-        return requiredMovementPoints;
+        return result;
+    }
+
+    /**
+     * Gets the terrain modifier of the unit's {@link MovementClass}. This
+     * modifier will be used for pathfinding operations.
+     *
+     * @param terrain the terrain
+     * @return the terrain modifier
+     */
+    public double getTerrainModifier(Enum<?> terrain) {
+        return this.getMovementClass().getTerrainModifier(terrain);
     }
 
     /**
@@ -451,16 +688,7 @@ public abstract class AbstractUnit implements Serializable,
      * @return true, if successful
      */
     public boolean hasGraph() {
-        return hasGraph;
-    }
-
-    /**
-     * Sets the flag, which indicates if the unit has a graph.
-     *
-     * @param hasGraph the has graph
-     */
-    public void hasGraph(boolean hasGraph) {
-        this.hasGraph = hasGraph;
+        return this.costGraph != null;
     }
 
     /**
@@ -507,40 +735,26 @@ public abstract class AbstractUnit implements Serializable,
      */
     public boolean moveTo(AbstractField targetField) {
         boolean success = false;
-        double distanceTraveled = 0;
-        int newDirection;
-        ArrayList<GraphNode> path;
+        Path path;
 
         // if the unit has a position on the map AND if it is mobile
         if (this.hasPosition() && this.isMobile()) {
             path = this.pathfinder.findPath(this, this.getPosition(), targetField, this.getCurrentMovementPoints());
+            success = this.followPath(path);
+        }
 
-            if (!path.isEmpty()) {
-                path.remove(0);
-            }
-
-            // for every field in path
-            for (GraphNode node : path) {
-                AbstractField nextField = (AbstractField) node;
-                double distanceToNextNode = this.pathfinder.getDistanceForNode(nextField) - distanceTraveled;
-
-                // set direction to the next field
-                newDirection = this.getPosition().getDirectionForNeighbor(nextField);
-                this.setDirection(newDirection);
+        return success;
+    }
 
-                // set position to the next field
-                if (this.setPosition(nextField, true)) {
-                    this.setCurrentMovementPoints(this.getCurrentMovementPoints() - distanceToNextNode);
-                    distanceTraveled += distanceToNextNode;
-                }
-            }
+    /**
+     * Tells the map to move this unit to the graph of its new movement class.
+     */
+    private void movementClassChanged() {
+        this.movementClass = null;
 
-            if (!path.isEmpty() && this.getPosition() == path.get(path.size() - 1)) {
-                success = true;
-            }
+        if (this.costGraph != null) {
+            this.costGraph.getMap().buildGraph(this);
         }
-
-        return success;
     }
 
     /**
@@ -584,6 +798,16 @@ public abstract class AbstractUnit implements Serializable,
         }
     }
 
+    /**
+     * Sets the cost graph. This method is called by the {@link AbstractMap}
+     * when it builds or removes the unit's graph.
+     *
+     * @param costGraph the new cost graph
+     */
+    public void setCostGraph(CostGraph costGraph) {
+        this.costGraph = costGraph;
+    }
+
     /**
      * Sets the current health.
      *
@@ -667,6 +891,20 @@ public abstract class AbstractUnit implements Serializable,
         this.mobilityRole = mobilityRole;
     }
 
+    /**
+     * Sets the pathfinder used by {@link #moveTo(AbstractField)}. The previous
+     * pathfinder is released ({@link AbstractPathfinder#release(AbstractUnit)}).
+     *
+     * @param pathfinder the new pathfinder
+     */
+    public void setPathfinder(AbstractPathfinder pathfinder) {
+        if (this.pathfinder != null && this.pathfinder != pathfinder) {
+            this.pathfinder.release(this);
+        }
+
+        this.pathfinder = pathfinder;
+    }
+
     /**
      * Sets the player the unit belongs to.
      *
@@ -763,6 +1001,7 @@ public abstract class AbstractUnit implements Serializable,
      */
     public void setTerrainModifier(Enum<?> terrain, double modifier) {
         this.getAccessibleTerrains().put(terrain, modifier);
+        this.movementClassChanged();
     }
 
     /**
@@ -821,68 +1060,4 @@ public abstract class AbstractUnit implements Serializable,
             this.setDirection((this.direction - 1 + this.position.getDirections()) % this.position.getDirections());
         }
     }
-
-    /*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * util.game.interfaces.UnitAddedToFieldListener#unitAdded(util.game.events
-	 * .fieldevents.UnitAddedToFieldEvent)
-     */
-    @Override
-    public void unitAddedToField(UnitAddedToFieldEvent event) {
-        event.getSource().setNeighborEdges(this);
-    }
-
-    /*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * util.game.interfaces.UnitAddedToGameListener#unitAddedToGame(util.game
-	 * .events.gameevents.UnitAddedToGameEvent)
-     */
-    @Override
-    public void unitAddedToGame(UnitAddedToGameEvent event) {
-        this.addUnitPlayerChangedListener(event.getUnit());
-        event.getUnit().addUnitPlayerChangedListener(this);
-    }
-
-    /*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * util.game.interfaces.UnitPlayerChangedListener#playerChanged(util.game
-	 * .events.unitevents.UnitPlayerChangedEvent)
-     */
-    @Override
-    public void unitPlayerChanged(UnitPlayerChangedEvent event) {
-        if (this.hasPosition() && this.hasGraph() && event.getSource().hasPosition()) {
-            event.getSource().getPosition().setNeighborEdges(this);
-        }
-    }
-
-    /*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * util.game.interfaces.UnitRemovedFromFieldListener#unitRemoved(util.game
-	 * .events.fieldevents.UnitRemovedFromFieldEvent)
-     */
-    @Override
-    public void unitRemovedFromField(UnitRemovedFromFieldEvent event) {
-        event.getSource().setNeighborEdges(this);
-    }
-
-    /*
-	 * (non-Javadoc)
-	 * 
-	 * @see
-	 * util.game.interfaces.UnitRemovedFromGameListener#unitRemovedFromGame(
-	 * util.game.events.gameevents.UnitRemovedFromGameEvent)
-     */
-    @Override
-    public void unitRemovedFromGame(UnitRemovedFromGameEvent event) {
-        this.removeUnitPlayerChangedListener(event.getUnit());
-        event.getUnit().removeUnitPlayerChangedListener(this);
-    }
 }
@@ -24,6 +24,7 @@ import java.awt.Shape;
 import javax.swing.JComponent;
 import javax.swing.text.FieldView;
 
+import abstractgame.events.SubscriptionScope;
 import abstractgame.events.fieldevents.FieldTerrainChangedEvent;
 import abstractgame.events.fieldevents.UnitAddedToFieldEvent;
 import abstractgame.events.fieldevents.UnitRemovedFromFieldEvent;
@@ -35,7 +36,9 @@ import abstractgame.map.AbstractField;
 /**
  * The Class AbstractFieldView is an abstract superclass for various graphical
  * representations of {@link AbstractField}'s. It handles some field and unit
- * events by default.
+ * events by default. Its registrations on the model are kept in a
+ * {@link SubscriptionScope}, which cancels them all once the view gets another
+ * model or the model another view.
  *
  * @author Nils Kuttkat
  */
@@ -68,6 +71,11 @@ public abstract class AbstractFieldView extends JComponent implements
      */
     private boolean showBorder;
 
+    /**
+     * The registrations of the view on its model, created on demand.
+     */
+    private transient SubscriptionScope subscriptions;
+
     public AbstractFieldView(AbstractField model) {
         this.setModel(model);
         this.setLayout(null);
@@ -167,17 +175,22 @@ public abstract class AbstractFieldView extends JComponent implements
         AbstractField oldModel = this.model;
         this.model = model;
 
+        if (this.subscriptions == null) {
+            this.subscriptions = new SubscriptionScope();
+        }
+
+        // the registrations are cancelled even if the model has got another
+        // view already, which detaches this one by setting its model to null
+        this.subscriptions.cancelAll();
+
         if (oldModel != null && oldModel.getView() == this) {
-            oldModel.removeUnitAddedListener(this);
-            oldModel.removeUnitRemovedListener(this);
-            oldModel.removeTerrainChangedListener(this);
             oldModel.setView(null);
         }
 
         if (this.model != null) {
-            this.model.addUnitAddedListener(this);
-            this.model.addUnitRemovedListener(this);
-            this.model.addTerrainChangedListener(this);
+            this.subscriptions.add(this.model.addUnitAddedListener(this));
+            this.subscriptions.add(this.model.addUnitRemovedListener(this));
+            this.subscriptions.add(this.model.addTerrainChangedListener(this));
 
             if (this.model.getView() != this) {
                 this.model.setView(this);
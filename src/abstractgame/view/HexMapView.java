@@ -50,10 +50,10 @@ public abstract class HexMapView extends MapView {
     protected void initialize(int sideLength) {
         HexView prototype = new HexView(sideLength);
         int width, height;
-        width = (int) Math.round(this.getModel().getFields().length
+        width = (int) Math.round(this.getModel().getWidth()
                 * ((prototype.getWidth() - 1) * 0.75))
                 + (int) Math.round((prototype.getWidth()) * 0.25) + 1;
-        height = this.getModel().getFields()[0].length * (prototype.getHeight() - 1) + prototype.getHeight() / 2 + 1;
+        height = this.getModel().getHeight() * (prototype.getHeight() - 1) + prototype.getHeight() / 2 + 1;
         this.setSize(width, height);
         this.setPreferredSize(this.getSize());
         this.setMinimumSize(this.getSize());
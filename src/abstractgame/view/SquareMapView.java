@@ -49,8 +49,8 @@ public abstract class SquareMapView extends MapView {
      */
     protected void initialize(int fieldSize) {
         SquareView prototype = new SquareView(fieldSize);
-        this.setSize(this.getModel().getFields().length * (prototype.getWidth() - 1) + 1,
-                this.getModel().getFields()[0].length * (prototype.getHeight() - 1) + 1);
+        this.setSize(this.getModel().getWidth() * (prototype.getWidth() - 1) + 1,
+                this.getModel().getHeight() * (prototype.getHeight() - 1) + 1);
         this.setPreferredSize(this.getSize());
         this.setMinimumSize(this.getSize());
         this.setMaximumSize(this.getSize());